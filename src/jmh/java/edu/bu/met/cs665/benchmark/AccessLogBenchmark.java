@@ -0,0 +1,109 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.accesslog.AccessLog;
+import edu.bu.met.cs665.accesslog.AccessLogField;
+import edu.bu.met.cs665.accesslog.AccessLogSink;
+import edu.bu.met.cs665.accesslog.BinaryAccessLogSink;
+import edu.bu.met.cs665.accesslog.TextAccessLogSink;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.route.Route;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures what recording one request costs the request thread, with four
+ * threads recording at once, for the JSON text sink and the binary
+ * memory-mapped sink. The sinks run on the access log's drain thread; the
+ * dropped count printed at tear-down shows whether a sink kept up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AccessLogBenchmark {
+
+  @Param({"text", "binary"})
+  private String sink;
+
+  private Path directory;
+  private AccessLog accessLog;
+  private GatewayRequest request;
+  private GatewayResponse response;
+
+  /**
+   * Opens the access log with the chosen sink and builds a sample request.
+   *
+   * @throws IOException if the temp directory cannot be created
+   */
+  @Setup
+  public void setUp() throws IOException {
+    AccessLogSink selected;
+    if ("binary".equals(sink)) {
+      directory = Files.createTempDirectory("access-log-bench");
+      selected = BinaryAccessLogSink.builder(directory).maxSegments(4).build();
+    } else {
+      // Format every line but discard it, so the benchmark does not measure the appender
+      selected = new TextAccessLogSink(Collections.<AccessLogField>emptyList(), line -> { });
+    }
+    accessLog = AccessLog.builder(selected).capacity(65536).build();
+
+    request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/data/42");
+    request.setClientId("client-7");
+    request.setMatchedRoute(Route.builder("/api/data").targetUrl("http://localhost/").build());
+    response = new GatewayResponse();
+    response.setStatusCode(200);
+    response.setBody("{\"id\":42,\"title\":\"benchmark\"}");
+  }
+
+  /**
+   * Closes the access log and deletes the binary segments.
+   *
+   * @throws IOException if the segments cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    accessLog.close();
+    System.out.println("Recorded " + accessLog.getRecordedCount() + ", dropped "
+        + accessLog.getDroppedCount());
+    if (directory != null) {
+      try (Stream<Path> files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Records one request.
+   *
+   * @return whether the record was queued
+   */
+  @Benchmark
+  public boolean record() {
+    return accessLog.record(request, response);
+  }
+}
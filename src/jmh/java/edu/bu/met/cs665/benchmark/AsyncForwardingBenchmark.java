@@ -0,0 +1,168 @@
+package edu.bu.met.cs665.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.pool.AsyncHttpClientPool;
+import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.service.GatewayService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares request throughput of the blocking path, limited by a fixed set
+ * of worker threads standing in for servlet threads, with the non-blocking
+ * path against a local backend that takes delayMillis to answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncForwardingBenchmark {
+  private static final int BATCH = 200;
+
+  @Param({"50"})
+  private long delayMillis;
+
+  @Param({"20"})
+  private int workerThreads;
+
+  private HttpServer backend;
+  private ExecutorService backendThreads;
+  private ExecutorService workers;
+  private GatewayService blockingService;
+  private GatewayService asyncService;
+
+  /**
+   * Starts the slow backend and one gateway for each path.
+   *
+   * @throws IOException if the backend cannot be started
+   */
+  @Setup
+  public void setUp() throws IOException {
+    backendThreads = Executors.newCachedThreadPool();
+    backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    backend.setExecutor(backendThreads);
+    backend.createContext("/", exchange -> {
+      try {
+        Thread.sleep(delayMillis);
+        byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    backend.start();
+
+    Route route = Route.builder("/api/slow")
+        .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/slow")
+        .timeout(30000)
+        .rateLimit(0)
+        .build();
+
+    workers = Executors.newFixedThreadPool(workerThreads);
+    blockingService = new GatewayService(HttpClientPool.builder()
+        .mode(HttpClientPool.Mode.SHARED)
+        .poolSize(BATCH)
+        .maxPerRoute(BATCH)
+        .build());
+    blockingService.registerRoute(route);
+
+    asyncService = new GatewayService(new HttpClientPool(1, 5),
+        new AsyncHttpClientPool(BATCH, BATCH, 2, 5));
+    asyncService.registerRoute(route);
+  }
+
+  /**
+   * Stops the gateways and the backend.
+   */
+  @TearDown
+  public void tearDown() {
+    workers.shutdownNow();
+    blockingService.shutdown();
+    asyncService.shutdown();
+    backend.stop(0);
+    backendThreads.shutdownNow();
+  }
+
+  private static GatewayRequest request() {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/slow");
+    return request;
+  }
+
+  /**
+   * A batch of requests on the blocking path, one worker thread per request.
+   *
+   * @return number of 200 responses
+   * @throws InterruptedException if interrupted while waiting
+   * @throws ExecutionException if a worker fails
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int blocking() throws InterruptedException, ExecutionException {
+    List<Future<GatewayResponse>> futures = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      futures.add(workers.submit(() -> blockingService.processRequest(request())));
+    }
+    int ok = 0;
+    for (Future<GatewayResponse> future : futures) {
+      if (future.get().getStatusCode() == 200) {
+        ok++;
+      }
+    }
+    return ok;
+  }
+
+  /**
+   * The same batch on the non-blocking path, sent from a single thread.
+   *
+   * @return number of 200 responses
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int async() {
+    List<CompletableFuture<GatewayResponse>> futures = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      futures.add(asyncService.processRequestAsync(request()));
+    }
+    int ok = 0;
+    for (CompletableFuture<GatewayResponse> future : futures) {
+      if (future.join().getStatusCode() == 200) {
+        ok++;
+      }
+    }
+    return ok;
+  }
+}
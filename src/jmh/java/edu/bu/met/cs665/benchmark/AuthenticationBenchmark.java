@@ -0,0 +1,73 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures AuthenticationFilter.preProcess with the static token list:
+ * header lookup, Bearer prefix removal and the token check, for a known
+ * token and an unknown one. {@link JwtValidationBenchmark} covers signed
+ * tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+  private AuthenticationFilter filter;
+  private GatewayRequest validRequest;
+  private GatewayRequest invalidRequest;
+
+  /**
+   * Creates the filter with its demonstration tokens and one request for each case.
+   */
+  @Setup
+  public void setUp() {
+    filter = new AuthenticationFilter();
+    validRequest = request("Bearer token-123");
+    invalidRequest = request("Bearer token-000");
+  }
+
+  private static GatewayRequest request(String authorization) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/secure");
+    request.addHeader("authorization", authorization);
+    return request;
+  }
+
+  /**
+   * A known token.
+   *
+   * @return whether the request was accepted
+   */
+  @Benchmark
+  public boolean validToken() {
+    return filter.preProcess(validRequest);
+  }
+
+  /**
+   * An unknown token, which is also logged.
+   *
+   * @return whether the request was accepted
+   */
+  @Benchmark
+  public boolean invalidToken() {
+    return filter.preProcess(invalidRequest);
+  }
+}
@@ -0,0 +1,158 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.balancer.ConsistentHashBalancer;
+import edu.bu.met.cs665.balancer.RoundRobinBalancer;
+import edu.bu.met.cs665.balancer.Upstream;
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures ConsistentHashBalancer lookups against round-robin, by target
+ * and ring point count, with all targets idle or one of them over its
+ * bound. Setup prints how evenly the ring spreads keys and how many move
+ * when a target is added; the GC profiler shows a lookup allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsistentHashBenchmark {
+  private static final int REQUEST_SAMPLES = 1024;
+  private static final int DISTRIBUTION_KEYS = 100_000;
+
+  @Param({"4", "32"})
+  private int targetCount;
+
+  @Param({"40", "160"})
+  private int virtualNodes;
+
+  @Param({"false", "true"})
+  private boolean hotTarget;
+
+  private List<Upstream> upstreams;
+  private ConsistentHashBalancer consistentHash;
+  private RoundRobinBalancer roundRobin;
+  private GatewayRequest[] requests;
+  private int cursor;
+
+  /**
+   * Builds the ring, picks random client IDs and reports the key spread.
+   * With hotTarget, the first target has far more requests in flight than
+   * its bound, so the keys it owns walk on to the next target.
+   */
+  @Setup
+  public void setUp() {
+    upstreams = targets(targetCount);
+    consistentHash = ConsistentHashBalancer.builder().virtualNodes(virtualNodes).build();
+    roundRobin = new RoundRobinBalancer();
+
+    Random random = new Random(42);
+    requests = new GatewayRequest[REQUEST_SAMPLES];
+    for (int i = 0; i < REQUEST_SAMPLES; i++) {
+      requests[i] = new GatewayRequest();
+      requests[i].setClientId("client-" + random.nextInt(1_000_000));
+    }
+
+    reportDistribution();
+    if (hotTarget) {
+      for (int i = 0; i < 4 * targetCount; i++) {
+        upstreams.get(0).begin();
+      }
+    }
+  }
+
+  private static List<Upstream> targets(int count) {
+    List<Upstream> targets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      targets.add(new Upstream("http://10.0." + (i / 256) + "." + (i % 256) + ":8081/", 1));
+    }
+    return targets;
+  }
+
+  private void reportDistribution() {
+    Map<Upstream, Integer> counts = new HashMap<>();
+    String[] owners = new String[DISTRIBUTION_KEYS];
+    for (int i = 0; i < DISTRIBUTION_KEYS; i++) {
+      Upstream owner = consistentHash.owner("client-" + i, upstreams);
+      counts.merge(owner, 1, Integer::sum);
+      owners[i] = owner.getUrl();
+    }
+    double mean = (double) DISTRIBUTION_KEYS / targetCount;
+    int max = 0;
+    int min = Integer.MAX_VALUE;
+    for (Upstream upstream : upstreams) {
+      int count = counts.getOrDefault(upstream, 0);
+      max = Math.max(max, count);
+      min = Math.min(min, count);
+    }
+
+    List<Upstream> grown = new ArrayList<>(upstreams);
+    grown.add(new Upstream("http://10.1.0.0:8081/", 1));
+    ConsistentHashBalancer regrown =
+        ConsistentHashBalancer.builder().virtualNodes(virtualNodes).build();
+    int moved = 0;
+    for (int i = 0; i < DISTRIBUTION_KEYS; i++) {
+      if (!regrown.owner("client-" + i, grown).getUrl().equals(owners[i])) {
+        moved++;
+      }
+    }
+    System.out.printf("%n%d targets x %d points: max/mean %.3f, min/mean %.3f;"
+            + " adding a target moved %.1f%% of keys (ideal %.1f%%)%n",
+        targetCount, virtualNodes, max / mean, min / mean,
+        100.0 * moved / DISTRIBUTION_KEYS, 100.0 / (targetCount + 1));
+  }
+
+  private GatewayRequest nextRequest() {
+    cursor = (cursor + 1) & (REQUEST_SAMPLES - 1);
+    return requests[cursor];
+  }
+
+  /**
+   * Full lookup: hash the client ID, search the ring, check the load bound.
+   *
+   * @return chosen target
+   */
+  @Benchmark
+  public Upstream boundedLookup() {
+    return consistentHash.choose(nextRequest(), upstreams);
+  }
+
+  /**
+   * Ring search alone, ignoring load.
+   *
+   * @return key's home target
+   */
+  @Benchmark
+  public Upstream ringLookup() {
+    return consistentHash.owner(nextRequest().getClientId(), upstreams);
+  }
+
+  /**
+   * Round-robin for comparison: no hashing and no affinity.
+   *
+   * @return next target
+   */
+  @Benchmark
+  public Upstream roundRobin() {
+    return roundRobin.choose(nextRequest(), upstreams);
+  }
+}
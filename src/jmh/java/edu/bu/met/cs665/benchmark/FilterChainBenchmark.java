@@ -0,0 +1,117 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.filter.Filter;
+import edu.bu.met.cs665.filter.FilterChain;
+import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
+import edu.bu.met.cs665.filter.impl.LoggingFilter;
+import edu.bu.met.cs665.filter.impl.RateLimitFilter;
+import edu.bu.met.cs665.filter.impl.TransformationFilter;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import edu.bu.met.cs665.route.Route;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures one pass of the filter chain, pre-filters and post-filters
+ * separately, for a chain holding a single filter from filter.impl and for
+ * the chain of the secure demo route. Every filter lets the request
+ * through, so the numbers are the cost of an accepted request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark {
+
+  @Param({"logging", "authentication", "rate-limit", "transformation", "secure-route"})
+  private String filters;
+
+  private FilterChain chain;
+  private GatewayRequest request;
+  private GatewayResponse response;
+
+  /**
+   * Builds the chain and an authenticated request from one client.
+   */
+  @Setup
+  public void setUp() {
+    List<Filter> selected = new ArrayList<>();
+    switch (filters) {
+      case "logging":
+        selected.add(new LoggingFilter());
+        break;
+      case "authentication":
+        selected.add(new AuthenticationFilter());
+        break;
+      case "rate-limit":
+        selected.add(rateLimitFilter());
+        break;
+      case "transformation":
+        selected.add(new TransformationFilter());
+        break;
+      default:
+        selected.add(new AuthenticationFilter());
+        selected.add(rateLimitFilter());
+        selected.add(new TransformationFilter());
+        break;
+    }
+    chain = new FilterChain(selected);
+
+    request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/secure/users/1");
+    request.setClientId("client-1");
+    request.addHeader("Authorization", "Bearer token-123");
+    request.setMatchedRoute(Route.builder("/api/secure")
+        .targetUrl("http://localhost:8081/users")
+        .build());
+    response = new GatewayResponse();
+    response.setStatusCode(200);
+    response.setBody("{\"id\":1}");
+  }
+
+  /**
+   * A limit high enough that the benchmark never hits it.
+   */
+  private static RateLimitFilter rateLimitFilter() {
+    return new RateLimitFilter(new GcraRateLimiter(Integer.MAX_VALUE, 1, TimeUnit.MINUTES));
+  }
+
+  /**
+   * FilterChain.executePreFilters.
+   *
+   * @return whether the request passed
+   */
+  @Benchmark
+  public boolean preFilters() {
+    return chain.executePreFilters(request);
+  }
+
+  /**
+   * FilterChain.executePostFilters.
+   *
+   * @return the filtered response
+   */
+  @Benchmark
+  public GatewayResponse postFilters() {
+    chain.executePostFilters(request, response);
+    return response;
+  }
+}
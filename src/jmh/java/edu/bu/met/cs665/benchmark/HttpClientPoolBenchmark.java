@@ -0,0 +1,73 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.pool.HttpClientPool;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures an acquire and release of HttpClientPool with eight threads
+ * sharing four clients, so half the threads wait at any time in dedicated
+ * mode. Shared mode hands out one client and never waits here; its
+ * connection limits only apply once a request is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class HttpClientPoolBenchmark {
+
+  @Param({"SHARED", "DEDICATED"})
+  private HttpClientPool.Mode mode;
+
+  private HttpClientPool pool;
+
+  /**
+   * Creates a pool of four clients.
+   */
+  @Setup
+  public void setUp() {
+    pool = HttpClientPool.builder()
+        .mode(mode)
+        .poolSize(4)
+        .maxPerRoute(4)
+        .build();
+  }
+
+  /**
+   * Shuts the pool down.
+   */
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * One lease: acquire, then release straight away.
+   *
+   * @return the leased client
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Benchmark
+  public CloseableHttpClient acquireRelease() throws InterruptedException {
+    CloseableHttpClient client = pool.acquire(1000);
+    pool.release(client);
+    return client;
+  }
+}
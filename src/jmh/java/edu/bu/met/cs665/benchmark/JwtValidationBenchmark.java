@@ -0,0 +1,130 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.auth.JsonWebKeySet;
+import edu.bu.met.cs665.auth.JwtTokenValidator;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the cost of validating a bearer JWT, with a full signature
+ * check on every call and with the verified-token cache, for HMAC and RSA
+ * signatures. The cached runs cycle through a small set of live tokens,
+ * as a gateway sees from a population of active clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtValidationBenchmark {
+  private static final int TOKENS = 256;
+
+  @Param({"HS256", "RS256"})
+  private String algorithm;
+
+  private JwtTokenValidator uncached;
+  private JwtTokenValidator cached;
+  private String[] tokens;
+  private int cursor;
+
+  /**
+   * Creates a key of the chosen type and signs TOKENS distinct tokens with it.
+   *
+   * @throws GeneralSecurityException if the JDK lacks the algorithm
+   */
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    Key verificationKey;
+    Key signingKey;
+    if ("HS256".equals(algorithm)) {
+      verificationKey = new SecretKeySpec(
+          "benchmark-secret-of-at-least-32-bytes".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+      signingKey = verificationKey;
+    } else {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(2048);
+      KeyPair keyPair = generator.generateKeyPair();
+      verificationKey = keyPair.getPublic();
+      signingKey = keyPair.getPrivate();
+    }
+
+    JsonWebKeySet keys = JsonWebKeySet.of(Collections.singletonMap("", verificationKey));
+    uncached = JwtTokenValidator.builder().keys(keys).maxCachedTokens(0).build();
+    cached = JwtTokenValidator.builder().keys(keys).build();
+
+    long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+    tokens = new String[TOKENS];
+    for (int i = 0; i < TOKENS; i++) {
+      tokens[i] = sign(signingKey, "{\"sub\":\"client-" + i + "\",\"exp\":" + exp + "}");
+    }
+  }
+
+  private String sign(Key key, String claims) throws GeneralSecurityException {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String input = encoder.encodeToString(("{\"alg\":\"" + algorithm + "\"}")
+        .getBytes(StandardCharsets.UTF_8))
+        + "." + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+    byte[] data = input.getBytes(StandardCharsets.US_ASCII);
+
+    byte[] signature;
+    if (key instanceof PrivateKey) {
+      Signature signer = Signature.getInstance("SHA256withRSA");
+      signer.initSign((PrivateKey) key);
+      signer.update(data);
+      signature = signer.sign();
+    } else {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key);
+      signature = mac.doFinal(data);
+    }
+    return input + "." + encoder.encodeToString(signature);
+  }
+
+  private String nextToken() {
+    cursor = (cursor + 1) & (TOKENS - 1);
+    return tokens[cursor];
+  }
+
+  /**
+   * Parses the token and checks its signature and claims on every call.
+   *
+   * @return whether the token is valid
+   */
+  @Benchmark
+  public boolean verifyEveryTime() {
+    return uncached.isValid(nextToken());
+  }
+
+  /**
+   * Looks the token up in the verified-token cache.
+   *
+   * @return whether the token is valid
+   */
+  @Benchmark
+  public boolean verifiedTokenCache() {
+    return cached.isValid(nextToken());
+  }
+}
@@ -0,0 +1,85 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.metrics.GatewayMetrics;
+import edu.bu.met.cs665.route.Route;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures what the gateway's metrics cost a request thread against the
+ * Prometheus registry used in production, with four threads recording at
+ * once. Each request records one latency into the route's percentile
+ * timer and one backend status; both should stay well under a microsecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class MetricsBenchmark {
+
+  private PrometheusMeterRegistry registry;
+  private GatewayMetrics metrics;
+  private Route route;
+
+  /**
+   * Creates the meters and records once so the route's meters are cached.
+   */
+  @Setup
+  public void setUp() {
+    registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    metrics = new GatewayMetrics(registry);
+    route = Route.builder("/api/data").targetUrl("http://localhost:8081/data").build();
+    metrics.recordRequest(route, 1_000_000L);
+    metrics.recordUpstreamStatus(route, 200);
+  }
+
+  /**
+   * Closes the registry.
+   */
+  @TearDown
+  public void tearDown() {
+    registry.close();
+  }
+
+  /**
+   * One request latency into the route's percentile timer.
+   */
+  @Benchmark
+  public void recordRequest() {
+    metrics.recordRequest(route, 1_250_000L);
+  }
+
+  /**
+   * One backend status count.
+   */
+  @Benchmark
+  public void recordUpstreamStatus() {
+    metrics.recordUpstreamStatus(route, 200);
+  }
+
+  /**
+   * Everything a forwarded request records.
+   */
+  @Benchmark
+  public void recordForwardedRequest() {
+    metrics.recordUpstreamStatus(route, 200);
+    metrics.recordRequest(route, 1_250_000L);
+  }
+}
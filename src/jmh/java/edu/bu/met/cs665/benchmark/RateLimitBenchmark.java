@@ -0,0 +1,93 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.filter.impl.RateLimitFilter;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures RateLimitFilter.preProcess with four threads at once: each
+ * thread as its own client, and all threads as one client, which makes
+ * them contend for the same limiter entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RateLimitBenchmark {
+
+  private RateLimitFilter filter;
+  private GatewayRequest sharedClient;
+
+  /**
+   * Creates a filter whose limit the benchmark never reaches.
+   */
+  @Setup
+  public void setUp() {
+    filter = new RateLimitFilter(new GcraRateLimiter(Integer.MAX_VALUE, 1, TimeUnit.MINUTES));
+    sharedClient = request("client-shared");
+  }
+
+  private static GatewayRequest request(String clientId) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/data");
+    request.setClientId(clientId);
+    return request;
+  }
+
+  /**
+   * A request from a client only one benchmark thread uses.
+   */
+  @State(Scope.Thread)
+  public static class ThreadClient {
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    private GatewayRequest request;
+
+    /**
+     * Gives the thread its own client ID.
+     */
+    @Setup
+    public void setUp() {
+      request = request("client-" + NEXT.incrementAndGet());
+    }
+  }
+
+  /**
+   * Each thread checks its own client.
+   *
+   * @param client The thread's client
+   * @return whether the request was admitted
+   */
+  @Benchmark
+  public boolean distinctClients(ThreadClient client) {
+    return filter.preProcess(client.request);
+  }
+
+  /**
+   * All threads check the same client.
+   *
+   * @return whether the request was admitted
+   */
+  @Benchmark
+  public boolean sharedClient() {
+    return filter.preProcess(sharedClient);
+  }
+}
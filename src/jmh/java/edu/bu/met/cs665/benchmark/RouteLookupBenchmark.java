@@ -0,0 +1,93 @@
+package edu.bu.met.cs665.benchmark;
+
+import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.route.RouteIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the compiled {@link RouteIndex} with the linear scan that
+ * GatewayService used before it, at increasing route counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteLookupBenchmark {
+  private static final int PATH_SAMPLES = 1024;
+
+  @Param({"10", "1000", "10000"})
+  private int routeCount;
+
+  private List<Route> routes;
+  private RouteIndex index;
+  private String[] paths;
+  private int cursor;
+
+  /**
+   * Registers routeCount routes and picks random request paths that hit them.
+   */
+  @Setup
+  public void setUp() {
+    routes = new ArrayList<>(routeCount);
+    for (int i = 0; i < routeCount; i++) {
+      routes.add(Route.builder("/api/v1/service-" + i)
+          .targetUrl("http://localhost:8081/service-" + i)
+          .build());
+    }
+    index = RouteIndex.build(routes);
+
+    Random random = new Random(42);
+    paths = new String[PATH_SAMPLES];
+    for (int i = 0; i < PATH_SAMPLES; i++) {
+      paths[i] = "/api/v1/service-" + random.nextInt(routeCount) + "/items/" + i;
+    }
+  }
+
+  private String nextPath() {
+    cursor = (cursor + 1) & (PATH_SAMPLES - 1);
+    return paths[cursor];
+  }
+
+  /**
+   * The previous GatewayService.findRoute: first registered route that matches.
+   *
+   * @return matched route
+   */
+  @Benchmark
+  public Route linearScan() {
+    String path = nextPath();
+    for (Route route : routes) {
+      if (route.matches(path)) {
+        return route;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Longest-prefix lookup through the segment trie.
+   *
+   * @return matched route
+   */
+  @Benchmark
+  public Route trieLookup() {
+    return index.find(nextPath());
+  }
+}
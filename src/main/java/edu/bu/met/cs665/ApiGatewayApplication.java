@@ -1,13 +1,53 @@
 package edu.bu.met.cs665;
 
+import edu.bu.met.cs665.accesslog.AccessLog;
+import edu.bu.met.cs665.accesslog.AccessLogField;
+import edu.bu.met.cs665.accesslog.AccessLogSink;
+import edu.bu.met.cs665.accesslog.BinaryAccessLogSink;
+import edu.bu.met.cs665.accesslog.TextAccessLogSink;
+import edu.bu.met.cs665.auth.ApiKeyStore;
+import edu.bu.met.cs665.auth.CompositeTokenValidator;
+import edu.bu.met.cs665.auth.IntrospectionTokenValidator;
+import edu.bu.met.cs665.auth.JsonWebKeySet;
+import edu.bu.met.cs665.auth.JwtTokenValidator;
+import edu.bu.met.cs665.auth.StaticTokenValidator;
+import edu.bu.met.cs665.auth.TokenValidator;
+import edu.bu.met.cs665.balancer.ConsistentHashBalancer;
+import edu.bu.met.cs665.balancer.LeastOutstandingBalancer;
+import edu.bu.met.cs665.balancer.LoadBalancer;
+import edu.bu.met.cs665.balancer.P2cEwmaBalancer;
+import edu.bu.met.cs665.balancer.RoundRobinBalancer;
+import edu.bu.met.cs665.cache.MappedResponseStore;
+import edu.bu.met.cs665.cache.ResponseCache;
 import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
-import edu.bu.met.cs665.filter.impl.LoggingFilter;
 import edu.bu.met.cs665.filter.impl.RateLimitFilter;
 import edu.bu.met.cs665.filter.impl.TransformationFilter;
+import edu.bu.met.cs665.metrics.GatewayMetrics;
+import edu.bu.met.cs665.pool.AsyncHttpClientPool;
+import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.ratelimit.DistributedRateLimiter;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import edu.bu.met.cs665.ratelimit.InMemorySharedCounterStore;
+import edu.bu.met.cs665.ratelimit.SharedCounterStore;
 import edu.bu.met.cs665.route.Route;
 import edu.bu.met.cs665.service.GatewayService;
+import edu.bu.met.cs665.trace.FileSpanExporter;
+import edu.bu.met.cs665.trace.InMemorySpanExporter;
+import edu.bu.met.cs665.trace.SpanExporter;
+import edu.bu.met.cs665.trace.Tracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -28,49 +68,443 @@ public class ApiGatewayApplication {
     SpringApplication.run(ApiGatewayApplication.class, args);
   }
 
+  /**
+   * Creates the HTTP client pool used to reach backend services.
+   *
+   * @param mode Pool mode (DEDICATED or SHARED)
+   * @param maxTotal Maximum clients, or total connections in shared mode
+   * @param maxPerRoute Maximum connections per upstream host
+   * @param timeoutSeconds Timeout in seconds for acquiring a client or connection
+   * @param idleTimeoutMs Idle time in milliseconds before a connection is evicted
+   * @param validateAfterInactivityMs Inactivity in milliseconds before a connection is re-validated
+   * @return The configured HttpClientPool
+   */
+  @Bean(destroyMethod = "shutdown")
+  public HttpClientPool httpClientPool(
+      @Value("${gateway.pool.mode:SHARED}") HttpClientPool.Mode mode,
+      @Value("${gateway.pool.max-total:10}") int maxTotal,
+      @Value("${gateway.pool.max-per-route:10}") int maxPerRoute,
+      @Value("${gateway.pool.timeout-seconds:5}") int timeoutSeconds,
+      @Value("${gateway.pool.idle-timeout-ms:30000}") long idleTimeoutMs,
+      @Value("${gateway.pool.validate-after-inactivity-ms:2000}") int validateAfterInactivityMs) {
+    return HttpClientPool.builder()
+        .mode(mode)
+        .poolSize(maxTotal)
+        .maxPerRoute(maxPerRoute)
+        .timeout(timeoutSeconds)
+        .idleTimeout(idleTimeoutMs)
+        .validateAfterInactivity(validateAfterInactivityMs)
+        .build();
+  }
+
+  /**
+   * Creates the non-blocking HTTP client used for buffered routes.
+   *
+   * @param maxTotal Maximum connections in total
+   * @param maxPerRoute Maximum connections per upstream host
+   * @param ioThreads Number of I/O dispatcher threads
+   * @param timeoutSeconds Timeout in seconds for leasing a connection
+   * @param idleTimeoutMs How long a connection may sit idle before it is closed
+   * @return The configured AsyncHttpClientPool
+   */
+  @Bean(destroyMethod = "shutdown")
+  public AsyncHttpClientPool asyncHttpClientPool(
+      @Value("${gateway.async.max-total:200}") int maxTotal,
+      @Value("${gateway.async.max-per-route:50}") int maxPerRoute,
+      @Value("${gateway.async.io-threads:2}") int ioThreads,
+      @Value("${gateway.pool.timeout-seconds:5}") int timeoutSeconds,
+      @Value("${gateway.pool.idle-timeout-ms:30000}") long idleTimeoutMs) {
+    return new AsyncHttpClientPool(maxTotal, maxPerRoute, ioThreads, timeoutSeconds,
+        idleTimeoutMs);
+  }
+
+  /**
+   * Creates the validator used by the AuthenticationFilter of secured
+   * routes: signed JWTs checked against a local JWKS file, API keys
+   * checked against a digest file and opaque tokens checked with an
+   * introspection endpoint, each when configured, or the demonstration
+   * token list when none is. The bean's close method, inferred by Spring,
+   * stops the reload timer and the introspection HTTP client.
+   *
+   * @param jwksFile Path of the JWKS file, empty to turn JWTs off
+   * @param issuer Required "iss" claim, empty to accept any
+   * @param audience Required "aud" claim, empty to accept any
+   * @param cacheSize Number of verified tokens remembered until they expire
+   * @param apiKeysFile Path of the API key digest file, empty to turn API keys off
+   * @param apiKeysReloadSeconds How often the API key file is checked for changes
+   * @param introspectionUrl URL of the introspection endpoint, empty to turn it off
+   * @param introspectionClientId Client ID sent to the endpoint, empty to send none
+   * @param introspectionClientSecret Client secret sent to the endpoint
+   * @param introspectionPositiveTtlSeconds How long an active token is trusted
+   * @param introspectionNegativeTtlSeconds How long an inactive token is rejected
+   * @param introspectionRefreshAheadSeconds How long before expiry an active token is re-checked
+   * @param introspectJwts Whether JWT-shaped tokens are introspected when other validators are set
+   * @return The token validator
+   * @throws IllegalStateException if the JWKS or API key file cannot be read
+   */
+  @Bean
+  public TokenValidator tokenValidator(
+      @Value("${gateway.auth.jwks-file:}") String jwksFile,
+      @Value("${gateway.auth.issuer:}") String issuer,
+      @Value("${gateway.auth.audience:}") String audience,
+      @Value("${gateway.auth.token-cache-size:10000}") int cacheSize,
+      @Value("${gateway.auth.api-keys-file:}") String apiKeysFile,
+      @Value("${gateway.auth.api-keys-reload-seconds:30}") long apiKeysReloadSeconds,
+      @Value("${gateway.auth.introspection.url:}") String introspectionUrl,
+      @Value("${gateway.auth.introspection.client-id:}") String introspectionClientId,
+      @Value("${gateway.auth.introspection.client-secret:}") String introspectionClientSecret,
+      @Value("${gateway.auth.introspection.positive-ttl-seconds:60}")
+          long introspectionPositiveTtlSeconds,
+      @Value("${gateway.auth.introspection.negative-ttl-seconds:10}")
+          long introspectionNegativeTtlSeconds,
+      @Value("${gateway.auth.introspection.refresh-ahead-seconds:10}")
+          long introspectionRefreshAheadSeconds,
+      @Value("${gateway.auth.introspection.introspect-jwts:false}") boolean introspectJwts) {
+    List<TokenValidator> validators = new ArrayList<>();
+    if (!jwksFile.isEmpty()) {
+      try {
+        validators.add(JwtTokenValidator.builder()
+            .keys(JsonWebKeySet.load(Paths.get(jwksFile)))
+            .issuer(issuer.isEmpty() ? null : issuer)
+            .audience(audience.isEmpty() ? null : audience)
+            .maxCachedTokens(cacheSize)
+            .build());
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read JWKS file " + jwksFile, e);
+      }
+    }
+    if (!apiKeysFile.isEmpty()) {
+      validators.add(ApiKeyStore.builder()
+          .file(Paths.get(apiKeysFile))
+          .reloadInterval(apiKeysReloadSeconds, TimeUnit.SECONDS)
+          .build());
+    }
+    if (!introspectionUrl.isEmpty()) {
+      validators.add(IntrospectionTokenValidator.builder(introspectionUrl)
+          .credentials(introspectionClientId.isEmpty() ? null : introspectionClientId,
+              introspectionClientSecret)
+          .positiveTtl(introspectionPositiveTtlSeconds, TimeUnit.SECONDS)
+          .negativeTtl(introspectionNegativeTtlSeconds, TimeUnit.SECONDS)
+          .refreshAhead(introspectionRefreshAheadSeconds, TimeUnit.SECONDS)
+          .introspectJwts(introspectJwts)
+          .maxEntries(cacheSize)
+          .build());
+    }
+
+    if (validators.isEmpty()) {
+      return new StaticTokenValidator("token-123", "token-456", "token-789");
+    }
+    return validators.size() == 1 ? validators.get(0) : new CompositeTokenValidator(validators);
+  }
+
+  /**
+   * Creates the access log the gateway records every response in. Records
+   * are queued in a preallocated ring and written by a background thread,
+   * either as JSON lines to the "access" logger or as binary records in
+   * memory-mapped segment files.
+   *
+   * @param capacity Number of ring slots
+   * @param sampleRate Fraction of requests recorded; 5xx responses are always recorded
+   * @param fields Comma-separated AccessLogField names to write as text, empty for all
+   * @param format "text" or "binary"
+   * @param directory Directory of the binary segments
+   * @param segmentBytes Size of each binary segment file
+   * @param maxSegments Number of binary segments kept on disk
+   * @return The access log
+   */
+  @Bean
+  public AccessLog accessLog(
+      @Value("${gateway.access-log.capacity:8192}") int capacity,
+      @Value("${gateway.access-log.sample-rate:1.0}") double sampleRate,
+      @Value("${gateway.access-log.fields:}") String fields,
+      @Value("${gateway.access-log.format:text}") String format,
+      @Value("${gateway.access-log.binary.directory:access-log}") String directory,
+      @Value("${gateway.access-log.binary.segment-bytes:67108864}") int segmentBytes,
+      @Value("${gateway.access-log.binary.max-segments:32}") int maxSegments) {
+    AccessLogSink sink;
+    if ("binary".equalsIgnoreCase(format)) {
+      sink = BinaryAccessLogSink.builder(Paths.get(directory))
+          .segmentBytes(segmentBytes)
+          .maxSegments(maxSegments)
+          .build();
+    } else {
+      List<AccessLogField> selected = new ArrayList<>();
+      for (String field : fields.split(",")) {
+        if (!field.trim().isEmpty()) {
+          selected.add(AccessLogField.valueOf(field.trim().toUpperCase(Locale.ROOT)));
+        }
+      }
+      sink = new TextAccessLogSink(selected);
+    }
+    return AccessLog.builder(sink)
+        .capacity(capacity)
+        .sampleRate(sampleRate)
+        .build();
+  }
+
+  /**
+   * Creates the gateway meters in the registry Spring Boot exposes at
+   * /actuator/prometheus, and binds the blocking client pool to them.
+   *
+   * @param registry The meter registry
+   * @param httpClientPool The blocking HTTP client pool
+   * @return The gateway metrics
+   */
+  @Bean
+  public GatewayMetrics gatewayMetrics(MeterRegistry registry, HttpClientPool httpClientPool) {
+    GatewayMetrics metrics = new GatewayMetrics(registry);
+    metrics.bindPool(httpClientPool);
+    return metrics;
+  }
+
+  /**
+   * Creates the tracer that times each phase of a request. Only slow or
+   * failed traces are kept, either in memory for the /traces endpoint or
+   * appended to a local file as JSON lines.
+   *
+   * @param slowThresholdMs Duration in milliseconds from which a trace is kept
+   * @param sampleRate Fraction of fast, successful traces kept as well
+   * @param file File the traces are appended to, empty to keep them in memory
+   * @param memoryCapacity Number of traces kept in memory
+   * @return The tracer
+   * @throws IllegalStateException if the trace file cannot be opened
+   */
+  @Bean(destroyMethod = "close")
+  public Tracer tracer(
+      @Value("${gateway.tracing.slow-threshold-ms:500}") long slowThresholdMs,
+      @Value("${gateway.tracing.sample-rate:0}") double sampleRate,
+      @Value("${gateway.tracing.file:}") String file,
+      @Value("${gateway.tracing.memory-capacity:1000}") int memoryCapacity) {
+    SpanExporter exporter;
+    if (file.isEmpty()) {
+      exporter = new InMemorySpanExporter(memoryCapacity);
+    } else {
+      try {
+        exporter = new FileSpanExporter(Paths.get(file));
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not open trace file " + file, e);
+      }
+    }
+    return Tracer.builder(exporter)
+        .slowThreshold(slowThresholdMs, TimeUnit.MILLISECONDS)
+        .sampleRate(sampleRate)
+        .build();
+  }
+
   /**
    * Configures initial routes on application startup.
    *
    * @param gatewayService The gateway service
+   * @param tokenValidator Validator for the bearer tokens of secured routes
+   * @param accessLog Access log every response is recorded in
+   * @param gatewayMetrics Meters for request latency, upstream status and rejects
+   * @param tracer Tracer timing each phase of a request
+   * @param tracingEnabled Whether requests are traced
+   * @param backendUrls Comma-separated base URLs of the backend instances the demo routes
+   *     forward to
+   * @param balancer How a demo route picks an instance: round-robin, least-outstanding,
+   *     p2c-ewma or consistent-hash
+   * @param hashHeader Header keying consistent-hash balancing, empty for the client ID
+   * @param rateLimits Whether the demo routes are rate limited; off for load tests
+   * @param rateLimitMode How per-client limits are counted: local, or distributed across
+   *     instances through a shared counter store
+   * @param counterStores The SharedCounterStore bean distributed limits use, if one is defined
+   * @param leaseBatchSize Permits each instance leases from the shared counter at a time
+   * @param expectedNodes Number of instances, to size the local limit used when the store
+   *     is unavailable
+   * @param globalRateLimit Requests per minute across all routes, 0 for no limit
+   * @param cacheMaxBytes Size bound of the response cache, 0 to turn caching off
+   * @param offHeapDirectory Directory of the off-heap cache segments, empty to turn it off
+   * @param offHeapSegmentBytes Size of each off-heap segment file
+   * @param offHeapMaxSegments Number of off-heap segments kept on disk
+   * @param offHeapMinBodyBytes Smallest body moved off the heap
    * @return CommandLineRunner
    */
   @Bean
-  public CommandLineRunner configureRoutes(GatewayService gatewayService) {
+  public CommandLineRunner configureRoutes(GatewayService gatewayService,
+      TokenValidator tokenValidator,
+      AccessLog accessLog,
+      GatewayMetrics gatewayMetrics,
+      Tracer tracer,
+      @Value("${gateway.tracing.enabled:true}") boolean tracingEnabled,
+      @Value("${gateway.routes.backend-url:https://jsonplaceholder.typicode.com}")
+          String backendUrls,
+      @Value("${gateway.routes.balancer:round-robin}") String balancer,
+      @Value("${gateway.routes.hash-header:}") String hashHeader,
+      @Value("${gateway.routes.rate-limits:true}") boolean rateLimits,
+      @Value("${gateway.ratelimit.mode:local}") String rateLimitMode,
+      ObjectProvider<SharedCounterStore> counterStores,
+      @Value("${gateway.ratelimit.distributed.batch-size:10}") int leaseBatchSize,
+      @Value("${gateway.ratelimit.distributed.expected-nodes:1}") int expectedNodes,
+      @Value("${gateway.ratelimit.global-per-minute:0}") int globalRateLimit,
+      @Value("${gateway.cache.max-bytes:67108864}") long cacheMaxBytes,
+      @Value("${gateway.cache.off-heap.directory:}") String offHeapDirectory,
+      @Value("${gateway.cache.off-heap.segment-bytes:67108864}") int offHeapSegmentBytes,
+      @Value("${gateway.cache.off-heap.max-segments:16}") int offHeapMaxSegments,
+      @Value("${gateway.cache.off-heap.min-body-bytes:16384}") int offHeapMinBodyBytes) {
     return args -> {
       logger.info("Configuring routes...");
 
-      Route publicRoute = Route.builder("/api/public")
-          .targetUrl("https://jsonplaceholder.typicode.com/posts/1")
-          .addFilter(new LoggingFilter())
+      gatewayService.setAccessLog(accessLog);
+      gatewayService.setMetrics(gatewayMetrics);
+      if (tracingEnabled) {
+        gatewayService.setTracer(tracer);
+      }
+
+      gatewayService.setResponseCache(cacheMaxBytes > 0 ? new ResponseCache(cacheMaxBytes) : null);
+      if (cacheMaxBytes > 0 && !offHeapDirectory.isEmpty()) {
+        gatewayService.setOffHeapStore(MappedResponseStore.builder(Paths.get(offHeapDirectory))
+            .segmentBytes(offHeapSegmentBytes)
+            .maxSegments(offHeapMaxSegments)
+            .minBodyBytes(offHeapMinBodyBytes)
+            .build());
+      }
+
+      if (globalRateLimit > 0) {
+        gatewayService.setGlobalLimiter(
+            new GcraRateLimiter(globalRateLimit, 1, TimeUnit.MINUTES));
+      }
+
+      SharedCounterStore counterStore = sharedCounterStore(rateLimitMode, counterStores);
+      BiFunction<String, Integer, RateLimitFilter> rateLimitFilters = (namespace, perMinute) ->
+          createRateLimitFilter(counterStore, namespace, perMinute, leaseBatchSize, expectedNodes);
+
+      // Each route needs its own balancer
+      Supplier<LoadBalancer> balancers = () -> createBalancer(balancer, hashHeader);
+      Route publicRoute = routeTo("/api/public", backendUrls, "/posts/1", balancers)
           .addFilter(new TransformationFilter())
           .timeout(5000)
-          .rateLimit(100)
+          .rateLimit(rateLimits ? 100 : 0)
+          .cacheable(true)
+          .cacheTtl(30000) // 30 seconds unless the backend says otherwise
+          .coalesce(true) // one upstream call when the entry expires under load
           .build();
       gatewayService.registerRoute(publicRoute);
 
-      Route secureRoute = Route.builder("/api/secure")
-          .targetUrl("https://jsonplaceholder.typicode.com/users/1")
-          .addFilter(new LoggingFilter())
-          .addFilter(new AuthenticationFilter())
-          .addFilter(new RateLimitFilter(10)) // 10 requests per minute
+      Route.Builder secureRoute = routeTo("/api/secure", backendUrls, "/users/1", balancers)
+          .addFilter(new AuthenticationFilter(tokenValidator));
+      if (rateLimits) {
+        secureRoute.addFilter(rateLimitFilters.apply("/api/secure", 10)); // 10 per minute
+      }
+      gatewayService.registerRoute(secureRoute
           .addFilter(new TransformationFilter())
           .timeout(3000)
-          .build();
-      gatewayService.registerRoute(secureRoute);
+          .rateLimit(0) // limited per client only
+          .build());
 
-      Route highVolumeRoute = Route.builder("/api/data")
-          .targetUrl("https://jsonplaceholder.typicode.com/posts")
-          .addFilter(new LoggingFilter())
-          .addFilter(new AuthenticationFilter())
-          .addFilter(new RateLimitFilter(50)) // 50 requests per minute
+      Route.Builder highVolumeRoute = routeTo("/api/data", backendUrls, "/posts", balancers)
+          .addFilter(new AuthenticationFilter(tokenValidator));
+      if (rateLimits) {
+        highVolumeRoute.addFilter(rateLimitFilters.apply("/api/data", 50)); // 50 per minute
+      }
+      gatewayService.registerRoute(highVolumeRoute
           .addFilter(new TransformationFilter())
           .timeout(10000)
-          .rateLimit(50)
-          .build();
-      gatewayService.registerRoute(highVolumeRoute);
+          .rateLimit(rateLimits ? 50 : 0)
+          .cacheable(true)
+          .cacheTtl(60000) // large post list
+          .addVaryHeader("Authorization") // one entry per token, never written off-heap
+          .streamResponse(true) // copied without buffering when not cached
+          .streamRequest(true) // uploads forwarded without buffering
+          .maxBodySize(1024 * 1024) // 1 MB
+          .build());
 
       logger.info("Routes configured successfully. Total routes: {}",
           gatewayService.getRoutes().size());
     };
   }
+
+  /**
+   * Starts a route to the same path on every backend instance, each with weight 1.
+   *
+   * @param pathPattern The URL path pattern to match
+   * @param backendUrls Comma-separated base URLs of the backend instances
+   * @param path Backend path appended to each base URL
+   * @param balancers Creates the route's balancer
+   * @return A Builder with the targets and balancer set
+   */
+  private static Route.Builder routeTo(String pathPattern, String backendUrls, String path,
+      Supplier<LoadBalancer> balancers) {
+    Route.Builder route = Route.builder(pathPattern).balancer(balancers.get());
+    for (String url : backendUrls.split(",")) {
+      if (!url.trim().isEmpty()) {
+        route.addTarget(url.trim() + path, 1);
+      }
+    }
+    return route;
+  }
+
+  /**
+   * Picks the counter store per-client limits share across instances.
+   *
+   * @param mode local or distributed
+   * @param counterStores The SharedCounterStore bean, if one is defined
+   * @return The store, or null to count locally
+   * @throws IllegalArgumentException if the mode is unknown
+   */
+  private static SharedCounterStore sharedCounterStore(String mode,
+      ObjectProvider<SharedCounterStore> counterStores) {
+    switch (mode.trim().toLowerCase(Locale.ROOT)) {
+      case "local":
+        return null;
+      case "distributed":
+        return counterStores.getIfAvailable(() -> {
+          logger.warn("No SharedCounterStore bean defined; distributed rate limits are "
+              + "counted in memory and only hold for this instance");
+          return new InMemorySharedCounterStore();
+        });
+      default:
+        throw new IllegalArgumentException("Unknown rate limit mode: " + mode);
+    }
+  }
+
+  /**
+   * Creates a per-client rate limit filter, counted locally or through the
+   * shared counter store.
+   *
+   * @param counterStore The shared counter store, or null to count locally
+   * @param namespace Prefix of the route's shared counter keys
+   * @param perMinute Requests per minute per client
+   * @param batchSize Permits leased from the shared counter at a time
+   * @param expectedNodes Number of gateway instances
+   * @return The rate limit filter
+   */
+  private static RateLimitFilter createRateLimitFilter(SharedCounterStore counterStore,
+      String namespace, int perMinute, int batchSize, int expectedNodes) {
+    if (counterStore == null) {
+      return new RateLimitFilter(perMinute);
+    }
+    return new RateLimitFilter(DistributedRateLimiter.builder(counterStore)
+        .namespace(namespace)
+        .limit(perMinute)
+        .period(1, TimeUnit.MINUTES)
+        .batchSize(batchSize)
+        .expectedNodes(expectedNodes)
+        .build());
+  }
+
+  /**
+   * Creates a new balancer by name.
+   *
+   * @param name round-robin, least-outstanding, p2c-ewma or consistent-hash
+   * @param hashHeader Header keying consistent-hash balancing, empty for the client ID
+   * @return The load balancer
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  private static LoadBalancer createBalancer(String name, String hashHeader) {
+    switch (name.trim().toLowerCase(Locale.ROOT)) {
+      case "round-robin":
+        return new RoundRobinBalancer();
+      case "least-outstanding":
+        return new LeastOutstandingBalancer();
+      case "p2c-ewma":
+        return new P2cEwmaBalancer();
+      case "consistent-hash":
+        return ConsistentHashBalancer.builder()
+            .header(hashHeader.isEmpty() ? null : hashHeader)
+            .build();
+      default:
+        throw new IllegalArgumentException("Unknown balancer: " + name);
+    }
+  }
 }
@@ -0,0 +1,361 @@
+package edu.bu.met.cs665.accesslog;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.route.Route;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class AccessLog implements Closeable {
+  private static final Logger logger = LogManager.getLogger(AccessLog.class);
+
+  private final AccessLogRecord[] ring;
+  private final int mask;
+  private final AccessLogSink sink;
+  private final double sampleRate;
+  private final long idleParkNanos;
+  private final AtomicLong tail;
+  private final LongAdder recorded;
+  private final LongAdder dropped;
+  private final LongAdder sampledOut;
+  private final Thread drainer;
+  private volatile long written;
+  private volatile long failed;
+  private volatile boolean running;
+
+  /**
+   * Private constructor - use {@link #builder(AccessLogSink)}.
+   *
+   * @param builder The builder instance
+   */
+  private AccessLog(Builder builder) {
+    this.ring = new AccessLogRecord[builder.capacity];
+    for (int i = 0; i < ring.length; i++) {
+      ring[i] = new AccessLogRecord(i);
+    }
+    this.mask = builder.capacity - 1;
+    this.sink = builder.sink;
+    this.sampleRate = builder.sampleRate;
+    this.idleParkNanos = builder.idleParkNanos;
+    this.tail = new AtomicLong();
+    this.recorded = new LongAdder();
+    this.dropped = new LongAdder();
+    this.sampledOut = new LongAdder();
+    this.running = true;
+    this.drainer = new Thread(this::drain, "access-log-writer");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param sink Where drained records are written
+   * @return A new Builder instance
+   */
+  public static Builder builder(AccessLogSink sink) {
+    return new Builder(sink);
+  }
+
+  /**
+   * Records a finished request. Sampled-out requests return at once;
+   * server errors are always kept. The record is copied into a free ring
+   * slot as references and primitives, so the request thread allocates
+   * nothing and never formats text. If the ring is full because the sink
+   * has fallen behind, the record is dropped rather than blocking the request.
+   *
+   * @param request The gateway request
+   * @param response The gateway response
+   * @return true if the record was queued
+   */
+  public boolean record(GatewayRequest request, GatewayResponse response) {
+    if (!running) {
+      return false;
+    }
+    int status = response.getStatusCode();
+    if (sampleRate < 1.0 && status < 500
+        && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      sampledOut.increment();
+      return false;
+    }
+
+    // Claim a slot: a slot is free for position p when its sequence equals p
+    long position = tail.get();
+    AccessLogRecord slot;
+    while (true) {
+      slot = ring[(int) position & mask];
+      long gap = slot.sequence - position;
+      if (gap == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (gap < 0) {
+        dropped.increment();
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+
+    Route route = request.getMatchedRoute();
+    slot.set(request.getTimestamp(),
+        route == null ? null : route.getPathPattern(),
+        request.getMethod(),
+        request.getPath(),
+        status,
+        System.nanoTime() - request.getStartNanos(),
+        requestBytes(request),
+        responseBytes(response),
+        request.getClientId());
+    // Publishing the sequence hands the slot to the drain thread
+    slot.sequence = position + 1;
+    recorded.increment();
+    return true;
+  }
+
+  private static long requestBytes(GatewayRequest request) {
+    if (request.getContentLength() >= 0) {
+      return request.getContentLength();
+    }
+    return request.getBody() == null ? 0 : utf8Length(request.getBody());
+  }
+
+  private static long responseBytes(GatewayResponse response) {
+    if (response.isStreaming()) {
+      return response.getStreamingBody().getContentLength();
+    }
+    return response.getBody() == null ? 0 : utf8Length(response.getBody());
+  }
+
+  /**
+   * Counts the UTF-8 bytes of a string without encoding it.
+   */
+  static long utf8Length(CharSequence text) {
+    long bytes = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < n
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Drain loop of the background thread: hands published slots to the sink
+   * in order, and flushes and parks briefly whenever the ring is empty.
+   */
+  private void drain() {
+    long head = 0;
+    boolean dirty = false;
+    while (true) {
+      AccessLogRecord slot = ring[(int) head & mask];
+      if (slot.sequence == head + 1) {
+        try {
+          sink.append(slot);
+          written++;
+          dirty = true;
+        } catch (IOException | RuntimeException e) {
+          failed++;
+          logger.warn("Access log write failed: {}", e.toString());
+        }
+        slot.clear();
+        // Hand the slot back to producers for the next lap
+        slot.sequence = head + ring.length;
+        head++;
+        continue;
+      }
+
+      if (dirty) {
+        flushSink();
+        dirty = false;
+      }
+      if (!running) {
+        if (tail.get() == head) {
+          return;
+        }
+        // A producer claimed a slot before shutdown and is still filling it
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, idleParkNanos);
+      }
+    }
+  }
+
+  private void flushSink() {
+    try {
+      sink.flush();
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Access log flush failed: {}", e.toString());
+    }
+  }
+
+  /**
+   * Stops accepting records, writes everything already queued and closes the sink.
+   */
+  @Override
+  public void close() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      sink.close();
+    } catch (IOException e) {
+      logger.error("Error closing access log sink", e);
+    }
+  }
+
+  /**
+   * Gets the number of records queued.
+   *
+   * @return recorded count
+   */
+  public long getRecordedCount() {
+    return recorded.sum();
+  }
+
+  /**
+   * Gets the number of records dropped because the ring was full.
+   *
+   * @return dropped count
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Gets the number of requests skipped by sampling.
+   *
+   * @return sampled-out count
+   */
+  public long getSampledOutCount() {
+    return sampledOut.sum();
+  }
+
+  /**
+   * Gets the number of records the sink has accepted.
+   *
+   * @return written count
+   */
+  public long getWrittenCount() {
+    return written;
+  }
+
+  /**
+   * Gets the number of records the sink failed to write.
+   *
+   * @return failed count
+   */
+  public long getFailedCount() {
+    return failed;
+  }
+
+  /**
+   * Gets the sink records are written to.
+   *
+   * @return the sink
+   */
+  public AccessLogSink getSink() {
+    return sink;
+  }
+
+
+  public static class Builder {
+    private final AccessLogSink sink;
+    private int capacity = 8192;
+    private double sampleRate = 1.0;
+    private long idleParkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Constructor - use {@link AccessLog#builder(AccessLogSink)}.
+     *
+     * @param sink Where drained records are written
+     */
+    private Builder(AccessLogSink sink) {
+      this.sink = sink;
+    }
+
+    /**
+     * Sets the number of ring slots, rounded up to a power of two. The
+     * ring absorbs bursts while the sink catches up.
+     *
+     * @param capacity Number of preallocated records
+     * @return this Builder instance for method chaining
+     */
+    public Builder capacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of requests recorded. Responses with a 5xx status
+     * are recorded regardless.
+     *
+     * @param sampleRate Fraction between 0 and 1
+     * @return this Builder instance for method chaining
+     */
+    public Builder sampleRate(double sampleRate) {
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * Sets how long the drain thread sleeps when the ring is empty.
+     *
+     * @param idle Sleep time
+     * @param unit Unit of the sleep time
+     * @return this Builder instance for method chaining
+     */
+    public Builder idlePark(long idle, TimeUnit unit) {
+      this.idleParkNanos = unit.toNanos(idle);
+      return this;
+    }
+
+    /**
+     * Builds the AccessLog and starts its drain thread.
+     *
+     * @return A new AccessLog
+     * @throws IllegalStateException if the sink is missing or a setting is out of range
+     */
+    public AccessLog build() {
+      if (sink == null) {
+        throw new IllegalStateException("Access log sink is required");
+      }
+      if (capacity <= 0 || capacity > (1 << 30)) {
+        throw new IllegalStateException("Capacity must be between 1 and 2^30");
+      }
+      if (sampleRate < 0 || sampleRate > 1) {
+        throw new IllegalStateException("Sample rate must be between 0 and 1");
+      }
+      if (idleParkNanos <= 0) {
+        throw new IllegalStateException("Idle park time must be positive");
+      }
+      capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+      return new AccessLog(this);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package edu.bu.met.cs665.accesslog;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+
+public final class AccessLogDecoder {
+  private static final String[] COLUMNS = {
+      AccessLogField.TIMESTAMP.getKey(), AccessLogField.ROUTE.getKey(),
+      AccessLogField.METHOD.getKey(), AccessLogField.STATUS.getKey(),
+      AccessLogField.LATENCY.getKey(), AccessLogField.REQUEST_BYTES.getKey(),
+      AccessLogField.RESPONSE_BYTES.getKey(), AccessLogField.CLIENT.getKey()};
+
+  /**
+   * Output formats of the decoder.
+   */
+  public enum Format {
+    CSV,
+    JSON
+  }
+
+  private final Format format;
+  private final Writer out;
+  private Map<Integer, String> dictionary;
+
+  private AccessLogDecoder(Format format, Writer out) {
+    this.format = format;
+    this.out = out;
+  }
+
+  /**
+   * Converts binary access log segments to text. Usage:
+   * {@code AccessLogDecoder [--format csv|json] <directory>}. Records from
+   * every segment in the directory are written to standard output, oldest
+   * first: CSV with a header row, or one JSON object per line.
+   *
+   * @param args Command line arguments
+   * @throws IOException if a file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    Format format = Format.CSV;
+    Path directory = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--format".equals(args[i]) && i + 1 < args.length) {
+        format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+      } else {
+        directory = Paths.get(args[i]);
+      }
+    }
+    if (directory == null) {
+      System.err.println("Usage: AccessLogDecoder [--format csv|json] <directory>");
+      System.exit(2);
+    }
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    long records = decode(directory, format, out);
+    out.flush();
+    System.err.println("Decoded " + records + " records");
+  }
+
+  /**
+   * Writes every record in a binary access log directory.
+   *
+   * @param directory Directory holding the segment and dictionary files
+   * @param format Output format
+   * @param out Where the text goes; not flushed or closed
+   * @return the number of records written
+   * @throws IOException if a file cannot be read or a segment is not an access log
+   */
+  public static long decode(Path directory, Format format, Writer out) throws IOException {
+    AccessLogDecoder decoder = new AccessLogDecoder(format, out);
+    if (format == Format.CSV) {
+      out.write(String.join(",", COLUMNS));
+      out.write('\n');
+    }
+    long records = 0;
+    for (Path segment : BinaryAccessLogFormat.listSegments(directory).values()) {
+      records += decoder.decodeSegment(segment);
+    }
+    return records;
+  }
+
+  private long decodeSegment(Path segment) throws IOException {
+    ByteBuffer in;
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (in.limit() < BinaryAccessLogFormat.HEADER_BYTES
+        || in.getInt(0) != BinaryAccessLogFormat.SEGMENT_MAGIC) {
+      throw new IOException("Not an access log segment: " + segment);
+    }
+    int version = in.getInt(4);
+    if (version != BinaryAccessLogFormat.VERSION) {
+      throw new IOException("Unknown access log version " + version + ": " + segment);
+    }
+    dictionary = readDictionary(BinaryAccessLogFormat.dictionaryOf(segment));
+    int recordBytes = in.getInt(8);
+
+    long records = 0;
+    for (int at = BinaryAccessLogFormat.HEADER_BYTES; at + recordBytes <= in.limit();
+        at += recordBytes) {
+      long timestamp = in.getLong(at);
+      if (timestamp == 0) {
+        break;
+      }
+      writeRecord(timestamp,
+          lookup(in.getInt(at + BinaryAccessLogFormat.ROUTE_OFFSET)),
+          lookup(in.getInt(at + BinaryAccessLogFormat.METHOD_OFFSET)),
+          in.getShort(at + BinaryAccessLogFormat.STATUS_OFFSET),
+          in.getLong(at + BinaryAccessLogFormat.LATENCY_OFFSET) / 1000,
+          in.getLong(at + BinaryAccessLogFormat.REQUEST_BYTES_OFFSET),
+          in.getLong(at + BinaryAccessLogFormat.RESPONSE_BYTES_OFFSET),
+          lookup(in.getInt(at + BinaryAccessLogFormat.CLIENT_OFFSET)));
+      records++;
+    }
+    return records;
+  }
+
+  private static Map<Integer, String> readDictionary(Path file) throws IOException {
+    Map<Integer, String> entries = new HashMap<>();
+    if (Files.exists(file)) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        BinaryAccessLogFormat.readDictionary(channel, entries::put);
+      }
+    }
+    return entries;
+  }
+
+  private String lookup(int id) {
+    return id == BinaryAccessLogFormat.NO_ID ? null : dictionary.get(id);
+  }
+
+  private void writeRecord(long timestamp, String route, String method, int status,
+      long latencyMicros, long requestBytes, long responseBytes, String client)
+      throws IOException {
+    Object[] values = {timestamp, route, method, status, latencyMicros, requestBytes,
+        responseBytes, client};
+    StringBuilder line = new StringBuilder(128);
+    if (format == Format.JSON) {
+      line.append('{');
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          line.append(',');
+        }
+        line.append('"').append(COLUMNS[i]).append("\":");
+        appendJson(line, values[i]);
+      }
+      line.append('}');
+    } else {
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          line.append(',');
+        }
+        appendCsv(line, values[i]);
+      }
+    }
+    out.write(line.append('\n').toString());
+  }
+
+  private static void appendJson(StringBuilder line, Object value) {
+    if (!(value instanceof String)) {
+      line.append(value);
+      return;
+    }
+    line.append('"');
+    String text = (String) value;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  private static void appendCsv(StringBuilder line, Object value) {
+    if (value == null) {
+      return;
+    }
+    String text = value.toString();
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+      line.append(text);
+    } else {
+      line.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+  }
+}
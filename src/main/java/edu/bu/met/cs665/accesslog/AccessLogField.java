@@ -0,0 +1,29 @@
+package edu.bu.met.cs665.accesslog;
+
+
+public enum AccessLogField {
+  TIMESTAMP("ts"),
+  ROUTE("route"),
+  METHOD("method"),
+  PATH("path"),
+  STATUS("status"),
+  LATENCY("latency_us"),
+  REQUEST_BYTES("req_bytes"),
+  RESPONSE_BYTES("resp_bytes"),
+  CLIENT("client");
+
+  private final String key;
+
+  AccessLogField(String key) {
+    this.key = key;
+  }
+
+  /**
+   * Gets the name of the field in written records.
+   *
+   * @return field key
+   */
+  public String getKey() {
+    return key;
+  }
+}
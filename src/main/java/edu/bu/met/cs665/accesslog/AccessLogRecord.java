@@ -0,0 +1,137 @@
+package edu.bu.met.cs665.accesslog;
+
+
+public final class AccessLogRecord {
+  // Ring-buffer sequence; see AccessLog for the protocol
+  volatile long sequence;
+
+  private long timestamp;
+  private String route;
+  private String method;
+  private String path;
+  private int status;
+  private long latencyNanos;
+  private long requestBytes;
+  private long responseBytes;
+  private String clientId;
+
+  /**
+   * Creates an empty slot. Records are preallocated by {@link AccessLog}
+   * and reused, so a sink must copy out anything it keeps after
+   * {@link AccessLogSink#append} returns.
+   *
+   * @param sequence Initial ring-buffer sequence
+   */
+  AccessLogRecord(long sequence) {
+    this.sequence = sequence;
+  }
+
+  /**
+   * Fills the slot. Only references and primitives are stored, so this
+   * allocates nothing.
+   */
+  void set(long timestamp, String route, String method, String path, int status,
+      long latencyNanos, long requestBytes, long responseBytes, String clientId) {
+    this.timestamp = timestamp;
+    this.route = route;
+    this.method = method;
+    this.path = path;
+    this.status = status;
+    this.latencyNanos = latencyNanos;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.clientId = clientId;
+  }
+
+  /**
+   * Drops the references held by the slot, so a quiet ring does not keep
+   * old request strings alive.
+   */
+  void clear() {
+    this.route = null;
+    this.method = null;
+    this.path = null;
+    this.clientId = null;
+  }
+
+  /**
+   * Gets the wall-clock time the request arrived.
+   *
+   * @return epoch milliseconds
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Gets the path pattern of the route that served the request.
+   *
+   * @return route pattern, or null if no route matched
+   */
+  public String getRoute() {
+    return route;
+  }
+
+  /**
+   * Gets the HTTP method.
+   *
+   * @return HTTP method
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Gets the request path.
+   *
+   * @return request path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Gets the response status.
+   *
+   * @return HTTP status code
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Gets the time from request creation to the end of post-processing.
+   *
+   * @return latency in nanoseconds
+   */
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  /**
+   * Gets the request body size.
+   *
+   * @return request bytes, or -1 if unknown
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Gets the response body size.
+   *
+   * @return response bytes, or -1 if unknown
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Gets the client identifier.
+   *
+   * @return client ID
+   */
+  public String getClientId() {
+    return clientId;
+  }
+}
@@ -0,0 +1,36 @@
+package edu.bu.met.cs665.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+public interface AccessLogSink extends Closeable {
+
+  /**
+   * Writes one record. Called only from the access log's drain thread, so
+   * implementations need no locking. The record is reused once this
+   * returns.
+   *
+   * @param record The record to write
+   * @throws IOException if writing fails; the record is counted as lost
+   */
+  void append(AccessLogRecord record) throws IOException;
+
+  /**
+   * Flushes buffered records. Called whenever the ring runs empty.
+   *
+   * @throws IOException if flushing fails
+   */
+  default void flush() throws IOException {
+  }
+
+  /**
+   * Flushes and releases the sink. Called once, after the last record.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override
+  default void close() throws IOException {
+    flush();
+  }
+}
@@ -0,0 +1,115 @@
+package edu.bu.met.cs665.accesslog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+
+final class BinaryAccessLogFormat {
+  /*
+   * On-disk layout shared by BinaryAccessLogSink and AccessLogDecoder. It
+   * uses nothing outside the JDK, so the decoder runs with only the gateway
+   * classes on the class path.
+   *
+   * Segment files start with a 16-byte header (magic, version, record size,
+   * reserved) followed by fixed 48-byte records:
+   *    0  long   timestamp, epoch ms; written last, 0 marks the end of the data
+   *    8  long   latency, ns
+   *   16  long   request bytes, -1 if unknown
+   *   24  long   response bytes, -1 if unknown
+   *   32  int    route id
+   *   36  int    client id
+   *   40  int    method id
+   *   44  short  status
+   *   46  short  reserved
+   * Ids index the segment's own dictionary file, same name with a .dict
+   * suffix, which holds (int id, int length, UTF-8 bytes) entries; -1 means
+   * none. The dictionary is deleted with its segment, so values that are
+   * only seen once, such as client IDs, do not pile up forever.
+   */
+  static final int SEGMENT_MAGIC = 0x47414c31; // "GAL1"
+  static final int VERSION = 2;
+  static final int HEADER_BYTES = 16;
+  static final int RECORD_BYTES = 48;
+  static final int NO_ID = -1;
+
+  static final int LATENCY_OFFSET = 8;
+  static final int REQUEST_BYTES_OFFSET = 16;
+  static final int RESPONSE_BYTES_OFFSET = 24;
+  static final int ROUTE_OFFSET = 32;
+  static final int CLIENT_OFFSET = 36;
+  static final int METHOD_OFFSET = 40;
+  static final int STATUS_OFFSET = 44;
+
+  static final String SEGMENT_PREFIX = "access-";
+  static final String SEGMENT_SUFFIX = ".bin";
+  static final String DICTIONARY_SUFFIX = ".dict";
+
+  private BinaryAccessLogFormat() {
+  }
+
+  static String segmentName(long id) {
+    return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+  }
+
+  /**
+   * Gets the dictionary file that belongs to a segment file.
+   */
+  static Path dictionaryOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return segment.resolveSibling(
+        name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + DICTIONARY_SUFFIX);
+  }
+
+  /**
+   * Lists the segment files in a directory by id, oldest first.
+   */
+  static TreeMap<Long, Path> listSegments(Path directory) throws IOException {
+    TreeMap<Long, Path> files = new TreeMap<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        try {
+          files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+              name.length() - SEGMENT_SUFFIX.length())), file);
+        } catch (NumberFormatException e) {
+          // Not one of ours
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Reads dictionary entries until the end of the file or the first
+   * incomplete entry.
+   *
+   * @return the length of the complete entries, where the next one goes
+   */
+  static long readDictionary(FileChannel channel, BiConsumer<Integer, String> entries)
+      throws IOException {
+    ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+    channel.read(data, 0);
+    data.flip();
+    while (data.remaining() >= 8) {
+      int start = data.position();
+      int id = data.getInt();
+      int length = data.getInt();
+      if (length < 0 || length > data.remaining()) {
+        data.position(start);
+        break;
+      }
+      byte[] bytes = new byte[length];
+      data.get(bytes);
+      entries.accept(id, new String(bytes, StandardCharsets.UTF_8));
+    }
+    return data.position();
+  }
+}
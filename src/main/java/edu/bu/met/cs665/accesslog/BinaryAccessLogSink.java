@@ -0,0 +1,304 @@
+package edu.bu.met.cs665.accesslog;
+
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.CLIENT_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.HEADER_BYTES;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.LATENCY_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.METHOD_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.NO_ID;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.RECORD_BYTES;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.REQUEST_BYTES_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.RESPONSE_BYTES_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.ROUTE_OFFSET;
+import static edu.bu.met.cs665.accesslog.BinaryAccessLogFormat.STATUS_OFFSET;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class BinaryAccessLogSink implements AccessLogSink {
+  private static final Logger logger = LogManager.getLogger(BinaryAccessLogSink.class);
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final int maxDictionaryEntries;
+  private final Map<String, Integer> dictionary;
+  private final Deque<Path> segments;
+  private FileChannel dictionaryChannel;
+  private long nextSegmentId;
+  private MappedByteBuffer active;
+  private int position;
+  private long recordCount;
+  private boolean closed;
+
+  /**
+   * Private constructor - use {@link #builder(Path)}.
+   *
+   * @param builder The builder instance
+   * @throws IOException if the directory or the first segment cannot be created
+   */
+  private BinaryAccessLogSink(Builder builder) throws IOException {
+    this.directory = builder.directory;
+    this.segmentBytes = builder.segmentBytes;
+    this.maxSegments = builder.maxSegments;
+    this.maxDictionaryEntries = builder.maxDictionaryEntries;
+    this.dictionary = new HashMap<>();
+    this.segments = new ArrayDeque<>();
+
+    Files.createDirectories(directory);
+    // Earlier segments are kept for the decoder; new records always start a new one
+    TreeMap<Long, Path> existing = BinaryAccessLogFormat.listSegments(directory);
+    segments.addAll(existing.values());
+    this.nextSegmentId = existing.isEmpty() ? 0 : existing.lastKey() + 1;
+    roll();
+    logger.info("Binary access log opened at {}. Segments: {}", directory, segments.size());
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param directory Directory holding the segment and dictionary files
+   * @return A new Builder instance
+   */
+  public static Builder builder(Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Writes the record into the mapped segment with absolute puts. Strings
+   * are replaced by dictionary ids; only a value never seen before costs
+   * an allocation and a write to the dictionary file. The timestamp goes
+   * last, so a reader never sees a half-written record as complete.
+   *
+   * @param record The record to write
+   * @throws IOException if a new segment or dictionary entry cannot be written
+   */
+  @Override
+  public void append(AccessLogRecord record) throws IOException {
+    if (closed) {
+      throw new IOException("Binary access log is closed");
+    }
+    if (position + RECORD_BYTES > segmentBytes) {
+      roll();
+    }
+
+    int routeId = intern(record.getRoute());
+    int clientId = intern(record.getClientId());
+    int methodId = intern(record.getMethod());
+
+    MappedByteBuffer out = active;
+    int at = position;
+    out.putLong(at + LATENCY_OFFSET, record.getLatencyNanos());
+    out.putLong(at + REQUEST_BYTES_OFFSET, record.getRequestBytes());
+    out.putLong(at + RESPONSE_BYTES_OFFSET, record.getResponseBytes());
+    out.putInt(at + ROUTE_OFFSET, routeId);
+    out.putInt(at + CLIENT_OFFSET, clientId);
+    out.putInt(at + METHOD_OFFSET, methodId);
+    out.putShort(at + STATUS_OFFSET, (short) record.getStatus());
+    out.putLong(at, record.getTimestamp());
+    position = at + RECORD_BYTES;
+    recordCount++;
+  }
+
+  /**
+   * Maps a string to its id in the current segment's dictionary, adding it
+   * on first sight. Once the dictionary is full, new values are written as
+   * "no value" until the next segment starts an empty one.
+   */
+  private int intern(String value) throws IOException {
+    if (value == null) {
+      return NO_ID;
+    }
+    Integer id = dictionary.get(value);
+    if (id != null) {
+      return id;
+    }
+    if (dictionary.size() >= maxDictionaryEntries) {
+      return NO_ID;
+    }
+
+    int newId = dictionary.size();
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer entry = ByteBuffer.allocate(8 + bytes.length);
+    entry.putInt(newId).putInt(bytes.length).put(bytes).flip();
+    while (entry.hasRemaining()) {
+      dictionaryChannel.write(entry);
+    }
+    dictionary.put(value, newId);
+    return newId;
+  }
+
+  /**
+   * Finishes the current segment and maps a new one with an empty
+   * dictionary, deleting the oldest segments and their dictionaries
+   * beyond the cap.
+   */
+  private void roll() throws IOException {
+    if (active != null) {
+      active.force();
+      dictionaryChannel.close();
+    }
+    while (segments.size() >= maxSegments) {
+      Path oldest = segments.pollFirst();
+      try {
+        Files.deleteIfExists(oldest);
+        Files.deleteIfExists(BinaryAccessLogFormat.dictionaryOf(oldest));
+      } catch (IOException e) {
+        logger.warn("Could not delete access log segment {}", oldest, e);
+      }
+    }
+
+    Path file = directory.resolve(BinaryAccessLogFormat.segmentName(nextSegmentId++));
+    dictionary.clear();
+    dictionaryChannel = FileChannel.open(BinaryAccessLogFormat.dictionaryOf(file),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed
+      active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+    active.putInt(0, BinaryAccessLogFormat.SEGMENT_MAGIC);
+    active.putInt(4, BinaryAccessLogFormat.VERSION);
+    active.putInt(8, RECORD_BYTES);
+    position = HEADER_BYTES;
+    segments.addLast(file);
+    logger.debug("Started access log segment {}", file);
+  }
+
+  /**
+   * Forces the current segment to disk and closes the dictionary.
+   *
+   * @throws IOException if closing the dictionary fails
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    active.force();
+    dictionaryChannel.close();
+    logger.info("Binary access log closed. Records written: {}", recordCount);
+  }
+
+  /**
+   * Gets the number of records written since the sink was opened.
+   *
+   * @return record count
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Gets the number of segment files on disk.
+   *
+   * @return segment count
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Gets the number of strings interned in the current segment.
+   *
+   * @return dictionary size
+   */
+  public int getDictionarySize() {
+    return dictionary.size();
+  }
+
+  /**
+   * Gets the directory holding the segment and dictionary files.
+   *
+   * @return the directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+
+  public static class Builder {
+    private final Path directory;
+    private int segmentBytes = 64 * 1024 * 1024; // 64 MB, about 1.4M records
+    private int maxSegments = 32;
+    private int maxDictionaryEntries = 1_000_000;
+
+    /**
+     * Constructor - use {@link BinaryAccessLogSink#builder(Path)}.
+     *
+     * @param directory Directory holding the segment and dictionary files
+     */
+    private Builder(Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the size of each segment file.
+     *
+     * @param segmentBytes Segment size in bytes
+     * @return this Builder instance for method chaining
+     */
+    public Builder segmentBytes(int segmentBytes) {
+      this.segmentBytes = segmentBytes;
+      return this;
+    }
+
+    /**
+     * Sets how many segment files are kept; the oldest is deleted when a new one starts.
+     *
+     * @param maxSegments Maximum segment files
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxSegments(int maxSegments) {
+      this.maxSegments = maxSegments;
+      return this;
+    }
+
+    /**
+     * Sets how many distinct routes, methods and client IDs are interned
+     * per segment. Values past the cap are written without a string.
+     *
+     * @param maxDictionaryEntries Maximum dictionary entries
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxDictionaryEntries(int maxDictionaryEntries) {
+      this.maxDictionaryEntries = maxDictionaryEntries;
+      return this;
+    }
+
+    /**
+     * Builds and returns the BinaryAccessLogSink instance.
+     *
+     * @return A new BinaryAccessLogSink
+     * @throws IllegalStateException if a setting is out of range or the directory cannot be used
+     */
+    public BinaryAccessLogSink build() {
+      if (directory == null) {
+        throw new IllegalStateException("Access log directory is required");
+      }
+      if (segmentBytes < HEADER_BYTES + RECORD_BYTES || maxSegments <= 0
+          || maxDictionaryEntries < 0) {
+        throw new IllegalStateException("Segment size and count must be positive");
+      }
+      try {
+        return new BinaryAccessLogSink(this);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not open access log in " + directory, e);
+      }
+    }
+  }
+}
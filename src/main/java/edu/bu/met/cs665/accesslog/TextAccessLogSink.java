@@ -0,0 +1,111 @@
+package edu.bu.met.cs665.accesslog;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class TextAccessLogSink implements AccessLogSink {
+  private static final Logger accessLogger = LogManager.getLogger("access");
+
+  private final AccessLogField[] fields;
+  private final Consumer<String> output;
+  private final StringBuilder line;
+
+  /**
+   * Creates a sink that writes each record as one JSON line to the
+   * "access" log4j logger at INFO.
+   *
+   * @param fields Fields to write, in their declaration order; empty writes all
+   */
+  public TextAccessLogSink(Collection<AccessLogField> fields) {
+    this(fields, accessLogger::info);
+  }
+
+  /**
+   * Creates a sink that hands each record as one JSON line to the given output.
+   *
+   * @param fields Fields to write, in their declaration order; empty writes all
+   * @param output Receives each formatted line
+   */
+  public TextAccessLogSink(Collection<AccessLogField> fields, Consumer<String> output) {
+    EnumSet<AccessLogField> selected = fields.isEmpty()
+        ? EnumSet.allOf(AccessLogField.class) : EnumSet.copyOf(fields);
+    this.fields = selected.toArray(new AccessLogField[0]);
+    this.output = output;
+    this.line = new StringBuilder(256);
+  }
+
+  /**
+   * Formats the selected fields into a reused buffer. This runs on the
+   * access log's drain thread, off the request path.
+   *
+   * @param record The record to write
+   */
+  @Override
+  public void append(AccessLogRecord record) {
+    StringBuilder out = this.line;
+    out.setLength(0);
+    out.append('{');
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append('"').append(fields[i].getKey()).append("\":");
+      switch (fields[i]) {
+        case TIMESTAMP:
+          out.append(record.getTimestamp());
+          break;
+        case ROUTE:
+          appendString(out, record.getRoute());
+          break;
+        case METHOD:
+          appendString(out, record.getMethod());
+          break;
+        case PATH:
+          appendString(out, record.getPath());
+          break;
+        case STATUS:
+          out.append(record.getStatus());
+          break;
+        case LATENCY:
+          out.append(record.getLatencyNanos() / 1000);
+          break;
+        case REQUEST_BYTES:
+          out.append(record.getRequestBytes());
+          break;
+        case RESPONSE_BYTES:
+          out.append(record.getResponseBytes());
+          break;
+        case CLIENT:
+          appendString(out, record.getClientId());
+          break;
+        default:
+          out.append("null");
+      }
+    }
+    out.append('}');
+    output.accept(out.toString());
+  }
+
+  private static void appendString(StringBuilder out, String value) {
+    if (value == null) {
+      out.append("null");
+      return;
+    }
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      } else if (c < 0x20) {
+        out.append(String.format("\\u%04x", (int) c));
+      } else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+}
@@ -0,0 +1,484 @@
+package edu.bu.met.cs665.auth;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class ApiKeyStore implements TokenValidator, Closeable {
+  private static final Logger logger = LogManager.getLogger(ApiKeyStore.class);
+  private static final int DIGEST_BYTES = 32;
+  private static final int BLOOM_BITS_PER_KEY = 10;
+  private static final int BLOOM_HASHES = 7;
+  private static final ThreadLocal<MessageDigest> SHA256 =
+      ThreadLocal.withInitial(ApiKeyStore::newDigest);
+
+  private final Path file;
+  private final ScheduledExecutorService reloader;
+  private final LongAdder lookups;
+  private final LongAdder bloomRejections;
+  private final LongAdder falsePositives;
+  private volatile Snapshot snapshot;
+  private volatile long loadedModifiedTime;
+
+  /**
+   * Private constructor - use {@link #builder()}.
+   *
+   * @param builder The builder instance
+   * @throws IOException if the key file cannot be read
+   */
+  private ApiKeyStore(Builder builder) throws IOException {
+    this.file = builder.file;
+    this.lookups = new LongAdder();
+    this.bloomRejections = new LongAdder();
+    this.falsePositives = new LongAdder();
+    this.snapshot = Snapshot.build(ByteBuffer.allocateDirect(0), 0);
+
+    if (file != null) {
+      reload();
+    }
+    if (file != null && builder.reloadIntervalMillis > 0) {
+      this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "api-key-reloader");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.reloader.scheduleWithFixedDelay(this::reloadQuietly, builder.reloadIntervalMillis,
+          builder.reloadIntervalMillis, TimeUnit.MILLISECONDS);
+    } else {
+      this.reloader = null;
+    }
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Checks an API key. The key is hashed with SHA-256 and the digest is
+   * first tested against the Bloom filter, which turns away almost every
+   * unknown key with a handful of bit tests. Keys that pass are confirmed
+   * by a binary search over the sorted digests. Readers never lock: they
+   * work on whichever snapshot was current when they started.
+   *
+   * @param key The API key presented by the client
+   * @return true if the key is known
+   */
+  @Override
+  public boolean isValid(String key) {
+    if (key == null || key.isEmpty()) {
+      return false;
+    }
+    lookups.increment();
+
+    byte[] hash = SHA256.get().digest(key.getBytes(StandardCharsets.UTF_8));
+    ByteBuffer digest = ByteBuffer.wrap(hash);
+    long w0 = digest.getLong(0);
+    long w1 = digest.getLong(8);
+    long w2 = digest.getLong(16);
+    long w3 = digest.getLong(24);
+
+    Snapshot current = snapshot;
+    if (!current.mightContain(w0, w1)) {
+      bloomRejections.increment();
+      return false;
+    }
+    if (current.indexOf(w0, w1, w2, w3) < 0) {
+      falsePositives.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Replaces every key with the given raw keys, hashing them first.
+   *
+   * @param keys The API keys to accept
+   */
+  public void replaceKeys(Collection<String> keys) {
+    ByteBuffer digests = ByteBuffer.allocateDirect(keys.size() * DIGEST_BYTES);
+    MessageDigest sha256 = SHA256.get();
+    for (String key : keys) {
+      digests.put(sha256.digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+    swap(Snapshot.build(digests, keys.size()));
+  }
+
+  /**
+   * Reads the key file and swaps the new key set in. Each line holds the
+   * hex SHA-256 digest of one key; blank lines and lines starting with '#'
+   * are skipped. The whole file is parsed and indexed before the swap, so
+   * a bad file leaves the current keys in place.
+   *
+   * @throws IOException if the file cannot be read or has a malformed line
+   * @throws IllegalStateException if the store was not built with a file
+   */
+  public void reload() throws IOException {
+    if (file == null) {
+      throw new IllegalStateException("No key file configured");
+    }
+    long modifiedTime = Files.getLastModifiedTime(file).toMillis();
+    ByteBuffer digests = ByteBuffer.allocateDirect(1024 * DIGEST_BYTES);
+    int count = 0;
+    int lineNumber = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.charAt(0) == '#') {
+          continue;
+        }
+        if (line.length() != DIGEST_BYTES * 2) {
+          throw new IOException("Line " + lineNumber + " of " + file
+              + " is not a hex SHA-256 digest");
+        }
+        if (!digests.hasRemaining()) {
+          ByteBuffer bigger = ByteBuffer.allocateDirect(digests.capacity() * 2);
+          digests.flip();
+          bigger.put(digests);
+          digests = bigger;
+        }
+        for (int i = 0; i < DIGEST_BYTES * 2; i += 2) {
+          int high = Character.digit(line.charAt(i), 16);
+          int low = Character.digit(line.charAt(i + 1), 16);
+          if (high < 0 || low < 0) {
+            throw new IOException("Line " + lineNumber + " of " + file + " is not hex");
+          }
+          digests.put((byte) (high << 4 | low));
+        }
+        count++;
+      }
+    }
+    swap(Snapshot.build(digests, count));
+    loadedModifiedTime = modifiedTime;
+  }
+
+  /**
+   * Reloads the key file if it changed since the last load.
+   *
+   * @return true if the file was reloaded
+   * @throws IOException if the file cannot be read or has a malformed line
+   */
+  public boolean reloadIfModified() throws IOException {
+    if (file == null || Files.getLastModifiedTime(file).toMillis() == loadedModifiedTime) {
+      return false;
+    }
+    reload();
+    return true;
+  }
+
+  private void reloadQuietly() {
+    try {
+      reloadIfModified();
+    } catch (IOException | RuntimeException e) {
+      logger.error("Could not reload API keys from {}; keeping the current keys", file, e);
+    }
+  }
+
+  private void swap(Snapshot next) {
+    this.snapshot = next;
+    logger.info("Loaded {} API keys ({} KB of digests off-heap)",
+        next.count, (long) next.count * DIGEST_BYTES / 1024);
+  }
+
+  /**
+   * Stops the reload timer.
+   */
+  @Override
+  public void close() {
+    if (reloader != null) {
+      reloader.shutdownNow();
+    }
+  }
+
+  /**
+   * Hashes a raw key into the hex form used in the key file.
+   *
+   * @param key The API key
+   * @return Lower-case hex SHA-256 digest
+   */
+  public static String digestHex(String key) {
+    byte[] digest = SHA256.get().digest(key.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder(DIGEST_BYTES * 2);
+    for (byte b : digest) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Gets the number of distinct keys.
+   *
+   * @return key count
+   */
+  public int size() {
+    return snapshot.count;
+  }
+
+  /**
+   * Gets the number of keys checked.
+   *
+   * @return lookup count
+   */
+  public long getLookupCount() {
+    return lookups.sum();
+  }
+
+  /**
+   * Gets the number of unknown keys turned away by the Bloom filter alone.
+   *
+   * @return Bloom filter rejection count
+   */
+  public long getBloomRejectionCount() {
+    return bloomRejections.sum();
+  }
+
+  /**
+   * Gets the number of unknown keys that passed the Bloom filter and were
+   * only turned away by the digest search.
+   *
+   * @return false positive count
+   */
+  public long getFalsePositiveCount() {
+    return falsePositives.sum();
+  }
+
+  /**
+   * Immutable key set: sorted, de-duplicated digests in a direct buffer,
+   * plus a Bloom filter over them. Built in full before it is published.
+   */
+  private static final class Snapshot {
+    private final ByteBuffer digests;
+    private final int count;
+    private final long[] bloom;
+    private final long bloomMask;
+
+    private Snapshot(ByteBuffer digests, int count, long[] bloom) {
+      this.digests = digests;
+      this.count = count;
+      this.bloom = bloom;
+      this.bloomMask = (long) bloom.length * 64 - 1;
+    }
+
+    private static Snapshot build(ByteBuffer digests, int count) {
+      sort(digests, 0, count);
+      count = dedupe(digests, count);
+
+      long bits = Math.max(64, Long.highestOneBit(
+          Math.max(1L, (long) count * BLOOM_BITS_PER_KEY - 1)) << 1);
+      long[] bloom = new long[(int) Math.min(1L << 30, bits / 64)];
+      Snapshot snapshot = new Snapshot(digests, count, bloom);
+      for (int i = 0; i < count; i++) {
+        snapshot.addToBloom(word(digests, i, 0), word(digests, i, 1));
+      }
+      return snapshot;
+    }
+
+    /**
+     * The digest is already uniformly random, so its first two words serve
+     * as the two hashes of the double-hashing scheme.
+     */
+    private void addToBloom(long h1, long h2) {
+      long step = h2 | 1;
+      for (int i = 0; i < BLOOM_HASHES; i++) {
+        long bit = (h1 + i * step) & bloomMask;
+        bloom[(int) (bit >>> 6)] |= 1L << bit;
+      }
+    }
+
+    private boolean mightContain(long h1, long h2) {
+      long step = h2 | 1;
+      for (int i = 0; i < BLOOM_HASHES; i++) {
+        long bit = (h1 + i * step) & bloomMask;
+        if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int indexOf(long w0, long w1, long w2, long w3) {
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compare(digests, mid, w0, w1, w2, w3);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    private static long word(ByteBuffer digests, int index, int word) {
+      return digests.getLong(index * DIGEST_BYTES + word * 8);
+    }
+
+    private static int compare(ByteBuffer digests, int index, long w0, long w1, long w2,
+        long w3) {
+      int cmp = Long.compareUnsigned(word(digests, index, 0), w0);
+      if (cmp == 0) {
+        cmp = Long.compareUnsigned(word(digests, index, 1), w1);
+      }
+      if (cmp == 0) {
+        cmp = Long.compareUnsigned(word(digests, index, 2), w2);
+      }
+      if (cmp == 0) {
+        cmp = Long.compareUnsigned(word(digests, index, 3), w3);
+      }
+      return cmp;
+    }
+
+    private static int compare(ByteBuffer digests, int index, long[] pivot) {
+      return compare(digests, index, pivot[0], pivot[1], pivot[2], pivot[3]);
+    }
+
+    /**
+     * Sorts the digest records in place, so the buffer never has to be
+     * copied onto the heap. Quicksort with insertion sort for short ranges.
+     */
+    private static void sort(ByteBuffer digests, int from, int to) {
+      while (to - from > 16) {
+        int mid = (from + to) >>> 1;
+        long[] pivot = {word(digests, mid, 0), word(digests, mid, 1),
+            word(digests, mid, 2), word(digests, mid, 3)};
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+          while (compare(digests, i, pivot) < 0) {
+            i++;
+          }
+          while (compare(digests, j, pivot) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(digests, i++, j--);
+          }
+        }
+        // Recurse into the smaller half to bound the stack depth
+        if (j + 1 - from < to - i) {
+          sort(digests, from, j + 1);
+          from = i;
+        } else {
+          sort(digests, i, to);
+          to = j + 1;
+        }
+      }
+      for (int i = from + 1; i < to; i++) {
+        for (int j = i; j > from && compare(digests, j - 1, word(digests, j, 0),
+            word(digests, j, 1), word(digests, j, 2), word(digests, j, 3)) > 0; j--) {
+          swap(digests, j, j - 1);
+        }
+      }
+    }
+
+    private static void swap(ByteBuffer digests, int a, int b) {
+      for (int word = 0; word < 4; word++) {
+        int offsetA = a * DIGEST_BYTES + word * 8;
+        int offsetB = b * DIGEST_BYTES + word * 8;
+        long value = digests.getLong(offsetA);
+        digests.putLong(offsetA, digests.getLong(offsetB));
+        digests.putLong(offsetB, value);
+      }
+    }
+
+    private static int dedupe(ByteBuffer digests, int count) {
+      if (count == 0) {
+        return 0;
+      }
+      int kept = 1;
+      for (int i = 1; i < count; i++) {
+        if (compare(digests, kept - 1, word(digests, i, 0), word(digests, i, 1),
+            word(digests, i, 2), word(digests, i, 3)) != 0) {
+          if (kept != i) {
+            for (int word = 0; word < 4; word++) {
+              digests.putLong(kept * DIGEST_BYTES + word * 8, word(digests, i, word));
+            }
+          }
+          kept++;
+        }
+      }
+      return kept;
+    }
+  }
+
+
+  public static class Builder {
+    private Path file;
+    private long reloadIntervalMillis;
+
+    /**
+     * Constructor - use {@link ApiKeyStore#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Sets the file of hex SHA-256 key digests, one per line.
+     *
+     * @param file The key file, or null to start empty
+     * @return this Builder instance for method chaining
+     */
+    public Builder file(Path file) {
+      this.file = file;
+      return this;
+    }
+
+    /**
+     * Sets how often the key file is checked for changes.
+     *
+     * @param interval Check interval, or 0 to load the file only once
+     * @param unit Unit of the interval
+     * @return this Builder instance for method chaining
+     */
+    public Builder reloadInterval(long interval, TimeUnit unit) {
+      this.reloadIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Builds the store, loading the key file if one is set.
+     *
+     * @return A new ApiKeyStore
+     * @throws IllegalStateException if the key file cannot be loaded
+     */
+    public ApiKeyStore build() {
+      try {
+        return new ApiKeyStore(this);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not load API keys from " + file, e);
+      }
+    }
+  }
+}
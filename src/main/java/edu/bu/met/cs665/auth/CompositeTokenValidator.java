@@ -0,0 +1,85 @@
+package edu.bu.met.cs665.auth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class CompositeTokenValidator implements TokenValidator, Closeable {
+  private static final Logger logger = LogManager.getLogger(CompositeTokenValidator.class);
+  private final List<TokenValidator> validators;
+
+  /**
+   * Creates a validator that accepts a token if any of the given ones does,
+   * e.g. signed JWTs for users and API keys for services on the same route.
+   *
+   * @param validators The validators, asked in order
+   */
+  public CompositeTokenValidator(List<TokenValidator> validators) {
+    this.validators = Collections.unmodifiableList(new ArrayList<>(validators));
+  }
+
+  /**
+   * Asks each validator that supports the token in turn and stops at the
+   * first that accepts, so a JWT is never sent to an introspection endpoint
+   * just because its signature check failed.
+   *
+   * @param token The bearer token
+   * @return true if any validator accepts the token
+   */
+  @Override
+  public boolean isValid(String token) {
+    for (TokenValidator validator : validators) {
+      if (validator.supports(token) && validator.isValid(token)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Supports a token if any of the validators does.
+   *
+   * @param token The bearer token
+   * @return true if some validator supports the token
+   */
+  @Override
+  public boolean supports(String token) {
+    for (TokenValidator validator : validators) {
+      if (validator.supports(token)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Closes every validator that holds threads or connections, such as the
+   * API key reload timer and the introspection HTTP client.
+   */
+  @Override
+  public void close() {
+    for (TokenValidator validator : validators) {
+      if (validator instanceof Closeable) {
+        try {
+          ((Closeable) validator).close();
+        } catch (IOException e) {
+          logger.error("Error closing token validator", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the validators.
+   *
+   * @return read-only list of validators
+   */
+  public List<TokenValidator> getValidators() {
+    return validators;
+  }
+}
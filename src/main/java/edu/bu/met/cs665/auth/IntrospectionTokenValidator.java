@@ -0,0 +1,490 @@
+package edu.bu.met.cs665.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class IntrospectionTokenValidator implements TokenValidator, Closeable {
+  private static final Logger logger = LogManager.getLogger(IntrospectionTokenValidator.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String endpoint;
+  private final String authorization;
+  private final long positiveTtlMillis;
+  private final long negativeTtlMillis;
+  private final long refreshAheadMillis;
+  private final int maxEntries;
+  private final int timeoutMillis;
+  private final boolean introspectJwts;
+  private final LongSupplier clock;
+  private final CloseableHttpClient httpClient;
+  private final ExecutorService refresher;
+  private final ConcurrentMap<String, Result> results;
+  private final ConcurrentMap<String, CompletableFuture<Result>> inFlight;
+  private final AtomicBoolean sweeping;
+  private final LongAdder cacheHits;
+  private final LongAdder introspections;
+  private final LongAdder collapsed;
+  private final LongAdder refreshes;
+  private final LongAdder failures;
+
+  /**
+   * Private constructor - use {@link #builder(String)}.
+   *
+   * @param builder The builder instance
+   */
+  private IntrospectionTokenValidator(Builder builder) {
+    this.endpoint = builder.endpoint;
+    this.authorization = builder.clientId == null ? null : "Basic " + Base64.getEncoder()
+        .encodeToString((builder.clientId + ":" + builder.clientSecret)
+            .getBytes(StandardCharsets.UTF_8));
+    this.positiveTtlMillis = builder.positiveTtlMillis;
+    this.negativeTtlMillis = builder.negativeTtlMillis;
+    this.refreshAheadMillis = builder.refreshAheadMillis;
+    this.maxEntries = builder.maxEntries;
+    this.timeoutMillis = builder.timeoutMillis;
+    this.introspectJwts = builder.introspectJwts;
+    this.clock = builder.clock;
+    this.httpClient = HttpClients.custom()
+        .setMaxConnTotal(builder.maxConnections)
+        .setMaxConnPerRoute(builder.maxConnections)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(timeoutMillis)
+            .setConnectionRequestTimeout(timeoutMillis)
+            .setSocketTimeout(timeoutMillis)
+            .build())
+        .build();
+    this.refresher = Executors.newFixedThreadPool(builder.refreshThreads, runnable -> {
+      Thread thread = new Thread(runnable, "token-introspection-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.results = new ConcurrentHashMap<>();
+    this.inFlight = new ConcurrentHashMap<>();
+    this.sweeping = new AtomicBoolean();
+    this.cacheHits = new LongAdder();
+    this.introspections = new LongAdder();
+    this.collapsed = new LongAdder();
+    this.refreshes = new LongAdder();
+    this.failures = new LongAdder();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param endpoint URL of the OAuth 2.0 token introspection endpoint (RFC 7662)
+   * @return A new Builder instance
+   */
+  public static Builder builder(String endpoint) {
+    return new Builder(endpoint);
+  }
+
+  /**
+   * Checks an opaque token with the introspection endpoint. Results are
+   * cached: active tokens for the positive TTL (never past the token's own
+   * "exp"), inactive ones for the shorter negative TTL. A cached active
+   * token that is close to expiry is still served, and a background lookup
+   * refreshes it, so busy clients never wait on the endpoint. When several
+   * requests miss on the same token at once, only one of them calls the
+   * endpoint and the others wait for its answer.
+   *
+   * @param token The bearer token
+   * @return true if the endpoint reports the token as active
+   */
+  @Override
+  public boolean isValid(String token) {
+    if (token == null || token.isEmpty()) {
+      return false;
+    }
+
+    long now = clock.getAsLong();
+    Result cached = results.get(token);
+    if (cached != null && now < cached.expiresAt) {
+      cacheHits.increment();
+      if (cached.active && now >= cached.refreshAt
+          && cached.refreshing.compareAndSet(false, true)) {
+        refreshes.increment();
+        refresher.execute(() -> lookup(token));
+      }
+      return cached.active;
+    }
+
+    Result result = lookup(token);
+    return result != null && result.active;
+  }
+
+  /**
+   * Calls the endpoint, unless a call for the same token is already under
+   * way, in which case its answer is awaited instead.
+   *
+   * @param token The bearer token
+   * @return The result, or null if the endpoint could not be reached
+   */
+  private Result lookup(String token) {
+    CompletableFuture<Result> mine = new CompletableFuture<>();
+    CompletableFuture<Result> running = inFlight.putIfAbsent(token, mine);
+    if (running != null) {
+      collapsed.increment();
+      try {
+        return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException | TimeoutException e) {
+        return null;
+      }
+    }
+
+    Result result = null;
+    try {
+      result = introspect(token);
+      if (results.size() >= maxEntries) {
+        sweep(clock.getAsLong());
+      }
+      results.put(token, result);
+    } catch (IOException | RuntimeException e) {
+      failures.increment();
+      logger.warn("Token introspection failed: {}", e.toString());
+      // Keep serving a cached result until it expires; a failed refresh can be retried
+      Result stale = results.get(token);
+      if (stale != null) {
+        stale.refreshing.set(false);
+      }
+    } finally {
+      inFlight.remove(token, mine);
+      mine.complete(result);
+    }
+    return result;
+  }
+
+  private Result introspect(String token) throws IOException {
+    introspections.increment();
+    HttpPost post = new HttpPost(endpoint);
+    post.setHeader(HttpHeaders.ACCEPT, "application/json");
+    if (authorization != null) {
+      post.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+    }
+    post.setEntity(new UrlEncodedFormEntity(Arrays.asList(
+        new BasicNameValuePair("token", token),
+        new BasicNameValuePair("token_type_hint", "access_token")), StandardCharsets.UTF_8));
+
+    try (CloseableHttpResponse response = httpClient.execute(post)) {
+      int status = response.getStatusLine().getStatusCode();
+      String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+      if (status != 200) {
+        throw new IOException("Introspection endpoint returned " + status);
+      }
+
+      JsonNode json = MAPPER.readTree(body);
+      long now = clock.getAsLong();
+      if (json == null || !json.path("active").asBoolean(false)) {
+        return new Result(false, now + negativeTtlMillis, Long.MAX_VALUE);
+      }
+      long expiresAt = now + positiveTtlMillis;
+      JsonNode exp = json.get("exp");
+      if (exp != null && exp.isNumber()) {
+        expiresAt = Math.min(expiresAt, TimeUnit.SECONDS.toMillis(exp.asLong()));
+      }
+      return new Result(true, expiresAt, expiresAt - refreshAheadMillis);
+    }
+  }
+
+  /**
+   * Makes room in a full cache: drops expired results first, then arbitrary
+   * ones until the cache is down to 7/8 of its cap.
+   */
+  private void sweep(long now) {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      results.values().removeIf(result -> now >= result.expiresAt);
+      int target = maxEntries - maxEntries / 8;
+      Iterator<Map.Entry<String, Result>> entries = results.entrySet().iterator();
+      while (results.size() > target && entries.hasNext()) {
+        entries.next();
+        entries.remove();
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  /**
+   * Supports opaque tokens only, unless JWTs are introspected too. A JWT is
+   * checked locally; sending every one that fails that check to the
+   * endpoint would cost a round trip per forged or expired token.
+   *
+   * @param token The bearer token
+   * @return true if the token is opaque or JWTs are introspected
+   */
+  @Override
+  public boolean supports(String token) {
+    return introspectJwts || !JwtTokenValidator.isCompact(token);
+  }
+
+  /**
+   * Stops the refresh threads and closes the HTTP client.
+   */
+  @Override
+  public void close() {
+    refresher.shutdownNow();
+    try {
+      httpClient.close();
+    } catch (IOException e) {
+      logger.error("Error closing introspection HTTP client", e);
+    }
+  }
+
+  /**
+   * Gets the number of checks answered from the cache.
+   *
+   * @return cache hit count
+   */
+  public long getCacheHitCount() {
+    return cacheHits.sum();
+  }
+
+  /**
+   * Gets the number of calls made to the introspection endpoint.
+   *
+   * @return introspection count
+   */
+  public long getIntrospectionCount() {
+    return introspections.sum();
+  }
+
+  /**
+   * Gets the number of lookups that waited for another request's call.
+   *
+   * @return collapsed lookup count
+   */
+  public long getCollapsedCount() {
+    return collapsed.sum();
+  }
+
+  /**
+   * Gets the number of background refreshes started.
+   *
+   * @return refresh count
+   */
+  public long getRefreshCount() {
+    return refreshes.sum();
+  }
+
+  /**
+   * Gets the number of calls that failed to get an answer.
+   *
+   * @return failure count
+   */
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  /**
+   * Gets the number of cached results.
+   *
+   * @return cached result count
+   */
+  public int getCachedResultCount() {
+    return results.size();
+  }
+
+  /**
+   * Cached introspection result. Immutable apart from the flag that keeps
+   * more than one refresh from starting.
+   */
+  private static final class Result {
+    private final boolean active;
+    private final long expiresAt;
+    private final long refreshAt;
+    private final AtomicBoolean refreshing;
+
+    private Result(boolean active, long expiresAt, long refreshAt) {
+      this.active = active;
+      this.expiresAt = expiresAt;
+      this.refreshAt = refreshAt;
+      this.refreshing = new AtomicBoolean();
+    }
+  }
+
+
+  public static class Builder {
+    private final String endpoint;
+    private String clientId;
+    private String clientSecret;
+    private long positiveTtlMillis = 60000; // 1 minute
+    private long negativeTtlMillis = 10000; // 10 seconds
+    private long refreshAheadMillis = 10000; // 10 seconds
+    private int maxEntries = 10000;
+    private int maxConnections = 20;
+    private int refreshThreads = 2;
+    private int timeoutMillis = 2000;
+    private boolean introspectJwts = false;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Constructor - use {@link IntrospectionTokenValidator#builder(String)}.
+     *
+     * @param endpoint URL of the introspection endpoint
+     */
+    private Builder(String endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    /**
+     * Sets the credentials the gateway presents to the endpoint with HTTP Basic auth.
+     *
+     * @param clientId Client ID, or null to send no credentials
+     * @param clientSecret Client secret
+     * @return this Builder instance for method chaining
+     */
+    public Builder credentials(String clientId, String clientSecret) {
+      this.clientId = clientId;
+      this.clientSecret = clientSecret;
+      return this;
+    }
+
+    /**
+     * Sets how long an active token is trusted without asking again. The
+     * token's own "exp" shortens this if it comes first.
+     *
+     * @param ttl Time to live
+     * @param unit Unit of the time to live
+     * @return this Builder instance for method chaining
+     */
+    public Builder positiveTtl(long ttl, TimeUnit unit) {
+      this.positiveTtlMillis = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets how long an inactive or unknown token is rejected without asking
+     * again. Kept short, so a newly issued token is not refused for long.
+     *
+     * @param ttl Time to live
+     * @param unit Unit of the time to live
+     * @return this Builder instance for method chaining
+     */
+    public Builder negativeTtl(long ttl, TimeUnit unit) {
+      this.negativeTtlMillis = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets how long before expiry a cached active token is refreshed in the background.
+     *
+     * @param refreshAhead Time before expiry, or 0 to refresh only after expiry
+     * @param unit Unit of the time
+     * @return this Builder instance for method chaining
+     */
+    public Builder refreshAhead(long refreshAhead, TimeUnit unit) {
+      this.refreshAheadMillis = unit.toMillis(refreshAhead);
+      return this;
+    }
+
+    /**
+     * Sets how many results are cached.
+     *
+     * @param maxEntries Maximum cached results
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets the number of connections to the endpoint.
+     *
+     * @param maxConnections Maximum connections
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxConnections(int maxConnections) {
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    /**
+     * Sets the connect, lease and read timeout for calls to the endpoint,
+     * which is also the longest a collapsed lookup waits.
+     *
+     * @param timeoutMillis Timeout in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder timeout(int timeoutMillis) {
+      this.timeoutMillis = timeoutMillis;
+      return this;
+    }
+
+    /**
+     * Sets whether tokens that look like JWTs are sent to the endpoint when
+     * this validator is combined with others. Only needed when the issuer's
+     * JWT access tokens are not checked against a local JWKS.
+     *
+     * @param introspectJwts true to introspect JWTs as well as opaque tokens
+     * @return this Builder instance for method chaining
+     */
+    public Builder introspectJwts(boolean introspectJwts) {
+      this.introspectJwts = introspectJwts;
+      return this;
+    }
+
+    /**
+     * Sets the wall clock used for expiry.
+     *
+     * @param clock Current time in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Builds and returns the IntrospectionTokenValidator instance.
+     *
+     * @return A new IntrospectionTokenValidator
+     * @throws IllegalStateException if the endpoint is missing or a setting is out of range
+     */
+    public IntrospectionTokenValidator build() {
+      if (endpoint == null || endpoint.isEmpty()) {
+        throw new IllegalStateException("Introspection endpoint is required");
+      }
+      if (positiveTtlMillis <= 0 || negativeTtlMillis < 0 || refreshAheadMillis < 0
+          || maxEntries <= 0 || maxConnections <= 0 || timeoutMillis <= 0) {
+        throw new IllegalStateException("TTLs, sizes and timeout must be positive");
+      }
+      return new IntrospectionTokenValidator(this);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package edu.bu.met.cs665.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public final class JsonWebKeySet {
+  private static final Logger logger = LogManager.getLogger(JsonWebKeySet.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  /** Key ID used for a key that has none. */
+  static final String NO_KEY_ID = "";
+
+  private final Map<String, Key> keys;
+
+  /**
+   * Private constructor - instances are created through {@link #load(Path)},
+   * {@link #parse(String)} or {@link #of(Map)}.
+   *
+   * @param keys Keys by key ID
+   */
+  private JsonWebKeySet(Map<String, Key> keys) {
+    this.keys = Collections.unmodifiableMap(new HashMap<>(keys));
+  }
+
+  /**
+   * Reads a key set from a local JWKS file.
+   *
+   * @param file The JWKS file
+   * @return The key set
+   * @throws IOException if the file cannot be read or is not a JWKS document
+   */
+  public static JsonWebKeySet load(Path file) throws IOException {
+    return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a JWKS document. RSA public keys ("kty": "RSA") and shared
+   * secrets ("kty": "oct") are supported; other key types and keys marked
+   * for encryption only are skipped.
+   *
+   * @param json The JWKS document
+   * @return The key set
+   * @throws IOException if the document is not valid JSON or has no "keys" array
+   */
+  public static JsonWebKeySet parse(String json) throws IOException {
+    JsonNode root = MAPPER.readTree(json);
+    JsonNode list = root == null ? null : root.get("keys");
+    if (list == null || !list.isArray()) {
+      throw new IOException("JWKS document has no \"keys\" array");
+    }
+
+    Map<String, Key> keys = new HashMap<>();
+    for (JsonNode jwk : list) {
+      String kid = jwk.path("kid").asText(NO_KEY_ID);
+      if ("enc".equals(jwk.path("use").asText())) {
+        continue;
+      }
+      try {
+        Key key = toKey(jwk);
+        if (key == null) {
+          logger.warn("Skipping JWK {} with unsupported key type {}", kid, jwk.path("kty"));
+        } else {
+          keys.put(kid, key);
+        }
+      } catch (GeneralSecurityException | IllegalArgumentException e) {
+        logger.warn("Skipping malformed JWK {}", kid, e);
+      }
+    }
+    return new JsonWebKeySet(keys);
+  }
+
+  /**
+   * Wraps keys that are already loaded.
+   *
+   * @param keys Keys by key ID; use "" for a key without an ID
+   * @return The key set
+   */
+  public static JsonWebKeySet of(Map<String, Key> keys) {
+    return new JsonWebKeySet(keys);
+  }
+
+  private static Key toKey(JsonNode jwk) throws GeneralSecurityException {
+    Base64.Decoder decoder = Base64.getUrlDecoder();
+    switch (jwk.path("kty").asText()) {
+      case "RSA":
+        BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+        BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+        return KeyFactory.getInstance("RSA")
+            .generatePublic(new RSAPublicKeySpec(modulus, exponent));
+      case "oct":
+        return new SecretKeySpec(decoder.decode(jwk.path("k").asText()), "HMAC");
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Finds the key for a token. A token without a key ID matches the only
+   * key of a single-key set.
+   *
+   * @param kid The key ID from the token header, or null
+   * @return The key, or null if there is none
+   */
+  public Key getKey(String kid) {
+    if (kid != null) {
+      return keys.get(kid);
+    }
+    Key key = keys.get(NO_KEY_ID);
+    if (key == null && keys.size() == 1) {
+      key = keys.values().iterator().next();
+    }
+    return key;
+  }
+
+  /**
+   * Gets the number of keys.
+   *
+   * @return key count
+   */
+  public int size() {
+    return keys.size();
+  }
+}
@@ -0,0 +1,401 @@
+package edu.bu.met.cs665.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class JwtTokenValidator implements TokenValidator {
+  private static final Logger logger = LogManager.getLogger(JwtTokenValidator.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final JsonWebKeySet keys;
+  private final String issuer;
+  private final String audience;
+  private final long clockSkewMillis;
+  private final int maxCachedTokens;
+  private final LongSupplier clock;
+  private final ConcurrentMap<String, Long> verified;
+  private final AtomicBoolean sweeping;
+  private final LongAdder cacheHits;
+  private final LongAdder verifications;
+  private final LongAdder rejections;
+
+  /**
+   * Signature algorithms accepted in the token header. "none" is never accepted.
+   */
+  private enum Algorithm {
+    HS256("HmacSHA256", true),
+    HS384("HmacSHA384", true),
+    HS512("HmacSHA512", true),
+    RS256("SHA256withRSA", false),
+    RS384("SHA384withRSA", false),
+    RS512("SHA512withRSA", false);
+
+    private final String jcaName;
+    private final boolean hmac;
+
+    Algorithm(String jcaName, boolean hmac) {
+      this.jcaName = jcaName;
+      this.hmac = hmac;
+    }
+  }
+
+  /**
+   * Private constructor - use {@link #builder()}.
+   *
+   * @param builder The builder instance
+   */
+  private JwtTokenValidator(Builder builder) {
+    this.keys = builder.keys;
+    this.issuer = builder.issuer;
+    this.audience = builder.audience;
+    this.clockSkewMillis = builder.clockSkewMillis;
+    this.maxCachedTokens = builder.maxCachedTokens;
+    this.clock = builder.clock;
+    this.verified = new ConcurrentHashMap<>();
+    this.sweeping = new AtomicBoolean();
+    this.cacheHits = new LongAdder();
+    this.verifications = new LongAdder();
+    this.rejections = new LongAdder();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Validates a compact JWS token. A token that verified before is looked
+   * up in the cache and accepted without checking the signature again,
+   * until its "exp" claim is reached. Only valid tokens are cached, so a
+   * flood of garbage cannot fill the cache.
+   *
+   * @param token The bearer token
+   * @return true if the signature, expiry, issuer and audience all check out
+   */
+  @Override
+  public boolean isValid(String token) {
+    if (token == null || token.isEmpty()) {
+      return false;
+    }
+
+    long now = clock.getAsLong();
+    Long expiresAt = verified.get(token);
+    if (expiresAt != null) {
+      if (now < expiresAt) {
+        cacheHits.increment();
+        return true;
+      }
+      verified.remove(token, expiresAt);
+    }
+
+    verifications.increment();
+    long expiry = verify(token, now);
+    if (expiry < 0) {
+      rejections.increment();
+      return false;
+    }
+    if (maxCachedTokens > 0) {
+      if (verified.size() >= maxCachedTokens) {
+        sweep(now);
+      }
+      verified.put(token, expiry);
+    }
+    return true;
+  }
+
+  /**
+   * Supports only tokens in the compact form, three dot-separated parts.
+   *
+   * @param token The bearer token
+   * @return true if the token looks like a JWT
+   */
+  @Override
+  public boolean supports(String token) {
+    return isCompact(token);
+  }
+
+  /**
+   * Checks whether a token has the compact JWS form, header.payload.signature.
+   *
+   * @param token The bearer token
+   * @return true if the token has exactly two dots
+   */
+  static boolean isCompact(String token) {
+    int firstDot = token == null ? -1 : token.indexOf('.');
+    int lastDot = firstDot < 0 ? -1 : token.lastIndexOf('.');
+    return lastDot > firstDot && token.indexOf('.', firstDot + 1) == lastDot;
+  }
+
+  /**
+   * Checks the signature and claims of a token.
+   *
+   * @param token The compact JWS token
+   * @param now Current wall-clock time in milliseconds
+   * @return The expiry time in milliseconds, or -1 if the token is invalid
+   */
+  private long verify(String token, long now) {
+    if (!isCompact(token)) {
+      return -1;
+    }
+    int firstDot = token.indexOf('.');
+    int lastDot = token.lastIndexOf('.');
+
+    try {
+      Base64.Decoder decoder = Base64.getUrlDecoder();
+      JsonNode header = MAPPER.readTree(decoder.decode(token.substring(0, firstDot)));
+      Algorithm algorithm = Algorithm.valueOf(header.path("alg").asText());
+      Key key = keys.getKey(header.hasNonNull("kid") ? header.get("kid").asText() : null);
+      byte[] signingInput = token.substring(0, lastDot).getBytes(StandardCharsets.US_ASCII);
+      byte[] signature = decoder.decode(token.substring(lastDot + 1));
+
+      // The key type must match the algorithm, so a public key is never used as an HMAC secret
+      if (algorithm.hmac) {
+        if (!(key instanceof SecretKey)) {
+          return -1;
+        }
+        Mac mac = Mac.getInstance(algorithm.jcaName);
+        mac.init(key);
+        if (!MessageDigest.isEqual(mac.doFinal(signingInput), signature)) {
+          return -1;
+        }
+      } else {
+        if (!(key instanceof PublicKey)) {
+          return -1;
+        }
+        Signature verifier = Signature.getInstance(algorithm.jcaName);
+        verifier.initVerify((PublicKey) key);
+        verifier.update(signingInput);
+        if (!verifier.verify(signature)) {
+          return -1;
+        }
+      }
+
+      JsonNode claims = MAPPER.readTree(decoder.decode(token.substring(firstDot + 1, lastDot)));
+      return checkClaims(claims, now);
+    } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+      logger.debug("Rejected malformed token: {}", e.getMessage());
+      return -1;
+    }
+  }
+
+  private long checkClaims(JsonNode claims, long now) {
+    JsonNode exp = claims.get("exp");
+    if (exp == null || !exp.isNumber()) {
+      return -1;
+    }
+    long expiresAt = TimeUnit.SECONDS.toMillis(exp.asLong());
+    if (now >= expiresAt + clockSkewMillis) {
+      return -1;
+    }
+
+    JsonNode nbf = claims.get("nbf");
+    if (nbf != null && now + clockSkewMillis < TimeUnit.SECONDS.toMillis(nbf.asLong())) {
+      return -1;
+    }
+    if (issuer != null && !issuer.equals(claims.path("iss").asText(null))) {
+      return -1;
+    }
+    if (audience != null && !hasAudience(claims.get("aud"))) {
+      return -1;
+    }
+    return expiresAt;
+  }
+
+  private boolean hasAudience(JsonNode aud) {
+    if (aud == null) {
+      return false;
+    }
+    if (aud.isArray()) {
+      for (JsonNode entry : aud) {
+        if (audience.equals(entry.asText())) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return audience.equals(aud.asText());
+  }
+
+  /**
+   * Makes room in a full cache: drops expired tokens first, then arbitrary
+   * ones until the cache is down to 7/8 of its cap. Only one thread sweeps
+   * at a time; the others go ahead without waiting.
+   */
+  private void sweep(long now) {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      verified.values().removeIf(expiresAt -> now >= expiresAt);
+      int target = maxCachedTokens - maxCachedTokens / 8;
+      Iterator<Map.Entry<String, Long>> entries = verified.entrySet().iterator();
+      while (verified.size() > target && entries.hasNext()) {
+        entries.next();
+        entries.remove();
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  /**
+   * Gets the number of tokens accepted from the cache.
+   *
+   * @return cache hit count
+   */
+  public long getCacheHitCount() {
+    return cacheHits.sum();
+  }
+
+  /**
+   * Gets the number of full signature checks.
+   *
+   * @return verification count
+   */
+  public long getVerificationCount() {
+    return verifications.sum();
+  }
+
+  /**
+   * Gets the number of tokens rejected.
+   *
+   * @return rejection count
+   */
+  public long getRejectionCount() {
+    return rejections.sum();
+  }
+
+  /**
+   * Gets the number of verified tokens in the cache.
+   *
+   * @return cached token count
+   */
+  public int getCachedTokenCount() {
+    return verified.size();
+  }
+
+
+  public static class Builder {
+    private JsonWebKeySet keys;
+    private String issuer;
+    private String audience;
+    private long clockSkewMillis = 30000; // 30 seconds
+    private int maxCachedTokens = 10000;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Constructor - use {@link JwtTokenValidator#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Sets the keys that signatures are checked against.
+     *
+     * @param keys The key set, e.g. loaded from a JWKS file
+     * @return this Builder instance for method chaining
+     */
+    public Builder keys(JsonWebKeySet keys) {
+      this.keys = keys;
+      return this;
+    }
+
+    /**
+     * Requires the "iss" claim to match.
+     *
+     * @param issuer Expected issuer, or null to accept any
+     * @return this Builder instance for method chaining
+     */
+    public Builder issuer(String issuer) {
+      this.issuer = issuer;
+      return this;
+    }
+
+    /**
+     * Requires the "aud" claim to contain the given audience.
+     *
+     * @param audience Expected audience, or null to accept any
+     * @return this Builder instance for method chaining
+     */
+    public Builder audience(String audience) {
+      this.audience = audience;
+      return this;
+    }
+
+    /**
+     * Sets how far the gateway clock may be behind the issuer's when
+     * checking "exp" and "nbf".
+     *
+     * @param clockSkew Allowed skew
+     * @param unit Unit of the skew
+     * @return this Builder instance for method chaining
+     */
+    public Builder clockSkew(long clockSkew, TimeUnit unit) {
+      this.clockSkewMillis = unit.toMillis(clockSkew);
+      return this;
+    }
+
+    /**
+     * Sets how many verified tokens are remembered.
+     *
+     * @param maxCachedTokens Cache size, or 0 to verify every request
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxCachedTokens(int maxCachedTokens) {
+      this.maxCachedTokens = maxCachedTokens;
+      return this;
+    }
+
+    /**
+     * Sets the wall clock used for expiry.
+     *
+     * @param clock Current time in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Builds and returns the JwtTokenValidator instance.
+     *
+     * @return A new JwtTokenValidator
+     * @throws IllegalStateException if no keys are set or a limit is negative
+     */
+    public JwtTokenValidator build() {
+      if (keys == null || keys.size() == 0) {
+        throw new IllegalStateException("At least one key is required");
+      }
+      if (clockSkewMillis < 0 || maxCachedTokens < 0) {
+        throw new IllegalStateException("clockSkew and maxCachedTokens must not be negative");
+      }
+      return new JwtTokenValidator(this);
+    }
+  }
+}
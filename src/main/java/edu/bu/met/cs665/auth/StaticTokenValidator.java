@@ -0,0 +1,58 @@
+package edu.bu.met.cs665.auth;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+public class StaticTokenValidator implements TokenValidator {
+  private final Set<String> validTokens;
+
+  /**
+   * Creates a validator that accepts a fixed list of opaque tokens.
+   *
+   * @param tokens The tokens to accept
+   */
+  public StaticTokenValidator(String... tokens) {
+    this.validTokens = ConcurrentHashMap.newKeySet();
+    this.validTokens.addAll(Arrays.asList(tokens));
+  }
+
+  /**
+   * Adds a token. Safe to call while requests are being validated.
+   *
+   * @param token The token to accept
+   */
+  public void addToken(String token) {
+    validTokens.add(token);
+  }
+
+  /**
+   * Removes a token.
+   *
+   * @param token The token to stop accepting
+   */
+  public void removeToken(String token) {
+    validTokens.remove(token);
+  }
+
+  /**
+   * Checks the token against the list.
+   *
+   * @param token The bearer token
+   * @return true if the token is in the list
+   */
+  @Override
+  public boolean isValid(String token) {
+    return token != null && validTokens.contains(token);
+  }
+
+  /**
+   * Gets the number of accepted tokens.
+   *
+   * @return token count
+   */
+  public int size() {
+    return validTokens.size();
+  }
+}
@@ -0,0 +1,27 @@
+package edu.bu.met.cs665.auth;
+
+
+public interface TokenValidator {
+
+  /**
+   * Checks whether a bearer token grants access. Implementations must be
+   * safe to call from many request threads at once.
+   *
+   * @param token The token taken from the Authorization header
+   * @return true if the token is valid
+   */
+  boolean isValid(String token);
+
+  /**
+   * Checks whether a token has a shape this validator can vouch for.
+   * CompositeTokenValidator only asks the validators that support a token,
+   * so, for example, a JWT that failed its signature check is not sent on
+   * to a remote endpoint as well.
+   *
+   * @param token The token taken from the Authorization header
+   * @return true if isValid may accept the token; true unless overridden
+   */
+  default boolean supports(String token) {
+    return true;
+  }
+}
@@ -0,0 +1,326 @@
+package edu.bu.met.cs665.balancer;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class ConsistentHashBalancer implements LoadBalancer {
+  /*
+   * Consistent hashing with bounded loads. Every target owns
+   * virtualNodes x weight points on a 64-bit ring, placed by hashing its
+   * URL and the point number, so the ring depends only on the set of
+   * targets: when one joins or leaves, only the keys on its arcs move.
+   * A key is hashed onto the ring and served by the first point clockwise
+   * whose target is under its capacity, loadFactor times its weighted
+   * share of the requests in flight. A hot key therefore spills to the
+   * next target on the ring instead of overloading its own, and moves
+   * back once the load drops.
+   *
+   * The ring is two sorted arrays built once per target list. A lookup
+   * hashes the key's chars in place and binary-searches the array, so it
+   * allocates nothing.
+   */
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final String header;
+  private final String lowerCaseHeader;
+  private final int virtualNodes;
+  private final double loadFactor;
+  private final LeastOutstandingBalancer fallback;
+  private final LongAdder spillCount;
+  private final LongAdder unkeyedCount;
+  private volatile Ring ring;
+
+  /**
+   * Private constructor - use {@link #builder()}.
+   *
+   * @param builder The builder instance
+   */
+  private ConsistentHashBalancer(Builder builder) {
+    this.header = builder.header;
+    this.lowerCaseHeader = header == null ? null : header.toLowerCase(Locale.ROOT);
+    this.virtualNodes = builder.virtualNodes;
+    this.loadFactor = builder.loadFactor;
+    this.fallback = new LeastOutstandingBalancer();
+    this.spillCount = new LongAdder();
+    this.unkeyedCount = new LongAdder();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Picks the target owning the request's key, or the next one on the ring
+   * if that target is over its bound. Requests without a key go to the
+   * least loaded target.
+   *
+   * @param request The request being forwarded
+   * @param upstreams The route's targets
+   * @return the chosen target
+   */
+  @Override
+  public Upstream choose(GatewayRequest request, List<Upstream> upstreams) {
+    String key = key(request);
+    if (key == null || key.isEmpty()) {
+      unkeyedCount.increment();
+      return fallback.choose(request, upstreams);
+    }
+    Ring current = ring(upstreams);
+    return current.lookup(hash(key), upstreams);
+  }
+
+  /**
+   * Gets the target owning a key when no target is over its bound, i.e.
+   * where the key goes on an idle route.
+   *
+   * @param key The client ID or header value
+   * @param upstreams The route's targets
+   * @return the key's home target
+   */
+  public Upstream owner(String key, List<Upstream> upstreams) {
+    Ring current = ring(upstreams);
+    return upstreams.get(current.owners[current.indexOf(hash(key))]);
+  }
+
+  private String key(GatewayRequest request) {
+    if (header == null) {
+      return request.getClientId();
+    }
+    Map<String, String> headers = request.getHeaders();
+    String value = headers.get(header);
+    if (value == null) {
+      value = headers.get(lowerCaseHeader);
+    }
+    if (value == null) {
+      for (Map.Entry<String, String> entry : headers.entrySet()) {
+        if (header.equalsIgnoreCase(entry.getKey())) {
+          return entry.getValue();
+        }
+      }
+    }
+    return value;
+  }
+
+  private Ring ring(List<Upstream> upstreams) {
+    Ring current = ring;
+    if (current == null || current.upstreams != upstreams) {
+      current = new Ring(upstreams, virtualNodes);
+      ring = current;
+    }
+    return current;
+  }
+
+  /**
+   * Hashes a key with 64-bit FNV-1a over its chars, then spreads the bits
+   * with the MurmurHash3 finalizer so similar keys land far apart.
+   *
+   * @param key The key
+   * @return the ring position
+   */
+  static long hash(CharSequence key) {
+    long h = FNV_OFFSET;
+    for (int i = 0; i < key.length(); i++) {
+      h = (h ^ key.charAt(i)) * FNV_PRIME;
+    }
+    return mix(h);
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Gets the number of requests served by a target other than their key's
+   * home because the home was over its bound.
+   *
+   * @return spill count
+   */
+  public long getSpillCount() {
+    return spillCount.sum();
+  }
+
+  /**
+   * Gets the number of requests that had no key and were balanced by load.
+   *
+   * @return unkeyed count
+   */
+  public long getUnkeyedCount() {
+    return unkeyedCount.sum();
+  }
+
+  /**
+   * Gets the header the key is read from.
+   *
+   * @return the header name, or null if the client ID is the key
+   */
+  public String getHeader() {
+    return header;
+  }
+
+  /**
+   * Sorted ring points for one target list.
+   */
+  private final class Ring {
+    private final List<Upstream> upstreams;
+    private final long[] points;
+    private final int[] owners;
+    private final long totalWeight;
+
+    private Ring(List<Upstream> upstreams, int virtualNodes) {
+      this.upstreams = upstreams;
+      int size = 0;
+      long weights = 0;
+      for (Upstream upstream : upstreams) {
+        size += virtualNodes * upstream.getWeight();
+        weights += upstream.getWeight();
+      }
+      this.totalWeight = weights;
+
+      long[] hashes = new long[size];
+      Integer[] order = new Integer[size];
+      int[] targets = new int[size];
+      int at = 0;
+      StringBuilder node = new StringBuilder();
+      for (int t = 0; t < upstreams.size(); t++) {
+        String url = upstreams.get(t).getUrl();
+        int count = virtualNodes * upstreams.get(t).getWeight();
+        for (int v = 0; v < count; v++) {
+          node.setLength(0);
+          node.append(url).append('#').append(v);
+          hashes[at] = hash(node);
+          targets[at] = t;
+          order[at] = at;
+          at++;
+        }
+      }
+      // Ties are broken by URL, so the ring does not depend on the list order
+      Arrays.sort(order, (a, b) -> {
+        int byHash = Long.compare(hashes[a], hashes[b]);
+        return byHash != 0 ? byHash : upstreams.get(targets[a]).getUrl()
+            .compareTo(upstreams.get(targets[b]).getUrl());
+      });
+
+      this.points = new long[size];
+      this.owners = new int[size];
+      for (int i = 0; i < size; i++) {
+        points[i] = hashes[order[i]];
+        owners[i] = targets[order[i]];
+      }
+    }
+
+    /**
+     * Finds the first point at or after the hash, wrapping past the end.
+     */
+    private int indexOf(long hash) {
+      int index = Arrays.binarySearch(points, hash);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      return index == points.length ? 0 : index;
+    }
+
+    private Upstream lookup(long hash, List<Upstream> upstreams) {
+      long inFlight = 0;
+      for (int i = 0; i < upstreams.size(); i++) {
+        inFlight += upstreams.get(i).getInFlight();
+      }
+      // Per unit of weight; with loadFactor >= 1 some target is always under its bound
+      double bound = loadFactor * (inFlight + 1) / totalWeight;
+
+      int start = indexOf(hash);
+      Upstream home = upstreams.get(owners[start]);
+      for (int i = 0; i < points.length; i++) {
+        Upstream candidate = upstreams.get(owners[(start + i) % points.length]);
+        if (candidate.getInFlight() + 1 <= Math.ceil(bound * candidate.getWeight())) {
+          if (candidate != home) {
+            spillCount.increment();
+          }
+          return candidate;
+        }
+      }
+      return home;
+    }
+  }
+
+
+  public static class Builder {
+    private String header;
+    private int virtualNodes = 160;
+    private double loadFactor = 1.25;
+
+    /**
+     * Constructor - use {@link ConsistentHashBalancer#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Reads the key from a request header instead of the client ID, e.g. a
+     * user or tenant ID. Requests without the header are balanced by load.
+     *
+     * @param header Header name, matched ignoring case
+     * @return this Builder instance for method chaining
+     */
+    public Builder header(String header) {
+      this.header = header;
+      return this;
+    }
+
+    /**
+     * Sets the ring points per unit of weight. More points spread keys more
+     * evenly at the cost of a larger ring.
+     *
+     * @param virtualNodes Points per unit of weight
+     * @return this Builder instance for method chaining
+     */
+    public Builder virtualNodes(int virtualNodes) {
+      this.virtualNodes = virtualNodes;
+      return this;
+    }
+
+    /**
+     * Sets how far above its share of the in-flight requests a target may
+     * go before its keys spill to the next target. Lower keeps the load
+     * more even; higher keeps more keys at home.
+     *
+     * @param loadFactor Bound as a multiple of the average load, at least 1
+     * @return this Builder instance for method chaining
+     */
+    public Builder loadFactor(double loadFactor) {
+      this.loadFactor = loadFactor;
+      return this;
+    }
+
+    /**
+     * Builds and returns the ConsistentHashBalancer instance.
+     *
+     * @return A new ConsistentHashBalancer
+     * @throws IllegalStateException if a setting is out of range
+     */
+    public ConsistentHashBalancer build() {
+      if (virtualNodes <= 0) {
+        throw new IllegalStateException("Virtual nodes must be positive");
+      }
+      if (!(loadFactor >= 1)) {
+        throw new IllegalStateException("Load factor must be at least 1");
+      }
+      return new ConsistentHashBalancer(this);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package edu.bu.met.cs665.balancer;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class LeastOutstandingBalancer implements LoadBalancer {
+  private final AtomicInteger offset = new AtomicInteger();
+
+  /**
+   * Picks the target with the fewest in-flight requests per unit of weight.
+   * The scan starts at a rotating offset, so ties do not all land on the
+   * first target when every count is 0.
+   *
+   * @param request The request being forwarded
+   * @param upstreams The route's targets
+   * @return the least loaded target
+   */
+  @Override
+  public Upstream choose(GatewayRequest request, List<Upstream> upstreams) {
+    int size = upstreams.size();
+    int start = (offset.getAndIncrement() & Integer.MAX_VALUE) % size;
+    Upstream best = upstreams.get(start);
+    long bestLoad = best.getInFlight() + 1L;
+    for (int i = 1; i < size; i++) {
+      Upstream candidate = upstreams.get((start + i) % size);
+      long load = candidate.getInFlight() + 1L;
+      // load / weight < bestLoad / bestWeight, without division
+      if (load * best.getWeight() < bestLoad * candidate.getWeight()) {
+        best = candidate;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,20 @@
+package edu.bu.met.cs665.balancer;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.List;
+
+
+public interface LoadBalancer {
+
+  /**
+   * Picks the target for a request. Called on the forwarding path by many
+   * threads at once, so implementations must be thread-safe and should not
+   * lock or allocate. A route always passes the same list, which lets an
+   * implementation cache what it derives from it.
+   *
+   * @param request The request being forwarded
+   * @param upstreams The route's targets, never empty
+   * @return the chosen target, one of upstreams
+   */
+  Upstream choose(GatewayRequest request, List<Upstream> upstreams);
+}
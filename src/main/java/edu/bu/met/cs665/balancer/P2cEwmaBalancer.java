@@ -0,0 +1,42 @@
+package edu.bu.met.cs665.balancer;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+public class P2cEwmaBalancer implements LoadBalancer {
+
+  /**
+   * Picks two distinct targets at random and keeps the cheaper one. The
+   * cost is the latency estimate times the in-flight requests plus one,
+   * divided by the weight, so a slow target and a busy one both lose.
+   * Comparing two random targets instead of all of them avoids every
+   * gateway thread piling onto the same best target between updates.
+   *
+   * @param request The request being forwarded
+   * @param upstreams The route's targets
+   * @return the cheaper of two random targets
+   */
+  @Override
+  public Upstream choose(GatewayRequest request, List<Upstream> upstreams) {
+    int size = upstreams.size();
+    if (size == 1) {
+      return upstreams.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    Upstream a = upstreams.get(first);
+    Upstream b = upstreams.get(second);
+    return cost(b) < cost(a) ? b : a;
+  }
+
+  private static double cost(Upstream upstream) {
+    // Plus one, so in-flight requests still count before the first answer
+    return (upstream.getEwmaNanos() + 1) * (upstream.getInFlight() + 1) / upstream.getWeight();
+  }
+}
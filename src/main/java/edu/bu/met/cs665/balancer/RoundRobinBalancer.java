@@ -0,0 +1,82 @@
+package edu.bu.met.cs665.balancer;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class RoundRobinBalancer implements LoadBalancer {
+  /*
+   * Weighted round-robin without a lock. The order is worked out once per
+   * target list with nginx's smooth weighted round-robin, which spreads a
+   * heavy target's turns out (weights 3:2 give A B A B A rather than
+   * A A A B B), and stored as an array of indexes. Each pick is then one
+   * getAndIncrement on a shared counter and an array read.
+   */
+  private final AtomicLong counter = new AtomicLong();
+  private volatile Schedule schedule;
+
+  /**
+   * Takes the next target in the weighted order.
+   *
+   * @param request The request being forwarded
+   * @param upstreams The route's targets
+   * @return the next target
+   */
+  @Override
+  public Upstream choose(GatewayRequest request, List<Upstream> upstreams) {
+    Schedule current = schedule;
+    if (current == null || current.upstreams != upstreams) {
+      current = new Schedule(upstreams);
+      schedule = current;
+    }
+    int[] order = current.order;
+    int slot = (int) Long.remainderUnsigned(counter.getAndIncrement(), order.length);
+    return upstreams.get(order[slot]);
+  }
+
+  /**
+   * Order of turns for one target list.
+   */
+  private static final class Schedule {
+    private final List<Upstream> upstreams;
+    private final int[] order;
+
+    private Schedule(List<Upstream> upstreams) {
+      this.upstreams = upstreams;
+      int divisor = 0;
+      for (Upstream upstream : upstreams) {
+        divisor = gcd(divisor, upstream.getWeight());
+      }
+      int[] weights = new int[upstreams.size()];
+      int total = 0;
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = upstreams.get(i).getWeight() / divisor;
+        total += weights[i];
+      }
+
+      this.order = new int[total];
+      int[] current = new int[weights.length];
+      for (int turn = 0; turn < total; turn++) {
+        int best = 0;
+        for (int i = 0; i < weights.length; i++) {
+          current[i] += weights[i];
+          if (current[i] > current[best]) {
+            best = i;
+          }
+        }
+        current[best] -= total;
+        order[turn] = best;
+      }
+    }
+
+    private static int gcd(int a, int b) {
+      while (b != 0) {
+        int t = a % b;
+        a = b;
+        b = t;
+      }
+      return a;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package edu.bu.met.cs665.balancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class Upstream {
+  /*
+   * Load state read by the balancers on every request. The in-flight count
+   * and the latency estimate are plain atomics updated on the forwarding
+   * path, so picking a target never takes a lock. The estimate is an
+   * exponentially weighted moving average stored as double bits in an
+   * AtomicLong and updated with a CAS loop; an upstream that has not
+   * answered yet estimates 0, so new targets are tried first. As in
+   * Finagle's and Linkerd's peak EWMA, the estimate also decays toward 0
+   * with the time since it was last updated. Otherwise a target penalised
+   * for a failure would never be picked again, and so never get the fast
+   * answers that would bring its estimate back down. The update time is a
+   * separate atomic; a race between two updates only ages the estimate by
+   * the gap between them.
+   */
+  static final double EWMA_WEIGHT = 0.2;
+  static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final String url;
+  private final int weight;
+  private final AtomicInteger inFlight;
+  private final AtomicLong ewmaBits;
+  private final AtomicLong updatedNanos;
+  private final LongAdder requestCount;
+  private final LongAdder failureCount;
+
+  /**
+   * Creates a target.
+   *
+   * @param url The backend URL requests are forwarded to
+   * @param weight Relative share of the traffic, at least 1
+   */
+  public Upstream(String url, int weight) {
+    if (url == null || url.isEmpty()) {
+      throw new IllegalArgumentException("Upstream URL must be set");
+    }
+    if (weight <= 0) {
+      throw new IllegalArgumentException("Upstream weight must be positive: " + weight);
+    }
+    this.url = url;
+    this.weight = weight;
+    this.inFlight = new AtomicInteger();
+    this.ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0));
+    this.updatedNanos = new AtomicLong(System.nanoTime());
+    this.requestCount = new LongAdder();
+    this.failureCount = new LongAdder();
+  }
+
+  /**
+   * Marks a request as sent to this target.
+   *
+   * @return the start time to pass to {@link #finish(long)} or {@link #fail(long, long)}
+   */
+  public long begin() {
+    inFlight.incrementAndGet();
+    requestCount.increment();
+    return System.nanoTime();
+  }
+
+  /**
+   * Marks a request as answered and folds its latency into the estimate.
+   *
+   * @param startNanos The value returned by {@link #begin()}
+   */
+  public void finish(long startNanos) {
+    inFlight.decrementAndGet();
+    observe(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Marks a request as failed. A refused connection fails fast, so the
+   * latency recorded is at least the penalty; otherwise a dead target would
+   * look like the fastest one.
+   *
+   * @param startNanos The value returned by {@link #begin()}
+   * @param penaltyNanos Smallest latency to record, e.g. the route timeout
+   */
+  public void fail(long startNanos, long penaltyNanos) {
+    inFlight.decrementAndGet();
+    failureCount.increment();
+    observe(Math.max(System.nanoTime() - startNanos, penaltyNanos));
+  }
+
+  /**
+   * Folds a latency sample into the moving average.
+   *
+   * @param nanos Latency in nanoseconds
+   */
+  void observe(long nanos) {
+    observe(nanos, System.nanoTime());
+  }
+
+  /**
+   * Decays the moving average to the given time and folds a sample into it.
+   *
+   * @param nanos Latency in nanoseconds
+   * @param nowNanos Current System.nanoTime value
+   */
+  void observe(long nanos, long nowNanos) {
+    long updated = updatedNanos.get();
+    long current;
+    long next;
+    do {
+      current = ewmaBits.get();
+      double ewma = decay(Double.longBitsToDouble(current), nowNanos - updated);
+      next = Double.doubleToRawLongBits(ewma + EWMA_WEIGHT * (nanos - ewma));
+    } while (!ewmaBits.compareAndSet(current, next));
+    updatedNanos.accumulateAndGet(nowNanos, Math::max);
+  }
+
+  private static double decay(double ewma, long elapsedNanos) {
+    return elapsedNanos <= 0 ? ewma : ewma * Math.exp(-(double) elapsedNanos / DECAY_NANOS);
+  }
+
+  /**
+   * Gets the backend URL.
+   *
+   * @return the URL
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Gets the target's relative share of the traffic.
+   *
+   * @return the weight
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * Gets the number of requests sent and not yet answered.
+   *
+   * @return in-flight requests
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Gets the moving average of the latency, decayed by the time since it
+   * was last updated.
+   *
+   * @return latency estimate in nanoseconds, 0 before the first answer
+   */
+  public double getEwmaNanos() {
+    return getEwmaNanos(System.nanoTime());
+  }
+
+  /**
+   * Gets the moving average of the latency as of the given time.
+   *
+   * @param nowNanos Current System.nanoTime value
+   * @return latency estimate in nanoseconds
+   */
+  double getEwmaNanos(long nowNanos) {
+    return decay(Double.longBitsToDouble(ewmaBits.get()), nowNanos - updatedNanos.get());
+  }
+
+  /**
+   * Gets the number of requests sent to this target.
+   *
+   * @return request count
+   */
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  /**
+   * Gets the number of requests to this target that failed.
+   *
+   * @return failure count
+   */
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "Upstream{"
+        + "url='" + url + '\''
+        + ", weight=" + weight
+        + ", inFlight=" + inFlight.get()
+        + '}';
+  }
+}
@@ -0,0 +1,154 @@
+package edu.bu.met.cs665.cache;
+
+import edu.bu.met.cs665.auth.ApiKeyStore;
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+public final class CacheKey {
+  private final String method;
+  private final String path;
+  private final String[] query;
+  private final String[] vary;
+  private final boolean credentialed;
+  private final int hash;
+
+  /**
+   * Private constructor - instances are created through {@link #of(GatewayRequest, List)}.
+   */
+  private CacheKey(String method, String path, String[] query, String[] vary,
+      boolean credentialed) {
+    this.method = method;
+    this.path = path;
+    this.query = query;
+    this.vary = vary;
+    this.credentialed = credentialed;
+    int h = method.hashCode();
+    h = 31 * h + path.hashCode();
+    h = 31 * h + Arrays.hashCode(query);
+    h = 31 * h + Arrays.hashCode(vary);
+    this.hash = h;
+  }
+
+  /**
+   * Builds the key for a request. Query parameters are sorted by name, so
+   * their order in the URL does not matter, and the values of the route's
+   * Vary headers are looked up case-insensitively.
+   *
+   * @param request The gateway request
+   * @param varyHeaders Request headers whose values select a different response
+   * @return The cache key
+   */
+  public static CacheKey of(GatewayRequest request, List<String> varyHeaders) {
+    String[] query = new String[0];
+    Map<String, String> params = request.getQueryParams();
+    if (params != null && !params.isEmpty()) {
+      Map<String, String> sorted = new TreeMap<>(params);
+      query = new String[sorted.size() * 2];
+      int i = 0;
+      for (Map.Entry<String, String> param : sorted.entrySet()) {
+        query[i++] = param.getKey();
+        query[i++] = param.getValue();
+      }
+    }
+
+    String[] vary = new String[varyHeaders.size()];
+    boolean credentialed = false;
+    for (int i = 0; i < vary.length; i++) {
+      String value = CachePolicy.header(request.getHeaders(), varyHeaders.get(i));
+      if (value != null && CachePolicy.AUTHORIZATION.equalsIgnoreCase(varyHeaders.get(i))) {
+        // Keyed on a digest, so the credential itself is never kept or written out
+        value = ApiKeyStore.digestHex(value);
+        credentialed = true;
+      }
+      vary[i] = value;
+    }
+
+    return new CacheKey(request.getMethod().toUpperCase(), request.getPath(), query, vary,
+        credentialed);
+  }
+
+  /**
+   * Indicates if the key includes the request's Authorization header, i.e.
+   * the entry belongs to one credential.
+   *
+   * @return true if the key is per credential
+   */
+  public boolean isCredentialed() {
+    return credentialed;
+  }
+
+  /**
+   * Compares method, path, query parameters and Vary header values.
+   *
+   * @param other The object to compare with
+   * @return true if both keys select the same cached response
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof CacheKey)) {
+      return false;
+    }
+    CacheKey that = (CacheKey) other;
+    return hash == that.hash
+        && method.equals(that.method)
+        && path.equals(that.path)
+        && Arrays.equals(query, that.query)
+        && Arrays.equals(vary, that.vary);
+  }
+
+  /**
+   * Returns the hash code computed when the key was built.
+   *
+   * @return hash code
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * Returns a string that identifies the key across restarts. Every part is
+   * prefixed with its length, so no character inside a part can be taken for
+   * a separator; a missing Vary header is written as "-".
+   *
+   * @return The external form of the key
+   */
+  public String toExternalForm() {
+    StringBuilder out = new StringBuilder(64 + path.length());
+    appendPart(out, method);
+    appendPart(out, path);
+    for (String part : query) {
+      appendPart(out, part);
+    }
+    out.append('|');
+    for (String part : vary) {
+      appendPart(out, part);
+    }
+    return out.toString();
+  }
+
+  private static void appendPart(StringBuilder out, String part) {
+    if (part == null) {
+      out.append('-');
+      return;
+    }
+    out.append(part.length()).append(':').append(part);
+  }
+
+  /**
+   * Returns a readable form of the key for logging.
+   *
+   * @return key description
+   */
+  @Override
+  public String toString() {
+    return method + " " + path + " " + Arrays.toString(query) + " " + Arrays.toString(vary);
+  }
+}
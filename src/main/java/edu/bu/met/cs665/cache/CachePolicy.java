@@ -0,0 +1,197 @@
+package edu.bu.met.cs665.cache;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.http.client.utils.DateUtils;
+
+
+public final class CachePolicy {
+  static final String AUTHORIZATION = "Authorization";
+  static final String COOKIE = "Cookie";
+
+  /**
+   * Private constructor - static helpers only.
+   */
+  private CachePolicy() {
+  }
+
+  /**
+   * Works out how long an upstream response may be served from the cache,
+   * following its Cache-Control and Expires headers. s-maxage wins over
+   * max-age, which wins over Expires. Without any of them the route's
+   * default TTL applies, and the upstream Age is taken off max-age and
+   * s-maxage. Responses marked no-store, no-cache or private, and responses
+   * that vary on headers the route does not key on, are not cached.
+   * A response to a request with Authorization is only shared if it says
+   * public, s-maxage or must-revalidate (RFC 9111, section 3.5), unless the
+   * route keys on Authorization, which gives each credential its own entry.
+   *
+   * @param statusCode Upstream status code
+   * @param headers Upstream response headers
+   * @param requestHeaders Headers of the request the response answers
+   * @param varyHeaders Request headers the route's cache keys on
+   * @param defaultTtlMillis TTL for responses without freshness headers
+   * @param nowMillis Current wall-clock time
+   * @return Time to live in milliseconds, or 0 if the response must not be cached
+   */
+  public static long ttlMillis(int statusCode, Map<String, String> headers,
+      Map<String, String> requestHeaders, Collection<String> varyHeaders,
+      long defaultTtlMillis, long nowMillis) {
+    if (statusCode != 200) {
+      return 0;
+    }
+    boolean sharedCredential = header(requestHeaders, AUTHORIZATION) != null
+        && !containsIgnoreCase(varyHeaders, AUTHORIZATION);
+
+    String vary = header(headers, "Vary");
+    if (vary != null) {
+      for (String name : vary.split(",")) {
+        String trimmed = name.trim();
+        if (!trimmed.isEmpty() && !containsIgnoreCase(varyHeaders, trimmed)) {
+          return 0;
+        }
+      }
+    }
+
+    String cacheControl = header(headers, "Cache-Control");
+    long maxAge = -1;
+    long sharedMaxAge = -1;
+    boolean explicitlyShared = false;
+    if (cacheControl != null) {
+      for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+        String d = directive.trim();
+        if (d.equals("no-store") || d.equals("no-cache") || d.equals("private")) {
+          return 0;
+        }
+        if (d.startsWith("s-maxage=")) {
+          sharedMaxAge = seconds(d.substring("s-maxage=".length()));
+          explicitlyShared = true;
+        } else if (d.startsWith("max-age=")) {
+          maxAge = seconds(d.substring("max-age=".length()));
+        } else if (d.equals("public") || d.equals("must-revalidate")) {
+          explicitlyShared = true;
+        }
+      }
+    }
+    if (sharedCredential && !explicitlyShared) {
+      return 0;
+    }
+
+    // The response may already have spent part of its lifetime in caches upstream
+    String age = header(headers, "Age");
+    long ageSeconds = age == null ? 0 : Math.max(0, seconds(age));
+    if (sharedMaxAge >= 0) {
+      return Math.max(0, sharedMaxAge - ageSeconds) * 1000;
+    }
+    if (maxAge >= 0) {
+      return Math.max(0, maxAge - ageSeconds) * 1000;
+    }
+
+    String expires = header(headers, "Expires");
+    if (expires != null) {
+      Date expiresAt = DateUtils.parseDate(expires);
+      return expiresAt == null ? 0 : Math.max(0, expiresAt.getTime() - nowMillis);
+    }
+
+    return Math.max(0, defaultTtlMillis);
+  }
+
+  /**
+   * Checks whether a request may share an upstream call with identical
+   * concurrent ones. A request carrying credentials or cookies may get a
+   * personalised response, so it is only coalesced if the route keys on
+   * those headers, which gives each caller its own flight.
+   *
+   * @param requestHeaders Request headers
+   * @param varyHeaders Request headers the route keys on
+   * @return true if the request may be coalesced
+   */
+  public static boolean canCoalesce(Map<String, String> requestHeaders,
+      Collection<String> varyHeaders) {
+    return (header(requestHeaders, AUTHORIZATION) == null
+        || containsIgnoreCase(varyHeaders, AUTHORIZATION))
+        && (header(requestHeaders, COOKIE) == null || containsIgnoreCase(varyHeaders, COOKIE));
+  }
+
+  /**
+   * Checks whether a response may be handed to callers other than the one
+   * whose request produced it.
+   *
+   * @param headers Upstream response headers
+   * @return false if Cache-Control says private or no-store
+   */
+  public static boolean isShareable(Map<String, String> headers) {
+    String cacheControl = header(headers, "Cache-Control");
+    if (cacheControl == null) {
+      return true;
+    }
+    for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+      String d = directive.trim();
+      if (d.equals("private") || d.startsWith("private=") || d.equals("no-store")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the client asked to bypass the cache for this request.
+   *
+   * @param requestHeaders Request headers
+   * @return true for Cache-Control no-cache or no-store, or Pragma no-cache
+   */
+  public static boolean bypassLookup(Map<String, String> requestHeaders) {
+    String cacheControl = header(requestHeaders, "Cache-Control");
+    if (cacheControl != null) {
+      String lower = cacheControl.toLowerCase(Locale.ROOT);
+      if (lower.contains("no-cache") || lower.contains("no-store")) {
+        return true;
+      }
+    }
+    String pragma = header(requestHeaders, "Pragma");
+    return pragma != null && pragma.toLowerCase(Locale.ROOT).contains("no-cache");
+  }
+
+  /**
+   * Looks up a header case-insensitively. Spring lower-cases request
+   * header names, backends do not.
+   *
+   * @param headers Header map, may be null
+   * @param name Header name
+   * @return The header value, or null
+   */
+  public static String header(Map<String, String> headers, String name) {
+    if (headers == null) {
+      return null;
+    }
+    String value = headers.get(name);
+    if (value != null) {
+      return value;
+    }
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static boolean containsIgnoreCase(Collection<String> names, String name) {
+    for (String candidate : names) {
+      if (candidate.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long seconds(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
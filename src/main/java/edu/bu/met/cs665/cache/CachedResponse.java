@@ -0,0 +1,121 @@
+package edu.bu.met.cs665.cache;
+
+import edu.bu.met.cs665.model.GatewayResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public final class CachedResponse {
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final int statusCode;
+  private final Map<String, String> headers;
+  private final String body;
+  private final long expiresAtMillis;
+  private final int sizeBytes;
+
+  /**
+   * Creates an immutable snapshot of an upstream response.
+   *
+   * @param statusCode Status code
+   * @param headers Response headers, copied
+   * @param body Response body
+   * @param expiresAtMillis Wall-clock time after which the entry is stale
+   */
+  public CachedResponse(int statusCode, Map<String, String> headers, String body,
+      long expiresAtMillis) {
+    this.statusCode = statusCode;
+    this.headers = Collections.unmodifiableMap(new HashMap<>(headers));
+    this.body = body == null ? "" : body;
+    this.expiresAtMillis = expiresAtMillis;
+
+    long size = ENTRY_OVERHEAD + 2L * this.body.length();
+    for (Map.Entry<String, String> header : this.headers.entrySet()) {
+      size += 2L * (header.getKey().length() + header.getValue().length()) + 64;
+    }
+    this.sizeBytes = (int) Math.min(Integer.MAX_VALUE, size);
+  }
+
+  /**
+   * Snapshots a buffered gateway response before the post-filters touch it.
+   *
+   * @param response The upstream response
+   * @param ttlMillis Time to live in milliseconds
+   * @param nowMillis Current wall-clock time
+   * @return The cached response
+   */
+  public static CachedResponse of(GatewayResponse response, long ttlMillis, long nowMillis) {
+    return new CachedResponse(response.getStatusCode(), response.getHeaders(),
+        response.getBody(), nowMillis + ttlMillis);
+  }
+
+  /**
+   * Creates a fresh, mutable response from the snapshot, so each request
+   * can run its own post-filters over it.
+   *
+   * @return A new gateway response
+   */
+  public GatewayResponse toResponse() {
+    GatewayResponse response = new GatewayResponse();
+    response.setStatusCode(statusCode);
+    response.setHeaders(new HashMap<>(headers));
+    response.setBody(body);
+    return response;
+  }
+
+  /**
+   * Checks whether the entry has gone stale.
+   *
+   * @param nowMillis Current wall-clock time
+   * @return true if the entry may no longer be served
+   */
+  public boolean isExpired(long nowMillis) {
+    return nowMillis >= expiresAtMillis;
+  }
+
+  /**
+   * Gets the status code.
+   *
+   * @return status code
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Gets the response headers.
+   *
+   * @return read-only header map
+   */
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Gets the response body.
+   *
+   * @return body
+   */
+  public String getBody() {
+    return body;
+  }
+
+  /**
+   * Gets the wall-clock expiry time.
+   *
+   * @return expiry time in milliseconds
+   */
+  public long getExpiresAtMillis() {
+    return expiresAtMillis;
+  }
+
+  /**
+   * Gets the estimated heap footprint of the entry, used to bound the cache.
+   *
+   * @return size in bytes
+   */
+  public int getSizeBytes() {
+    return sizeBytes;
+  }
+}
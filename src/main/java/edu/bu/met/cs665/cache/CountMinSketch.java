@@ -0,0 +1,84 @@
+package edu.bu.met.cs665.cache;
+
+
+final class CountMinSketch {
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int[] SEEDS = {0x97cb3127, 0xb8ef2d53, 0x5b8fe6a1, 0x7f4a7c15};
+
+  private final long[] table;
+  private final int counterMask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Creates a sketch of 4-bit counters, four rows deep, sized for about
+   * the given number of distinct entries. Counters are halved every
+   * ten times that many additions, so old popularity fades.
+   *
+   * @param expectedEntries Expected number of entries in the cache
+   */
+  CountMinSketch(int expectedEntries) {
+    int width = Integer.highestOneBit(Math.max(64, Math.min(1 << 22, expectedEntries)) - 1) << 1;
+    this.table = new long[4 * width / 16];
+    this.counterMask = width - 1;
+    this.sampleSize = 10 * width;
+  }
+
+  /**
+   * Estimates how often the hash was seen, capped at 15.
+   *
+   * @param hash Key hash
+   * @return Estimated frequency
+   */
+  int frequency(int hash) {
+    int min = 15;
+    for (int row = 0; row < 4; row++) {
+      min = Math.min(min, counter(row, index(hash, row)));
+    }
+    return min;
+  }
+
+  /**
+   * Records one occurrence of the hash.
+   *
+   * @param hash Key hash
+   */
+  void increment(int hash) {
+    boolean added = false;
+    for (int row = 0; row < 4; row++) {
+      int index = index(hash, row);
+      if (counter(row, index) < 15) {
+        int slot = slot(row, index);
+        table[slot] += 1L << shift(index);
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions >>>= 1;
+  }
+
+  private int index(int hash, int row) {
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & counterMask;
+  }
+
+  private int slot(int row, int index) {
+    return row * (table.length / 4) + (index >>> 4);
+  }
+
+  private static int shift(int index) {
+    return (index & 15) << 2;
+  }
+
+  private int counter(int row, int index) {
+    return (int) ((table[slot(row, index)] >>> shift(index)) & 15);
+  }
+}
@@ -0,0 +1,92 @@
+package edu.bu.met.cs665.cache;
+
+import edu.bu.met.cs665.model.StreamingBody;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+
+public final class MappedBody implements StreamingBody {
+  private final ByteBuffer body;
+  private final Path file;
+  private final long fileOffset;
+
+  /**
+   * Wraps a response body that lives in a memory-mapped segment file.
+   *
+   * @param body Read-only view of the body bytes, positioned at the start
+   * @param file The segment file holding the body
+   * @param fileOffset Position of the first body byte in the file
+   */
+  MappedBody(ByteBuffer body, Path file, long fileOffset) {
+    this.body = body;
+    this.file = file;
+    this.fileOffset = fileOffset;
+  }
+
+  /**
+   * Writes the body straight from the mapped pages, without copying it
+   * onto the heap first. Unlike an upstream body it can be written again.
+   *
+   * @param out The stream to write to
+   * @throws IOException if writing the output fails
+   */
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    ByteBuffer source = body.duplicate();
+    WritableByteChannel channel = Channels.newChannel(out);
+    while (source.hasRemaining()) {
+      channel.write(source);
+    }
+    out.flush();
+  }
+
+  /**
+   * Returns the body length, which is always known.
+   *
+   * @return length in bytes
+   */
+  @Override
+  public long getContentLength() {
+    return body.remaining();
+  }
+
+  /**
+   * Does nothing: the mapping belongs to the store and is shared by every reader.
+   */
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Decodes the body onto the heap, for post-filters that need to read it.
+   *
+   * @return The body as UTF-8 text
+   */
+  public String asString() {
+    return StandardCharsets.UTF_8.decode(body.duplicate()).toString();
+  }
+
+  /**
+   * Gets the segment file holding the body, so a container that supports
+   * sendfile can copy it to the socket without passing through the JVM.
+   *
+   * @return The segment file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the position of the first body byte in the segment file.
+   *
+   * @return offset in bytes
+   */
+  public long getFileOffset() {
+    return fileOffset;
+  }
+}
@@ -0,0 +1,576 @@
+package edu.bu.met.cs665.cache;
+
+import edu.bu.met.cs665.model.GatewayResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class MappedResponseStore implements Closeable {
+  private static final Logger logger = LogManager.getLogger(MappedResponseStore.class);
+  private static final int RECORD_MAGIC = 0x47574331;
+  private static final int RECORD_HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".dat";
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final int minBodyBytes;
+  private final long deleteDelayMillis;
+  private final LongSupplier clock;
+  private final ConcurrentMap<String, Location> index;
+  private final ConcurrentNavigableMap<Integer, Segment> segments;
+  private final Deque<Segment> retired;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder writes;
+  private final LongAdder droppedSegments;
+  private Segment active;
+  private volatile boolean closed;
+
+  /**
+   * Private constructor - use {@link #builder(Path)}.
+   *
+   * @param builder The builder instance
+   * @throws IOException if the directory or a segment file cannot be opened
+   */
+  private MappedResponseStore(Builder builder) throws IOException {
+    this.directory = builder.directory;
+    this.segmentBytes = builder.segmentBytes;
+    this.maxSegments = builder.maxSegments;
+    this.minBodyBytes = builder.minBodyBytes;
+    this.deleteDelayMillis = builder.deleteDelayMillis;
+    this.clock = builder.clock;
+    this.index = new ConcurrentHashMap<>();
+    this.segments = new ConcurrentSkipListMap<>();
+    this.retired = new ArrayDeque<>();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.writes = new LongAdder();
+    this.droppedSegments = new LongAdder();
+
+    Files.createDirectories(directory);
+    recover();
+    logger.info("Off-heap response store opened at {}. Segments: {}, entries: {}",
+        directory, segments.size(), index.size());
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param directory Directory holding the segment files
+   * @return A new Builder instance
+   */
+  public static Builder builder(Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Appends an entry evicted from the heap cache to the current segment.
+   * Only bodies of at least the minimum size are kept, since small ones are
+   * cheap on the heap and would mostly waste index space. When the current
+   * segment is full a new one is started, and once there are too many
+   * segments the oldest is deleted along with every entry in it.
+   *
+   * @param key The cache key
+   * @param value The evicted response
+   * @return true if the entry was stored
+   */
+  public boolean put(CacheKey key, CachedResponse value) {
+    if (closed || value.isExpired(clock.getAsLong())) {
+      return false;
+    }
+    byte[] body = value.getBody().getBytes(StandardCharsets.UTF_8);
+    if (body.length < minBodyBytes) {
+      return false;
+    }
+
+    String externalKey = key.toExternalForm();
+    byte[] keyBytes = externalKey.getBytes(StandardCharsets.UTF_8);
+    int recordBytes = RECORD_HEADER_BYTES + keyBytes.length + 4 + 4 + body.length;
+    byte[][] headerBytes = new byte[value.getHeaders().size() * 2][];
+    int i = 0;
+    for (Map.Entry<String, String> header : value.getHeaders().entrySet()) {
+      headerBytes[i] = header.getKey().getBytes(StandardCharsets.UTF_8);
+      headerBytes[i + 1] = header.getValue().getBytes(StandardCharsets.UTF_8);
+      recordBytes += 8 + headerBytes[i].length + headerBytes[i + 1].length;
+      i += 2;
+    }
+    if (recordBytes > segmentBytes) {
+      return false;
+    }
+
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      try {
+        if (active == null || segmentBytes - active.writePosition < recordBytes) {
+          roll();
+        }
+      } catch (IOException e) {
+        logger.warn("Could not start a new cache segment in {}", directory, e);
+        return false;
+      }
+
+      int start = active.writePosition;
+      ByteBuffer out = active.buffer.duplicate();
+      out.position(start + 4);
+      out.putInt(recordBytes);
+      out.putLong(value.getExpiresAtMillis());
+      out.putInt(value.getStatusCode());
+      out.putInt(keyBytes.length);
+      out.put(keyBytes);
+      out.putInt(headerBytes.length / 2);
+      for (byte[] part : headerBytes) {
+        out.putInt(part.length);
+        out.put(part);
+      }
+      out.putInt(body.length);
+      out.put(body);
+      // The magic goes in last, so a record cut short by a crash is never read back
+      active.buffer.putInt(start, RECORD_MAGIC);
+      active.writePosition = start + recordBytes;
+
+      int bodyOffset = start + recordBytes - body.length;
+      index.put(externalKey, new Location(active, bodyOffset, body.length,
+          value.getStatusCode(), value.getHeaders(), value.getExpiresAtMillis()));
+      writes.increment();
+    }
+    return true;
+  }
+
+  /**
+   * Looks up a fresh entry. The body stays in the mapped segment and is
+   * written from there when the response is sent.
+   *
+   * @param key The cache key
+   * @return A new response with a {@link MappedBody}, or null on a miss or a stale entry
+   */
+  public GatewayResponse get(CacheKey key) {
+    String externalKey = key.toExternalForm();
+    Location location = index.get(externalKey);
+    if (location == null) {
+      misses.increment();
+      return null;
+    }
+    if (clock.getAsLong() >= location.expiresAtMillis) {
+      index.remove(externalKey, location);
+      misses.increment();
+      return null;
+    }
+
+    hits.increment();
+    GatewayResponse response = new GatewayResponse();
+    response.setStatusCode(location.statusCode);
+    response.setHeaders(new HashMap<>(location.headers));
+    response.setStreamingBody(new MappedBody(location.segment.slice(location.bodyOffset,
+        location.bodyLength), location.segment.file, location.bodyOffset));
+    return response;
+  }
+
+  /**
+   * Flushes the current segment to disk and stops accepting entries. The
+   * live segment files are kept, so the next store opened on the directory
+   * finds them; dropped ones still waiting to be deleted are deleted now.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (active != null) {
+      active.buffer.force();
+    }
+    deleteRetired(Long.MAX_VALUE);
+    logger.info("Off-heap response store closed. Entries: {}", index.size());
+  }
+
+  /**
+   * Gets the number of lookups that found a fresh entry.
+   *
+   * @return hit count
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Gets the number of lookups that found nothing or a stale entry.
+   *
+   * @return miss count
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Gets the number of entries written since the store was opened.
+   *
+   * @return write count
+   */
+  public long getWriteCount() {
+    return writes.sum();
+  }
+
+  /**
+   * Gets the number of segments deleted to stay under the segment cap.
+   *
+   * @return dropped segment count
+   */
+  public long getDroppedSegmentCount() {
+    return droppedSegments.sum();
+  }
+
+  /**
+   * Gets the number of entries in the index.
+   *
+   * @return entry count
+   */
+  public int getEntryCount() {
+    return index.size();
+  }
+
+  /**
+   * Gets the number of segment files.
+   *
+   * @return segment count
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Gets the number of dropped segment files not yet deleted.
+   *
+   * @return retired segment count
+   */
+  public synchronized int getRetiredSegmentCount() {
+    return retired.size();
+  }
+
+  /**
+   * Gets the bytes written across all segments, including superseded records.
+   *
+   * @return used bytes
+   */
+  public long getUsedBytes() {
+    long used = 0;
+    for (Segment segment : segments.values()) {
+      used += segment.writePosition;
+    }
+    return used;
+  }
+
+  /**
+   * Gets the most bytes the segment files may take on disk.
+   *
+   * @return maximum size in bytes
+   */
+  public long getMaxBytes() {
+    return (long) segmentBytes * maxSegments;
+  }
+
+  /**
+   * Starts a new segment, dropping the oldest ones first if the cap is reached.
+   */
+  private void roll() throws IOException {
+    deleteRetired(clock.getAsLong());
+    while (segments.size() >= maxSegments) {
+      dropOldest();
+    }
+    int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+    active = openSegment(id, segmentBytes);
+    segments.put(id, active);
+    logger.debug("Started cache segment {}", active.file);
+  }
+
+  private void dropOldest() {
+    Map.Entry<Integer, Segment> oldest = segments.pollFirstEntry();
+    if (oldest == null) {
+      return;
+    }
+    Segment segment = oldest.getValue();
+    index.values().removeIf(location -> location.segment == segment);
+    droppedSegments.increment();
+    // Readers holding a MappedBody keep the mapping alive, but a sendfile of
+    // a response already looked up opens the file by name, so it must stay a while
+    segment.retiredAtMillis = clock.getAsLong();
+    retired.addLast(segment);
+  }
+
+  /**
+   * Deletes the dropped segment files whose delete delay has passed by the given time.
+   */
+  private void deleteRetired(long now) {
+    while (!retired.isEmpty() && now - retired.peekFirst().retiredAtMillis >= deleteDelayMillis) {
+      Segment segment = retired.pollFirst();
+      try {
+        Files.deleteIfExists(segment.file);
+      } catch (IOException e) {
+        logger.warn("Could not delete cache segment {}", segment.file, e);
+      }
+    }
+  }
+
+  /**
+   * Maps the segment files left by a previous run and rebuilds the index
+   * from their records. Records are read oldest first, so a later entry for
+   * a key replaces an earlier one. Reading a segment stops at the first
+   * record that is incomplete, and new records are appended from there.
+   */
+  private void recover() throws IOException {
+    TreeMap<Integer, Path> files = new TreeMap<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        try {
+          files.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+              name.length() - SEGMENT_SUFFIX.length())), file);
+        } catch (NumberFormatException e) {
+          logger.warn("Ignoring unexpected file in cache directory: {}", file);
+        }
+      }
+    }
+
+    long now = clock.getAsLong();
+    for (Map.Entry<Integer, Path> file : files.entrySet()) {
+      int size = (int) Math.min(Integer.MAX_VALUE,
+          Math.max(segmentBytes, Files.size(file.getValue())));
+      Segment segment = openSegment(file.getKey(), size);
+      segments.put(file.getKey(), segment);
+      readRecords(segment, now);
+      active = segment;
+    }
+    while (segments.size() > maxSegments) {
+      dropOldest();
+    }
+  }
+
+  private void readRecords(Segment segment, long now) {
+    ByteBuffer in = segment.buffer.duplicate();
+    int position = 0;
+    try {
+      while (position + RECORD_HEADER_BYTES <= in.limit()
+          && in.getInt(position) == RECORD_MAGIC) {
+        in.position(position + 4);
+        int recordBytes = in.getInt();
+        if (recordBytes < RECORD_HEADER_BYTES || recordBytes > in.limit() - position) {
+          break;
+        }
+        long expiresAtMillis = in.getLong();
+        int statusCode = in.getInt();
+        String key = readString(in);
+        int headerCount = in.getInt();
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+          headers.put(readString(in), readString(in));
+        }
+        int bodyLength = in.getInt();
+        int bodyOffset = in.position();
+        if (bodyOffset + bodyLength != position + recordBytes) {
+          break;
+        }
+
+        if (now < expiresAtMillis) {
+          index.put(key, new Location(segment, bodyOffset, bodyLength, statusCode,
+              headers, expiresAtMillis));
+        } else {
+          index.remove(key);
+        }
+        position += recordBytes;
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      logger.warn("Stopped reading damaged cache segment {} at offset {}",
+          segment.file, position);
+    }
+    segment.writePosition = position;
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0 || length > in.remaining()) {
+      throw new IllegalArgumentException("Bad string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private Segment openSegment(int id, int size) throws IOException {
+    Path file = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed
+      return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+  }
+
+  /**
+   * One segment file, mapped in full. Records are appended under the store
+   * lock and never changed afterwards, so readers need no lock.
+   */
+  private static final class Segment {
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+    private long retiredAtMillis;
+
+    private Segment(Path file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+      ByteBuffer view = buffer.asReadOnlyBuffer();
+      view.position(offset);
+      view.limit(offset + length);
+      return view.slice();
+    }
+  }
+
+  /**
+   * On-heap index entry: where the body is, plus the status, headers and
+   * expiry, so a lookup never has to parse the record.
+   */
+  private static final class Location {
+    private final Segment segment;
+    private final int bodyOffset;
+    private final int bodyLength;
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final long expiresAtMillis;
+
+    private Location(Segment segment, int bodyOffset, int bodyLength, int statusCode,
+        Map<String, String> headers, long expiresAtMillis) {
+      this.segment = segment;
+      this.bodyOffset = bodyOffset;
+      this.bodyLength = bodyLength;
+      this.statusCode = statusCode;
+      this.headers = headers;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+
+
+  public static class Builder {
+    private final Path directory;
+    private int segmentBytes = 64 * 1024 * 1024;
+    private int maxSegments = 16;
+    private int minBodyBytes = 16 * 1024;
+    private long deleteDelayMillis = 30000; // 30 seconds
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Constructor - use {@link MappedResponseStore#builder(Path)}.
+     *
+     * @param directory Directory holding the segment files
+     */
+    private Builder(Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the size of each segment file. Bigger records are not stored.
+     *
+     * @param segmentBytes Segment size in bytes
+     * @return this Builder instance for method chaining
+     */
+    public Builder segmentBytes(int segmentBytes) {
+      this.segmentBytes = segmentBytes;
+      return this;
+    }
+
+    /**
+     * Sets how many segment files may exist before the oldest is deleted.
+     *
+     * @param maxSegments Maximum number of segments
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxSegments(int maxSegments) {
+      this.maxSegments = maxSegments;
+      return this;
+    }
+
+    /**
+     * Sets the smallest body worth moving off the heap.
+     *
+     * @param minBodyBytes Minimum body size in bytes
+     * @return this Builder instance for method chaining
+     */
+    public Builder minBodyBytes(int minBodyBytes) {
+      this.minBodyBytes = minBodyBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long a dropped segment file is kept before it is deleted.
+     * Responses looked up just before the drop may still be sent from the
+     * file by name, so the delay should cover the slowest send. Until then
+     * the files count on disk on top of the segment cap.
+     *
+     * @param delay Delete delay
+     * @param unit Unit of the delay
+     * @return this Builder instance for method chaining
+     */
+    public Builder deleteDelay(long delay, TimeUnit unit) {
+      this.deleteDelayMillis = unit.toMillis(delay);
+      return this;
+    }
+
+    /**
+     * Sets the wall clock used for expiry and delayed deletes.
+     *
+     * @param clock Current time in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Opens the store, rebuilding the index from any existing segments.
+     *
+     * @return A new MappedResponseStore
+     * @throws IllegalStateException if the settings are invalid or the directory cannot be used
+     */
+    public MappedResponseStore build() {
+      if (directory == null || segmentBytes <= RECORD_HEADER_BYTES || maxSegments <= 0
+          || deleteDelayMillis < 0) {
+        throw new IllegalStateException("directory is required, segmentBytes and maxSegments"
+            + " must be positive and deleteDelay must not be negative");
+      }
+      try {
+        return new MappedResponseStore(this);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not open cache directory " + directory, e);
+      }
+    }
+  }
+}
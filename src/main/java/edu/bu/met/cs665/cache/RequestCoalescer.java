@@ -0,0 +1,165 @@
+package edu.bu.met.cs665.cache;
+
+import edu.bu.met.cs665.model.GatewayResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class RequestCoalescer {
+  private final ConcurrentMap<CacheKey, Flight> inFlight;
+  private final LongAdder leaders;
+  private final LongAdder followers;
+  private final LongAdder overflows;
+
+  /**
+   * Creates an empty coalescer.
+   */
+  public RequestCoalescer() {
+    this.inFlight = new ConcurrentHashMap<>();
+    this.leaders = new LongAdder();
+    this.followers = new LongAdder();
+    this.overflows = new LongAdder();
+  }
+
+  /**
+   * Joins the upstream call for a key. The first caller becomes the leader
+   * and must make the call and then {@link Flight#complete} the flight;
+   * later callers follow and wait for the leader's response. Once
+   * maxWaiters callers follow a flight, further callers get null and
+   * should make their own upstream call.
+   *
+   * @param key The request key
+   * @param maxWaiters Maximum followers per flight
+   * @return The flight, or null if the flight is full
+   */
+  public Flight join(CacheKey key, int maxWaiters) {
+    while (true) {
+      Flight flight = inFlight.get(key);
+      if (flight == null) {
+        Flight created = new Flight(key);
+        if (inFlight.putIfAbsent(key, created) == null) {
+          leaders.increment();
+          return created;
+        }
+        continue;
+      }
+
+      int waiters = flight.waiters.incrementAndGet();
+      if (waiters > maxWaiters) {
+        flight.waiters.decrementAndGet();
+        overflows.increment();
+        return null;
+      }
+      followers.increment();
+      return new Flight(flight);
+    }
+  }
+
+  /**
+   * Gets the number of upstream calls currently shared.
+   *
+   * @return In-flight call count
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Gets the number of requests that made the upstream call for a flight.
+   *
+   * @return Leader count
+   */
+  public long getLeaderCount() {
+    return leaders.sum();
+  }
+
+  /**
+   * Gets the number of requests served by another request's upstream call.
+   *
+   * @return Follower count
+   */
+  public long getFollowerCount() {
+    return followers.sum();
+  }
+
+  /**
+   * Gets the number of requests that went upstream on their own because
+   * the flight already had its maximum number of waiters.
+   *
+   * @return Overflow count
+   */
+  public long getOverflowCount() {
+    return overflows.sum();
+  }
+
+  /**
+   * One caller's handle on a shared upstream call.
+   */
+  public final class Flight {
+    private final CacheKey key;
+    private final boolean leader;
+    private final Flight shared;
+    private final CompletableFuture<CachedResponse> result;
+    private final AtomicInteger waiters;
+
+    private Flight(CacheKey key) {
+      this.key = key;
+      this.leader = true;
+      this.shared = this;
+      this.result = new CompletableFuture<>();
+      this.waiters = new AtomicInteger();
+    }
+
+    private Flight(Flight shared) {
+      this.key = shared.key;
+      this.leader = false;
+      this.shared = shared;
+      this.result = shared.result;
+      this.waiters = shared.waiters;
+    }
+
+    /**
+     * Tells whether this caller must make the upstream call.
+     *
+     * @return true for the leader
+     */
+    public boolean isLeader() {
+      return leader;
+    }
+
+    /**
+     * Gets the shared result. Each follower should turn it into its own
+     * response with {@link CachedResponse#toResponse()}.
+     *
+     * @return A future completed with the leader's upstream response
+     */
+    public CompletableFuture<CachedResponse> result() {
+      return result;
+    }
+
+    /**
+     * Publishes the leader's upstream response, before any post-filter has
+     * run, and closes the flight to new followers. Only the leader may call this.
+     *
+     * @param response The upstream response, or null if the call failed
+     * @param failure The failure if response is null
+     * @throws IllegalStateException if called by a follower
+     */
+    public void complete(GatewayResponse response, Throwable failure) {
+      if (!leader) {
+        throw new IllegalStateException("Only the leader completes a flight");
+      }
+      inFlight.remove(key, shared);
+      if (response != null && !response.isStreaming()) {
+        result.complete(new CachedResponse(response.getStatusCode(), response.getHeaders(),
+            response.getBody(), Long.MAX_VALUE));
+      } else {
+        result.completeExceptionally(failure != null ? failure
+            : new IllegalStateException("Upstream response cannot be shared"));
+      }
+    }
+  }
+}
@@ -0,0 +1,421 @@
+package edu.bu.met.cs665.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+
+public class ResponseCache {
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+  private static final int DEAD = 3;
+
+  private final long maxBytes;
+  private final long windowMax;
+  private final long protectedMax;
+  private final LongSupplier clock;
+  private final ConcurrentMap<CacheKey, Node> data;
+  private final ReentrantLock policyLock;
+  private final CountMinSketch sketch;
+  private final NodeList window;
+  private final NodeList probation;
+  private final NodeList protectedList;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+  private final LongAdder expirations;
+  private final List<Node> evicted;
+  private volatile BiConsumer<CacheKey, CachedResponse> evictionListener;
+  private volatile long weightedSize;
+
+  /**
+   * Creates a cache bounded to the given number of bytes.
+   *
+   * @param maxBytes Maximum estimated size of all entries
+   */
+  public ResponseCache(long maxBytes) {
+    this(maxBytes, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a cache bounded to the given number of bytes, with an explicit clock.
+   * Eviction follows W-TinyLFU: new entries land in a small LRU window
+   * (1% of the bytes); an entry leaving the window only gets into the main
+   * space if it has been requested more often than the entry it would
+   * displace, as estimated by a count-min sketch. The main space is a
+   * segmented LRU, so a one-off scan cannot push out entries that are hit
+   * repeatedly.
+   *
+   * @param maxBytes Maximum estimated size of all entries
+   * @param clock Wall clock in milliseconds, used for expiry
+   * @throws IllegalStateException if maxBytes is not positive
+   */
+  public ResponseCache(long maxBytes, LongSupplier clock) {
+    if (maxBytes <= 0) {
+      throw new IllegalStateException("maxBytes must be positive");
+    }
+    this.maxBytes = maxBytes;
+    this.windowMax = Math.max(1, maxBytes / 100);
+    this.protectedMax = (maxBytes - windowMax) * 4 / 5;
+    this.clock = clock;
+    this.data = new ConcurrentHashMap<>();
+    this.policyLock = new ReentrantLock();
+    this.sketch = new CountMinSketch((int) Math.min(Integer.MAX_VALUE, maxBytes / 1024));
+    this.window = new NodeList();
+    this.probation = new NodeList();
+    this.protectedList = new NodeList();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+    this.expirations = new LongAdder();
+    this.evicted = new ArrayList<>();
+  }
+
+  /**
+   * Looks up a fresh entry. The map lookup is lock-free; recording the
+   * access in the eviction policy is skipped if another thread holds the
+   * policy lock, which costs a little accuracy but never blocks a hit.
+   *
+   * @param key The cache key
+   * @return The cached response, or null on a miss or a stale entry
+   */
+  public CachedResponse get(CacheKey key) {
+    Node node = data.get(key);
+    if (node == null) {
+      misses.increment();
+      return null;
+    }
+
+    CachedResponse value = node.value;
+    if (value.isExpired(clock.getAsLong())) {
+      misses.increment();
+      policyLock.lock();
+      try {
+        if (node.queue != DEAD && node.value.isExpired(clock.getAsLong())) {
+          unlink(node);
+          expirations.increment();
+        }
+      } finally {
+        policyLock.unlock();
+      }
+      return null;
+    }
+
+    hits.increment();
+    if (policyLock.tryLock()) {
+      try {
+        sketch.increment(key.hashCode());
+        if (node.queue != DEAD) {
+          onAccess(node);
+        }
+      } finally {
+        policyLock.unlock();
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Stores an entry, replacing any previous one for the key. The entry may
+   * be dropped right away if it loses the admission contest.
+   *
+   * @param key The cache key
+   * @param value The response to cache
+   */
+  public void put(CacheKey key, CachedResponse value) {
+    BiConsumer<CacheKey, CachedResponse> listener = evictionListener;
+    if (value.getSizeBytes() > maxBytes) {
+      if (listener != null) {
+        listener.accept(key, value);
+      }
+      return;
+    }
+
+    Node[] removed = null;
+    policyLock.lock();
+    try {
+      sketch.increment(key.hashCode());
+      Node node = data.get(key);
+      if (node != null && node.queue != DEAD) {
+        int delta = value.getSizeBytes() - node.value.getSizeBytes();
+        node.value = value;
+        listFor(node.queue).bytes += delta;
+        onAccess(node);
+      } else {
+        node = new Node(key, value);
+        data.put(key, node);
+        node.queue = WINDOW;
+        window.addFirst(node);
+      }
+      evict();
+      weightedSize = window.bytes + probation.bytes + protectedList.bytes;
+      if (!evicted.isEmpty()) {
+        if (listener != null) {
+          removed = evicted.toArray(new Node[0]);
+        }
+        evicted.clear();
+      }
+    } finally {
+      policyLock.unlock();
+    }
+
+    if (removed != null) {
+      for (Node node : removed) {
+        listener.accept(node.key, node.value);
+      }
+    }
+  }
+
+  /**
+   * Registers a callback for entries pushed out to stay under the size
+   * bound, including entries too big to be admitted at all. It is not called
+   * for stale or invalidated entries. The callback runs on the thread that
+   * called {@link #put}, after the policy lock has been released.
+   *
+   * @param evictionListener Receives the key and value of each evicted entry, or null
+   */
+  public void setEvictionListener(BiConsumer<CacheKey, CachedResponse> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * Removes the entry for a key, if any.
+   *
+   * @param key The cache key
+   */
+  public void invalidate(CacheKey key) {
+    policyLock.lock();
+    try {
+      Node node = data.get(key);
+      if (node != null && node.queue != DEAD) {
+        unlink(node);
+      }
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the number of lookups that found a fresh entry.
+   *
+   * @return hit count
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Gets the number of lookups that found nothing or a stale entry.
+   *
+   * @return miss count
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Gets the share of lookups that were hits.
+   *
+   * @return hit rate between 0 and 1
+   */
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * Gets the number of entries removed or refused to stay under the size bound.
+   *
+   * @return eviction count
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Gets the number of entries removed because they went stale.
+   *
+   * @return expiration count
+   */
+  public long getExpirationCount() {
+    return expirations.sum();
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return entry count
+   */
+  public int getEntryCount() {
+    return data.size();
+  }
+
+  /**
+   * Gets the estimated size of all entries.
+   *
+   * @return size in bytes
+   */
+  public long getWeightedSize() {
+    return weightedSize;
+  }
+
+  /**
+   * Gets the size bound.
+   *
+   * @return maximum size in bytes
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Moves entries out of the window, letting each one into the main space
+   * only if it is more popular than the victims it would displace.
+   */
+  private void evict() {
+    while (window.bytes > windowMax) {
+      Node candidate = window.last();
+      window.remove(candidate);
+      admit(candidate);
+    }
+    // Replacing an entry with a bigger one can push the main space over
+    while (probation.bytes + protectedList.bytes + window.bytes > maxBytes) {
+      Node victim = probation.last() != null ? probation.last() : protectedList.last();
+      if (victim == null) {
+        break;
+      }
+      evictNode(victim);
+    }
+  }
+
+  private void admit(Node candidate) {
+    long mainMax = maxBytes - windowMax;
+    int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+    while (probation.bytes + protectedList.bytes + candidate.value.getSizeBytes() > mainMax) {
+      Node victim = probation.last() != null ? probation.last() : protectedList.last();
+      if (victim == null || candidateFrequency <= sketch.frequency(victim.key.hashCode())) {
+        candidate.queue = DEAD;
+        data.remove(candidate.key, candidate);
+        evictions.increment();
+        evicted.add(candidate);
+        return;
+      }
+      evictNode(victim);
+    }
+    candidate.queue = PROBATION;
+    probation.addFirst(candidate);
+  }
+
+  /**
+   * Records a hit: a probation entry is promoted to the protected segment,
+   * whose least recently used entries fall back to probation when it is full.
+   */
+  private void onAccess(Node node) {
+    if (node.queue == PROBATION) {
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedList.addFirst(node);
+      while (protectedList.bytes > protectedMax) {
+        Node demoted = protectedList.last();
+        protectedList.remove(demoted);
+        demoted.queue = PROBATION;
+        probation.addFirst(demoted);
+      }
+    } else if (node.queue != DEAD) {
+      NodeList list = listFor(node.queue);
+      list.remove(node);
+      list.addFirst(node);
+    }
+  }
+
+  private void evictNode(Node node) {
+    unlink(node);
+    evictions.increment();
+    evicted.add(node);
+  }
+
+  private void unlink(Node node) {
+    listFor(node.queue).remove(node);
+    node.queue = DEAD;
+    data.remove(node.key, node);
+    weightedSize = window.bytes + probation.bytes + protectedList.bytes;
+  }
+
+  private NodeList listFor(int queue) {
+    switch (queue) {
+      case WINDOW:
+        return window;
+      case PROBATION:
+        return probation;
+      case PROTECTED:
+        return protectedList;
+      default:
+        throw new IllegalStateException("Entry is not in any queue");
+    }
+  }
+
+  /**
+   * Cache entry, linked into one of the three access-ordered queues.
+   * Links and queue are guarded by the policy lock; value is read without it.
+   */
+  private static final class Node {
+    private final CacheKey key;
+    private volatile CachedResponse value;
+    private int queue;
+    private Node prev;
+    private Node next;
+
+    private Node(CacheKey key, CachedResponse value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Doubly linked list, most recently used first, that tracks its size in bytes.
+   */
+  private static final class NodeList {
+    private Node head;
+    private Node tail;
+    private long bytes;
+
+    private void addFirst(Node node) {
+      node.prev = null;
+      node.next = head;
+      if (head != null) {
+        head.prev = node;
+      } else {
+        tail = node;
+      }
+      head = node;
+      bytes += node.value.getSizeBytes();
+    }
+
+    private void remove(Node node) {
+      if (node.prev != null) {
+        node.prev.next = node.next;
+      } else {
+        head = node.next;
+      }
+      if (node.next != null) {
+        node.next.prev = node.prev;
+      } else {
+        tail = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      bytes -= node.value.getSizeBytes();
+    }
+
+    private Node last() {
+      return tail;
+    }
+  }
+}
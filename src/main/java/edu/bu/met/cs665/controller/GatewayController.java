@@ -1,10 +1,28 @@
 package edu.bu.met.cs665.controller;
 
+import edu.bu.met.cs665.balancer.ConsistentHashBalancer;
+import edu.bu.met.cs665.balancer.Upstream;
+import edu.bu.met.cs665.cache.MappedBody;
+import edu.bu.met.cs665.cache.MappedResponseStore;
+import edu.bu.met.cs665.cache.ResponseCache;
+import edu.bu.met.cs665.filter.Filter;
+import edu.bu.met.cs665.filter.impl.RateLimitFilter;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.model.StreamingBody;
+import edu.bu.met.cs665.pool.AsyncHttpClientPool;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import edu.bu.met.cs665.route.Route;
 import edu.bu.met.cs665.service.GatewayService;
+import edu.bu.met.cs665.trace.InMemorySpanExporter;
+import edu.bu.met.cs665.trace.TraceContext;
+import edu.bu.met.cs665.trace.Tracer;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.http.pool.PoolStats;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,15 +30,19 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 
 @RestController
 public class GatewayController {
   private static final Logger logger = LogManager.getLogger(GatewayController.class);
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
   @Autowired
   private GatewayService gatewayService;
@@ -29,18 +51,21 @@ public class GatewayController {
    * Handles GET requests through the gateway.
    *
    * @param servletRequest The HTTP servlet request
+   * @param servletResponse The HTTP servlet response, written directly for streamed bodies
    * @param headers Request headers
    * @param params Query parameters
-   * @return Response from backend service
+   * @return Pending response from backend service, or null if it was streamed
+   * @throws IOException if streaming the response fails
    */
   @GetMapping("/api/**")
-  public ResponseEntity<String> handleGet(
+  public DeferredResult<ResponseEntity<String>> handleGet(
       HttpServletRequest servletRequest,
+      HttpServletResponse servletResponse,
       @RequestHeader Map<String, String> headers,
-      @RequestParam Map<String, String> params) {
+      @RequestParam Map<String, String> params) throws IOException {
 
     String path = servletRequest.getRequestURI();
-    logger.info("Received GET request for path: {}", path);
+    logger.debug("Received GET request for path: {}", path);
 
     GatewayRequest request = new GatewayRequest();
     request.setMethod("GET");
@@ -49,42 +74,134 @@ public class GatewayController {
     request.setQueryParams(params);
     request.setClientId(headers.getOrDefault("X-Client-Id", "unknown"));
 
-    GatewayResponse response = gatewayService.processRequest(request);
+    CompletableFuture<GatewayResponse> response = gatewayService.processRequestAsync(request);
 
-    return ResponseEntity
-        .status(HttpStatus.valueOf(response.getStatusCode()))
-        .body(response.getBody());
+    return respond(response, servletRequest, servletResponse);
   }
 
   /**
    * Handles POST requests through the gateway.
    *
    * @param servletRequest The HTTP servlet request
+   * @param servletResponse The HTTP servlet response, written directly for streamed bodies
    * @param headers Request headers
-   * @param body Request body
-   * @return Response from backend service
+   * @return Pending response from backend service, or null if it was streamed
+   * @throws IOException if reading the request or streaming the response fails
    */
   @PostMapping("/api/**")
-  public ResponseEntity<String> handlePost(
+  public DeferredResult<ResponseEntity<String>> handlePost(
       HttpServletRequest servletRequest,
-      @RequestHeader Map<String, String> headers,
-      @RequestBody(required = false) String body) {
+      HttpServletResponse servletResponse,
+      @RequestHeader Map<String, String> headers) throws IOException {
 
     String path = servletRequest.getRequestURI();
-    logger.info("Received POST request for path: {}", path);
+    logger.debug("Received POST request for path: {}", path);
 
     GatewayRequest request = new GatewayRequest();
     request.setMethod("POST");
     request.setPath(path);
     request.setHeaders(headers);
-    request.setBody(body);
+    // The service decides whether to buffer, spool or stream the body
+    request.setBodyStream(servletRequest.getInputStream(),
+        servletRequest.getContentLengthLong());
     request.setClientId(headers.getOrDefault("X-Client-Id", "unknown"));
 
-    GatewayResponse response = gatewayService.processRequest(request);
+    CompletableFuture<GatewayResponse> response = gatewayService.processRequestAsync(request);
+
+    return respond(response, servletRequest, servletResponse);
+  }
+
+  /**
+   * Hands a pending gateway response to Spring's async support, so the
+   * servlet thread is released while the backend is working. Responses that
+   * are already complete, including streamed ones, are written right away.
+   *
+   * @param response The pending gateway response
+   * @param servletRequest The HTTP servlet request
+   * @param servletResponse The HTTP servlet response
+   * @return The deferred result, or null if the body was streamed
+   * @throws IOException if streaming the response fails
+   */
+  private DeferredResult<ResponseEntity<String>> respond(
+      CompletableFuture<GatewayResponse> response, HttpServletRequest servletRequest,
+      HttpServletResponse servletResponse) throws IOException {
+    DeferredResult<ResponseEntity<String>> result = new DeferredResult<>();
+
+    if (response.isDone() && !response.isCompletedExceptionally()) {
+      GatewayResponse done = response.join();
+      if (done.isStreaming()) {
+        stream(done, servletRequest, servletResponse);
+        return null;
+      }
+    }
+
+    // Every outcome must set the result, or the client waits for the async timeout
+    String path = servletRequest.getRequestURI();
+    response.whenComplete((done, failure) -> {
+      if (failure != null) {
+        logger.error("Gateway request failed: {}", path, failure);
+        result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body("Internal gateway error"));
+        return;
+      }
+      try {
+        result.setResult(toEntity(done));
+      } catch (RuntimeException e) {
+        result.setErrorResult(e);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Copies a streamed body straight to the servlet output stream. A body
+   * held in an off-heap cache segment is handed to Tomcat's sendfile
+   * instead when the connector supports it, so the kernel copies it from
+   * the page cache to the socket.
+   *
+   * @param response The gateway response holding the streaming body
+   * @param servletRequest The HTTP servlet request
+   * @param servletResponse The HTTP servlet response
+   * @throws IOException if streaming the response fails
+   */
+  private void stream(GatewayResponse response, HttpServletRequest servletRequest,
+      HttpServletResponse servletResponse) throws IOException {
+    try (StreamingBody body = response.getStreamingBody()) {
+      servletResponse.setStatus(response.getStatusCode());
+      for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+        servletResponse.setHeader(header.getKey(), header.getValue());
+      }
+      if (body.getContentLength() >= 0) {
+        servletResponse.setContentLengthLong(body.getContentLength());
+      }
+      if (body instanceof MappedBody
+          && Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT))) {
+        MappedBody mapped = (MappedBody) body;
+        servletRequest.setAttribute(SENDFILE_FILENAME,
+            mapped.getFile().toAbsolutePath().toString());
+        servletRequest.setAttribute(SENDFILE_START, mapped.getFileOffset());
+        servletRequest.setAttribute(SENDFILE_END,
+            mapped.getFileOffset() + mapped.getContentLength());
+        return;
+      }
+      body.writeTo(servletResponse.getOutputStream());
+    }
+  }
 
-    return ResponseEntity
-        .status(HttpStatus.valueOf(response.getStatusCode()))
-        .body(response.getBody());
+  /**
+   * Turns a buffered gateway response into the entity sent to the client.
+   * The status is passed on as a number, so a non-standard upstream code
+   * such as 599 goes through unchanged.
+   *
+   * @param response The gateway response
+   * @return The response entity
+   */
+  private ResponseEntity<String> toEntity(GatewayResponse response) {
+    ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusCode());
+    for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    return builder.body(response.getBody());
   }
 
   /**
@@ -109,15 +226,110 @@ public class GatewayController {
     int maxClients = gatewayService.getClientPool().getMaxPoolSize();
     int inUse = gatewayService.getClientPool().getInUseCount();
 
-    String stats = String.format(
+    StringBuilder stats = new StringBuilder(String.format(
         "Gateway Statistics:\n"
             + "Routes configured: %d\n"
             + "HTTP clients available: %d/%d\n"
             + "HTTP clients in use: %d",
         routes, availableClients, maxClients, inUse
-    );
+    ));
+
+    for (Map.Entry<String, PoolStats> entry
+        : gatewayService.getClientPool().getRouteStats().entrySet()) {
+      PoolStats hostStats = entry.getValue();
+      stats.append(String.format(
+          "\nUpstream %s: leased %d, available %d, pending %d, max %d",
+          entry.getKey(), hostStats.getLeased(), hostStats.getAvailable(),
+          hostStats.getPending(), hostStats.getMax()));
+    }
+
+    for (Route route : gatewayService.getRoutes()) {
+      if (route.getUpstreams().size() > 1) {
+        for (Upstream upstream : route.getUpstreams()) {
+          stats.append(String.format(
+              "\nTarget %s %s: weight %d, in flight %d, requests %d, failures %d,"
+                  + " latency EWMA %.1f ms",
+              route.getPathPattern(), upstream.getUrl(), upstream.getWeight(),
+              upstream.getInFlight(), upstream.getRequestCount(), upstream.getFailureCount(),
+              upstream.getEwmaNanos() / 1_000_000));
+        }
+      }
+      if (route.getBalancer() instanceof ConsistentHashBalancer) {
+        ConsistentHashBalancer hashing = (ConsistentHashBalancer) route.getBalancer();
+        stats.append(String.format(
+            "\nConsistent hash %s: spilled %d, unkeyed %d",
+            route.getPathPattern(), hashing.getSpillCount(), hashing.getUnkeyedCount()));
+      }
+      for (Filter filter : route.getFilters()) {
+        if (filter instanceof RateLimitFilter
+            && ((RateLimitFilter) filter).getLimiter() instanceof GcraRateLimiter) {
+          GcraRateLimiter limiter = (GcraRateLimiter) ((RateLimitFilter) filter).getLimiter();
+          stats.append(String.format(
+              "\nRate limiter %s: clients %d/%d, expired %d, evicted %d",
+              route.getPathPattern(), limiter.size(), limiter.getMaxKeys(),
+              limiter.getExpiredCount(), limiter.getEvictedCount()));
+        }
+      }
+    }
+
+    ResponseCache cache = gatewayService.getResponseCache();
+    if (cache != null) {
+      stats.append(String.format(
+          "\nResponse cache: hits %d, misses %d, hit rate %.1f%%, evictions %d, expirations %d,"
+              + " entries %d, bytes %d/%d",
+          cache.getHitCount(), cache.getMissCount(), cache.getHitRate() * 100,
+          cache.getEvictionCount(), cache.getExpirationCount(), cache.getEntryCount(),
+          cache.getWeightedSize(), cache.getMaxBytes()));
+    }
 
-    return ResponseEntity.ok(stats);
+    MappedResponseStore offHeap = gatewayService.getOffHeapStore();
+    if (offHeap != null) {
+      stats.append(String.format(
+          "\nOff-heap cache: hits %d, misses %d, entries %d, segments %d, bytes %d/%d,"
+              + " segments dropped %d",
+          offHeap.getHitCount(), offHeap.getMissCount(), offHeap.getEntryCount(),
+          offHeap.getSegmentCount(), offHeap.getUsedBytes(), offHeap.getMaxBytes(),
+          offHeap.getDroppedSegmentCount()));
+    }
+
+    AsyncHttpClientPool asyncPool = gatewayService.getAsyncClientPool();
+    if (asyncPool != null) {
+      PoolStats asyncStats = asyncPool.getTotalStats();
+      stats.append(String.format(
+          "\nAsync requests in flight: %d (connections leased %d, available %d, pending %d,"
+              + " max %d)",
+          asyncPool.getInFlightCount(), asyncStats.getLeased(), asyncStats.getAvailable(),
+          asyncStats.getPending(), asyncStats.getMax()));
+    }
+
+    Tracer tracer = gatewayService.getTracer();
+    if (tracer != null) {
+      stats.append(String.format(
+          "\nTraces: started %d, exported %d, sampled out %d, failed %d",
+          tracer.getStartedCount(), tracer.getExportedCount(), tracer.getSampledOutCount(),
+          tracer.getFailedCount()));
+    }
+
+    return ResponseEntity.ok(stats.toString());
+  }
+
+  /**
+   * Gets the slow and failed traces kept in memory, newest last, one JSON
+   * object per line.
+   *
+   * @return Kept traces, or 404 if traces are not kept in memory
+   */
+  @GetMapping("/traces")
+  public ResponseEntity<String> traces() {
+    Tracer tracer = gatewayService.getTracer();
+    if (tracer == null || !(tracer.getExporter() instanceof InMemorySpanExporter)) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Traces are not kept in memory");
+    }
+    StringBuilder body = new StringBuilder();
+    for (TraceContext trace : ((InMemorySpanExporter) tracer.getExporter()).getTraces()) {
+      body.append(trace.toJson()).append('\n');
+    }
+    return ResponseEntity.ok(body.toString());
   }
 
 }
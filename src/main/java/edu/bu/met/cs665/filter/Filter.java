@@ -22,6 +22,28 @@ public interface Filter {
    */
   void postProcess(GatewayRequest request, GatewayResponse response);
 
+  /**
+   * Indicates if {@link #preProcess} reads the request body.
+   * Routes that stream request bodies spool the body to a temp file when
+   * any filter in their chain returns true, so it can be read more than once.
+   *
+   * @return true if the filter needs to read the request body
+   */
+  default boolean requiresRequestBody() {
+    return false;
+  }
+
+  /**
+   * Indicates if {@link #postProcess} reads or rewrites the response body.
+   * Routes that stream responses fall back to buffering when any filter
+   * in their chain returns true.
+   *
+   * @return true if the filter needs the buffered response body
+   */
+  default boolean requiresResponseBody() {
+    return false;
+  }
+
   /**
    * Returns the name of this filter for logging and debugging.
    *
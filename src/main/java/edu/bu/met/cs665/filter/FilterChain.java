@@ -7,17 +7,29 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 
-public class FilterChain {
+public final class FilterChain {
   private static final Logger logger = LogManager.getLogger(FilterChain.class);
-  private final List<Filter> filters;
+  private final Filter[] filters;
+  private final boolean requiresRequestBody;
+  private final boolean requiresResponseBody;
 
   /**
    * Constructs a FilterChain with the given filters.
+   * The list is copied, so later changes to it do not affect the chain.
    *
    * @param filters List of filters to execute
    */
   public FilterChain(List<Filter> filters) {
-    this.filters = filters;
+    this.filters = filters.toArray(new Filter[0]);
+
+    boolean needsRequestBody = false;
+    boolean needsResponseBody = false;
+    for (Filter filter : this.filters) {
+      needsRequestBody |= filter.requiresRequestBody();
+      needsResponseBody |= filter.requiresResponseBody();
+    }
+    this.requiresRequestBody = needsRequestBody;
+    this.requiresResponseBody = needsResponseBody;
   }
 
   /**
@@ -28,20 +40,30 @@ public class FilterChain {
    * @return true if all filters passed, false if any filter stopped the chain
    */
   public boolean executePreFilters(GatewayRequest request) {
-    logger.info("Executing pre-filters for path: {}", request.getPath());
+    return runPreFilters(request) == null;
+  }
 
-    for (Filter filter : filters) {
-      logger.debug("Executing pre-filter: {}", filter.getName());
-      boolean continueChain = filter.preProcess(request);
+  /**
+   * Executes the pre-processing phase and reports which filter, if any,
+   * stopped the chain.
+   *
+   * @param request The gateway request
+   * @return the filter that stopped the chain, or null if all filters passed
+   */
+  public Filter runPreFilters(GatewayRequest request) {
+    logger.debug("Executing pre-filters for path: {}", request.getPath());
 
-      if (!continueChain) {
-        logger.warn("Filter {} stopped the chain", filter.getName());
-        return false;
+    final Filter[] chain = this.filters;
+    for (int i = 0; i < chain.length; i++) {
+      logger.debug("Executing pre-filter: {}", chain[i].getName());
+      if (!chain[i].preProcess(request)) {
+        logger.warn("Filter {} stopped the chain", chain[i].getName());
+        return chain[i];
       }
     }
 
-    logger.info("All pre-filters passed");
-    return true;
+    logger.debug("All pre-filters passed");
+    return null;
   }
 
   /**
@@ -52,16 +74,34 @@ public class FilterChain {
    * @param response The gateway response
    */
   public void executePostFilters(GatewayRequest request, GatewayResponse response) {
-    logger.info("Executing post-filters for path: {}", request.getPath());
+    logger.debug("Executing post-filters for path: {}", request.getPath());
 
     // Execute in reverse order for post-processing
-    for (int i = filters.size() - 1; i >= 0; i--) {
-      Filter filter = filters.get(i);
-      logger.debug("Executing post-filter: {}", filter.getName());
-      filter.postProcess(request, response);
+    final Filter[] chain = this.filters;
+    for (int i = chain.length - 1; i >= 0; i--) {
+      logger.debug("Executing post-filter: {}", chain[i].getName());
+      chain[i].postProcess(request, response);
     }
 
-    logger.info("All post-filters executed");
+    logger.debug("All post-filters executed");
+  }
+
+  /**
+   * Indicates if any filter in the chain reads the request body.
+   *
+   * @return true if a streamed request body must be spooled first
+   */
+  public boolean requiresRequestBody() {
+    return requiresRequestBody;
+  }
+
+  /**
+   * Indicates if any filter in the chain needs the buffered response body.
+   *
+   * @return true if the response must be buffered
+   */
+  public boolean requiresResponseBody() {
+    return requiresResponseBody;
   }
 
   /**
@@ -70,6 +110,6 @@ public class FilterChain {
    * @return filter count
    */
   public int size() {
-    return filters.size();
+    return filters.length;
   }
 }
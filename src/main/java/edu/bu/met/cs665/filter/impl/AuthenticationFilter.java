@@ -1,36 +1,56 @@
 package edu.bu.met.cs665.filter.impl;
 
+import edu.bu.met.cs665.auth.StaticTokenValidator;
+import edu.bu.met.cs665.auth.TokenValidator;
 import edu.bu.met.cs665.filter.Filter;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
-import java.util.HashSet;
-import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 
 public class AuthenticationFilter implements Filter {
   private static final Logger logger = LogManager.getLogger(AuthenticationFilter.class);
-  private final Set<String> validTokens;
+  private final TokenValidator validator;
 
   /**
    * Creates a new AuthenticationFilter with a set of valid tokens.
    */
   public AuthenticationFilter() {
-    this.validTokens = new HashSet<>();
     // Pre-populate with some valid tokens for demonstration
-    validTokens.add("token-123");
-    validTokens.add("token-456");
-    validTokens.add("token-789");
+    this(new StaticTokenValidator("token-123", "token-456", "token-789"));
+  }
+
+  /**
+   * Creates a new AuthenticationFilter that checks bearer tokens with the
+   * given validator, e.g. a JwtTokenValidator.
+   *
+   * @param validator The token validator
+   */
+  public AuthenticationFilter(TokenValidator validator) {
+    this.validator = validator;
   }
 
   /**
    * Adds a valid token to the authentication system.
    *
    * @param token The token to add
+   * @throws IllegalStateException if the filter does not use a static token list
    */
   public void addValidToken(String token) {
-    validTokens.add(token);
+    if (!(validator instanceof StaticTokenValidator)) {
+      throw new IllegalStateException("Tokens can only be added to a static token list");
+    }
+    ((StaticTokenValidator) validator).addToken(token);
+  }
+
+  /**
+   * Gets the validator that checks bearer tokens.
+   *
+   * @return The token validator
+   */
+  public TokenValidator getValidator() {
+    return validator;
   }
 
   /**
@@ -55,12 +75,13 @@ public class AuthenticationFilter implements Filter {
     // Extract token from "Bearer token-123" format
     String token = authHeader.replace("Bearer ", "").replace("bearer ", "");
 
-    if (!validTokens.contains(token)) {
-      logger.warn("Invalid token: {} for request: {}", token, request.getPath());
+    // Signed tokens are credentials in their own right, so they are never logged
+    if (!validator.isValid(token)) {
+      logger.warn("Invalid token for request: {}", request.getPath());
       return false;
     }
 
-    logger.info("Authentication successful for token: {}", token);
+    logger.debug("Authentication successful for request: {}", request.getPath());
     return true;
   }
 
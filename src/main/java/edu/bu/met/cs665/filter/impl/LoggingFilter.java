@@ -10,23 +10,35 @@ import org.apache.logging.log4j.Logger;
 public class LoggingFilter implements Filter {
   private static final Logger logger = LogManager.getLogger(LoggingFilter.class);
 
+  /**
+   * Logs the incoming request at DEBUG. The gateway's access log keeps a
+   * per-request record in production; this filter is for troubleshooting.
+   *
+   * @param request The gateway request
+   * @return always true
+   */
   @Override
   public boolean preProcess(GatewayRequest request) {
-    logger.info("=== Request Logging ===");
-    logger.info("Method: {}", request.getMethod());
-    logger.info("Path: {}", request.getPath());
-    logger.info("Client ID: {}", request.getClientId());
-    logger.info("Headers: {}", request.getHeaders());
-    logger.info("Timestamp: {}", request.getTimestamp());
+    if (logger.isDebugEnabled()) {
+      logger.debug("Request: {} {} client={} headers={} timestamp={}", request.getMethod(),
+          request.getPath(), request.getClientId(), request.getHeaders(), request.getTimestamp());
+    }
     return true;
   }
 
+  /**
+   * Logs the response at DEBUG.
+   *
+   * @param request The gateway request
+   * @param response The gateway response
+   */
   @Override
   public void postProcess(GatewayRequest request, GatewayResponse response) {
-    logger.info("=== Response Logging ===");
-    logger.info("Status Code: {}", response.getStatusCode());
-    logger.info("Processing Time: {} ms", response.getProcessingTime());
-    logger.info("Response Headers: {}", response.getHeaders());
+    if (logger.isDebugEnabled()) {
+      logger.debug("Response: {} {} status={} time={}ms headers={}", request.getMethod(),
+          request.getPath(), response.getStatusCode(), response.getProcessingTime(),
+          response.getHeaders());
+    }
   }
 
   /**
@@ -3,10 +3,9 @@ package edu.bu.met.cs665.filter.impl;
 import edu.bu.met.cs665.filter.Filter;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import edu.bu.met.cs665.ratelimit.RateLimiter;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,16 +13,26 @@ import org.apache.logging.log4j.Logger;
 public class RateLimitFilter implements Filter {
   private static final Logger logger = LogManager.getLogger(RateLimitFilter.class);
   private final int maxRequestsPerMinute;
-  private final Map<String, Queue<Long>> clientRequestTimes;
+  private final RateLimiter limiter;
 
   /**
-   * Creates a new RateLimitFilter.
+   * Creates a new RateLimitFilter. A limit of zero or less denies every request.
    *
    * @param maxRequestsPerMinute Maximum requests allowed per minute
    */
   public RateLimitFilter(int maxRequestsPerMinute) {
-    this.maxRequestsPerMinute = maxRequestsPerMinute;
-    this.clientRequestTimes = new HashMap<>();
+    this(maxRequestsPerMinute > 0
+        ? new GcraRateLimiter(maxRequestsPerMinute, 1, TimeUnit.MINUTES) : new DenyAll());
+  }
+
+  /**
+   * Creates a RateLimitFilter that delegates to the given limiter.
+   *
+   * @param limiter Per-client limiter
+   */
+  public RateLimitFilter(RateLimiter limiter) {
+    this.maxRequestsPerMinute = limiter.getLimit();
+    this.limiter = limiter;
   }
 
   /**
@@ -34,30 +43,18 @@ public class RateLimitFilter implements Filter {
    */
   @Override
   public boolean preProcess(GatewayRequest request) {
-    String clientId = request.getClientId();
-    if (clientId == null || clientId.isEmpty()) {
-      clientId = "default";
-    }
+    String clientId = clientId(request);
 
-    long currentTime = System.currentTimeMillis();
-    Queue<Long> requestTimes = clientRequestTimes.computeIfAbsent(
-        clientId, k -> new LinkedList<>()
-    );
-
-    long oneMinuteAgo = currentTime - 60000;
-    while (!requestTimes.isEmpty() && requestTimes.peek() < oneMinuteAgo) {
-      requestTimes.poll();
-    }
-
-    if (requestTimes.size() >= maxRequestsPerMinute) {
+    if (!limiter.tryAcquire(clientId)) {
       logger.warn("Rate limit exceeded for client: {}. Limit: {}/min",
           clientId, maxRequestsPerMinute);
       return false;
     }
 
-    requestTimes.offer(currentTime);
-    logger.info("Rate limit check passed for client: {}. Current: {}/{}",
-        clientId, requestTimes.size(), maxRequestsPerMinute);
+    if (logger.isDebugEnabled()) {
+      logger.debug("Rate limit check passed for client: {}. Remaining: {}/{}",
+          clientId, limiter.getRemaining(clientId), maxRequestsPerMinute);
+    }
 
     return true;
   }
@@ -70,15 +67,9 @@ public class RateLimitFilter implements Filter {
    */
   @Override
   public void postProcess(GatewayRequest request, GatewayResponse response) {
-    String clientId = request.getClientId() != null 
-        ? request.getClientId() : "default";
-    Queue<Long> requestTimes = clientRequestTimes.get(clientId);
-
-    if (requestTimes != null) {
-      int remaining = maxRequestsPerMinute - requestTimes.size();
-      response.addHeader("X-RateLimit-Limit", String.valueOf(maxRequestsPerMinute));
-      response.addHeader("X-RateLimit-Remaining", String.valueOf(remaining));
-    }
+    int remaining = limiter.getRemaining(clientId(request));
+    response.addHeader("X-RateLimit-Limit", String.valueOf(maxRequestsPerMinute));
+    response.addHeader("X-RateLimit-Remaining", String.valueOf(remaining));
   }
 
   /**
@@ -92,14 +83,22 @@ public class RateLimitFilter implements Filter {
   }
 
   /**
-   * Gets the current request count for a client.
+   * Gets the number of requests a client has used from its current limit.
    *
    * @param clientId The client identifier
    * @return Current request count
    */
   public int getCurrentCount(String clientId) {
-    Queue<Long> requestTimes = clientRequestTimes.get(clientId);
-    return requestTimes != null ? requestTimes.size() : 0;
+    return maxRequestsPerMinute - limiter.getRemaining(clientId);
+  }
+
+  /**
+   * Gets the limiter holding the per-client state.
+   *
+   * @return The rate limiter
+   */
+  public RateLimiter getLimiter() {
+    return limiter;
   }
 
   /**
@@ -108,6 +107,38 @@ public class RateLimitFilter implements Filter {
    * @param clientId The client identifier
    */
   public void reset(String clientId) {
-    clientRequestTimes.remove(clientId);
+    limiter.reset(clientId);
+  }
+
+  private static String clientId(GatewayRequest request) {
+    String clientId = request.getClientId();
+    return clientId == null || clientId.isEmpty() ? "default" : clientId;
+  }
+
+
+  private static final class DenyAll implements RateLimiter {
+
+    @Override
+    public boolean tryAcquire(String key) {
+      return false;
+    }
+
+    @Override
+    public void release(String key) {
+    }
+
+    @Override
+    public int getRemaining(String key) {
+      return 0;
+    }
+
+    @Override
+    public int getLimit() {
+      return 0;
+    }
+
+    @Override
+    public void reset(String key) {
+    }
   }
 }
@@ -22,7 +22,7 @@ public class TransformationFilter implements Filter {
     request.addHeader("X-Gateway-Timestamp", String.valueOf(System.currentTimeMillis()));
 
     if (request.getBody() != null && !request.getBody().isEmpty()) {
-      logger.info("Request body size before transformation: {} bytes",
+      logger.debug("Request body size before transformation: {} bytes",
           request.getBody().length());
     }
 
@@ -43,7 +43,7 @@ public class TransformationFilter implements Filter {
     long processingTime = System.currentTimeMillis() - request.getTimestamp();
     response.setProcessingTime(processingTime);
 
-    logger.info("Response transformation complete. Processing time: {} ms",
+    logger.debug("Response transformation complete. Processing time: {} ms",
         processingTime);
   }
 
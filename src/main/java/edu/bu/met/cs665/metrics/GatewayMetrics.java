@@ -0,0 +1,175 @@
+package edu.bu.met.cs665.metrics;
+
+import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.route.Route;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+public class GatewayMetrics {
+  static final String REQUESTS = "gateway.requests";
+  static final String UPSTREAM_RESPONSES = "gateway.upstream.responses";
+  static final String REJECTS = "gateway.rejects";
+  static final String POOL_LEASE_WAIT = "gateway.pool.lease.wait";
+  static final String POOL_IN_USE = "gateway.pool.in.use";
+  static final String POOL_MAX = "gateway.pool.max";
+
+  private static final String UNMATCHED = "unmatched";
+  private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final Duration STATISTIC_EXPIRY = Duration.ofMinutes(1);
+  private static final int MAX_STATUS = 600;
+
+  private final MeterRegistry registry;
+  private final ConcurrentMap<Route, RouteMeters> routes;
+  private final RouteMeters unmatched;
+  private final Timer leaseWait;
+
+  /**
+   * Creates the gateway meters in the given registry.
+   *
+   * @param registry The registry, the Prometheus one when running in Spring
+   */
+  public GatewayMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.routes = new ConcurrentHashMap<>();
+    this.unmatched = new RouteMeters(UNMATCHED);
+    this.leaseWait = Timer.builder(POOL_LEASE_WAIT)
+        .description("Time spent waiting for a pooled HTTP client or connection")
+        .publishPercentiles(PERCENTILES)
+        .distributionStatisticExpiry(STATISTIC_EXPIRY)
+        .register(registry);
+  }
+
+  /**
+   * Publishes the pool's in-use and maximum counts as gauges and starts
+   * timing its lease waits.
+   *
+   * @param pool The blocking HTTP client pool
+   */
+  public void bindPool(HttpClientPool pool) {
+    Gauge.builder(POOL_IN_USE, pool, HttpClientPool::getInUseCount)
+        .description("HTTP clients or connections currently leased")
+        .register(registry);
+    Gauge.builder(POOL_MAX, pool, HttpClientPool::getMaxPoolSize)
+        .description("Maximum HTTP clients or connections")
+        .register(registry);
+    pool.setLeaseWaitListener(this::recordLeaseWait);
+  }
+
+  /**
+   * Records a finished request in the route's latency timer. The meters of
+   * a route are looked up once and then kept, so this costs one map read
+   * and the timer's histogram update.
+   *
+   * @param route The matched route, or null if none matched
+   * @param nanos Time from arrival to response in nanoseconds
+   */
+  public void recordRequest(Route route, long nanos) {
+    meters(route).requests.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Counts a status code returned by a route's backend.
+   *
+   * @param route The matched route
+   * @param status The backend status code
+   */
+  public void recordUpstreamStatus(Route route, int status) {
+    meters(route).status(status).increment();
+  }
+
+  /**
+   * Counts a request turned away by the gateway before reaching the backend.
+   *
+   * @param route The matched route, or null if none matched
+   * @param reason The filter name, or what else rejected the request
+   */
+  public void recordReject(Route route, String reason) {
+    meters(route).reject(reason).increment();
+  }
+
+  /**
+   * Records how long a caller waited for a pooled client or connection.
+   *
+   * @param nanos Wait time in nanoseconds
+   */
+  public void recordLeaseWait(long nanos) {
+    leaseWait.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gets the registry holding the gateway meters.
+   *
+   * @return the meter registry
+   */
+  public MeterRegistry getRegistry() {
+    return registry;
+  }
+
+  private RouteMeters meters(Route route) {
+    if (route == null) {
+      return unmatched;
+    }
+    RouteMeters meters = routes.get(route);
+    if (meters == null) {
+      meters = routes.computeIfAbsent(route, r -> new RouteMeters(r.getPathPattern()));
+    }
+    return meters;
+  }
+
+  /**
+   * Meters of one route. Status and reject counters are created on first
+   * use and cached, since the registry lookup allocates a meter ID.
+   */
+  private final class RouteMeters {
+    private final String route;
+    private final Timer requests;
+    private final AtomicReferenceArray<Counter> statuses;
+    private final ConcurrentMap<String, Counter> rejects;
+
+    private RouteMeters(String route) {
+      this.route = route;
+      this.requests = Timer.builder(REQUESTS)
+          .description("Time from request arrival to response, per route")
+          .tag("route", route)
+          .publishPercentiles(PERCENTILES)
+          .distributionStatisticExpiry(STATISTIC_EXPIRY)
+          .register(registry);
+      this.statuses = new AtomicReferenceArray<>(MAX_STATUS);
+      this.rejects = new ConcurrentHashMap<>();
+    }
+
+    private Counter status(int status) {
+      int index = status > 0 && status < MAX_STATUS ? status : 0;
+      Counter counter = statuses.get(index);
+      if (counter == null) {
+        counter = Counter.builder(UPSTREAM_RESPONSES)
+            .description("Responses from the backend, per route and status code")
+            .tag("route", route)
+            .tag("status", index == 0 ? "other" : String.valueOf(index))
+            .register(registry);
+        statuses.set(index, counter);
+      }
+      return counter;
+    }
+
+    private Counter reject(String reason) {
+      Counter counter = rejects.get(reason);
+      if (counter == null) {
+        counter = rejects.computeIfAbsent(reason, r -> Counter.builder(REJECTS)
+            .description("Requests turned away before reaching the backend")
+            .tag("route", route)
+            .tag("reason", r)
+            .register(registry));
+      }
+      return counter;
+    }
+  }
+}
@@ -1,5 +1,13 @@
 package edu.bu.met.cs665.model;
 
+import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.trace.TraceContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,8 +18,14 @@ public class GatewayRequest {
   private Map<String, String> headers;
   private Map<String, String> queryParams;
   private String body;
+  private InputStream bodyStream;
+  private long contentLength = -1;
+  private Path bodyFile;
   private String clientId;
   private long timestamp;
+  private long startNanos;
+  private Route matchedRoute;
+  private TraceContext traceContext;
 
   /**
    * Constructs a new GatewayRequest.
@@ -20,6 +34,7 @@ public class GatewayRequest {
     this.headers = new HashMap<>();
     this.queryParams = new HashMap<>();
     this.timestamp = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
   }
 
   /**
@@ -122,6 +137,70 @@ public class GatewayRequest {
     this.body = body;
   }
 
+  /**
+   * Returns the unread request body stream, if the body has not been buffered.
+   * 
+   * @return body stream, or null
+   */
+  public InputStream getBodyStream() {
+    return bodyStream;
+  }
+
+  /**
+   * Sets the request body as a stream to be read at most once.
+   * 
+   * @param bodyStream body stream
+   * @param contentLength declared body length, or -1 if unknown
+   */
+  public void setBodyStream(InputStream bodyStream, long contentLength) {
+    this.bodyStream = bodyStream;
+    this.contentLength = contentLength;
+  }
+
+  /**
+   * Returns the body length declared by the client.
+   * 
+   * @return length in bytes, or -1 if unknown
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * Returns the temp file holding the body, if it was spooled to disk.
+   * 
+   * @return body file, or null
+   */
+  public Path getBodyFile() {
+    return bodyFile;
+  }
+
+  /**
+   * Sets the temp file holding the body.
+   * 
+   * @param bodyFile body file
+   */
+  public void setBodyFile(Path bodyFile) {
+    this.bodyFile = bodyFile;
+  }
+
+  /**
+   * Opens a fresh stream over the request body for filters that inspect it.
+   * Works for bodies held as a String or spooled to a file.
+   * 
+   * @return a new stream over the body, or null if there is no readable body
+   * @throws IOException if the spooled file cannot be opened
+   */
+  public InputStream openBody() throws IOException {
+    if (bodyFile != null) {
+      return Files.newInputStream(bodyFile);
+    }
+    if (body != null) {
+      return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return null;
+  }
+
   /**
    * Returns the client ID associated with the request.
    * 
@@ -157,4 +236,59 @@ public class GatewayRequest {
   public void setTimestamp(long timestamp) {
     this.timestamp = timestamp;
   }
+
+  /**
+   * Returns the monotonic time when the request was created.
+   * Only meaningful when compared with other System.nanoTime() values.
+   * 
+   * @return start time from System.nanoTime()
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Sets the monotonic time when the request was created.
+   * 
+   * @param startNanos start time from System.nanoTime()
+   */
+  public void setStartNanos(long startNanos) {
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * Returns the route the gateway matched for this request.
+   *
+   * @return matched route, or null before routing or if no route matched
+   */
+  public Route getMatchedRoute() {
+    return matchedRoute;
+  }
+
+  /**
+   * Sets the route the gateway matched for this request.
+   *
+   * @param matchedRoute matched route
+   */
+  public void setMatchedRoute(Route matchedRoute) {
+    this.matchedRoute = matchedRoute;
+  }
+
+  /**
+   * Returns the trace recording this request's phases.
+   *
+   * @return trace context, or null if the request is not traced
+   */
+  public TraceContext getTraceContext() {
+    return traceContext;
+  }
+
+  /**
+   * Sets the trace recording this request's phases.
+   *
+   * @param traceContext trace context
+   */
+  public void setTraceContext(TraceContext traceContext) {
+    this.traceContext = traceContext;
+  }
 }
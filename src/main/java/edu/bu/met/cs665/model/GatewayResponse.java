@@ -8,6 +8,7 @@ public class GatewayResponse {
   private int statusCode;
   private Map<String, String> headers;
   private String body;
+  private StreamingBody streamingBody;
   private long processingTime;
 
   /**
@@ -82,6 +83,33 @@ public class GatewayResponse {
     this.body = body;
   }
 
+  /**
+   * Returns the body to stream to the client, if the body was not buffered.
+   * 
+   * @return streaming body, or null when the body is held in {@link #getBody()}
+   */
+  public StreamingBody getStreamingBody() {
+    return streamingBody;
+  }
+
+  /**
+   * Sets a body to be streamed to the client instead of a buffered String.
+   * 
+   * @param streamingBody streaming body
+   */
+  public void setStreamingBody(StreamingBody streamingBody) {
+    this.streamingBody = streamingBody;
+  }
+
+  /**
+   * Indicates if the body must be streamed rather than read from {@link #getBody()}.
+   * 
+   * @return true if a streaming body is set
+   */
+  public boolean isStreaming() {
+    return streamingBody != null;
+  }
+
   /**
    * Returns the processing time of the response.
    * 
@@ -0,0 +1,30 @@
+package edu.bu.met.cs665.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+public interface StreamingBody extends Closeable {
+
+  /**
+   * Copies the body to the given stream. Can only be called once.
+   *
+   * @param out The stream to write to
+   * @throws IOException if reading the source or writing the output fails
+   */
+  void writeTo(OutputStream out) throws IOException;
+
+  /**
+   * Returns the body length if it is known up front.
+   *
+   * @return length in bytes, or -1 if unknown
+   */
+  long getContentLength();
+
+  /**
+   * Releases the resources behind the body. Safe to call more than once.
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,182 @@
+package edu.bu.met.cs665.pool;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class AsyncHttpClientPool {
+  private static final Logger logger = LogManager.getLogger(AsyncHttpClientPool.class);
+  private final PoolingNHttpClientConnectionManager connectionManager;
+  private final CloseableHttpAsyncClient client;
+  private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000; // 30 seconds
+  private static final long MIN_EVICTION_PERIOD_MILLIS = 1000;
+  private final AtomicInteger inFlight;
+  private final int maxTotal;
+  private final ScheduledExecutorService evictor;
+
+  /**
+   * Creates and starts a non-blocking HTTP client over a shared pool of
+   * keep-alive connections. A few I/O threads serve every request, so no
+   * thread waits while a backend is working.
+   *
+   * @param maxTotal Maximum connections in total
+   * @param maxPerRoute Maximum connections per upstream host
+   * @param ioThreads Number of I/O dispatcher threads
+   * @param timeout Timeout in seconds for leasing a connection
+   * @throws IllegalStateException if the I/O reactor cannot be created
+   */
+  public AsyncHttpClientPool(int maxTotal, int maxPerRoute, int ioThreads, int timeout) {
+    this(maxTotal, maxPerRoute, ioThreads, timeout, DEFAULT_IDLE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Creates and starts a non-blocking HTTP client whose idle and expired
+   * connections are closed by a background thread. The I/O reactor does not
+   * reap them on its own, so without it half-closed keep-alive connections
+   * would stay in the pool until a request failed on one.
+   *
+   * @param maxTotal Maximum connections in total
+   * @param maxPerRoute Maximum connections per upstream host
+   * @param ioThreads Number of I/O dispatcher threads
+   * @param timeout Timeout in seconds for leasing a connection
+   * @param idleTimeoutMillis How long a connection may sit idle before it is closed
+   * @throws IllegalStateException if the I/O reactor cannot be created
+   */
+  public AsyncHttpClientPool(int maxTotal, int maxPerRoute, int ioThreads, int timeout,
+      long idleTimeoutMillis) {
+    this.maxTotal = maxTotal;
+    this.inFlight = new AtomicInteger();
+
+    try {
+      this.connectionManager = new PoolingNHttpClientConnectionManager(
+          new DefaultConnectingIOReactor(IOReactorConfig.custom()
+              .setIoThreadCount(ioThreads)
+              .setSoKeepAlive(true)
+              .build()));
+    } catch (IOReactorException e) {
+      throw new IllegalStateException("Could not create I/O reactor", e);
+    }
+    this.connectionManager.setMaxTotal(maxTotal);
+    this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+    this.client = HttpAsyncClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(timeout))
+            .build())
+        .build();
+    this.client.start();
+
+    this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "async-pool-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(MIN_EVICTION_PERIOD_MILLIS, idleTimeoutMillis / 2);
+    this.evictor.scheduleWithFixedDelay(() -> evictIdleConnections(idleTimeoutMillis),
+        period, period, TimeUnit.MILLISECONDS);
+
+    logger.info("Async HTTP client started. Max total: {}, max per route: {}, I/O threads: {}",
+        maxTotal, maxPerRoute, ioThreads);
+  }
+
+  /**
+   * Sends a request without blocking. The callback runs on an I/O thread
+   * once the whole response has been received, and must not block.
+   *
+   * @param request The request to send
+   * @param callback Receives the response or the failure
+   * @return A future that can be used to cancel the request
+   */
+  public Future<HttpResponse> execute(HttpUriRequest request,
+      FutureCallback<HttpResponse> callback) {
+    inFlight.incrementAndGet();
+    return client.execute(request, new FutureCallback<HttpResponse>() {
+      @Override
+      public void completed(HttpResponse response) {
+        inFlight.decrementAndGet();
+        callback.completed(response);
+      }
+
+      @Override
+      public void failed(Exception e) {
+        inFlight.decrementAndGet();
+        callback.failed(e);
+      }
+
+      @Override
+      public void cancelled() {
+        inFlight.decrementAndGet();
+        callback.cancelled();
+      }
+    });
+  }
+
+  /**
+   * Closes connections that have been idle for longer than the given time.
+   * Called periodically by the pool's evictor thread.
+   *
+   * @param idleMillis Idle time in milliseconds
+   */
+  public void evictIdleConnections(long idleMillis) {
+    connectionManager.closeExpiredConnections();
+    connectionManager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Shuts down the client and closes all connections.
+   */
+  public void shutdown() {
+    logger.info("Shutting down async HTTP client");
+    evictor.shutdownNow();
+    try {
+      client.close();
+    } catch (IOException e) {
+      logger.error("Error closing async HTTP client", e);
+    }
+  }
+
+  /**
+   * Gets the number of requests sent and not yet answered.
+   *
+   * @return Requests in flight
+   */
+  public int getInFlightCount() {
+    return inFlight.get();
+  }
+
+  /**
+   * Gets the maximum number of connections.
+   *
+   * @return Max-total connections
+   */
+  public int getMaxTotal() {
+    return maxTotal;
+  }
+
+  /**
+   * Gets leased, available and pending connection counts across all hosts.
+   *
+   * @return Connection statistics
+   */
+  public PoolStats getTotalStats() {
+    return connectionManager.getTotalStats();
+  }
+}
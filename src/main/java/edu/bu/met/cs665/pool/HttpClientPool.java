@@ -1,20 +1,49 @@
 package edu.bu.met.cs665.pool;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 
 public class HttpClientPool {
   private static final Logger logger = LogManager.getLogger(HttpClientPool.class);
+  private final Mode mode;
   private final BlockingQueue<CloseableHttpClient> pool;
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient sharedClient;
+  private final AtomicInteger sharedInUse;
   private final int maxPoolSize;
   private final int timeout;
+  private volatile LongConsumer leaseWaitListener;
+  private volatile boolean shutdown;
+
+  /**
+   * How the pool hands out HTTP clients.
+   */
+  public enum Mode {
+    /** A fixed set of independent clients, each with its own connections. */
+    DEDICATED,
+    /** One client over a single keep-alive connection manager shared by all callers. */
+    SHARED
+  }
 
   /**
    * Creates a new HttpClientPool with the specified parameters.
@@ -23,13 +52,61 @@ public class HttpClientPool {
    * @param timeout Timeout in seconds for acquiring a client
    */
   public HttpClientPool(int poolSize, int timeout) {
-    this.maxPoolSize = poolSize;
-    this.timeout = timeout;
-    this.pool = new ArrayBlockingQueue<>(poolSize);
+    this(new Builder().poolSize(poolSize).timeout(timeout));
+  }
 
-    this.initializePool();
+  /**
+   * Private constructor - used by the public constructor and the Builder.
+   *
+   * @param builder The builder instance
+   */
+  private HttpClientPool(Builder builder) {
+    this.mode = builder.mode;
+    this.maxPoolSize = builder.poolSize;
+    this.timeout = builder.timeout;
 
-    logger.info("HTTP Client Pool initialized with size: {}", poolSize);
+    if (mode == Mode.SHARED) {
+      this.pool = null;
+      this.sharedInUse = new AtomicInteger();
+      this.connectionManager = new PoolingHttpClientConnectionManager(
+          builder.connectionTimeToLive, TimeUnit.MILLISECONDS) {
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+          ConnectionRequest request = super.requestConnection(route, state);
+          LongConsumer listener = leaseWaitListener;
+          return listener == null ? request : new TimedConnectionRequest(request, listener);
+        }
+      };
+      this.connectionManager.setMaxTotal(builder.poolSize);
+      this.connectionManager.setDefaultMaxPerRoute(builder.maxPerRoute);
+      this.connectionManager.setValidateAfterInactivity(builder.validateAfterInactivity);
+      this.sharedClient = HttpClients.custom()
+          .setConnectionManager(connectionManager)
+          .setDefaultRequestConfig(RequestConfig.custom()
+              .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(timeout))
+              .build())
+          .evictExpiredConnections()
+          .evictIdleConnections(builder.idleTimeout, TimeUnit.MILLISECONDS)
+          .build();
+      logger.info("Shared HTTP connection pool initialized. Max total: {}, max per route: {}",
+          builder.poolSize, builder.maxPerRoute);
+    } else {
+      this.pool = new ArrayBlockingQueue<>(builder.poolSize);
+      this.sharedInUse = null;
+      this.connectionManager = null;
+      this.sharedClient = null;
+      this.initializePool();
+      logger.info("HTTP Client Pool initialized with size: {}", builder.poolSize);
+    }
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
   }
 
   /**
@@ -49,15 +126,43 @@ public class HttpClientPool {
   /**
    * Acquires an HTTP client from the pool.
    * If no client is available, waits up to the timeout period.
+   * In shared mode the same client is returned to every caller and the
+   * wait for a free connection happens inside the connection manager.
    *
    * @return A CloseableHttpClient from the pool
    * @throws InterruptedException if interrupted while waiting
    * @throws IllegalStateException if no client available within timeout
    */
   public CloseableHttpClient acquire() throws InterruptedException {
+    return acquire(TimeUnit.SECONDS.toMillis(timeout));
+  }
+
+  /**
+   * Acquires an HTTP client from the pool, waiting at most the given time.
+   * Used by callers that have their own deadline to respect.
+   *
+   * @param timeoutMillis Maximum time to wait in milliseconds
+   * @return A CloseableHttpClient from the pool
+   * @throws InterruptedException if interrupted while waiting
+   * @throws IllegalStateException if no client available within timeout
+   */
+  public CloseableHttpClient acquire(long timeoutMillis) throws InterruptedException {
+    if (mode == Mode.SHARED) {
+      if (shutdown) {
+        throw new IllegalStateException("HTTP client pool has been shut down");
+      }
+      sharedInUse.incrementAndGet();
+      return sharedClient;
+    }
+
     logger.debug("Acquiring HTTP client from pool. Pool size: {}", pool.size());
 
-    CloseableHttpClient client = pool.poll(timeout, TimeUnit.SECONDS);
+    long start = System.nanoTime();
+    CloseableHttpClient client = pool.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    LongConsumer listener = leaseWaitListener;
+    if (listener != null) {
+      listener.accept(System.nanoTime() - start);
+    }
 
     if (client == null) {
       logger.error("Timeout acquiring HTTP client from pool");
@@ -76,6 +181,13 @@ public class HttpClientPool {
    * @param client The client to release
    */
   public void release(CloseableHttpClient client) {
+    if (mode == Mode.SHARED) {
+      if (client != null && client == sharedClient) {
+        sharedInUse.decrementAndGet();
+      }
+      return;
+    }
+
     if (client != null) {
       boolean returned = pool.offer(client);
       if (returned) {
@@ -96,6 +208,17 @@ public class HttpClientPool {
    */
   public void shutdown() {
     logger.info("Shutting down HTTP Client Pool");
+    shutdown = true;
+
+    if (mode == Mode.SHARED) {
+      try {
+        sharedClient.close();
+      } catch (IOException e) {
+        logger.error("Error closing shared HTTP client during shutdown", e);
+      }
+      logger.info("HTTP Client Pool shutdown complete");
+      return;
+    }
 
     while (!pool.isEmpty()) {
       try {
@@ -111,17 +234,31 @@ public class HttpClientPool {
     logger.info("HTTP Client Pool shutdown complete");
   }
 
+  /**
+   * Gets the mode this pool was created with.
+   *
+   * @return pool mode
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
   /**
    * Gets the current size of the pool.
+   * In shared mode this is the number of connections that can still be leased.
    *
    * @return Number of available clients in pool
    */
   public int getAvailableCount() {
+    if (mode == Mode.SHARED) {
+      return shutdown ? 0 : Math.max(0, maxPoolSize - sharedInUse.get());
+    }
     return pool.size();
   }
 
   /**
    * Gets the maximum pool size.
+   * In shared mode this is the connection manager's max-total limit.
    *
    * @return Maximum pool size
    */
@@ -131,10 +268,182 @@ public class HttpClientPool {
 
   /**
    * Gets the number of clients currently in use.
+   * In shared mode this is the number of callers between acquire and release.
    *
    * @return Number of clients in use
    */
   public int getInUseCount() {
+    if (mode == Mode.SHARED) {
+      return sharedInUse.get();
+    }
     return maxPoolSize - pool.size();
   }
+
+  /**
+   * Sets a listener told how long each lease waited, in nanoseconds. In
+   * dedicated mode that is the wait for a free client; in shared mode, the
+   * wait for a pooled connection inside the connection manager, since
+   * acquiring the shared client itself never blocks.
+   *
+   * @param listener Receives wait times, or null to stop timing
+   */
+  public void setLeaseWaitListener(LongConsumer listener) {
+    this.leaseWaitListener = listener;
+  }
+
+  /**
+   * Gets leased, available and pending connection counts per upstream host.
+   * Only the shared mode tracks connections; the dedicated mode returns an empty map.
+   *
+   * @return Connection statistics keyed by upstream host, sorted by host
+   */
+  public Map<String, PoolStats> getRouteStats() {
+    if (mode != Mode.SHARED || shutdown) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, PoolStats> stats = new TreeMap<>();
+    for (HttpRoute route : connectionManager.getRoutes()) {
+      stats.put(route.getTargetHost().toURI(), connectionManager.getStats(route));
+    }
+    return stats;
+  }
+
+  /**
+   * Connection request that reports how long {@code get} waited for a
+   * pooled connection.
+   */
+  private static final class TimedConnectionRequest implements ConnectionRequest {
+    private final ConnectionRequest delegate;
+    private final LongConsumer listener;
+
+    private TimedConnectionRequest(ConnectionRequest delegate, LongConsumer listener) {
+      this.delegate = delegate;
+      this.listener = listener;
+    }
+
+    @Override
+    public HttpClientConnection get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+      long start = System.nanoTime();
+      try {
+        return delegate.get(timeout, unit);
+      } finally {
+        listener.accept(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean cancel() {
+      return delegate.cancel();
+    }
+  }
+
+
+  public static class Builder {
+    private Mode mode = Mode.DEDICATED;
+    private int poolSize = 10;
+    private int maxPerRoute = 10;
+    private int timeout = 5; // seconds
+    private long idleTimeout = 30000; // 30 seconds
+    private long connectionTimeToLive = -1; // no limit
+    private int validateAfterInactivity = 2000; // 2 seconds
+
+    /**
+     * Constructor - use {@link HttpClientPool#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Sets the pool mode.
+     *
+     * @param mode DEDICATED or SHARED
+     * @return this Builder instance for method chaining
+     */
+    public Builder mode(Mode mode) {
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets the number of clients, or the max-total connections in shared mode.
+     *
+     * @param poolSize Maximum pool size
+     * @return this Builder instance for method chaining
+     */
+    public Builder poolSize(int poolSize) {
+      this.poolSize = poolSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum connections per upstream host (shared mode only).
+     *
+     * @param maxPerRoute Maximum connections per host
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxPerRoute(int maxPerRoute) {
+      this.maxPerRoute = maxPerRoute;
+      return this;
+    }
+
+    /**
+     * Sets how long to wait for a client or connection.
+     *
+     * @param timeout Timeout in seconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder timeout(int timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Sets how long a connection may sit idle before it is evicted (shared mode only).
+     *
+     * @param idleTimeout Idle timeout in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder idleTimeout(long idleTimeout) {
+      this.idleTimeout = idleTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the maximum lifetime of a pooled connection (shared mode only).
+     *
+     * @param connectionTimeToLive Time to live in milliseconds, or -1 for no limit
+     * @return this Builder instance for method chaining
+     */
+    public Builder connectionTimeToLive(long connectionTimeToLive) {
+      this.connectionTimeToLive = connectionTimeToLive;
+      return this;
+    }
+
+    /**
+     * Sets the idle period after which a connection is re-validated before
+     * reuse (shared mode only).
+     *
+     * @param validateAfterInactivity Inactivity period in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder validateAfterInactivity(int validateAfterInactivity) {
+      this.validateAfterInactivity = validateAfterInactivity;
+      return this;
+    }
+
+    /**
+     * Builds and returns the HttpClientPool instance.
+     *
+     * @return A new HttpClientPool
+     * @throws IllegalStateException if the sizes are not positive
+     */
+    public HttpClientPool build() {
+      if (poolSize <= 0 || maxPerRoute <= 0) {
+        throw new IllegalStateException("poolSize and maxPerRoute must be positive");
+      }
+      return new HttpClientPool(this);
+    }
+  }
 }
@@ -0,0 +1,460 @@
+package edu.bu.met.cs665.ratelimit;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class DistributedRateLimiter implements RateLimiter {
+  private static final Logger logger = LogManager.getLogger(DistributedRateLimiter.class);
+
+  private final SharedCounterStore store;
+  private final String namespace;
+  private final int limit;
+  private final long periodMillis;
+  private final int batchSize;
+  private final long storeTimeoutMillis;
+  private final int maxKeys;
+  private final LongSupplier clock;
+  private final Executor executor;
+  private final ExecutorService ownedExecutor;
+  private final GcraRateLimiter fallback;
+  private final ConcurrentMap<String, Lease> leases;
+  private final AtomicLong fallbackCount;
+
+  /**
+   * Private constructor - instances are created through {@link #builder(SharedCounterStore)}.
+   * The limit applies to the whole cluster within fixed windows of one period,
+   * aligned on the wall clock so every instance agrees on the window. Each
+   * instance leases batchSize permits at a time from the shared counter and
+   * spends them locally, so the store is called once per batch rather than
+   * once per request. At most one batch per instance and key can be left
+   * unspent when a window ends, which makes the limit slightly conservative.
+   *
+   * @param builder The builder instance
+   */
+  private DistributedRateLimiter(Builder builder) {
+    this.store = builder.store;
+    this.namespace = builder.namespace;
+    this.limit = builder.limit;
+    this.periodMillis = builder.periodMillis;
+    this.batchSize = Math.min(builder.batchSize, builder.limit);
+    this.storeTimeoutMillis = builder.storeTimeoutMillis;
+    this.maxKeys = builder.maxKeys;
+    this.clock = builder.clock;
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownedExecutor = null;
+    } else {
+      this.ownedExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-lease");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.executor = ownedExecutor;
+    }
+    int localShare = (builder.limit + builder.expectedNodes - 1) / builder.expectedNodes;
+    this.fallback = GcraRateLimiter.builder()
+        .limit(localShare)
+        .period(builder.periodMillis, TimeUnit.MILLISECONDS)
+        .maxKeys(builder.maxKeys)
+        .build();
+    this.leases = new ConcurrentHashMap<>();
+    this.fallbackCount = new AtomicLong();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param store The counter store shared by every gateway instance
+   * @return A new Builder instance
+   */
+  public static Builder builder(SharedCounterStore store) {
+    return new Builder(store);
+  }
+
+  /**
+   * Takes one permit for the key from the local lease. A new batch is
+   * fetched in the background once half of the current one is spent, so
+   * the caller only waits for the store when the lease runs dry. If the
+   * store does not answer within the store timeout, or fails, the permit
+   * is decided by a local limiter holding this instance's share of the limit.
+   *
+   * @param key The key being limited
+   * @return true if the permit was granted
+   */
+  @Override
+  public boolean tryAcquire(String key) {
+    long window = clock.getAsLong() / periodMillis;
+    Lease lease = lease(key, window);
+    if (lease == null) {
+      return fallback(key);
+    }
+
+    while (true) {
+      long tokens = lease.tokens.get();
+      if (tokens > 0) {
+        if (lease.tokens.compareAndSet(tokens, tokens - 1)) {
+          if (tokens - 1 <= batchSize / 2 && !lease.exhausted) {
+            refill(key, lease);
+          }
+          return true;
+        }
+        continue;
+      }
+      if (lease.exhausted) {
+        return false;
+      }
+
+      try {
+        refill(key, lease).get(storeTimeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException | ExecutionException e) {
+        return fallback(key);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return fallback(key);
+      }
+    }
+  }
+
+  /**
+   * Puts a permit back into the local lease, where the next request on
+   * this instance can spend it.
+   *
+   * @param key The key being limited
+   */
+  @Override
+  public void release(String key) {
+    Lease lease = leases.get(key);
+    if (lease != null && lease.window == clock.getAsLong() / periodMillis) {
+      lease.tokens.incrementAndGet();
+    }
+  }
+
+  /**
+   * Estimates how many permits are left for the key across the cluster,
+   * from the last counter value this instance saw plus its unspent lease.
+   *
+   * @param key The key being limited
+   * @return Remaining permits
+   */
+  @Override
+  public int getRemaining(String key) {
+    Lease lease = leases.get(key);
+    if (lease == null || lease.window != clock.getAsLong() / periodMillis) {
+      return limit;
+    }
+    long tokens = lease.tokens.get();
+    if (lease.exhausted) {
+      return (int) tokens;
+    }
+    return (int) Math.min(limit, Math.max(0, limit - lease.lastTotal) + tokens);
+  }
+
+  /**
+   * Gets the number of permits allowed per period across the cluster.
+   *
+   * @return The limit
+   */
+  @Override
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Drops this instance's lease and fallback state for the key.
+   * The shared counter is left alone; it expires with its window.
+   *
+   * @param key The key being limited
+   */
+  @Override
+  public void reset(String key) {
+    leases.remove(key);
+    fallback.reset(key);
+  }
+
+  /**
+   * Gets how many permits were decided locally because the store was
+   * slow, failing, or the key cap was reached.
+   *
+   * @return Fallback decision count
+   */
+  public long getFallbackCount() {
+    return fallbackCount.get();
+  }
+
+  /**
+   * Gets the number of keys holding a lease.
+   *
+   * @return Lease count
+   */
+  public int size() {
+    return leases.size();
+  }
+
+  /**
+   * Stops the lease thread pool, if this limiter created it.
+   */
+  public void shutdown() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdownNow();
+    }
+  }
+
+  private boolean fallback(String key) {
+    fallbackCount.incrementAndGet();
+    return fallback.tryAcquire(key);
+  }
+
+  /**
+   * Finds the key's lease for the current window, replacing one from an
+   * earlier window. Returns null when the key cap is reached even after
+   * dropping stale leases.
+   */
+  private Lease lease(String key, long window) {
+    while (true) {
+      Lease lease = leases.get(key);
+      if (lease != null && lease.window >= window) {
+        return lease;
+      }
+      Lease created = new Lease(window);
+      if (lease == null) {
+        if (leases.size() >= maxKeys && !purgeStale(window)) {
+          return null;
+        }
+        if (leases.putIfAbsent(key, created) == null) {
+          return created;
+        }
+      } else if (leases.replace(key, lease, created)) {
+        return created;
+      }
+    }
+  }
+
+  private boolean purgeStale(long window) {
+    Iterator<Lease> values = leases.values().iterator();
+    while (values.hasNext()) {
+      if (values.next().window < window) {
+        values.remove();
+      }
+    }
+    return leases.size() < maxKeys;
+  }
+
+  /**
+   * Starts fetching a batch for the lease unless a fetch is already running.
+   *
+   * @return A future completed once the fetched permits are in the lease
+   */
+  private CompletableFuture<Void> refill(String key, Lease lease) {
+    CompletableFuture<Void> pending = lease.pending.get();
+    if (pending != null) {
+      return pending;
+    }
+    CompletableFuture<Void> created = new CompletableFuture<>();
+    if (!lease.pending.compareAndSet(null, created)) {
+      pending = lease.pending.get();
+      return pending != null ? pending : CompletableFuture.completedFuture(null);
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          String counterKey = namespace + ':' + key + ':' + lease.window;
+          long total = store.addAndGet(counterKey, batchSize, periodMillis * 2);
+          long granted = Math.max(0, Math.min(batchSize, limit - (total - batchSize)));
+          lease.lastTotal = total;
+          if (granted < batchSize) {
+            lease.exhausted = true;
+          }
+          lease.tokens.addAndGet(granted);
+          lease.pending.set(null);
+          created.complete(null);
+        } catch (RuntimeException e) {
+          logger.warn("Could not lease permits for {}: {}", key, e.toString());
+          lease.pending.set(null);
+          created.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      lease.pending.set(null);
+      created.completeExceptionally(e);
+    }
+    return created;
+  }
+
+  /**
+   * Permits leased by this instance for one key and window.
+   */
+  private static final class Lease {
+    private final long window;
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Void>> pending = new AtomicReference<>();
+    private volatile boolean exhausted;
+    private volatile long lastTotal;
+
+    private Lease(long window) {
+      this.window = window;
+    }
+  }
+
+
+  public static class Builder {
+    private final SharedCounterStore store;
+    private String namespace = "ratelimit";
+    private int limit = 60;
+    private long periodMillis = 60000;
+    private int batchSize = 10;
+    private int expectedNodes = 1;
+    private long storeTimeoutMillis = 50;
+    private int maxKeys = 100_000;
+    private LongSupplier clock = System::currentTimeMillis;
+    private Executor executor;
+
+    /**
+     * Constructor - use {@link DistributedRateLimiter#builder(SharedCounterStore)}.
+     *
+     * @param store The shared counter store
+     */
+    private Builder(SharedCounterStore store) {
+      this.store = store;
+    }
+
+    /**
+     * Sets the prefix of the shared counter keys, so several limiters can
+     * share one store.
+     *
+     * @param namespace Counter key prefix
+     * @return this Builder instance for method chaining
+     */
+    public Builder namespace(String namespace) {
+      this.namespace = namespace;
+      return this;
+    }
+
+    /**
+     * Sets the permits allowed per period across the whole cluster.
+     *
+     * @param limit Permits per period
+     * @return this Builder instance for method chaining
+     */
+    public Builder limit(int limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    /**
+     * Sets the window the limit applies to.
+     *
+     * @param period Length of the window
+     * @param unit Unit of the window
+     * @return this Builder instance for method chaining
+     */
+    public Builder period(long period, TimeUnit unit) {
+      this.periodMillis = unit.toMillis(period);
+      return this;
+    }
+
+    /**
+     * Sets how many permits are leased from the store at a time.
+     * Larger batches mean fewer store calls but coarser sharing.
+     *
+     * @param batchSize Permits per lease
+     * @return this Builder instance for method chaining
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of gateway instances. While the store is unavailable,
+     * each instance allows limit / expectedNodes permits on its own.
+     *
+     * @param expectedNodes Number of gateway instances
+     * @return this Builder instance for method chaining
+     */
+    public Builder expectedNodes(int expectedNodes) {
+      this.expectedNodes = expectedNodes;
+      return this;
+    }
+
+    /**
+     * Sets how long a request waits for the store before falling back to
+     * the local share.
+     *
+     * @param timeout Store timeout
+     * @param unit Unit of the timeout
+     * @return this Builder instance for method chaining
+     */
+    public Builder storeTimeout(long timeout, TimeUnit unit) {
+      this.storeTimeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of keys holding a lease.
+     *
+     * @param maxKeys Key cap
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxKeys(int maxKeys) {
+      this.maxKeys = maxKeys;
+      return this;
+    }
+
+    /**
+     * Sets the wall clock, in milliseconds, used to align windows.
+     *
+     * @param clock Clock source
+     * @return this Builder instance for method chaining
+     */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Sets the executor that calls the store. By default the limiter
+     * creates two daemon threads of its own.
+     *
+     * @param executor Executor for store calls
+     * @return this Builder instance for method chaining
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Builds and returns the DistributedRateLimiter instance.
+     *
+     * @return A new DistributedRateLimiter
+     * @throws IllegalStateException if the store is missing or a size is not positive
+     */
+    public DistributedRateLimiter build() {
+      if (store == null) {
+        throw new IllegalStateException("A shared counter store is required");
+      }
+      if (limit <= 0 || periodMillis <= 0 || batchSize <= 0 || expectedNodes <= 0
+          || maxKeys <= 0) {
+        throw new IllegalStateException(
+            "limit, period, batchSize, expectedNodes and maxKeys must be positive");
+      }
+      return new DistributedRateLimiter(this);
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package edu.bu.met.cs665.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+
+public class GcraRateLimiter implements RateLimiter {
+  private final int limit;
+  private final long emissionInterval;
+  private final long burstCapacity;
+  private final int maxKeys;
+  private final long sweepInterval;
+  private final LongSupplier clock;
+  private final ConcurrentMap<String, AtomicLong> arrivalTimes;
+  private final AtomicBoolean sweeping;
+  private final AtomicLong nextSweep;
+  private final AtomicLong expiredCount;
+  private final AtomicLong evictedCount;
+
+  /**
+   * Creates a limiter that allows limit permits per period, using System.nanoTime
+   * and the default key cap.
+   *
+   * @param limit Permits allowed per period; also the largest burst
+   * @param period Length of the period
+   * @param unit Unit of the period
+   * @throws IllegalStateException if limit or period is not positive
+   */
+  public GcraRateLimiter(int limit, long period, TimeUnit unit) {
+    this(new Builder().limit(limit).period(period, unit));
+  }
+
+  /**
+   * Private constructor - used by the public constructor and the Builder.
+   * Each key keeps a single theoretical arrival time (TAT): every permit
+   * pushes it forward by period / limit, and a permit is refused while the
+   * TAT is more than a full period ahead of now. This is the Generic Cell
+   * Rate Algorithm, equivalent to a token bucket refilled continuously.
+   *
+   * @param builder The builder instance
+   * @throws IllegalStateException if limit, period or maxKeys is not positive
+   */
+  private GcraRateLimiter(Builder builder) {
+    if (builder.limit <= 0 || builder.periodNanos <= 0 || builder.maxKeys <= 0) {
+      throw new IllegalStateException("limit, period and maxKeys must be positive");
+    }
+    this.limit = builder.limit;
+    this.emissionInterval = Math.max(1, builder.periodNanos / builder.limit);
+    this.burstCapacity = emissionInterval * builder.limit;
+    this.maxKeys = builder.maxKeys;
+    this.sweepInterval = builder.sweepIntervalNanos > 0
+        ? builder.sweepIntervalNanos : burstCapacity;
+    this.clock = builder.clock;
+    this.arrivalTimes = new ConcurrentHashMap<>();
+    this.sweeping = new AtomicBoolean();
+    this.nextSweep = new AtomicLong(clock.getAsLong() + sweepInterval);
+    this.expiredCount = new AtomicLong();
+    this.evictedCount = new AtomicLong();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Takes one permit for the key. Lock-free: a CAS loop on the key's TAT,
+   * and no allocation once the key has been seen.
+   *
+   * @param key The key being limited
+   * @return true if the permit was granted
+   */
+  @Override
+  public boolean tryAcquire(String key) {
+    AtomicLong arrivalTime = arrivalTime(key);
+    while (true) {
+      long now = clock.getAsLong();
+      long tat = arrivalTime.get();
+      long newTat = Math.max(tat, now) + emissionInterval;
+      if (newTat - now > burstCapacity) {
+        return false;
+      }
+      if (arrivalTime.compareAndSet(tat, newTat)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gives back a permit by moving the key's TAT back one interval.
+   * Does nothing if the key is already at its full limit.
+   *
+   * @param key The key being limited
+   */
+  @Override
+  public void release(String key) {
+    AtomicLong arrivalTime = arrivalTimes.get(key);
+    if (arrivalTime == null) {
+      return;
+    }
+    while (true) {
+      long tat = arrivalTime.get();
+      if (tat <= clock.getAsLong()
+          || arrivalTime.compareAndSet(tat, tat - emissionInterval)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gets how many permits the key could take right now.
+   *
+   * @param key The key being limited
+   * @return Remaining permits
+   */
+  @Override
+  public int getRemaining(String key) {
+    AtomicLong arrivalTime = arrivalTimes.get(key);
+    if (arrivalTime == null) {
+      return limit;
+    }
+    long now = clock.getAsLong();
+    long backlog = Math.max(arrivalTime.get(), now) - now;
+    return (int) Math.max(0, (burstCapacity - backlog) / emissionInterval);
+  }
+
+  /**
+   * Gets the number of permits allowed per period.
+   *
+   * @return The limit
+   */
+  @Override
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Forgets all state for a key.
+   *
+   * @param key The key being limited
+   */
+  @Override
+  public void reset(String key) {
+    arrivalTimes.remove(key);
+  }
+
+  /**
+   * Gets the number of keys with state.
+   *
+   * @return Live key count
+   */
+  public int size() {
+    return arrivalTimes.size();
+  }
+
+  /**
+   * Gets the maximum number of keys kept.
+   *
+   * @return Key cap
+   */
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  /**
+   * Gets how many idle keys have been dropped. Dropping an idle key loses
+   * nothing, since it would be back at its full limit anyway.
+   *
+   * @return Expired key count
+   */
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  /**
+   * Gets how many keys still inside their period were dropped to stay
+   * under the key cap. Such a key gets its full limit back early.
+   *
+   * @return Evicted key count
+   */
+  public long getEvictedCount() {
+    return evictedCount.get();
+  }
+
+  /**
+   * Drops every idle key now, and evicts active keys if the cap is still exceeded.
+   * Runs on its own whenever a new key arrives and the map is full or the
+   * sweep interval has passed, so calling it is optional.
+   */
+  public void sweep() {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long now = clock.getAsLong();
+      nextSweep.set(now + sweepInterval);
+
+      Iterator<Map.Entry<String, AtomicLong>> entries = arrivalTimes.entrySet().iterator();
+      while (entries.hasNext()) {
+        if (entries.next().getValue().get() <= now) {
+          entries.remove();
+          expiredCount.incrementAndGet();
+        }
+      }
+
+      // Still full of active keys: make room for a batch of newcomers so the
+      // next insert does not sweep again straight away
+      int target = maxKeys - Math.max(1, maxKeys / 8);
+      entries = arrivalTimes.entrySet().iterator();
+      while (arrivalTimes.size() > target && entries.hasNext()) {
+        entries.next();
+        entries.remove();
+        evictedCount.incrementAndGet();
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  /**
+   * Finds the key's TAT cell, creating it on first use. A new key starts
+   * far enough in the past that its whole burst is available. Only the
+   * insert of a new key can trigger a sweep, so known keys never pay for it.
+   * The cap may be exceeded briefly by inserts that race with a sweep.
+   */
+  private AtomicLong arrivalTime(String key) {
+    AtomicLong arrivalTime = arrivalTimes.get(key);
+    if (arrivalTime == null) {
+      long now = clock.getAsLong();
+      if (arrivalTimes.size() >= maxKeys || now - nextSweep.get() >= 0) {
+        sweep();
+      }
+      AtomicLong created = new AtomicLong(now - burstCapacity);
+      arrivalTime = arrivalTimes.putIfAbsent(key, created);
+      if (arrivalTime == null) {
+        arrivalTime = created;
+      }
+    }
+    return arrivalTime;
+  }
+
+
+  public static class Builder {
+    private int limit = 60;
+    private long periodNanos = TimeUnit.MINUTES.toNanos(1);
+    private int maxKeys = 100_000;
+    private long sweepIntervalNanos = 0; // one period
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * Constructor - use {@link GcraRateLimiter#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Sets the permits allowed per period, which is also the largest burst.
+     *
+     * @param limit Permits per period
+     * @return this Builder instance for method chaining
+     */
+    public Builder limit(int limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    /**
+     * Sets the period the limit applies to.
+     *
+     * @param period Length of the period
+     * @param unit Unit of the period
+     * @return this Builder instance for method chaining
+     */
+    public Builder period(long period, TimeUnit unit) {
+      this.periodNanos = unit.toNanos(period);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of keys kept in memory.
+     *
+     * @param maxKeys Key cap
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxKeys(int maxKeys) {
+      this.maxKeys = maxKeys;
+      return this;
+    }
+
+    /**
+     * Sets how often idle keys are swept out while new keys keep arriving.
+     *
+     * @param interval Sweep interval
+     * @param unit Unit of the interval
+     * @return this Builder instance for method chaining
+     */
+    public Builder sweepInterval(long interval, TimeUnit unit) {
+      this.sweepIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Sets the monotonic clock, in nanoseconds.
+     *
+     * @param clock Clock source
+     * @return this Builder instance for method chaining
+     */
+    public Builder clock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Builds and returns the GcraRateLimiter instance.
+     *
+     * @return A new GcraRateLimiter
+     * @throws IllegalStateException if limit, period or maxKeys is not positive
+     */
+    public GcraRateLimiter build() {
+      return new GcraRateLimiter(this);
+    }
+  }
+}
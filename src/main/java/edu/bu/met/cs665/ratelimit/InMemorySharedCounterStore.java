@@ -0,0 +1,116 @@
+package edu.bu.met.cs665.ratelimit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class InMemorySharedCounterStore implements SharedCounterStore {
+  private static final int PURGE_EVERY = 1024;
+
+  private final ConcurrentMap<String, Counter> counters;
+  private final AtomicInteger calls;
+  private final AtomicLong callCount;
+  private volatile long latencyMillis;
+
+  /**
+   * Creates an in-process store. Several limiters sharing one instance
+   * behave like gateway instances sharing a remote store.
+   */
+  public InMemorySharedCounterStore() {
+    this.counters = new ConcurrentHashMap<>();
+    this.calls = new AtomicInteger();
+    this.callCount = new AtomicLong();
+  }
+
+  /**
+   * Adds delta to the counter, after the configured artificial latency.
+   *
+   * @param key The counter key
+   * @param delta Amount to add
+   * @param ttlMillis Minimum lifetime of a new counter in milliseconds
+   * @return The counter value after the add
+   * @throws IllegalStateException if interrupted during the artificial latency
+   */
+  @Override
+  public long addAndGet(String key, long delta, long ttlMillis) {
+    callCount.incrementAndGet();
+    long latency = latencyMillis;
+    if (latency > 0) {
+      try {
+        Thread.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while reaching the counter store", e);
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    if (calls.incrementAndGet() % PURGE_EVERY == 0) {
+      purgeExpired(now);
+    }
+
+    Counter counter = counters.get(key);
+    if (counter == null || counter.expiresAt <= now) {
+      Counter created = new Counter(now + ttlMillis);
+      counter = counters.putIfAbsent(key, created);
+      if (counter == null) {
+        counter = created;
+      } else if (counter.expiresAt <= now) {
+        counters.replace(key, counter, created);
+        counter = counters.get(key);
+      }
+    }
+    return counter.value.addAndGet(delta);
+  }
+
+  /**
+   * Makes every call wait before it is answered, to simulate a slow or
+   * distant store.
+   *
+   * @param latencyMillis Delay per call in milliseconds, 0 for none
+   */
+  public void setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /**
+   * Gets the number of addAndGet calls served.
+   *
+   * @return Call count
+   */
+  public long getCallCount() {
+    return callCount.get();
+  }
+
+  /**
+   * Gets the current value of a counter.
+   *
+   * @param key The counter key
+   * @return The value, or 0 if the counter does not exist
+   */
+  public long get(String key) {
+    Counter counter = counters.get(key);
+    return counter == null ? 0 : counter.value.get();
+  }
+
+  private void purgeExpired(long now) {
+    Iterator<Counter> values = counters.values().iterator();
+    while (values.hasNext()) {
+      if (values.next().expiresAt <= now) {
+        values.remove();
+      }
+    }
+  }
+
+  private static final class Counter {
+    private final AtomicLong value = new AtomicLong();
+    private final long expiresAt;
+
+    private Counter(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package edu.bu.met.cs665.ratelimit;
+
+
+public interface RateLimiter {
+
+  /**
+   * Takes one permit for the given key if the key is within its limit.
+   *
+   * @param key The key being limited, e.g. a client ID
+   * @return true if the permit was granted, false if the limit is exhausted
+   */
+  boolean tryAcquire(String key);
+
+  /**
+   * Gives back a permit taken by tryAcquire, for a request that was turned
+   * away further down and never used it.
+   *
+   * @param key The key being limited
+   */
+  void release(String key);
+
+  /**
+   * Gets how many permits the key could take right now.
+   *
+   * @param key The key being limited
+   * @return Remaining permits, between 0 and the limit
+   */
+  int getRemaining(String key);
+
+  /**
+   * Gets the number of permits allowed per period.
+   *
+   * @return The limit
+   */
+  int getLimit();
+
+  /**
+   * Forgets all state for a key, restoring its full limit.
+   *
+   * @param key The key being limited
+   */
+  void reset(String key);
+}
@@ -0,0 +1,19 @@
+package edu.bu.met.cs665.ratelimit;
+
+
+public interface SharedCounterStore {
+
+  /**
+   * Atomically adds delta to a counter shared by every gateway instance.
+   * A counter that does not exist yet starts at zero and lives for at least
+   * ttlMillis, after which the store may drop it. Implementations backed by
+   * a remote service (Redis INCRBY with PEXPIRE, a database row) may block.
+   *
+   * @param key The counter key
+   * @param delta Amount to add
+   * @param ttlMillis Minimum lifetime of a new counter in milliseconds
+   * @return The counter value after the add
+   * @throws IllegalStateException if the store cannot be reached
+   */
+  long addAndGet(String key, long delta, long ttlMillis);
+}
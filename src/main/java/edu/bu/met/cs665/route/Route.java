@@ -1,21 +1,43 @@
 package edu.bu.met.cs665.route;
 
+import edu.bu.met.cs665.balancer.LoadBalancer;
+import edu.bu.met.cs665.balancer.RoundRobinBalancer;
+import edu.bu.met.cs665.balancer.Upstream;
 import edu.bu.met.cs665.filter.Filter;
+import edu.bu.met.cs665.filter.FilterChain;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
+import edu.bu.met.cs665.ratelimit.RateLimiter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 public class Route {
   private final String pathPattern;
   private final String targetUrl;
+  private final List<Upstream> upstreams;
+  private final LoadBalancer balancer;
   private final List<Filter> filters;
+  private final FilterChain filterChain;
   private final Map<String, String> headers;
   private final int timeout;
   private final int rateLimit;
   private final boolean transformRequest;
   private final boolean transformResponse;
+  private final boolean streamResponse;
+  private final boolean streamRequest;
+  private final long maxBodySize;
+  private final boolean cacheable;
+  private final long cacheTtl;
+  private final List<String> varyHeaders;
+  private final boolean coalesce;
+  private final int maxCoalescedWaiters;
+  private final RateLimiter admissionLimiter;
 
   /**
    * Private constructor - only accessible through Builder.
@@ -24,13 +46,34 @@ public class Route {
    */
   private Route(Builder builder) {
     this.pathPattern = builder.pathPattern;
-    this.targetUrl = builder.targetUrl;
-    this.filters = builder.filters;
+    List<Upstream> targets = new ArrayList<>();
+    if (builder.targets.isEmpty()) {
+      targets.add(new Upstream(builder.targetUrl, 1));
+    } else {
+      for (Map.Entry<String, Integer> target : builder.targets.entrySet()) {
+        targets.add(new Upstream(target.getKey(), target.getValue()));
+      }
+    }
+    this.upstreams = Collections.unmodifiableList(targets);
+    this.targetUrl = upstreams.get(0).getUrl();
+    this.balancer = builder.balancer != null ? builder.balancer : new RoundRobinBalancer();
+    this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+    this.filterChain = new FilterChain(this.filters);
     this.headers = builder.headers;
     this.timeout = builder.timeout;
     this.rateLimit = builder.rateLimit;
     this.transformRequest = builder.transformRequest;
     this.transformResponse = builder.transformResponse;
+    this.streamResponse = builder.streamResponse;
+    this.streamRequest = builder.streamRequest;
+    this.maxBodySize = builder.maxBodySize;
+    this.cacheable = builder.cacheable;
+    this.cacheTtl = builder.cacheTtl;
+    this.varyHeaders = Collections.unmodifiableList(new ArrayList<>(builder.varyHeaders));
+    this.coalesce = builder.coalesce;
+    this.maxCoalescedWaiters = builder.maxCoalescedWaiters;
+    this.admissionLimiter = rateLimit > 0
+        ? new GcraRateLimiter(rateLimit, 1, TimeUnit.MINUTES) : null;
   }
 
   /**
@@ -55,12 +98,43 @@ public class Route {
   /**
    * Returns the target URL for this route.
    * 
-   * @return The backend service URL
+   * @return The backend service URL, the first one if the route has several
    */
   public String getTargetUrl() {
     return targetUrl;
   }
 
+  /**
+   * Returns the targets requests on this route are spread over.
+   *
+   * @return Unmodifiable list of targets, never empty
+   */
+  public List<Upstream> getUpstreams() {
+    return upstreams;
+  }
+
+  /**
+   * Returns the strategy that picks a target for each request.
+   *
+   * @return The load balancer
+   */
+  public LoadBalancer getBalancer() {
+    return balancer;
+  }
+
+  /**
+   * Picks the target for a request. A route with one target skips the balancer.
+   *
+   * @param request The request being forwarded
+   * @return The chosen target
+   */
+  public Upstream chooseUpstream(GatewayRequest request) {
+    if (upstreams.size() == 1) {
+      return upstreams.get(0);
+    }
+    return balancer.choose(request, upstreams);
+  }
+
   /**
    * Returns the list of filters for this route.
    * 
@@ -70,6 +144,16 @@ public class Route {
     return new ArrayList<>(filters);
   }
 
+  /**
+   * Returns the filter chain compiled for this route when it was built.
+   * The chain is immutable and shared by every request on this route.
+   *
+   * @return The route's filter chain
+   */
+  public FilterChain getFilterChain() {
+    return filterChain;
+  }
+
   /**
    * Returns the headers for this route.
    * 
@@ -91,12 +175,22 @@ public class Route {
   /**
    * Returns the rate limit for this route.
    * 
-   * @return Rate limit (requests per minute)
+   * @return Rate limit (requests per minute), 0 if the route is not limited
    */
   public int getRateLimit() {
     return rateLimit;
   }
 
+  /**
+   * Returns the limiter enforcing the route-wide rate limit, shared by all
+   * requests on this route and keyed by the path pattern.
+   *
+   * @return The admission limiter, or null if the route is not limited
+   */
+  public RateLimiter getAdmissionLimiter() {
+    return admissionLimiter;
+  }
+
   /**
    * Indicates if request transformation is enabled.
    * 
@@ -115,17 +209,99 @@ public class Route {
     return transformResponse;
   }
 
+  /**
+   * Indicates if backend responses are streamed to the client unbuffered.
+   * 
+   * @return true if response streaming is enabled, false otherwise
+   */
+  public boolean isStreamResponse() {
+    return streamResponse;
+  }
+
+  /**
+   * Indicates if request bodies are streamed to the backend unbuffered.
+   * 
+   * @return true if request streaming is enabled, false otherwise
+   */
+  public boolean isStreamRequest() {
+    return streamRequest;
+  }
+
+  /**
+   * Returns the largest request body this route accepts.
+   * 
+   * @return Maximum body size in bytes
+   */
+  public long getMaxBodySize() {
+    return maxBodySize;
+  }
+
+  /**
+   * Indicates if GET responses on this route may be served from the response cache.
+   *
+   * @return true if caching is enabled
+   */
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
+  /**
+   * Returns how long a response without Cache-Control or Expires is cached.
+   *
+   * @return Default TTL in milliseconds, 0 to cache only responses that say how long
+   */
+  public long getCacheTtl() {
+    return cacheTtl;
+  }
+
+  /**
+   * Returns the request headers whose values are part of the cache key.
+   *
+   * @return Unmodifiable list of header names
+   */
+  public List<String> getVaryHeaders() {
+    return varyHeaders;
+  }
+
+  /**
+   * Indicates if identical concurrent GETs share one upstream call.
+   *
+   * @return true if request coalescing is enabled
+   */
+  public boolean isCoalesce() {
+    return coalesce;
+  }
+
+  /**
+   * Returns how many requests may wait on one shared upstream call.
+   *
+   * @return Maximum waiters per call
+   */
+  public int getMaxCoalescedWaiters() {
+    return maxCoalescedWaiters;
+  }
+
 
   public static class Builder {
     private final String pathPattern;
 
     private String targetUrl = "";
+    private final Map<String, Integer> targets = new LinkedHashMap<>();
+    private LoadBalancer balancer;
     private List<Filter> filters = new ArrayList<>();
     private Map<String, String> headers = new HashMap<>();
     private int timeout = 5000; // 5 seconds default
-    private int rateLimit = 100; // requests per minute
+    private int rateLimit = 0; // requests per minute, 0 for no route-wide limit
     private boolean transformRequest = false;
     private boolean transformResponse = false;
+    private boolean streamResponse = false;
+    private boolean streamRequest = false;
+    private long maxBodySize = 10L * 1024 * 1024; // 10 MB
+    private boolean cacheable = false;
+    private long cacheTtl = 0;
+    private final List<String> varyHeaders = new ArrayList<>();
+    private boolean coalesce = false;
+    private int maxCoalescedWaiters = 100;
 
     /**
      * Constructor with required parameter.
@@ -147,6 +323,33 @@ public class Route {
       return this;
     }
 
+    /**
+     * Adds a target to spread requests over, for a backend running as several
+     * instances. Use either this or {@link #targetUrl(String)}; adding the
+     * same URL again replaces its weight.
+     *
+     * @param url The backend service URL
+     * @param weight Relative share of the traffic, at least 1
+     * @return this Builder instance for method chaining
+     */
+    public Builder addTarget(String url, int weight) {
+      this.targets.put(url, weight);
+      return this;
+    }
+
+    /**
+     * Sets how a target is picked when the route has several. Defaults to
+     * weighted round-robin. A balancer may keep state about the targets, so
+     * give each route its own instance.
+     *
+     * @param balancer The load balancer
+     * @return this Builder instance for method chaining
+     */
+    public Builder balancer(LoadBalancer balancer) {
+      this.balancer = balancer;
+      return this;
+    }
+
     /**
      * Adds a filter to the route's filter chain.
      *
@@ -204,7 +407,8 @@ public class Route {
     }
 
     /**
-     * Sets the rate limit (requests per minute).
+     * Sets the rate limit (requests per minute) for the route as a whole,
+     * across all clients. Zero or less disables it, which is the default.
      *
      * @param rateLimit Maximum requests per minute
      * @return this Builder instance for method chaining
@@ -236,6 +440,105 @@ public class Route {
       return this;
     }
 
+    /**
+     * Enables response streaming. The backend body is copied straight to the
+     * client instead of being read into a String, unless a filter on the
+     * route needs the body.
+     *
+     * @param streamResponse Whether to stream responses
+     * @return this Builder instance for method chaining
+     */
+    public Builder streamResponse(boolean streamResponse) {
+      this.streamResponse = streamResponse;
+      return this;
+    }
+
+    /**
+     * Enables request body streaming. The client body is forwarded to the
+     * backend with chunked transfer instead of being read into a String.
+     * If a filter on the route reads the body, it is spooled to a temp file.
+     *
+     * @param streamRequest Whether to stream request bodies
+     * @return this Builder instance for method chaining
+     */
+    public Builder streamRequest(boolean streamRequest) {
+      this.streamRequest = streamRequest;
+      return this;
+    }
+
+    /**
+     * Sets the largest request body the route accepts. Larger bodies are
+     * rejected with 413, before forwarding when the client declares a length.
+     *
+     * @param maxBodySize Maximum body size in bytes
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxBodySize(long maxBodySize) {
+      this.maxBodySize = maxBodySize;
+      return this;
+    }
+
+    /**
+     * Lets GET responses on this route be served from the response cache.
+     * Upstream Cache-Control and Expires headers decide how long an entry
+     * stays fresh; responses marked no-store, no-cache or private are never cached.
+     *
+     * @param cacheable Whether to cache responses
+     * @return this Builder instance for method chaining
+     */
+    public Builder cacheable(boolean cacheable) {
+      this.cacheable = cacheable;
+      return this;
+    }
+
+    /**
+     * Sets how long to cache responses that carry no freshness headers.
+     *
+     * @param cacheTtl Default TTL in milliseconds
+     * @return this Builder instance for method chaining
+     */
+    public Builder cacheTtl(long cacheTtl) {
+      this.cacheTtl = cacheTtl;
+      return this;
+    }
+
+    /**
+     * Adds a request header whose value selects a different cached response,
+     * e.g. Accept-Language. Responses that vary on headers not added here
+     * are not cached.
+     *
+     * @param header Request header name
+     * @return this Builder instance for method chaining
+     */
+    public Builder addVaryHeader(String header) {
+      this.varyHeaders.add(header);
+      return this;
+    }
+
+    /**
+     * Lets identical concurrent GETs share one upstream call. Requests are
+     * identical when method, path, query parameters and Vary header values match.
+     *
+     * @param coalesce Whether to coalesce requests
+     * @return this Builder instance for method chaining
+     */
+    public Builder coalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
+    /**
+     * Sets how many requests may wait on one shared upstream call; the
+     * rest make their own call.
+     *
+     * @param maxCoalescedWaiters Maximum waiters per call
+     * @return this Builder instance for method chaining
+     */
+    public Builder maxCoalescedWaiters(int maxCoalescedWaiters) {
+      this.maxCoalescedWaiters = maxCoalescedWaiters;
+      return this;
+    }
+
     /**
      * Builds and returns the Route instance.
      * This is the final step in the fluent interface.
@@ -244,22 +547,34 @@ public class Route {
      * @throws IllegalStateException if required fields are not set
      */
     public Route build() {
-      if (targetUrl == null || targetUrl.isEmpty()) {
-        throw new IllegalStateException("targetUrl must be set");
+      boolean single = targetUrl != null && !targetUrl.isEmpty();
+      if (single == !targets.isEmpty()) {
+        throw new IllegalStateException(single
+            ? "Use either targetUrl or addTarget, not both" : "targetUrl must be set");
+      }
+      try {
+        return new Route(this);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalStateException(e.getMessage(), e);
       }
-      return new Route(this);
     }
   }
 
   /**
    * Checks if the given path matches this route's pattern.
+   * The pattern must be a prefix of the path ending on a segment boundary,
+   * so "/api/data" matches "/api/data/1" but not "/api/data-v2".
    *
    * @param path The request path
    * @return true if the path matches, false otherwise
    */
   public boolean matches(String path) {
-    // Simple pattern matching - could be enhanced with wildcards
-    return path.startsWith(pathPattern);
+    if (!path.startsWith(pathPattern)) {
+      return false;
+    }
+    return path.length() == pathPattern.length()
+        || pathPattern.endsWith("/")
+        || path.charAt(pathPattern.length()) == '/';
   }
 
   @Override
@@ -267,6 +582,7 @@ public class Route {
     return "Route{"
         + "pathPattern='" + pathPattern + '\''
         + ", targetUrl='" + targetUrl + '\''
+        + ", targets=" + upstreams.size()
         + ", filters=" + filters.size()
         + ", rateLimit=" + rateLimit
         + ", timeout=" + timeout
@@ -0,0 +1,193 @@
+package edu.bu.met.cs665.route;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public final class RouteIndex {
+  private static final RouteIndex EMPTY = new RouteIndex(new Node(null, null, null), 0);
+
+  private final Node root;
+  private final int size;
+
+  /**
+   * Private constructor - instances are created through {@link #build(List)}.
+   *
+   * @param root The compiled root node
+   * @param size Number of routes in the index
+   */
+  private RouteIndex(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns an index that matches nothing.
+   *
+   * @return The empty index
+   */
+  public static RouteIndex empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Compiles an immutable index from the given routes.
+   * Path patterns are split on '/' and empty segments are ignored, so
+   * "/api/data", "/api/data/" and "api//data" all share one trie node.
+   * When two routes share a pattern, the first one registered wins.
+   *
+   * @param routes Routes in registration order
+   * @return A compiled route index
+   */
+  public static RouteIndex build(List<Route> routes) {
+    if (routes.isEmpty()) {
+      return EMPTY;
+    }
+
+    MutableNode root = new MutableNode();
+    for (Route route : routes) {
+      MutableNode node = root;
+      String pattern = route.getPathPattern();
+      int len = pattern.length();
+      int i = 0;
+      while (i < len) {
+        if (pattern.charAt(i) == '/') {
+          i++;
+          continue;
+        }
+        int end = segmentEnd(pattern, i);
+        node = node.children.computeIfAbsent(pattern.substring(i, end), k -> new MutableNode());
+        i = end;
+      }
+      if (node.route == null) {
+        node.route = route;
+      }
+    }
+
+    return new RouteIndex(root.compile(), routes.size());
+  }
+
+  /**
+   * Finds the route with the longest path pattern that is a segment-wise
+   * prefix of the given path. Runs in O(path length) and does not allocate.
+   *
+   * @param path The request path
+   * @return Matching route or null
+   */
+  public Route find(String path) {
+    Node node = root;
+    Route best = root.route;
+    int len = path.length();
+    int i = 0;
+
+    while (i < len) {
+      if (path.charAt(i) == '/') {
+        i++;
+        continue;
+      }
+      int end = segmentEnd(path, i);
+      node = node.child(path, i, end);
+      if (node == null) {
+        break;
+      }
+      if (node.route != null) {
+        best = node.route;
+      }
+      i = end;
+    }
+
+    return best;
+  }
+
+  /**
+   * Gets the number of routes this index was built from.
+   *
+   * @return route count
+   */
+  public int size() {
+    return size;
+  }
+
+  private static int segmentEnd(String s, int from) {
+    int end = s.indexOf('/', from);
+    return end < 0 ? s.length() : end;
+  }
+
+  /**
+   * Same value as {@code s.substring(from, to).hashCode()}, without the copy.
+   */
+  private static int hash(String s, int from, int to) {
+    int h = 0;
+    for (int i = from; i < to; i++) {
+      h = 31 * h + s.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Builder-side trie node. Children keep insertion order so the compiled
+   * table is deterministic.
+   */
+  private static final class MutableNode {
+    private final Map<String, MutableNode> children = new LinkedHashMap<>();
+    private Route route;
+
+    private Node compile() {
+      if (children.isEmpty()) {
+        return new Node(route, null, null);
+      }
+
+      int capacity = Integer.highestOneBit(children.size() * 2 - 1) << 1;
+      String[] keys = new String[capacity];
+      Node[] nodes = new Node[capacity];
+      int mask = capacity - 1;
+
+      for (Map.Entry<String, MutableNode> entry : children.entrySet()) {
+        String key = entry.getKey();
+        int slot = hash(key, 0, key.length()) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        nodes[slot] = entry.getValue().compile();
+      }
+
+      return new Node(route, keys, nodes);
+    }
+  }
+
+  /**
+   * Compiled, read-only trie node. Children live in an open-addressing table
+   * so a segment can be looked up straight from the request path.
+   */
+  private static final class Node {
+    private final Route route;
+    private final String[] keys;
+    private final Node[] nodes;
+
+    private Node(Route route, String[] keys, Node[] nodes) {
+      this.route = route;
+      this.keys = keys;
+      this.nodes = nodes;
+    }
+
+    private Node child(String path, int from, int to) {
+      if (keys == null) {
+        return null;
+      }
+
+      int mask = keys.length - 1;
+      int length = to - from;
+      int slot = hash(path, from, to) & mask;
+      String key;
+      while ((key = keys[slot]) != null) {
+        if (key.length() == length && path.regionMatches(from, key, 0, length)) {
+          return nodes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+  }
+}
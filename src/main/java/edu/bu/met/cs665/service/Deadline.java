@@ -0,0 +1,61 @@
+package edu.bu.met.cs665.service;
+
+import java.util.concurrent.TimeUnit;
+
+
+public final class Deadline {
+  private final long deadlineNanos;
+
+  /**
+   * Private constructor - use {@link #of(long, long)}.
+   *
+   * @param deadlineNanos Absolute deadline on the System.nanoTime() clock
+   */
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * Creates a deadline that expires a fixed budget after a start time.
+   *
+   * @param startNanos Start time from System.nanoTime()
+   * @param budgetMillis Total time budget in milliseconds
+   * @return A new Deadline
+   */
+  public static Deadline of(long startNanos, long budgetMillis) {
+    return new Deadline(startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+  }
+
+  /**
+   * Returns the time left before the deadline, never negative.
+   *
+   * @return Remaining budget in milliseconds
+   */
+  public long remainingMillis() {
+    long remaining = deadlineNanos - System.nanoTime();
+    return remaining <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining);
+  }
+
+  /**
+   * Returns the time left before the deadline as an int, for APIs that take
+   * int millisecond timeouts. Never returns 0 unless the deadline has passed.
+   *
+   * @return Remaining budget in milliseconds, capped at Integer.MAX_VALUE
+   */
+  public int remainingMillisInt() {
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining <= 0) {
+      return 0;
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(remaining)));
+  }
+
+  /**
+   * Checks whether the budget is spent.
+   *
+   * @return true if the deadline has passed
+   */
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+}
@@ -1,37 +1,134 @@
 package edu.bu.met.cs665.service;
 
+import edu.bu.met.cs665.accesslog.AccessLog;
+import edu.bu.met.cs665.balancer.Upstream;
+import edu.bu.met.cs665.cache.CacheKey;
+import edu.bu.met.cs665.cache.CachePolicy;
+import edu.bu.met.cs665.cache.CachedResponse;
+import edu.bu.met.cs665.cache.MappedBody;
+import edu.bu.met.cs665.cache.MappedResponseStore;
+import edu.bu.met.cs665.cache.RequestCoalescer;
+import edu.bu.met.cs665.cache.ResponseCache;
+import edu.bu.met.cs665.filter.Filter;
 import edu.bu.met.cs665.filter.FilterChain;
+import edu.bu.met.cs665.metrics.GatewayMetrics;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.pool.AsyncHttpClientPool;
 import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.ratelimit.RateLimiter;
 import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.route.RouteIndex;
+import edu.bu.met.cs665.trace.Span;
+import edu.bu.met.cs665.trace.TraceContext;
+import edu.bu.met.cs665.trace.Tracer;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 
 @Service
 public class GatewayService {
   private static final Logger logger = LogManager.getLogger(GatewayService.class);
+  /** Header telling the backend how many milliseconds are left in the request budget. */
+  static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+  /** Header on 429 responses naming the limit that was hit. */
+  static final String RATE_LIMIT_SCOPE_HEADER = "X-RateLimit-Scope";
+  /** Header telling the client whether the response came from the cache. */
+  static final String CACHE_STATUS_HEADER = "X-Cache";
+  static final String ROUTE_SPAN = "route";
+  static final String PRE_FILTERS_SPAN = "pre-filters";
+  static final String POOL_ACQUIRE_SPAN = "pool.acquire";
+  static final String UPSTREAM_SPAN = "upstream";
+  static final String POST_FILTERS_SPAN = "post-filters";
+  private static final String GLOBAL_LIMIT_KEY = "*";
+  private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+  private static final ScheduledExecutorService DEADLINE_TIMER = createDeadlineTimer();
   private final List<Route> routes;
   private final HttpClientPool clientPool;
+  private final AsyncHttpClientPool asyncClientPool;
+  private final ExecutorService completionExecutor;
+  private volatile RateLimiter globalLimiter;
+  private volatile ResponseCache responseCache;
+  private volatile MappedResponseStore offHeapStore;
+  private final RequestCoalescer coalescer;
+  private volatile RouteIndex routeIndex;
+  private volatile GatewayMetrics metrics;
+  private volatile Tracer tracer;
+  private volatile AccessLog accessLog;
 
   /**
    * Creates a new GatewayService.
    */
   public GatewayService() {
-    this.routes = new ArrayList<>();
-    this.clientPool = new HttpClientPool(10, 5); // 10 clients, 5 second timeout
+    this(new HttpClientPool(10, 5)); // 10 clients, 5 second timeout
+  }
+
+  /**
+   * Creates a new GatewayService that forwards through the given client pool.
+   *
+   * @param clientPool The HTTP client pool
+   */
+  public GatewayService(HttpClientPool clientPool) {
+    this(clientPool, null);
+  }
+
+  /**
+   * Creates a new GatewayService with a blocking and a non-blocking client.
+   *
+   * @param clientPool The HTTP client pool, used for streaming routes
+   * @param asyncClientPool The non-blocking client used by processRequestAsync,
+   *     or null to run every request on the blocking path
+   */
+  @Autowired
+  public GatewayService(HttpClientPool clientPool, AsyncHttpClientPool asyncClientPool) {
+    this.routes = new CopyOnWriteArrayList<>();
+    this.routeIndex = RouteIndex.empty();
+    this.clientPool = clientPool;
+    this.asyncClientPool = asyncClientPool;
+    this.completionExecutor = asyncClientPool == null ? null : createCompletionExecutor();
+    this.responseCache = new ResponseCache(DEFAULT_CACHE_BYTES);
+    this.coalescer = new RequestCoalescer();
     logger.info("GatewayService initialized");
   }
 
@@ -40,8 +137,9 @@ public class GatewayService {
    *
    * @param route The route to register
    */
-  public void registerRoute(Route route) {
+  public synchronized void registerRoute(Route route) {
     routes.add(route);
+    this.routeIndex = RouteIndex.build(routes);
     logger.info("Route registered: {}", route);
   }
 
@@ -52,86 +150,696 @@ public class GatewayService {
    * @return The gateway response
    */
   public GatewayResponse processRequest(GatewayRequest request) {
-    logger.info("Processing request: {} {}", request.getMethod(), request.getPath());
+    this.startTrace(request);
+    GatewayResponse response = this.processBlocking(request, this.matchRoute(request));
+    this.finishRequest(request, response);
+    return response;
+  }
+
+  /**
+   * Looks up the route for a request's path, timed as the route phase.
+   *
+   * @param request The gateway request
+   * @return The matched route, or null if none matches
+   */
+  private Route matchRoute(GatewayRequest request) {
+    Span routeSpan = startSpan(request, ROUTE_SPAN);
+    Route route = findRoute(request.getPath());
+    endSpan(routeSpan);
+    return route;
+  }
+
+  /**
+   * Processes a request on the calling thread, from pre-filters to post-filters.
+   *
+   * @param request The gateway request
+   * @param route The matched route, or null if none matches
+   * @return The gateway response
+   */
+  private GatewayResponse processBlocking(GatewayRequest request, Route route) {
+    logger.debug("Processing request: {} {}", request.getMethod(), request.getPath());
 
     GatewayResponse response = new GatewayResponse();
 
     try {
-      Route route = findRoute(request.getPath());
+      request.setMatchedRoute(route);
       if (route == null) {
         logger.warn("No route found for path: {}", request.getPath());
-        response.setStatusCode(404);
-        response.setBody("No route found");
-        return response;
+        return notFound(response);
+      }
+
+      FilterChain filterChain = route.getFilterChain();
+      GatewayResponse rejected = this.runPreProcessing(request, route, filterChain);
+      if (rejected != null) {
+        return rejected;
+      }
+
+      CacheKey requestKey = this.requestKey(request, route);
+      GatewayResponse cached = this.lookupCache(request, route, requestKey);
+      if (cached != null) {
+        this.releaseAdmission(route);
+        response = cached;
+      } else if (this.coalesces(request, route, requestKey)) {
+        response = this.forwardCoalesced(request, route, requestKey);
+        this.storeInCache(request, requestKey, route, response);
+      } else {
+        boolean stream = requestKey == null && route.isStreamResponse()
+            && !filterChain.requiresResponseBody();
+        response = this.forwardRequest(request, route, stream);
+        this.storeInCache(request, requestKey, route, response);
+      }
+
+      this.runPostFilters(request, filterChain, response);
+
+    } catch (Exception e) {
+      response = errorResponse(response, e);
+    } finally {
+      deleteBodyFile(request);
+    }
+
+    return response;
+  }
+
+  /**
+   * Processes a request through the gateway without blocking on the backend.
+   * Filters run on the calling thread up to the backend call; the post-filters
+   * run on the thread that receives the backend response. Routes that stream
+   * a body either way use the blocking path, and the returned future is
+   * already complete.
+   *
+   * @param request The gateway request
+   * @return A future completed with the gateway response; never completed exceptionally
+   */
+  public CompletableFuture<GatewayResponse> processRequestAsync(GatewayRequest request) {
+    this.startTrace(request);
+    Route route = this.matchRoute(request);
+    if (route == null || asyncClientPool == null || needsBlockingPath(request, route)) {
+      GatewayResponse response = this.processBlocking(request, route);
+      this.finishRequest(request, response);
+      return CompletableFuture.completedFuture(response);
+    }
+
+    return this.processNonBlocking(request, route)
+        .whenComplete((response, e) -> this.finishRequest(request, response));
+  }
+
+  /**
+   * Processes a request whose backend call goes through the non-blocking client.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @return A future completed with the gateway response
+   */
+  private CompletableFuture<GatewayResponse> processNonBlocking(GatewayRequest request,
+      Route route) {
+    logger.debug("Processing request asynchronously: {} {}",
+        request.getMethod(), request.getPath());
+    request.setMatchedRoute(route);
+
+    FilterChain filterChain = route.getFilterChain();
+    CacheKey requestKey = this.requestKey(request, route);
+    try {
+      GatewayResponse rejected = this.runPreProcessing(request, route, filterChain);
+      if (rejected != null) {
+        deleteBodyFile(request);
+        return CompletableFuture.completedFuture(rejected);
+      }
+
+      GatewayResponse cached = this.lookupCache(request, route, requestKey);
+      if (cached != null) {
+        this.releaseAdmission(route);
+        this.runPostFilters(request, filterChain, cached);
+        deleteBodyFile(request);
+        return CompletableFuture.completedFuture(cached);
+      }
+    } catch (Exception e) {
+      deleteBodyFile(request);
+      return CompletableFuture.completedFuture(errorResponse(new GatewayResponse(), e));
+    }
+
+    CompletableFuture<GatewayResponse> upstream = this.coalesces(request, route, requestKey)
+        ? this.forwardCoalescedAsync(request, route, requestKey)
+        : this.forwardRequestAsync(request, route);
+    // Off the I/O dispatcher: caching can write to disk and filters may be slow
+    return upstream
+        .thenApplyAsync(response -> {
+          this.storeInCache(request, requestKey, route, response);
+          this.runPostFilters(request, filterChain, response);
+          return response;
+        }, completionExecutor)
+        .exceptionally(e -> errorResponse(new GatewayResponse(), e))
+        .whenComplete((response, e) -> deleteBodyFile(request));
+  }
+
+  /**
+   * Checks whether a request must stay on the blocking path because a body
+   * is streamed, which the non-blocking client cannot do without blocking
+   * one of its I/O threads.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @return true if the request must be processed by processRequest
+   */
+  private boolean needsBlockingPath(GatewayRequest request, Route route) {
+    boolean streamResponse = route.isStreamResponse() && this.requestKey(request, route) == null
+        && !route.getFilterChain().requiresResponseBody();
+    boolean streamRequest = route.isStreamRequest() && request.getBodyStream() != null;
+    return streamResponse || streamRequest;
+  }
+
+  /**
+   * Runs everything that can turn a request away before it is forwarded:
+   * the body size check and the pre-filters.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param filterChain The route's filter chain
+   * @return The rejection response, or null if the request may be forwarded
+   * @throws IOException if reading the request body fails
+   */
+  private GatewayResponse runPreProcessing(GatewayRequest request, Route route,
+      FilterChain filterChain) throws IOException {
+    Span span = startSpan(request, PRE_FILTERS_SPAN);
+    GatewayResponse shed = this.admit(route);
+    if (shed != null) {
+      endSpan(span);
+      this.recordReject(route, "rate-limit");
+      return shed;
+    }
+
+    boolean forwarded = false;
+    try {
+      if (!prepareRequestBody(request, route, filterChain)) {
+        logger.warn("Request body larger than {} bytes for path: {}",
+            route.getMaxBodySize(), request.getPath());
+        this.recordReject(route, "body-too-large");
+        return payloadTooLarge(new GatewayResponse());
       }
 
-      FilterChain filterChain = new FilterChain(route.getFilters());
-      boolean continueProcessing = filterChain.executePreFilters(request);
+      Filter rejectedBy = filterChain.runPreFilters(request);
 
-      if (!continueProcessing) {
+      if (rejectedBy != null) {
         logger.warn("Request blocked by filters");
+        this.recordReject(route, rejectedBy.getName());
+        GatewayResponse response = new GatewayResponse();
         response.setStatusCode(403);
         response.setBody("Request blocked by filters");
         return response;
       }
 
-      response = this.forwardRequest(request, route);
+      forwarded = true;
+      return null;
+    } finally {
+      endSpan(span);
+      if (!forwarded) {
+        this.releaseAdmission(route);
+      }
+    }
+  }
 
+  /**
+   * Runs the post-filters inside their trace span.
+   *
+   * @param request The gateway request
+   * @param filterChain The route's filter chain
+   * @param response The response to filter
+   */
+  private void runPostFilters(GatewayRequest request, FilterChain filterChain,
+      GatewayResponse response) {
+    Span span = startSpan(request, POST_FILTERS_SPAN);
+    try {
       filterChain.executePostFilters(request, response);
+    } finally {
+      endSpan(span);
+    }
+  }
 
-    } catch (Exception e) {
-      logger.error("Error processing request", e);
-      response.setStatusCode(500);
-      response.setBody("Internal gateway error: " + e.getMessage());
+  /**
+   * Builds the key identifying a GET on a route that caches or coalesces.
+   * Such requests always buffer the response, even if the route is set to stream.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @return The request key, or null if the request is neither cached nor coalesced
+   */
+  private CacheKey requestKey(GatewayRequest request, Route route) {
+    boolean cached = responseCache != null && route.isCacheable();
+    if (!(cached || route.isCoalesce()) || !"GET".equalsIgnoreCase(request.getMethod())) {
+      return null;
+    }
+    return CacheKey.of(request, route.getVaryHeaders());
+  }
+
+  /**
+   * Checks whether a request shares its upstream call with identical
+   * concurrent ones. Requests with credentials or cookies the route does
+   * not key on always make their own call.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param requestKey The request key, or null if the request is neither cached nor coalesced
+   * @return true if the request is coalesced
+   */
+  private boolean coalesces(GatewayRequest request, Route route, CacheKey requestKey) {
+    return requestKey != null && route.isCoalesce()
+        && CachePolicy.canCoalesce(request.getHeaders(), route.getVaryHeaders());
+  }
+
+  /**
+   * Serves a request from the response cache. Each hit gets its own copy
+   * of the cached response, so post-filters never change the cached entry.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param cacheKey The request key, or null if the request does not use the cache
+   * @return A copy of the cached response, or null on a miss
+   */
+  private GatewayResponse lookupCache(GatewayRequest request, Route route, CacheKey cacheKey) {
+    ResponseCache cache = this.responseCache;
+    if (cacheKey == null || cache == null || !route.isCacheable()
+        || CachePolicy.bypassLookup(request.getHeaders())) {
+      return null;
     }
+    CachedResponse entry = cache.get(cacheKey);
+    GatewayResponse response;
+    if (entry != null) {
+      response = entry.toResponse();
+    } else {
+      response = this.lookupOffHeap(route, cacheKey);
+      if (response == null) {
+        return null;
+      }
+    }
+    logger.debug("Cache hit: {}", cacheKey);
+    response.addHeader(CACHE_STATUS_HEADER, "HIT");
+    return response;
+  }
 
+  /**
+   * Serves a heap-cache miss from the off-heap store. The body stays in the
+   * mapped file and is streamed from there, unless a post-filter of the
+   * route needs to read it.
+   *
+   * @param route The matched route
+   * @param cacheKey The request key
+   * @return The stored response, or null if the store is off or has no fresh entry
+   */
+  private GatewayResponse lookupOffHeap(Route route, CacheKey cacheKey) {
+    MappedResponseStore store = this.offHeapStore;
+    if (store == null) {
+      return null;
+    }
+    GatewayResponse response = store.get(cacheKey);
+    if (response != null && route.getFilterChain().requiresResponseBody()) {
+      response.setBody(((MappedBody) response.getStreamingBody()).asString());
+      response.setStreamingBody(null);
+    }
     return response;
   }
 
   /**
-   * Finds a route that matches the given path.
+   * Stores a fresh upstream response in the cache, before any post-filter
+   * has run, if its headers allow it.
    *
-   * @param path The request path
-   * @return Matching route or null
+   * @param request The gateway request
+   * @param cacheKey The request key, or null if the request does not use the cache
+   * @param route The matched route
+   * @param response The upstream response
+   */
+  private void storeInCache(GatewayRequest request, CacheKey cacheKey, Route route,
+      GatewayResponse response) {
+    ResponseCache cache = this.responseCache;
+    if (cacheKey == null || cache == null || !route.isCacheable() || response.isStreaming()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long ttl = CachePolicy.ttlMillis(response.getStatusCode(), response.getHeaders(),
+        request.getHeaders(), route.getVaryHeaders(), route.getCacheTtl(), now);
+    if (ttl > 0) {
+      cache.put(cacheKey, CachedResponse.of(response, ttl, now));
+    }
+    response.addHeader(CACHE_STATUS_HEADER, "MISS");
+  }
+
+  /**
+   * Forwards a GET, sharing one upstream call between identical concurrent
+   * requests. The first request makes the call; the others wait for its
+   * response, up to their own deadline, and each gets a copy to run the
+   * post-filters over. A response marked private or no-store is meant for
+   * the leader only, so the others then make their own call. Requests
+   * beyond the route's waiter cap make their own call, so one slow key
+   * cannot queue an unbounded number of threads.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param requestKey The request key
+   * @return The upstream response, or a copy of the shared one
    */
-  private Route findRoute(String path) {
-    for (Route route : routes) {
-      if (route.matches(path)) {
-        return route;
+  private GatewayResponse forwardCoalesced(GatewayRequest request, Route route,
+      CacheKey requestKey) {
+    RequestCoalescer.Flight flight = coalescer.join(requestKey, route.getMaxCoalescedWaiters());
+    if (flight == null) {
+      return this.forwardRequest(request, route, false);
+    }
+
+    if (flight.isLeader()) {
+      GatewayResponse response = null;
+      Throwable failure = null;
+      try {
+        response = this.forwardRequest(request, route, false);
+        return response;
+      } catch (RuntimeException e) {
+        failure = e;
+        throw e;
+      } finally {
+        flight.complete(response, failure);
+      }
+    }
+
+    Deadline deadline = Deadline.of(request.getStartNanos(), route.getTimeout());
+    GatewayResponse response;
+    try {
+      CachedResponse shared =
+          flight.result().get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+      if (!CachePolicy.isShareable(shared.getHeaders())) {
+        return this.forwardRequest(request, route, false);
+      }
+      response = shared.toResponse();
+    } catch (TimeoutException e) {
+      logger.warn("Shared upstream call did not finish within {} ms: {}",
+          route.getTimeout(), request.getPath());
+      response = gatewayTimeout(new GatewayResponse());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      response = errorResponse(new GatewayResponse(), e);
+    } catch (ExecutionException e) {
+      response = errorResponse(new GatewayResponse(), e.getCause());
+    }
+    // Waited on the leader's call instead of making one
+    this.releaseAdmission(route);
+    return response;
+  }
+
+  /**
+   * Non-blocking form of {@link #forwardCoalesced}: followers attach to the
+   * leader's future instead of waiting on it, and make their own call if
+   * the leader's response is private or no-store.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param requestKey The request key
+   * @return A future completed with the upstream response, or a copy of the shared one
+   */
+  private CompletableFuture<GatewayResponse> forwardCoalescedAsync(GatewayRequest request,
+      Route route, CacheKey requestKey) {
+    RequestCoalescer.Flight flight = coalescer.join(requestKey, route.getMaxCoalescedWaiters());
+    if (flight == null) {
+      return this.forwardRequestAsync(request, route);
+    }
+
+    if (flight.isLeader()) {
+      return this.forwardRequestAsync(request, route)
+          .whenComplete(flight::complete);
+    }
+
+    CompletableFuture<GatewayResponse> result = new CompletableFuture<>();
+    Deadline deadline = Deadline.of(request.getStartNanos(), route.getTimeout());
+    ScheduledFuture<?> timeout = DEADLINE_TIMER.schedule(
+        () -> result.complete(gatewayTimeout(new GatewayResponse())),
+        deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+    flight.result().whenComplete((shared, e) -> {
+      if (shared != null && !result.isDone() && !CachePolicy.isShareable(shared.getHeaders())) {
+        // Meant for the leader only; the deadline timer still bounds our own call
+        this.forwardRequestAsync(request, route).whenComplete((own, failure) -> {
+          timeout.cancel(false);
+          result.complete(own != null ? own : errorResponse(new GatewayResponse(), failure));
+        });
+        return;
+      }
+      // Waited on the leader's call instead of making one
+      this.releaseAdmission(route);
+      timeout.cancel(false);
+      result.complete(shared != null
+          ? shared.toResponse() : errorResponse(new GatewayResponse(), e));
+    });
+    return result;
+  }
+
+  /**
+   * Applies the global and then the route-wide rate limit, before any
+   * filter runs or any body is read. The limits nest: a request turned away
+   * by the route limit, or later by the filters, gives its global permit
+   * back, so only requests that reach the backend count against it. For the
+   * same reason a request answered from the cache, or by waiting on another
+   * request's upstream call, gives both permits back.
+   *
+   * @param route The matched route
+   * @return A 429 response, or null if the request was admitted
+   */
+  private GatewayResponse admit(Route route) {
+    RateLimiter global = this.globalLimiter;
+    if (global != null && !global.tryAcquire(GLOBAL_LIMIT_KEY)) {
+      logger.warn("Global rate limit of {}/min exceeded", global.getLimit());
+      return tooManyRequests("global");
+    }
+
+    RateLimiter routeLimiter = route.getAdmissionLimiter();
+    if (routeLimiter != null && !routeLimiter.tryAcquire(route.getPathPattern())) {
+      if (global != null) {
+        global.release(GLOBAL_LIMIT_KEY);
       }
+      logger.warn("Route rate limit of {}/min exceeded for {}",
+          route.getRateLimit(), route.getPathPattern());
+      return tooManyRequests("route");
     }
+
     return null;
   }
 
+  /**
+   * Gives back the global and route permits of a request that was admitted
+   * but made no upstream call of its own.
+   *
+   * @param route The matched route
+   */
+  private void releaseAdmission(Route route) {
+    RateLimiter routeLimiter = route.getAdmissionLimiter();
+    if (routeLimiter != null) {
+      routeLimiter.release(route.getPathPattern());
+    }
+    RateLimiter global = this.globalLimiter;
+    if (global != null) {
+      global.release(GLOBAL_LIMIT_KEY);
+    }
+  }
+
+  /**
+   * Builds a 429 response for a request shed by a rate limit.
+   *
+   * @param scope Which limit was hit, "global" or "route"
+   * @return The response
+   */
+  private static GatewayResponse tooManyRequests(String scope) {
+    GatewayResponse response = new GatewayResponse();
+    response.setStatusCode(429);
+    response.addHeader(RATE_LIMIT_SCOPE_HEADER, scope);
+    response.setBody("Too many requests");
+    return response;
+  }
+
+  /**
+   * Turns an unexpected failure into a 500 response, or 413 if it was
+   * caused by an oversized body.
+   *
+   * @param response The response to fill in
+   * @param failure The failure
+   * @return The same response
+   */
+  private static GatewayResponse errorResponse(GatewayResponse response, Throwable failure) {
+    Throwable e = failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause() : failure;
+    logger.error("Error processing request", e);
+    if (response.isStreaming()) {
+      response.getStreamingBody().close();
+      response.setStreamingBody(null);
+    }
+    if (RequestBodies.isTooLarge(e)) {
+      return payloadTooLarge(response);
+    }
+    response.setStatusCode(500);
+    response.setBody("Internal gateway error: " + e.getMessage());
+    return response;
+  }
+
+  /**
+   * Fills in a 404 response for a path no route matches.
+   *
+   * @param response The response to fill in
+   * @return The same response
+   */
+  private static GatewayResponse notFound(GatewayResponse response) {
+    response.setStatusCode(404);
+    response.setBody("No route found");
+    return response;
+  }
+
+  /**
+   * Decides how the request body travels to the backend. A body with a
+   * declared length over the route's limit is rejected up front. Otherwise
+   * the body is read into a String (the default), left as a size-limited
+   * stream (streaming routes), or spooled to a temp file (streaming routes
+   * with a filter that reads the body).
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @param filterChain The route's filter chain
+   * @return false if the body is too large
+   * @throws IOException if reading the body fails
+   */
+  private boolean prepareRequestBody(GatewayRequest request, Route route,
+      FilterChain filterChain) throws IOException {
+    InputStream bodyStream = request.getBodyStream();
+    if (bodyStream == null) {
+      return true;
+    }
+
+    long maxBodySize = route.getMaxBodySize();
+    if (request.getContentLength() > maxBodySize) {
+      return false;
+    }
+
+    try {
+      if (!route.isStreamRequest()) {
+        request.setBody(RequestBodies.readString(bodyStream, maxBodySize));
+        request.setBodyStream(null, request.getContentLength());
+      } else if (filterChain.requiresRequestBody()) {
+        request.setBodyFile(RequestBodies.spool(bodyStream, maxBodySize));
+        request.setBodyStream(null, request.getContentLength());
+      } else {
+        request.setBodyStream(RequestBodies.limit(bodyStream, maxBodySize),
+            request.getContentLength());
+      }
+    } catch (RequestBodies.BodyTooLargeException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Deletes the temp file a request body was spooled to, if any.
+   *
+   * @param request The gateway request
+   */
+  private static void deleteBodyFile(GatewayRequest request) {
+    Path bodyFile = request.getBodyFile();
+    if (bodyFile != null) {
+      try {
+        Files.deleteIfExists(bodyFile);
+      } catch (IOException e) {
+        logger.warn("Could not delete spooled request body {}", bodyFile);
+      }
+      request.setBodyFile(null);
+    }
+  }
+
+  /**
+   * Fills in a 413 response for a request body over the route's limit.
+   *
+   * @param response The response to fill in
+   * @return The same response
+   */
+  private static GatewayResponse payloadTooLarge(GatewayResponse response) {
+    response.setStatusCode(413);
+    response.setBody("Request body too large");
+    return response;
+  }
+
+  /**
+   * Finds the route with the longest pattern matching the given path.
+   *
+   * @param path The request path
+   * @return Matching route or null
+   */
+  Route findRoute(String path) {
+    return routeIndex.find(path);
+  }
+
   /**
    * Forwards the request to the backend service.
    * Uses the Object Pool pattern to get an HTTP client.
+   * The route's timeout is an end-to-end deadline measured from when the
+   * request arrived: whatever is left bounds the pool wait, the connect and
+   * the response read, and the upstream is told how much remains.
+   * When streaming, the open backend response is handed to the returned
+   * GatewayResponse, which keeps the client until its body is closed.
    *
    * @param request The gateway request
    * @param route The matched route
+   * @param stream Whether to stream the backend body instead of buffering it
    * @return The gateway response
    */
-  private GatewayResponse forwardRequest(GatewayRequest request, Route route) {
+  private GatewayResponse forwardRequest(GatewayRequest request, Route route, boolean stream) {
     GatewayResponse response = new GatewayResponse();
     CloseableHttpClient httpClient = null;
+    ScheduledFuture<?> abortTask = null;
+    Span acquireSpan = null;
+    Span upstreamSpan = null;
+    Upstream upstream = null;
+    long upstreamStart = 0;
+    boolean upstreamFailed = false;
+    boolean handedOff = false;
+    Deadline deadline = Deadline.of(request.getStartNanos(), route.getTimeout());
+
+    if (deadline.isExpired()) {
+      logger.warn("Request budget of {} ms spent before forwarding: {}",
+          route.getTimeout(), request.getPath());
+      return gatewayTimeout(response);
+    }
 
     try {
-      httpClient = this.clientPool.acquire();
-      logger.info("Using pooled HTTP client. In use: {}/{}",
+      acquireSpan = startSpan(request, POOL_ACQUIRE_SPAN);
+      httpClient = this.clientPool.acquire(deadline.remainingMillis());
+      endSpan(acquireSpan);
+      logger.debug("Using pooled HTTP client. In use: {}/{}",
           this.clientPool.getInUseCount(), this.clientPool.getMaxPoolSize());
 
-      String targetUrl = route.getTargetUrl();
-      logger.info("Forwarding to: {}", targetUrl);
+      Upstream target = route.chooseUpstream(request);
+      logger.debug("Forwarding to: {}", target.getUrl());
+
+      upstreamSpan = startSpan(request, UPSTREAM_SPAN);
+      HttpRequestBase httpRequest = this.createHttpRequest(request, target.getUrl());
 
-      HttpUriRequest httpRequest = this.createHttpRequest(request, targetUrl);
+      int remaining = deadline.remainingMillisInt();
+      if (remaining == 0) {
+        return gatewayTimeout(response);
+      }
+      applyDeadline(httpRequest, remaining);
+
+      // Socket timeouts only bound each read, so abort once the whole budget is gone
+      abortTask = DEADLINE_TIMER.schedule(httpRequest::abort, remaining, TimeUnit.MILLISECONDS);
 
-      HttpResponse httpResponse = httpClient.execute(httpRequest);
+      upstream = target;
+      upstreamStart = upstream.begin();
+      CloseableHttpResponse httpResponse = httpClient.execute(httpRequest);
 
       response.setStatusCode(httpResponse.getStatusLine().getStatusCode());
-      String responseBody = EntityUtils.toString(httpResponse.getEntity());
-      response.setBody(responseBody);
+      this.recordUpstreamStatus(route, response.getStatusCode());
+      copyResponseHeaders(httpResponse, response);
+
+      if (stream) {
+        response.setStreamingBody(
+            new UpstreamBody(httpResponse, clientPool, httpClient, abortTask));
+        handedOff = true;
+      } else {
+        try {
+          HttpEntity entity = httpResponse.getEntity();
+          response.setBody(entity == null ? "" : EntityUtils.toString(entity));
+        } finally {
+          httpResponse.close();
+        }
+      }
 
-      logger.info("Backend response received. Status: {}",
+      logger.debug("Backend response received. Status: {}",
           response.getStatusCode());
 
     } catch (InterruptedException e) {
@@ -139,37 +847,399 @@ public class GatewayService {
       response.setStatusCode(503);
       response.setBody("Service temporarily unavailable");
       Thread.currentThread().interrupt();
+    } catch (IllegalStateException e) {
+      logger.error("No HTTP client available: {}", e.getMessage());
+      if (deadline.isExpired()) {
+        return gatewayTimeout(response);
+      }
+      response.setStatusCode(503);
+      response.setBody("Service temporarily unavailable");
     } catch (IOException e) {
-      logger.error("Error forwarding request", e);
-      response.setStatusCode(502);
-      response.setBody("Bad gateway: " + e.getMessage());
+      upstreamFailed = true;
+      return upstreamFailure(response, e, request, route, deadline);
     } finally {
-      if (httpClient != null) {
-        this.clientPool.release(httpClient);
-        logger.debug("HTTP client released. Available: {}/{}",
-            this.clientPool.getAvailableCount(), this.clientPool.getMaxPoolSize());
+      // A streamed body is still being copied; the span and the target's
+      // latency sample cover the response headers
+      endSpan(acquireSpan);
+      endSpan(upstreamSpan);
+      if (upstream != null) {
+        finishUpstream(upstream, upstreamStart, upstreamFailed, route);
+      }
+      if (handedOff) {
+        logger.debug("HTTP client handed to streaming response body");
+      } else {
+        if (abortTask != null) {
+          abortTask.cancel(false);
+        }
+        releaseClient(httpClient);
+      }
+    }
+
+    return response;
+  }
+
+  /**
+   * Forwards the request to the backend service without blocking.
+   * The same deadline rules as {@link #forwardRequest} apply; the backend
+   * body is buffered by the non-blocking client before the future completes.
+   *
+   * @param request The gateway request
+   * @param route The matched route
+   * @return A future completed with the gateway response
+   */
+  private CompletableFuture<GatewayResponse> forwardRequestAsync(GatewayRequest request,
+      Route route) {
+    GatewayResponse response = new GatewayResponse();
+    Deadline deadline = Deadline.of(request.getStartNanos(), route.getTimeout());
+
+    int remaining = deadline.remainingMillisInt();
+    if (remaining == 0) {
+      logger.warn("Request budget of {} ms spent before forwarding: {}",
+          route.getTimeout(), request.getPath());
+      return CompletableFuture.completedFuture(gatewayTimeout(response));
+    }
+
+    Upstream upstream = route.chooseUpstream(request);
+    Span upstreamSpan = startSpan(request, UPSTREAM_SPAN);
+    HttpRequestBase httpRequest;
+    try {
+      httpRequest = this.createHttpRequest(request, upstream.getUrl());
+    } catch (IOException e) {
+      endSpan(upstreamSpan);
+      return CompletableFuture.completedFuture(
+          upstreamFailure(response, e, request, route, deadline));
+    }
+    applyDeadline(httpRequest, remaining);
+    // Only ask for codings decodeContent can undo; the caller's may include br or zstd
+    httpRequest.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+    logger.debug("Forwarding asynchronously to: {}", upstream.getUrl());
+
+    long upstreamStart = upstream.begin();
+
+    CompletableFuture<GatewayResponse> result = new CompletableFuture<>();
+    Future<HttpResponse> call = asyncClientPool.execute(httpRequest,
+        new FutureCallback<HttpResponse>() {
+          @Override
+          public void completed(HttpResponse httpResponse) {
+            try {
+              response.setStatusCode(httpResponse.getStatusLine().getStatusCode());
+              recordUpstreamStatus(route, response.getStatusCode());
+              decodeContent(httpResponse);
+              copyResponseHeaders(httpResponse, response);
+              HttpEntity entity = httpResponse.getEntity();
+              response.setBody(entity == null ? "" : EntityUtils.toString(entity));
+              endSpan(upstreamSpan);
+              finishUpstream(upstream, upstreamStart, false, route);
+              result.complete(response);
+            } catch (Exception e) {
+              // Parse and charset errors too: result must complete and the slot come back
+              endSpan(upstreamSpan);
+              finishUpstream(upstream, upstreamStart, true, route);
+              result.complete(upstreamFailure(response, e, request, route, deadline));
+            }
+          }
+
+          @Override
+          public void failed(Exception e) {
+            endSpan(upstreamSpan);
+            finishUpstream(upstream, upstreamStart, true, route);
+            result.complete(upstreamFailure(response, e, request, route, deadline));
+          }
+
+          @Override
+          public void cancelled() {
+            endSpan(upstreamSpan);
+            finishUpstream(upstream, upstreamStart, true, route);
+            logger.warn("Backend did not answer within {} ms: {}",
+                route.getTimeout(), request.getPath());
+            result.complete(gatewayTimeout(response));
+          }
+        });
+
+    ScheduledFuture<?> abortTask = DEADLINE_TIMER.schedule(
+        () -> call.cancel(true), remaining, TimeUnit.MILLISECONDS);
+    result.whenComplete((r, e) -> abortTask.cancel(false));
+    return result;
+  }
+
+  /**
+   * Gives the target its in-flight slot back and a latency sample for the
+   * balancer. A failure is recorded as taking at least the route timeout.
+   *
+   * @param upstream The target the request went to
+   * @param startNanos The value returned by {@link Upstream#begin()}
+   * @param failed Whether the call failed or timed out
+   * @param route The matched route
+   */
+  private static void finishUpstream(Upstream upstream, long startNanos, boolean failed,
+      Route route) {
+    if (failed) {
+      upstream.fail(startNanos, TimeUnit.MILLISECONDS.toNanos(route.getTimeout()));
+    } else {
+      upstream.finish(startNanos);
+    }
+  }
+
+  /**
+   * Records the finished request in the access log, records its latency and
+   * ends its trace, if each is enabled. Every response passes through here,
+   * including rejections, unmatched paths and errors that never reach a
+   * route's post-filters.
+   *
+   * @param request The gateway request
+   * @param response The response sent to the client, or null if there is none
+   */
+  private void finishRequest(GatewayRequest request, GatewayResponse response) {
+    AccessLog currentLog = this.accessLog;
+    if (currentLog != null && response != null) {
+      currentLog.record(request, response);
+    }
+    GatewayMetrics current = this.metrics;
+    if (current != null) {
+      current.recordRequest(request.getMatchedRoute(),
+          System.nanoTime() - request.getStartNanos());
+    }
+    Tracer currentTracer = this.tracer;
+    if (currentTracer != null) {
+      currentTracer.finish(request, response == null ? 500 : response.getStatusCode());
+    }
+  }
+
+  /**
+   * Starts the request's trace if tracing is enabled and it has none yet.
+   *
+   * @param request The gateway request
+   */
+  private void startTrace(GatewayRequest request) {
+    Tracer currentTracer = this.tracer;
+    if (currentTracer != null && request.getTraceContext() == null) {
+      currentTracer.start(request);
+    }
+  }
+
+  /**
+   * Starts a span under the request's current one.
+   *
+   * @param request The gateway request
+   * @param name Phase name
+   * @return the span, or null if the request is not traced
+   */
+  private static Span startSpan(GatewayRequest request, String name) {
+    TraceContext trace = request.getTraceContext();
+    return trace == null ? null : trace.startSpan(name);
+  }
+
+  /**
+   * Ends a span returned by {@link #startSpan}.
+   *
+   * @param span The span, or null
+   */
+  private static void endSpan(Span span) {
+    if (span != null) {
+      span.end();
+    }
+  }
+
+  /**
+   * Counts a request turned away before the backend, if metrics are enabled.
+   *
+   * @param route The matched route
+   * @param reason What turned the request away
+   */
+  private void recordReject(Route route, String reason) {
+    GatewayMetrics current = this.metrics;
+    if (current != null) {
+      current.recordReject(route, reason);
+    }
+  }
+
+  /**
+   * Counts a backend status code, if metrics are enabled.
+   *
+   * @param route The matched route
+   * @param status The backend status code
+   */
+  private void recordUpstreamStatus(Route route, int status) {
+    GatewayMetrics current = this.metrics;
+    if (current != null) {
+      current.recordUpstreamStatus(route, status);
+    }
+  }
+
+  /**
+   * Applies the remaining request budget to the lease, connect and read
+   * timeouts, and tells the backend how much of it is left.
+   *
+   * @param httpRequest The backend request
+   * @param remaining Remaining budget in milliseconds
+   */
+  private static void applyDeadline(HttpRequestBase httpRequest, int remaining) {
+    httpRequest.setConfig(RequestConfig.custom()
+        .setConnectionRequestTimeout(remaining)
+        .setConnectTimeout(remaining)
+        .setSocketTimeout(remaining)
+        .build());
+    httpRequest.setHeader(TIMEOUT_HEADER, String.valueOf(remaining));
+  }
+
+  /**
+   * Maps a failed backend call to a response: 413 for an oversized body,
+   * 504 when the deadline ran out, 502 otherwise.
+   *
+   * @param response The response to fill in
+   * @param e The failure
+   * @param request The gateway request
+   * @param route The matched route
+   * @param deadline The request deadline
+   * @return The same response
+   */
+  private static GatewayResponse upstreamFailure(GatewayResponse response, Exception e,
+      GatewayRequest request, Route route, Deadline deadline) {
+    if (RequestBodies.isTooLarge(e)) {
+      logger.warn("Request body larger than {} bytes while forwarding: {}",
+          route.getMaxBodySize(), request.getPath());
+      return payloadTooLarge(response);
+    }
+    if (e instanceof InterruptedIOException || e instanceof TimeoutException
+        || deadline.isExpired()) {
+      logger.warn("Backend did not answer within {} ms: {}", route.getTimeout(), e.toString());
+      return gatewayTimeout(response);
+    }
+    logger.error("Error forwarding request", e);
+    response.setStatusCode(502);
+    response.setBody("Bad gateway: " + e.getMessage());
+    return response;
+  }
+
+  /**
+   * Returns a client to the pool, if one was leased.
+   *
+   * @param httpClient The leased client, may be null
+   */
+  private void releaseClient(CloseableHttpClient httpClient) {
+    if (httpClient != null) {
+      this.clientPool.release(httpClient);
+      logger.debug("HTTP client released. Available: {}/{}",
+          this.clientPool.getAvailableCount(), this.clientPool.getMaxPoolSize());
+    }
+  }
+
+  /**
+   * Replaces a gzip or deflate body with its decoded form and drops the
+   * headers that described the encoded one, as the blocking client does on
+   * its own. The non-blocking client has no such step, and the body is
+   * buffered as text.
+   *
+   * @param httpResponse The backend response
+   */
+  private static void decodeContent(HttpResponse httpResponse) {
+    HttpEntity entity = httpResponse.getEntity();
+    Header encoding = entity == null ? null : entity.getContentEncoding();
+    if (encoding == null) {
+      return;
+    }
+    String coding = encoding.getValue().trim().toLowerCase(Locale.ROOT);
+    if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+      httpResponse.setEntity(new GzipDecompressingEntity(entity));
+    } else if ("deflate".equals(coding)) {
+      httpResponse.setEntity(new DeflateDecompressingEntity(entity));
+    } else {
+      return;
+    }
+    httpResponse.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+    httpResponse.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+    httpResponse.removeHeaders(HttpHeaders.CONTENT_MD5);
+  }
+
+  /**
+   * Copies the backend's end-to-end headers onto the gateway response.
+   * Hop-by-hop and framing headers are left out; the servlet container
+   * sets its own.
+   *
+   * @param httpResponse The backend response
+   * @param response The gateway response
+   */
+  private static void copyResponseHeaders(HttpResponse httpResponse, GatewayResponse response) {
+    for (Header header : httpResponse.getAllHeaders()) {
+      String name = header.getName();
+      if (!name.equalsIgnoreCase("Connection")
+          && !name.equalsIgnoreCase("Keep-Alive")
+          && !name.equalsIgnoreCase("Transfer-Encoding")
+          && !name.equalsIgnoreCase("Content-Length")
+          && !name.equalsIgnoreCase("Proxy-Authenticate")
+          && !name.equalsIgnoreCase("Trailer")
+          && !name.equalsIgnoreCase("Upgrade")) {
+        response.addHeader(name, header.getValue());
       }
     }
+  }
 
+  /**
+   * Fills in a 504 response for a request whose time budget ran out.
+   *
+   * @param response The response to fill in
+   * @return The same response
+   */
+  private static GatewayResponse gatewayTimeout(GatewayResponse response) {
+    response.setStatusCode(504);
+    response.setBody("Gateway timeout");
     return response;
   }
 
+  /**
+   * Creates the timer thread that aborts upstream calls at their deadline.
+   *
+   * @return A single-threaded daemon scheduler
+   */
+  private static ScheduledExecutorService createDeadlineTimer() {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "gateway-deadline-timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  /**
+   * Creates the threads that finish non-blocking requests: cache stores and
+   * post-filters run there rather than on the few I/O dispatcher threads,
+   * which every connection in flight depends on.
+   *
+   * @return A fixed pool of daemon threads, one per processor
+   */
+  private static ExecutorService createCompletionExecutor() {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "gateway-completion-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
   /**
    * Creates an HTTP request based on the gateway request.
    *
    * @param request The gateway request
    * @param targetUrl The target URL
-   * @return HttpUriRequest
+   * @return HttpRequestBase
    * @throws IOException if there's an error creating the request
    */
-  private HttpUriRequest createHttpRequest(GatewayRequest request, String targetUrl)
+  private HttpRequestBase createHttpRequest(GatewayRequest request, String targetUrl)
       throws IOException {
-    HttpUriRequest httpRequest;
+    HttpRequestBase httpRequest;
 
     if ("POST".equalsIgnoreCase(request.getMethod())) {
       HttpPost post = new HttpPost(targetUrl);
-      if (request.getBody() != null) {
-        post.setEntity(new StringEntity(request.getBody()));
+      if (request.getBodyFile() != null) {
+        post.setEntity(new FileEntity(request.getBodyFile().toFile()));
+      } else if (request.getBodyStream() != null) {
+        InputStreamEntity entity = new InputStreamEntity(request.getBodyStream(), -1);
+        entity.setChunked(true);
+        post.setEntity(entity);
+      } else if (request.getBody() != null) {
+        post.setEntity(new StringEntity(request.getBody(), StandardCharsets.UTF_8));
       }
       httpRequest = post;
     } else {
@@ -189,11 +1259,18 @@ public class GatewayService {
       // Skip headers that might cause issues or are gateway-specific
       if (!headerName.equalsIgnoreCase("Host") 
           && !headerName.equalsIgnoreCase("Content-Length")
+          && !headerName.equalsIgnoreCase("Transfer-Encoding")
           && !headerName.startsWith("X-Gateway-")) {
         httpRequest.addHeader(headerName, header.getValue());
       }
     }
 
+    // Replaces the caller's traceparent, so the backend's spans hang off ours
+    TraceContext trace = request.getTraceContext();
+    if (trace != null) {
+      httpRequest.setHeader(TraceContext.TRACEPARENT_HEADER, trace.traceparent());
+    }
+
     return httpRequest;
   }
 
@@ -215,11 +1292,161 @@ public class GatewayService {
     return clientPool;
   }
 
+  /**
+   * Replaces the response cache shared by all cacheable routes.
+   *
+   * @param responseCache The cache, or null to turn caching off
+   */
+  public void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+    this.linkCacheTiers();
+  }
+
+  /**
+   * Sets the off-heap store that receives the entries evicted from the
+   * response cache and serves them when the response cache misses.
+   *
+   * @param offHeapStore The store, or null to drop evicted entries
+   */
+  public void setOffHeapStore(MappedResponseStore offHeapStore) {
+    this.offHeapStore = offHeapStore;
+    this.linkCacheTiers();
+  }
+
+  /**
+   * Gets the off-heap store behind the response cache.
+   *
+   * @return The store, or null if there is none
+   */
+  public MappedResponseStore getOffHeapStore() {
+    return offHeapStore;
+  }
+
+  private synchronized void linkCacheTiers() {
+    ResponseCache cache = this.responseCache;
+    MappedResponseStore store = this.offHeapStore;
+    if (cache != null) {
+      // Entries keyed on a credential hold one user's data and stay off the disk
+      cache.setEvictionListener(store == null ? null : (key, value) -> {
+        if (!key.isCredentialed()) {
+          store.put(key, value);
+        }
+      });
+    }
+  }
+
+  /**
+   * Gets the response cache.
+   *
+   * @return The cache, or null if caching is off
+   */
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Gets the coalescer that shares upstream calls between identical GETs.
+   *
+   * @return The request coalescer
+   */
+  public RequestCoalescer getCoalescer() {
+    return coalescer;
+  }
+
+  /**
+   * Sets a rate limit applied to every request, ahead of the route limits.
+   *
+   * @param globalLimiter The global limiter, or null for no global limit
+   */
+  public void setGlobalLimiter(RateLimiter globalLimiter) {
+    this.globalLimiter = globalLimiter;
+  }
+
+  /**
+   * Gets the global rate limiter.
+   *
+   * @return The global limiter, or null if there is none
+   */
+  public RateLimiter getGlobalLimiter() {
+    return globalLimiter;
+  }
+
+  /**
+   * Sets where request latency, upstream status and reject counts are recorded.
+   *
+   * @param metrics The gateway metrics, or null to record nothing
+   */
+  public void setMetrics(GatewayMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Gets the gateway metrics.
+   *
+   * @return The gateway metrics, or null if none are recorded
+   */
+  public GatewayMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the access log every finished request is recorded in.
+   *
+   * @param accessLog The access log, or null to record nothing
+   */
+  public void setAccessLog(AccessLog accessLog) {
+    this.accessLog = accessLog;
+  }
+
+  /**
+   * Gets the access log.
+   *
+   * @return The access log, or null if requests are not recorded
+   */
+  public AccessLog getAccessLog() {
+    return accessLog;
+  }
+
+  /**
+   * Sets the tracer that times each phase of a request.
+   *
+   * @param tracer The tracer, or null to trace nothing
+   */
+  public void setTracer(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /**
+   * Gets the tracer.
+   *
+   * @return The tracer, or null if requests are not traced
+   */
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Gets the non-blocking HTTP client.
+   *
+   * @return The async client pool, or null if requests always block
+   */
+  public AsyncHttpClientPool getAsyncClientPool() {
+    return asyncClientPool;
+  }
+
   /**
    * Shuts down the gateway service.
    */
   public void shutdown() {
     logger.info("Shutting down GatewayService");
     this.clientPool.shutdown();
+    if (this.asyncClientPool != null) {
+      this.asyncClientPool.shutdown();
+      this.completionExecutor.shutdown();
+    }
+    MappedResponseStore store = this.offHeapStore;
+    if (store != null) {
+      store.close();
+    }
   }
 }
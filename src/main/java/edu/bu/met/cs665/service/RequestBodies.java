@@ -0,0 +1,152 @@
+package edu.bu.met.cs665.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+final class RequestBodies {
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Utility class - not instantiable.
+   */
+  private RequestBodies() {
+  }
+
+  /**
+   * Reads a whole request body into a UTF-8 String.
+   *
+   * @param in The body stream
+   * @param maxBytes Largest body accepted
+   * @return The body
+   * @throws BodyTooLargeException if the body is larger than maxBytes
+   * @throws IOException if reading fails
+   */
+  static String readString(InputStream in, long maxBytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    copy(limit(in, maxBytes), out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies a request body to a temp file so it can be read more than once.
+   *
+   * @param in The body stream
+   * @param maxBytes Largest body accepted
+   * @return The temp file; the caller deletes it
+   * @throws BodyTooLargeException if the body is larger than maxBytes
+   * @throws IOException if reading or writing fails
+   */
+  static Path spool(InputStream in, long maxBytes) throws IOException {
+    Path file = Files.createTempFile("gateway-body-", ".tmp");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      copy(limit(in, maxBytes), out);
+      return file;
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps a stream so that reading past maxBytes fails.
+   *
+   * @param in The body stream
+   * @param maxBytes Largest body accepted
+   * @return The limited stream
+   */
+  static InputStream limit(InputStream in, long maxBytes) {
+    return new LimitedInputStream(in, maxBytes);
+  }
+
+  /**
+   * Checks whether a failure was caused by an oversized body, which
+   * HttpClient may report wrapped in another exception.
+   *
+   * @param e The failure
+   * @return true if a BodyTooLargeException is in the cause chain
+   */
+  static boolean isTooLarge(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof BodyTooLargeException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+  }
+
+  /**
+   * Thrown when a request body is larger than the route allows.
+   */
+  static final class BodyTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    BodyTooLargeException(long maxBytes) {
+      super("Request body larger than " + maxBytes + " bytes");
+    }
+  }
+
+  /**
+   * Counts bytes as they are read and fails once the limit is passed.
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    private LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count(skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void count(long read) throws BodyTooLargeException {
+      count += read;
+      if (count > maxBytes) {
+        throw new BodyTooLargeException(maxBytes);
+      }
+    }
+  }
+}
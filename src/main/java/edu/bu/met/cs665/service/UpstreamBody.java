@@ -0,0 +1,97 @@
+package edu.bu.met.cs665.service;
+
+import edu.bu.met.cs665.model.StreamingBody;
+import edu.bu.met.cs665.pool.HttpClientPool;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Future;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+class UpstreamBody implements StreamingBody {
+  private static final Logger logger = LogManager.getLogger(UpstreamBody.class);
+  private static final int BUFFER_SIZE = 8192;
+  private static final ThreadLocal<byte[]> BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+  private final CloseableHttpResponse httpResponse;
+  private final HttpClientPool clientPool;
+  private final CloseableHttpClient httpClient;
+  private final Future<?> abortTask;
+  private boolean closed;
+
+  /**
+   * Wraps an open backend response. The body takes over the pooled client
+   * and the deadline timer and gives both back when it is closed.
+   *
+   * @param httpResponse The open backend response
+   * @param clientPool The pool the client came from
+   * @param httpClient The leased client
+   * @param abortTask The deadline timer for the upstream call, may be null
+   */
+  UpstreamBody(CloseableHttpResponse httpResponse, HttpClientPool clientPool,
+      CloseableHttpClient httpClient, Future<?> abortTask) {
+    this.httpResponse = httpResponse;
+    this.clientPool = clientPool;
+    this.httpClient = httpClient;
+    this.abortTask = abortTask;
+  }
+
+  /**
+   * Copies the backend body to the given stream through a per-thread buffer,
+   * so memory use does not depend on the payload size.
+   *
+   * @param out The stream to write to
+   * @throws IOException if reading the backend or writing the output fails
+   */
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    HttpEntity entity = httpResponse.getEntity();
+    if (entity == null) {
+      return;
+    }
+
+    byte[] buffer = BUFFER.get();
+    try (InputStream in = entity.getContent()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    out.flush();
+  }
+
+  @Override
+  public long getContentLength() {
+    HttpEntity entity = httpResponse.getEntity();
+    return entity == null ? 0 : entity.getContentLength();
+  }
+
+  /**
+   * Closes the backend response and returns the client to the pool.
+   * A partly read response closes its connection instead of reusing it.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      httpResponse.close();
+    } catch (IOException e) {
+      logger.warn("Error closing backend response: {}", e.getMessage());
+    } finally {
+      if (abortTask != null) {
+        abortTask.cancel(false);
+      }
+      clientPool.release(httpClient);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package edu.bu.met.cs665.trace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+public class FileSpanExporter implements SpanExporter {
+  private final Path file;
+  private final BufferedWriter writer;
+
+  /**
+   * Opens the file for appending, creating it and its directory if needed.
+   *
+   * @param file File the traces are appended to, one JSON line each
+   * @throws IOException if the file cannot be opened
+   */
+  public FileSpanExporter(Path file) throws IOException {
+    this.file = file;
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Appends the trace as one JSON line and flushes it. Only sampled traces
+   * get here, so a write per trace is cheap enough and nothing is lost on
+   * a crash.
+   *
+   * @param trace The finished trace
+   * @throws IOException if writing fails
+   */
+  @Override
+  public synchronized void export(TraceContext trace) throws IOException {
+    writer.write(trace.toJson());
+    writer.newLine();
+    writer.flush();
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+
+  /**
+   * Gets the file the traces are appended to.
+   *
+   * @return the file
+   */
+  public Path getFile() {
+    return file;
+  }
+}
@@ -0,0 +1,54 @@
+package edu.bu.met.cs665.trace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+
+public class InMemorySpanExporter implements SpanExporter {
+  private final int capacity;
+  private final Deque<TraceContext> traces;
+
+  /**
+   * Creates an exporter that keeps the newest traces.
+   *
+   * @param capacity Number of traces kept; older ones are dropped
+   */
+  public InMemorySpanExporter(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.traces = new ArrayDeque<>(capacity);
+  }
+
+  /**
+   * Keeps the trace, dropping the oldest one when full.
+   *
+   * @param trace The finished trace
+   */
+  @Override
+  public synchronized void export(TraceContext trace) {
+    if (traces.size() == capacity) {
+      traces.pollFirst();
+    }
+    traces.addLast(trace);
+  }
+
+  /**
+   * Gets the kept traces, oldest first.
+   *
+   * @return a copy of the kept traces
+   */
+  public synchronized List<TraceContext> getTraces() {
+    return new ArrayList<>(traces);
+  }
+
+  /**
+   * Drops every kept trace.
+   */
+  public synchronized void clear() {
+    traces.clear();
+  }
+}
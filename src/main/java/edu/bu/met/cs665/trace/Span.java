@@ -0,0 +1,97 @@
+package edu.bu.met.cs665.trace;
+
+
+public final class Span {
+  private final TraceContext trace;
+  private final String name;
+  private final long spanId;
+  private final Span parent;
+  private final long startNanos;
+  private long endNanos;
+
+  /**
+   * Constructor - use {@link TraceContext#startSpan(String)}.
+   *
+   * @param trace The trace the span belongs to
+   * @param name Phase name
+   * @param spanId Random non-zero span ID
+   * @param parent Enclosing span, or null for the root
+   * @param startNanos Start time from System.nanoTime()
+   */
+  Span(TraceContext trace, String name, long spanId, Span parent, long startNanos) {
+    this.trace = trace;
+    this.name = name;
+    this.spanId = spanId;
+    this.parent = parent;
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * Ends the span now, making its parent the current span again. Ending a
+   * span twice keeps the first end time.
+   */
+  public void end() {
+    end(System.nanoTime());
+  }
+
+  void end(long nanos) {
+    if (endNanos == 0) {
+      endNanos = nanos;
+      trace.ended(this);
+    }
+  }
+
+  /**
+   * Gets the phase name.
+   *
+   * @return span name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the span ID, as sent in the parent-id field of traceparent.
+   *
+   * @return span ID
+   */
+  public long getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * Gets the enclosing span.
+   *
+   * @return parent span, or null for the root
+   */
+  public Span getParent() {
+    return parent;
+  }
+
+  /**
+   * Gets the start time.
+   *
+   * @return start time from System.nanoTime()
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Gets how long the span took.
+   *
+   * @return duration in nanoseconds, or -1 if the span has not ended
+   */
+  public long getDurationNanos() {
+    return endNanos == 0 ? -1 : endNanos - startNanos;
+  }
+
+  /**
+   * Checks whether the span has ended.
+   *
+   * @return true once end was called
+   */
+  public boolean isEnded() {
+    return endNanos != 0;
+  }
+}
@@ -0,0 +1,26 @@
+package edu.bu.met.cs665.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+public interface SpanExporter extends Closeable {
+
+  /**
+   * Hands over a finished trace the sampler kept. Called on the thread that
+   * finished the request, so implementations must be thread-safe.
+   *
+   * @param trace The finished trace
+   * @throws IOException if the trace cannot be written; it is counted as lost
+   */
+  void export(TraceContext trace) throws IOException;
+
+  /**
+   * Releases the exporter.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override
+  default void close() throws IOException {
+  }
+}
@@ -0,0 +1,46 @@
+package edu.bu.met.cs665.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+public class TailSampler {
+  private final long slowThresholdNanos;
+  private final double sampleRate;
+
+  /**
+   * Creates a sampler that decides once a request has finished, so it can
+   * keep exactly the traces worth reading: failed ones (5xx) and slow ones.
+   * Everything else is kept at the given rate, 0 for none.
+   *
+   * @param slowThreshold Duration from which a trace counts as slow
+   * @param unit Unit of slowThreshold
+   * @param sampleRate Fraction of fast, successful traces kept
+   */
+  public TailSampler(long slowThreshold, TimeUnit unit, double sampleRate) {
+    this.slowThresholdNanos = unit.toNanos(slowThreshold);
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Decides whether a finished trace is exported.
+   *
+   * @param trace The finished trace
+   * @return true to export it
+   */
+  public boolean shouldKeep(TraceContext trace) {
+    if (trace.getStatus() >= 500 || trace.getDurationNanos() >= slowThresholdNanos) {
+      return true;
+    }
+    return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  /**
+   * Gets the duration from which a trace counts as slow.
+   *
+   * @return threshold in nanoseconds
+   */
+  public long getSlowThresholdNanos() {
+    return slowThresholdNanos;
+  }
+}
@@ -0,0 +1,286 @@
+package edu.bu.met.cs665.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+public final class TraceContext {
+  /** Name of the W3C trace context header. */
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final int TRACEPARENT_LENGTH = 55;
+
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final long remoteParentId;
+  private final long timestamp;
+  private final List<Span> spans;
+  private final Span root;
+  private Span current;
+  private int status;
+
+  /*
+   * A trace is owned by one request. Its spans are started and ended by
+   * whichever thread runs the request at the time; on the non-blocking path
+   * that moves from the request thread to an I/O thread, with the future
+   * hand-off ordering the writes, so no locking is needed.
+   */
+  private TraceContext(long traceIdHigh, long traceIdLow, long remoteParentId,
+      long timestamp, long startNanos) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.remoteParentId = remoteParentId;
+    this.timestamp = timestamp;
+    this.spans = new ArrayList<>(8);
+    this.root = new Span(this, "request", newId(), null, startNanos);
+    this.spans.add(root);
+    this.current = root;
+  }
+
+  /**
+   * Starts a trace, continuing the caller's trace if it sent a valid
+   * traceparent header and starting a new one otherwise.
+   *
+   * @param traceparent Incoming header value, or null
+   * @param timestamp Request arrival in epoch milliseconds
+   * @param startNanos Request arrival from System.nanoTime()
+   * @return the trace, with its root span started at startNanos
+   */
+  static TraceContext start(String traceparent, long timestamp, long startNanos) {
+    if (isValid(traceparent)) {
+      long high = parseHex(traceparent, 3);
+      long low = parseHex(traceparent, 19);
+      long parent = parseHex(traceparent, 36);
+      if ((high != 0 || low != 0) && parent != 0) {
+        return new TraceContext(high, low, parent, timestamp, startNanos);
+      }
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return new TraceContext(random.nextLong(), newId(), 0, timestamp, startNanos);
+  }
+
+  /**
+   * Checks the version-00 layout: {@code 00-<32 hex>-<16 hex>-<2 hex>}.
+   * Later versions may append fields, so only the prefix is checked for
+   * them; version ff is invalid.
+   */
+  private static boolean isValid(String value) {
+    if (value == null || value.length() < TRACEPARENT_LENGTH
+        || (value.length() > TRACEPARENT_LENGTH && value.startsWith("00"))
+        || value.startsWith("ff")) {
+      return false;
+    }
+    for (int i = 0; i < TRACEPARENT_LENGTH; i++) {
+      char c = value.charAt(i);
+      boolean dash = i == 2 || i == 35 || i == 52;
+      if (dash ? c != '-' : Character.digit(c, 16) < 0 || Character.isUpperCase(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long parseHex(String value, int from) {
+    long result = 0;
+    for (int i = from; i < from + 16; i++) {
+      result = (result << 4) | Character.digit(value.charAt(i), 16);
+    }
+    return result;
+  }
+
+  private static long newId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    return id;
+  }
+
+  /**
+   * Starts a span under the current one and makes it current.
+   *
+   * @param name Phase name
+   * @return the started span; call {@link Span#end()} when the phase is over
+   */
+  public Span startSpan(String name) {
+    Span span = new Span(this, name, newId(), current, System.nanoTime());
+    spans.add(span);
+    current = span;
+    return span;
+  }
+
+  void ended(Span span) {
+    if (current == span && span.getParent() != null) {
+      current = span.getParent();
+    }
+  }
+
+  /**
+   * Ends the root span and records the response status.
+   *
+   * @param status Status code sent to the client
+   */
+  void finish(int status) {
+    this.status = status;
+    root.end();
+  }
+
+  /**
+   * Builds the traceparent header for a call made from the current span,
+   * so the backend's spans become its children.
+   *
+   * @return header value
+   */
+  public String traceparent() {
+    char[] out = new char[TRACEPARENT_LENGTH];
+    out[0] = '0';
+    out[1] = '0';
+    out[2] = '-';
+    writeHex(out, 3, traceIdHigh);
+    writeHex(out, 19, traceIdLow);
+    out[35] = '-';
+    writeHex(out, 36, current.getSpanId());
+    out[52] = '-';
+    out[53] = '0';
+    out[54] = '1';
+    return new String(out);
+  }
+
+  private static void writeHex(char[] out, int at, long value) {
+    for (int i = 15; i >= 0; i--) {
+      out[at + i] = HEX[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+  }
+
+  private static String hex(long value) {
+    char[] out = new char[16];
+    writeHex(out, 0, value);
+    return new String(out);
+  }
+
+  /**
+   * Gets the trace ID as 32 lowercase hex digits.
+   *
+   * @return trace ID
+   */
+  public String getTraceId() {
+    return hex(traceIdHigh) + hex(traceIdLow);
+  }
+
+  /**
+   * Gets the span ID the caller sent, if the trace was continued.
+   *
+   * @return the caller's span ID as 16 hex digits, or null for a new trace
+   */
+  public String getRemoteParentId() {
+    return remoteParentId == 0 ? null : hex(remoteParentId);
+  }
+
+  /**
+   * Gets the root span, which covers the whole request.
+   *
+   * @return root span
+   */
+  public Span getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets the span new spans are started under.
+   *
+   * @return current span
+   */
+  public Span getCurrentSpan() {
+    return current;
+  }
+
+  /**
+   * Gets every span in start order, the root first.
+   *
+   * @return read-only span list
+   */
+  public List<Span> getSpans() {
+    return Collections.unmodifiableList(spans);
+  }
+
+  /**
+   * Finds the first span with the given name.
+   *
+   * @param name Phase name
+   * @return the span, or null if the phase did not run
+   */
+  public Span findSpan(String name) {
+    for (int i = 0; i < spans.size(); i++) {
+      if (spans.get(i).getName().equals(name)) {
+        return spans.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets when the request arrived.
+   *
+   * @return epoch milliseconds
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Gets the status sent to the client.
+   *
+   * @return status code, or 0 before the trace is finished
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Gets how long the whole request took.
+   *
+   * @return duration in nanoseconds, or -1 before the trace is finished
+   */
+  public long getDurationNanos() {
+    return root.getDurationNanos();
+  }
+
+  /**
+   * Writes the trace as one JSON object: the IDs, status and duration, and
+   * each span's name, IDs, start offset from the request and duration in
+   * nanoseconds.
+   *
+   * @return JSON text without a line break
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder(128 + spans.size() * 96);
+    json.append("{\"trace_id\":\"").append(getTraceId()).append('"');
+    if (remoteParentId != 0) {
+      json.append(",\"parent_id\":\"").append(hex(remoteParentId)).append('"');
+    }
+    json.append(",\"ts\":").append(timestamp)
+        .append(",\"status\":").append(status)
+        .append(",\"duration_ns\":").append(getDurationNanos())
+        .append(",\"spans\":[");
+    long origin = root.getStartNanos();
+    for (int i = 0; i < spans.size(); i++) {
+      Span span = spans.get(i);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"name\":\"").append(span.getName())
+          .append("\",\"span_id\":\"").append(hex(span.getSpanId())).append('"');
+      if (span.getParent() != null) {
+        json.append(",\"parent_id\":\"").append(hex(span.getParent().getSpanId())).append('"');
+      }
+      json.append(",\"start_ns\":").append(span.getStartNanos() - origin)
+          .append(",\"duration_ns\":").append(span.getDurationNanos())
+          .append('}');
+    }
+    return json.append("]}").toString();
+  }
+}
@@ -0,0 +1,226 @@
+package edu.bu.met.cs665.trace;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+public class Tracer implements Closeable {
+  private static final Logger logger = LogManager.getLogger(Tracer.class);
+
+  private final SpanExporter exporter;
+  private final TailSampler sampler;
+  private final LongAdder started;
+  private final LongAdder exported;
+  private final LongAdder sampledOut;
+  private final LongAdder failed;
+
+  /**
+   * Private constructor - use {@link #builder(SpanExporter)}.
+   *
+   * @param builder The builder instance
+   */
+  private Tracer(Builder builder) {
+    this.exporter = builder.exporter;
+    this.sampler = builder.sampler;
+    this.started = new LongAdder();
+    this.exported = new LongAdder();
+    this.sampledOut = new LongAdder();
+    this.failed = new LongAdder();
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param exporter Where kept traces go
+   * @return A new Builder instance
+   */
+  public static Builder builder(SpanExporter exporter) {
+    return new Builder(exporter);
+  }
+
+  /**
+   * Starts the trace of a request and attaches it to the request. The root
+   * span starts when the request arrived, and the trace continues the
+   * caller's if it sent a traceparent header.
+   *
+   * @param request The gateway request
+   * @return the trace
+   */
+  public TraceContext start(GatewayRequest request) {
+    TraceContext trace = TraceContext.start(traceparent(request.getHeaders()),
+        request.getTimestamp(), request.getStartNanos());
+    request.setTraceContext(trace);
+    started.increment();
+    return trace;
+  }
+
+  private static String traceparent(Map<String, String> headers) {
+    String value = headers.get(TraceContext.TRACEPARENT_HEADER);
+    if (value != null) {
+      return value;
+    }
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (TraceContext.TRACEPARENT_HEADER.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Ends the request's trace and exports it if the sampler keeps it.
+   * Export failures are logged and counted, never thrown.
+   *
+   * @param request The gateway request
+   * @param status Status code sent to the client
+   */
+  public void finish(GatewayRequest request, int status) {
+    TraceContext trace = request.getTraceContext();
+    if (trace == null) {
+      return;
+    }
+    trace.finish(status);
+    if (!sampler.shouldKeep(trace)) {
+      sampledOut.increment();
+      return;
+    }
+    try {
+      exporter.export(trace);
+      exported.increment();
+    } catch (IOException | RuntimeException e) {
+      failed.increment();
+      logger.warn("Could not export trace {}: {}", trace.getTraceId(), e.getMessage());
+    }
+  }
+
+  /**
+   * Closes the exporter.
+   *
+   * @throws IOException if closing the exporter fails
+   */
+  @Override
+  public void close() throws IOException {
+    exporter.close();
+  }
+
+  /**
+   * Gets the exporter kept traces go to.
+   *
+   * @return the exporter
+   */
+  public SpanExporter getExporter() {
+    return exporter;
+  }
+
+  /**
+   * Gets the number of traces started.
+   *
+   * @return started count
+   */
+  public long getStartedCount() {
+    return started.sum();
+  }
+
+  /**
+   * Gets the number of traces exported.
+   *
+   * @return exported count
+   */
+  public long getExportedCount() {
+    return exported.sum();
+  }
+
+  /**
+   * Gets the number of finished traces the sampler dropped.
+   *
+   * @return sampled-out count
+   */
+  public long getSampledOutCount() {
+    return sampledOut.sum();
+  }
+
+  /**
+   * Gets the number of traces the exporter failed to take.
+   *
+   * @return failed count
+   */
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+
+  public static class Builder {
+    private final SpanExporter exporter;
+    private long slowThresholdMillis = 500;
+    private double sampleRate;
+    private TailSampler sampler;
+
+    /**
+     * Constructor - use {@link Tracer#builder(SpanExporter)}.
+     *
+     * @param exporter Where kept traces go
+     */
+    private Builder(SpanExporter exporter) {
+      this.exporter = exporter;
+    }
+
+    /**
+     * Sets the duration from which a trace is always kept.
+     *
+     * @param slowThreshold Slow threshold
+     * @param unit Unit of slowThreshold
+     * @return this Builder instance for method chaining
+     */
+    public Builder slowThreshold(long slowThreshold, TimeUnit unit) {
+      this.slowThresholdMillis = unit.toMillis(slowThreshold);
+      return this;
+    }
+
+    /**
+     * Sets the fraction of fast, successful traces kept as a baseline.
+     *
+     * @param sampleRate Fraction between 0 and 1
+     * @return this Builder instance for method chaining
+     */
+    public Builder sampleRate(double sampleRate) {
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * Sets a custom sampler, replacing the slow threshold and sample rate.
+     *
+     * @param sampler The sampler
+     * @return this Builder instance for method chaining
+     */
+    public Builder sampler(TailSampler sampler) {
+      this.sampler = sampler;
+      return this;
+    }
+
+    /**
+     * Builds and returns the Tracer instance.
+     *
+     * @return A new Tracer
+     * @throws IllegalStateException if the exporter is missing or a setting is out of range
+     */
+    public Tracer build() {
+      if (exporter == null) {
+        throw new IllegalStateException("Span exporter is required");
+      }
+      if (slowThresholdMillis < 0 || sampleRate < 0 || sampleRate > 1) {
+        throw new IllegalStateException("Slow threshold and sample rate are out of range");
+      }
+      if (sampler == null) {
+        sampler = new TailSampler(slowThresholdMillis, TimeUnit.MILLISECONDS, sampleRate);
+      }
+      return new Tracer(this);
+    }
+  }
+}
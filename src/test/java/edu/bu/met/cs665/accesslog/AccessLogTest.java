@@ -0,0 +1,166 @@
+package edu.bu.met.cs665.accesslog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.route.Route;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+
+public class AccessLogTest {
+
+  private static GatewayRequest request(String path, String clientId) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    request.setClientId(clientId);
+    request.setMatchedRoute(Route.builder("/api/data").targetUrl("http://localhost/").build());
+    return request;
+  }
+
+  private static GatewayResponse response(int status, String body) {
+    GatewayResponse response = new GatewayResponse();
+    response.setStatusCode(status);
+    response.setBody(body);
+    return response;
+  }
+
+  /**
+   * Tests that records reach the sink in order as one JSON line each.
+   */
+  @Test
+  public void testRecordsWritten() {
+    List<String> lines = Collections.synchronizedList(new ArrayList<>());
+    AccessLog log = AccessLog.builder(
+        new TextAccessLogSink(Collections.<AccessLogField>emptyList(), lines::add)).build();
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue("Record should be queued",
+          log.record(request("/api/data/" + i, "client-a"), response(200, "h\u00e9llo")));
+    }
+    log.close();
+
+    assertEquals("Every record should be written", 100, log.getWrittenCount());
+    assertEquals("One line per record", 100, lines.size());
+    String line = lines.get(7);
+    assertTrue("Line should be JSON: " + line, line.startsWith("{\"ts\":") && line.endsWith("}"));
+    assertTrue("Route should be the matched pattern: " + line,
+        line.contains("\"route\":\"/api/data\""));
+    assertTrue("Records should stay in order: " + line, line.contains("\"path\":\"/api/data/7\""));
+    assertTrue("Response size should be in UTF-8 bytes: " + line,
+        line.contains("\"resp_bytes\":6"));
+    assertTrue("Client should be written: " + line, line.contains("\"client\":\"client-a\""));
+  }
+
+  /**
+   * Tests that only the selected fields are written, and that strings are escaped.
+   */
+  @Test
+  public void testFieldSelection() throws Exception {
+    List<String> lines = new ArrayList<>();
+    TextAccessLogSink sink = new TextAccessLogSink(
+        Arrays.asList(AccessLogField.STATUS, AccessLogField.PATH), lines::add);
+    AccessLogRecord record = new AccessLogRecord(0);
+    record.set(0, "/api", "GET", "/api/\"quoted\"\\", 404, 0, 0, 0, "c");
+    sink.append(record);
+
+    assertEquals("Only selected fields should be written, in declaration order",
+        "{\"path\":\"/api/\\\"quoted\\\"\\\\\",\"status\":404}", lines.get(0));
+  }
+
+  /**
+   * Tests that a full ring drops records instead of blocking, and that
+   * queued records are still written once the sink catches up.
+   */
+  @Test
+  public void testFullRingDrops() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicLong appended = new AtomicLong();
+    AccessLog log = AccessLog.builder(record -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      appended.incrementAndGet();
+    }).capacity(4).build();
+
+    int queued = 0;
+    for (int i = 0; i < 20; i++) {
+      if (log.record(request("/api/data", "c"), response(200, ""))) {
+        queued++;
+      }
+    }
+    assertTrue("Some records should be dropped", log.getDroppedCount() > 0);
+    assertTrue("At most the ring plus the one being written should be queued", queued <= 5);
+    assertEquals("Every record should be queued or dropped", 20,
+        log.getRecordedCount() + log.getDroppedCount());
+
+    release.countDown();
+    log.close();
+    assertEquals("Queued records should all be written", queued, appended.get());
+  }
+
+  /**
+   * Tests that sampling skips successful requests but keeps server errors.
+   */
+  @Test
+  public void testSampling() {
+    AtomicLong appended = new AtomicLong();
+    AccessLog log = AccessLog.builder(record -> appended.incrementAndGet())
+        .sampleRate(0)
+        .build();
+
+    assertFalse("Sampled-out request should be skipped",
+        log.record(request("/api/data", "c"), response(200, "")));
+    assertTrue("Server error should always be recorded",
+        log.record(request("/api/data", "c"), response(502, "")));
+    log.close();
+
+    assertEquals("One request should be sampled out", 1, log.getSampledOutCount());
+    assertEquals("Only the error should be written", 1, appended.get());
+  }
+
+  /**
+   * Tests that records from many threads are neither lost nor duplicated.
+   */
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    AtomicLong appended = new AtomicLong();
+    AccessLog log = AccessLog.builder(record -> appended.incrementAndGet())
+        .capacity(1024)
+        .idlePark(50, TimeUnit.MICROSECONDS)
+        .build();
+
+    Thread[] producers = new Thread[4];
+    for (int t = 0; t < producers.length; t++) {
+      producers[t] = new Thread(() -> {
+        GatewayRequest request = request("/api/data", "c");
+        GatewayResponse response = response(200, "ok");
+        for (int i = 0; i < 25_000; i++) {
+          log.record(request, response);
+        }
+      });
+      producers[t].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    log.close();
+
+    assertEquals("Every record should be queued or dropped", 100_000,
+        log.getRecordedCount() + log.getDroppedCount());
+    assertEquals("Every queued record should be written once", log.getRecordedCount(),
+        appended.get());
+  }
+}
@@ -0,0 +1,151 @@
+package edu.bu.met.cs665.accesslog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BinaryAccessLogSinkTest {
+  private static final long NOW = 1_700_000_000_000L;
+  private Path directory;
+
+  /**
+   * Creates an empty log directory.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("access-log");
+  }
+
+  /**
+   * Deletes the log directory.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  private static AccessLogRecord record(long timestamp, int status, String client) {
+    AccessLogRecord record = new AccessLogRecord(0);
+    record.set(timestamp, "/api/data", "GET", "/api/data/1", status, 2_500_000, -1, 512, client);
+    return record;
+  }
+
+  private String decode(AccessLogDecoder.Format format) throws IOException {
+    StringWriter out = new StringWriter();
+    AccessLogDecoder.decode(directory, format, out);
+    return out.toString();
+  }
+
+  /**
+   * Tests that records written through the access log decode to CSV and JSON.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    BinaryAccessLogSink sink = BinaryAccessLogSink.builder(directory).build();
+    sink.append(record(NOW, 200, "alice"));
+    sink.append(record(NOW + 1, 404, "bob, \"the builder\""));
+    sink.append(record(NOW + 2, 503, null));
+    sink.close();
+
+    String[] csv = decode(AccessLogDecoder.Format.CSV).split("\n");
+    assertEquals("Header plus one row per record", 4, csv.length);
+    assertEquals("Header should name the columns",
+        "ts,route,method,status,latency_us,req_bytes,resp_bytes,client", csv[0]);
+    assertEquals("Row should hold the decoded fields",
+        NOW + ",/api/data,GET,200,2500,-1,512,alice", csv[1]);
+    assertTrue("CSV values should be quoted when needed: " + csv[2],
+        csv[2].endsWith(",\"bob, \"\"the builder\"\"\""));
+    assertTrue("Missing client should be empty: " + csv[3], csv[3].endsWith(",512,"));
+
+    String[] json = decode(AccessLogDecoder.Format.JSON).split("\n");
+    assertEquals("One line per record", 3, json.length);
+    assertEquals("JSON line should hold the decoded fields",
+        "{\"ts\":" + NOW + ",\"route\":\"/api/data\",\"method\":\"GET\",\"status\":200,"
+            + "\"latency_us\":2500,\"req_bytes\":-1,\"resp_bytes\":512,\"client\":\"alice\"}",
+        json[0]);
+    assertEquals("Strings should be interned once", 4, sink.getDictionarySize());
+  }
+
+  /**
+   * Tests that full segments roll over and only the newest are kept.
+   */
+  @Test
+  public void testRollingSegments() throws IOException {
+    BinaryAccessLogSink sink = BinaryAccessLogSink.builder(directory)
+        .segmentBytes(BinaryAccessLogFormat.HEADER_BYTES + 10 * BinaryAccessLogFormat.RECORD_BYTES)
+        .maxSegments(3)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      sink.append(record(NOW + i, 200, "client-" + (i % 7)));
+    }
+    sink.close();
+
+    assertEquals("Only the newest segments should be kept", 3, sink.getSegmentCount());
+    String[] csv = decode(AccessLogDecoder.Format.CSV).split("\n");
+    assertEquals("Kept segments should hold the newest records", 31, csv.length);
+    assertTrue("Oldest kept record should be number 70: " + csv[1],
+        csv[1].startsWith(String.valueOf(NOW + 70)));
+  }
+
+  /**
+   * Tests that each segment interns its own strings and that a dictionary
+   * is deleted with its segment, so distinct client IDs do not accumulate.
+   */
+  @Test
+  public void testDictionaryRotatesWithSegments() throws IOException {
+    BinaryAccessLogSink sink = BinaryAccessLogSink.builder(directory)
+        .segmentBytes(BinaryAccessLogFormat.HEADER_BYTES + 10 * BinaryAccessLogFormat.RECORD_BYTES)
+        .maxSegments(3)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      sink.append(record(NOW + i, 200, "client-" + i));
+    }
+    sink.close();
+
+    assertEquals("Only the current segment's strings should be held", 12,
+        sink.getDictionarySize());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals("Each kept segment should have one dictionary", 3, files
+          .filter(file -> file.toString().endsWith(BinaryAccessLogFormat.DICTIONARY_SUFFIX))
+          .count());
+    }
+    String[] csv = decode(AccessLogDecoder.Format.CSV).split("\n");
+    assertEquals("Kept segments should hold the newest records", 31, csv.length);
+    assertTrue("Every kept client should decode: " + csv[1], csv[1].endsWith(",client-70"));
+    assertTrue("Every kept client should decode: " + csv[30], csv[30].endsWith(",client-99"));
+  }
+
+  /**
+   * Tests that a reopened log keeps its earlier segments readable.
+   */
+  @Test
+  public void testReopen() throws IOException {
+    BinaryAccessLogSink first = BinaryAccessLogSink.builder(directory).build();
+    first.append(record(NOW, 200, "alice"));
+    first.close();
+
+    BinaryAccessLogSink second = BinaryAccessLogSink.builder(directory).build();
+    second.append(record(NOW + 1, 200, "alice"));
+    second.append(record(NOW + 2, 200, "bob"));
+    second.close();
+
+    assertEquals("A new segment should intern its own strings", 4,
+        second.getDictionarySize());
+    String[] csv = decode(AccessLogDecoder.Format.CSV).split("\n");
+    assertEquals("Records from both runs should decode", 4, csv.length);
+    assertTrue("First run should decode: " + csv[1], csv[1].endsWith(",alice"));
+    assertTrue("Second run should decode: " + csv[3], csv[3].endsWith(",bob"));
+  }
+}
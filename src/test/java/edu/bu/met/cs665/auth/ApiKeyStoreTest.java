@@ -0,0 +1,143 @@
+package edu.bu.met.cs665.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+
+public class ApiKeyStoreTest {
+
+  private static List<String> keys(String prefix, int count) {
+    List<String> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(prefix + i);
+    }
+    return keys;
+  }
+
+  /**
+   * Tests that every loaded key is found and unknown keys are not.
+   */
+  @Test
+  public void testLookup() {
+    ApiKeyStore store = ApiKeyStore.builder().build();
+    store.replaceKeys(keys("key-", 10_000));
+
+    assertEquals("Every key should be stored", 10_000, store.size());
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue("Key " + i + " should be valid", store.isValid("key-" + i));
+    }
+    assertFalse("Unknown key should be invalid", store.isValid("key-10000"));
+    assertFalse("Null should be invalid", store.isValid(null));
+  }
+
+  /**
+   * Tests that the Bloom filter turns away almost all garbage on its own.
+   */
+  @Test
+  public void testBloomFilterRejectsGarbage() {
+    ApiKeyStore store = ApiKeyStore.builder().build();
+    store.replaceKeys(keys("key-", 100_000));
+
+    for (int i = 0; i < 10_000; i++) {
+      assertFalse("Garbage should be invalid", store.isValid(UUID.randomUUID().toString()));
+    }
+    assertTrue("Bloom filter should stop at least 97% of garbage",
+        store.getBloomRejectionCount() >= 9_700);
+    assertEquals("Every lookup should be counted", 10_000,
+        store.getBloomRejectionCount() + store.getFalsePositiveCount());
+  }
+
+  /**
+   * Tests that duplicate keys are stored once.
+   */
+  @Test
+  public void testDuplicatesCollapsed() {
+    ApiKeyStore store = ApiKeyStore.builder().build();
+    store.replaceKeys(Arrays.asList("a", "b", "a", "c", "b", "a"));
+
+    assertEquals("Duplicates should be dropped", 3, store.size());
+    assertTrue("a should be valid", store.isValid("a"));
+    assertTrue("c should be valid", store.isValid("c"));
+  }
+
+  /**
+   * Tests loading digests from a file, swapping in a new file, and keeping
+   * the current keys when the new file is malformed.
+   */
+  @Test
+  public void testReloadFromFile() throws IOException {
+    Path file = Files.createTempFile("api-keys", ".txt");
+    try {
+      Files.write(file, Arrays.asList("# issued keys", ApiKeyStore.digestHex("alpha"), "",
+          ApiKeyStore.digestHex("beta")), StandardCharsets.US_ASCII);
+      ApiKeyStore store = ApiKeyStore.builder().file(file).build();
+      assertEquals("Comments and blank lines should be skipped", 2, store.size());
+      assertTrue("alpha should be valid", store.isValid("alpha"));
+
+      Files.write(file, Arrays.asList(ApiKeyStore.digestHex("gamma")),
+          StandardCharsets.US_ASCII);
+      store.reload();
+      assertFalse("Revoked key should be invalid", store.isValid("alpha"));
+      assertTrue("New key should be valid", store.isValid("gamma"));
+
+      Files.write(file, Arrays.asList(ApiKeyStore.digestHex("delta"), "not-a-digest"),
+          StandardCharsets.US_ASCII);
+      try {
+        store.reload();
+        fail("Malformed file should be refused");
+      } catch (IOException expected) {
+        assertTrue("Current keys should be kept", store.isValid("gamma"));
+        assertFalse("Nothing from the bad file should be loaded", store.isValid("delta"));
+      }
+      store.close();
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests that readers keep working while the key set is being replaced.
+   */
+  @Test
+  public void testReadersDuringReload() throws InterruptedException {
+    ApiKeyStore store = ApiKeyStore.builder().build();
+    store.replaceKeys(keys("key-", 1_000));
+    List<String> failures = new ArrayList<>();
+
+    Thread reader = new Thread(() -> {
+      for (int i = 0; i < 50_000; i++) {
+        if (!store.isValid("stable")) {
+          synchronized (failures) {
+            failures.add("stable missing at " + i);
+          }
+          return;
+        }
+      }
+    });
+    List<String> next = keys("key-", 1_000);
+    next.add("stable");
+    store.replaceKeys(next);
+    reader.start();
+    for (int round = 0; round < 20; round++) {
+      List<String> generation = keys("gen-" + round + "-", 5_000);
+      generation.add("stable");
+      store.replaceKeys(generation);
+    }
+    reader.join();
+
+    assertTrue("Key present in every generation should always be valid: " + failures,
+        failures.isEmpty());
+  }
+}
@@ -0,0 +1,109 @@
+package edu.bu.met.cs665.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class CompositeTokenValidatorTest {
+  private final AtomicInteger calls = new AtomicInteger();
+  private HttpServer server;
+
+  /**
+   * Starts a stub introspection endpoint that reports every token inactive.
+   */
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/introspect", exchange -> {
+      calls.incrementAndGet();
+      byte[] body = "{\"active\":false}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the stub endpoint.
+   */
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private IntrospectionTokenValidator.Builder introspection() {
+    return IntrospectionTokenValidator.builder(
+        "http://127.0.0.1:" + server.getAddress().getPort() + "/introspect");
+  }
+
+  /**
+   * Tests that a rejected JWT is not sent on to the introspection endpoint,
+   * while an unknown opaque token is.
+   */
+  @Test
+  public void testOnlyOpaqueTokensIntrospected() {
+    CompositeTokenValidator validator = new CompositeTokenValidator(Arrays.asList(
+        new StaticTokenValidator("token-123"), introspection().build()));
+    try {
+      assertTrue("Known token should pass", validator.isValid("token-123"));
+      assertFalse("Forged JWT should fail", validator.isValid("eyJh.eyJz.c2ln"));
+      assertEquals("JWT should not reach the endpoint", 0, calls.get());
+
+      assertFalse("Unknown opaque token should fail", validator.isValid("opaque-1"));
+      assertEquals("Opaque token should reach the endpoint", 1, calls.get());
+    } finally {
+      validator.close();
+    }
+  }
+
+  /**
+   * Tests that JWTs are introspected when configured to be.
+   */
+  @Test
+  public void testJwtsIntrospectedWhenEnabled() {
+    CompositeTokenValidator validator = new CompositeTokenValidator(Arrays.asList(
+        new StaticTokenValidator("token-123"), introspection().introspectJwts(true).build()));
+    try {
+      assertFalse("Forged JWT should fail", validator.isValid("eyJh.eyJz.c2ln"));
+      assertEquals("JWT should reach the endpoint", 1, calls.get());
+    } finally {
+      validator.close();
+    }
+  }
+
+  /**
+   * Tests that closing the composite closes the validators that hold resources.
+   */
+  @Test
+  public void testCloseClosesDelegates() {
+    AtomicBoolean closed = new AtomicBoolean();
+    class ClosingValidator extends StaticTokenValidator implements Closeable {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    }
+
+    new CompositeTokenValidator(Arrays.asList(
+        new StaticTokenValidator("token-123"), new ClosingValidator())).close();
+
+    assertTrue("Delegate should be closed", closed.get());
+  }
+}
@@ -0,0 +1,210 @@
+package edu.bu.met.cs665.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class IntrospectionTokenValidatorTest {
+  private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toMillis(1_700_000_000L));
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicLong delayMillis = new AtomicLong();
+  private final AtomicReference<String> authorization = new AtomicReference<>();
+  private HttpServer server;
+  private IntrospectionTokenValidator validator;
+
+  /**
+   * Starts a stub introspection endpoint. Tokens starting with "good" are
+   * active for five minutes from the test clock; everything else is inactive.
+   */
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/introspect", exchange -> {
+      calls.incrementAndGet();
+      authorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+      try {
+        Thread.sleep(delayMillis.get());
+        String token = formValue(exchange.getRequestBody(), "token");
+        String json = token != null && token.startsWith("good")
+            ? "{\"active\":true,\"sub\":\"alice\",\"exp\":"
+                + (TimeUnit.MILLISECONDS.toSeconds(now.get()) + 300) + "}"
+            : "{\"active\":false}";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the validator and the stub endpoint.
+   */
+  @After
+  public void tearDown() {
+    if (validator != null) {
+      validator.close();
+    }
+    server.stop(0);
+  }
+
+  private static String formValue(InputStream in, String name) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[1024];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      buffer.write(chunk, 0, read);
+    }
+    for (String pair : new String(buffer.toByteArray(), StandardCharsets.UTF_8).split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0 && pair.substring(0, equals).equals(name)) {
+        return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+      }
+    }
+    return null;
+  }
+
+  private IntrospectionTokenValidator.Builder validator() {
+    return IntrospectionTokenValidator
+        .builder("http://127.0.0.1:" + server.getAddress().getPort() + "/introspect")
+        .positiveTtl(60, TimeUnit.SECONDS)
+        .negativeTtl(5, TimeUnit.SECONDS)
+        .refreshAhead(10, TimeUnit.SECONDS)
+        .clock(now::get);
+  }
+
+  /**
+   * Tests that active tokens are cached for the positive TTL and then re-checked.
+   */
+  @Test
+  public void testPositiveCache() {
+    validator = validator().credentials("gateway", "secret").build();
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue("Active token should be valid", validator.isValid("good-1"));
+    }
+    assertEquals("Endpoint should be called once", 1, calls.get());
+    assertEquals("Repeats should hit the cache", 9, validator.getCacheHitCount());
+    assertTrue("Client credentials should be sent",
+        authorization.get() != null && authorization.get().startsWith("Basic "));
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(60));
+    assertTrue("Expired result should be re-checked", validator.isValid("good-1"));
+    assertEquals("Endpoint should be called again", 2, calls.get());
+  }
+
+  /**
+   * Tests that inactive tokens are cached for the shorter negative TTL.
+   */
+  @Test
+  public void testNegativeCache() {
+    validator = validator().build();
+
+    assertFalse("Inactive token should be rejected", validator.isValid("revoked"));
+    now.addAndGet(TimeUnit.SECONDS.toMillis(4));
+    assertFalse("Inactive token should stay rejected", validator.isValid("revoked"));
+    assertEquals("Rejection should be cached", 1, calls.get());
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(1));
+    assertFalse("Inactive token should be rejected", validator.isValid("revoked"));
+    assertEquals("Negative TTL should be shorter than the positive one", 2, calls.get());
+  }
+
+  /**
+   * Tests that concurrent checks of the same uncached token make one call.
+   */
+  @Test
+  public void testConcurrentLookupsCollapsed() throws Exception {
+    validator = validator().build();
+    delayMillis.set(300);
+
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(clients.submit(() -> {
+          start.await();
+          return validator.isValid("good-shared");
+        }));
+      }
+      start.countDown();
+      for (Future<Boolean> result : results) {
+        assertTrue("Every caller should see the token as active", result.get());
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    assertEquals("Endpoint should be called once", 1, calls.get());
+    assertEquals("Seven callers should wait on the first", 7, validator.getCollapsedCount());
+  }
+
+  /**
+   * Tests that a result close to expiry is served at once and refreshed in
+   * the background, so the next check still hits the cache.
+   */
+  @Test
+  public void testRefreshAhead() throws Exception {
+    validator = validator().build();
+    assertTrue("Active token should be valid", validator.isValid("good-1"));
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(55));
+    assertTrue("Result inside the refresh window should be served", validator.isValid("good-1"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (calls.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("Refresh should call the endpoint in the background", 2, calls.get());
+    assertEquals("One refresh should start", 1, validator.getRefreshCount());
+
+    Thread.sleep(200); // let the refresher store the answer it just received
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+    assertTrue("Refreshed result should outlive the original", validator.isValid("good-1"));
+    assertEquals("No caller should wait on the endpoint", 2, calls.get());
+  }
+
+  /**
+   * Tests that an unreachable endpoint rejects the token without caching.
+   */
+  @Test
+  public void testEndpointDown() {
+    validator = validator().timeout(500).build();
+    server.stop(0);
+
+    assertFalse("Token should be rejected when the endpoint is down",
+        validator.isValid("good-1"));
+    assertEquals("Failure should be counted", 1, validator.getFailureCount());
+    assertEquals("Failures should not be cached", 0, validator.getCachedResultCount());
+  }
+}
@@ -0,0 +1,187 @@
+package edu.bu.met.cs665.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+
+public class JwtTokenValidatorTest {
+  private static final byte[] SECRET =
+      "a-test-secret-that-is-at-least-32-bytes".getBytes(StandardCharsets.UTF_8);
+  private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toMillis(1_700_000_000L));
+
+  private static String encode(byte[] bytes) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  private static String encode(String json) {
+    return encode(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String hs256(String claims) throws Exception {
+    String input = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}") + "." + encode(claims);
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+    return input + "." + encode(mac.doFinal(input.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  private static String rs256(KeyPair keyPair, String kid, String claims) throws Exception {
+    String input = encode("{\"alg\":\"RS256\",\"kid\":\"" + kid + "\"}") + "." + encode(claims);
+    Signature signer = Signature.getInstance("SHA256withRSA");
+    signer.initSign(keyPair.getPrivate());
+    signer.update(input.getBytes(StandardCharsets.US_ASCII));
+    return input + "." + encode(signer.sign());
+  }
+
+  private String claimsExpiringIn(long seconds) {
+    long exp = TimeUnit.MILLISECONDS.toSeconds(now.get()) + seconds;
+    return "{\"sub\":\"alice\",\"iss\":\"https://issuer.test\",\"aud\":[\"gateway\"],\"exp\":"
+        + exp + "}";
+  }
+
+  private JwtTokenValidator.Builder hmacValidator() {
+    return JwtTokenValidator.builder()
+        .keys(JsonWebKeySet.of(Collections.<String, Key>singletonMap("",
+            new SecretKeySpec(SECRET, "HmacSHA256"))))
+        .clockSkew(0, TimeUnit.SECONDS)
+        .clock(now::get);
+  }
+
+  /**
+   * Tests that a correctly signed HS256 token is accepted and a tampered one is not.
+   */
+  @Test
+  public void testHmacSignature() throws Exception {
+    JwtTokenValidator validator = hmacValidator().build();
+    String token = hs256(claimsExpiringIn(60));
+
+    assertTrue("Signed token should be valid", validator.isValid(token));
+
+    String tampered = token.substring(0, token.indexOf('.') + 1)
+        + encode("{\"sub\":\"mallory\",\"exp\":9999999999}")
+        + token.substring(token.lastIndexOf('.'));
+    assertFalse("Tampered claims should be rejected", validator.isValid(tampered));
+    assertFalse("Garbage should be rejected", validator.isValid("not-a-jwt"));
+    assertFalse("Unsigned token should be rejected", validator.isValid(
+        encode("{\"alg\":\"none\"}") + "." + encode(claimsExpiringIn(60)) + "."));
+  }
+
+  /**
+   * Tests expiry, issuer and audience checks.
+   */
+  @Test
+  public void testClaims() throws Exception {
+    JwtTokenValidator validator = hmacValidator()
+        .issuer("https://issuer.test")
+        .audience("gateway")
+        .build();
+
+    assertTrue("Matching claims should pass", validator.isValid(hs256(claimsExpiringIn(60))));
+    assertFalse("Expired token should fail", validator.isValid(hs256(claimsExpiringIn(-1))));
+    assertFalse("Token without exp should fail",
+        validator.isValid(hs256("{\"iss\":\"https://issuer.test\",\"aud\":\"gateway\"}")));
+    assertFalse("Wrong audience should fail", hmacValidator().audience("other").build()
+        .isValid(hs256(claimsExpiringIn(60))));
+    assertFalse("Wrong issuer should fail", hmacValidator().issuer("https://evil.test").build()
+        .isValid(hs256(claimsExpiringIn(60))));
+  }
+
+  /**
+   * Tests that a verified token is served from the cache until its exp claim.
+   */
+  @Test
+  public void testVerifiedTokenCache() throws Exception {
+    JwtTokenValidator validator = hmacValidator().build();
+    String token = hs256(claimsExpiringIn(60));
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue("Token should stay valid", validator.isValid(token));
+    }
+    assertEquals("Signature should be checked once", 1, validator.getVerificationCount());
+    assertEquals("Repeats should hit the cache", 9, validator.getCacheHitCount());
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(60));
+    assertFalse("Cached token should expire at exp", validator.isValid(token));
+    assertEquals("Expired token should be re-checked", 2, validator.getVerificationCount());
+  }
+
+  /**
+   * Tests that the cache stays within its cap.
+   */
+  @Test
+  public void testCacheIsBounded() throws Exception {
+    JwtTokenValidator validator = hmacValidator().maxCachedTokens(16).build();
+    for (int i = 0; i < 100; i++) {
+      String claims = "{\"jti\":\"" + i + "\",\"exp\":"
+          + (TimeUnit.MILLISECONDS.toSeconds(now.get()) + 60) + "}";
+      assertTrue("Token should be valid", validator.isValid(hs256(claims)));
+      assertTrue("Cache should stay bounded", validator.getCachedTokenCount() <= 16);
+    }
+  }
+
+  /**
+   * Tests RS256 tokens checked against keys loaded from a JWKS file.
+   */
+  @Test
+  public void testRsaWithJwksFile() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    KeyPair current = generator.generateKeyPair();
+    KeyPair other = generator.generateKeyPair();
+    RSAPublicKey publicKey = (RSAPublicKey) current.getPublic();
+
+    Path jwks = Files.createTempFile("jwks", ".json");
+    try {
+      String json = "{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"k1\",\"use\":\"sig\",\"n\":\""
+          + encode(unsigned(publicKey.getModulus())) + "\",\"e\":\""
+          + encode(unsigned(publicKey.getPublicExponent())) + "\"},"
+          + "{\"kty\":\"EC\",\"kid\":\"k2\"}]}";
+      Files.write(jwks, json.getBytes(StandardCharsets.UTF_8));
+
+      JsonWebKeySet keys = JsonWebKeySet.load(jwks);
+      assertEquals("Unsupported key types should be skipped", 1, keys.size());
+      assertNotNull("RSA key should be loaded", keys.getKey("k1"));
+
+      JwtTokenValidator validator = JwtTokenValidator.builder()
+          .keys(keys)
+          .clock(now::get)
+          .build();
+      assertTrue("Token signed with the published key should pass",
+          validator.isValid(rs256(current, "k1", claimsExpiringIn(60))));
+      assertFalse("Token signed with another key should fail",
+          validator.isValid(rs256(other, "k1", claimsExpiringIn(60))));
+      assertFalse("Unknown key ID should fail",
+          validator.isValid(rs256(current, "k9", claimsExpiringIn(60))));
+    } finally {
+      Files.delete(jwks);
+    }
+  }
+
+  private static byte[] unsigned(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    if (bytes[0] == 0 && bytes.length > 1) {
+      byte[] trimmed = new byte[bytes.length - 1];
+      System.arraycopy(bytes, 1, trimmed, 0, trimmed.length);
+      return trimmed;
+    }
+    return bytes;
+  }
+}
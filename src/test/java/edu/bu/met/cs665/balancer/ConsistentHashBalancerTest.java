@@ -0,0 +1,135 @@
+package edu.bu.met.cs665.balancer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+
+public class ConsistentHashBalancerTest {
+  private static final int KEYS = 20_000;
+
+  private static List<Upstream> upstreams(int count) {
+    List<Upstream> targets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      targets.add(new Upstream("http://10.0.0." + i + ":8081/", 1));
+    }
+    return targets;
+  }
+
+  private static GatewayRequest request(String clientId) {
+    GatewayRequest request = new GatewayRequest();
+    request.setClientId(clientId);
+    return request;
+  }
+
+  /**
+   * Tests that a client always goes to the same target, and that keys
+   * spread evenly over the targets.
+   */
+  @Test
+  public void testAffinityAndSpread() {
+    List<Upstream> targets = upstreams(4);
+    ConsistentHashBalancer balancer = ConsistentHashBalancer.builder().build();
+
+    Upstream first = balancer.choose(request("client-42"), targets);
+    for (int i = 0; i < 10; i++) {
+      assertSame("Same client should stay on its target", first,
+          balancer.choose(request("client-42"), targets));
+    }
+
+    Map<Upstream, Integer> counts = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      counts.merge(balancer.owner("client-" + i, targets), 1, Integer::sum);
+    }
+    for (Upstream target : targets) {
+      int count = counts.getOrDefault(target, 0);
+      assertTrue("Target should own about a quarter of the keys: " + count,
+          count > KEYS / 4 * 0.75 && count < KEYS / 4 * 1.25);
+    }
+  }
+
+  /**
+   * Tests that adding a target only moves keys onto it, and only about its
+   * share of them.
+   */
+  @Test
+  public void testMinimalRemapping() {
+    List<Upstream> before = upstreams(4);
+    List<Upstream> after = new ArrayList<>(before);
+    Upstream added = new Upstream("http://10.0.0.99:8081/", 1);
+    after.add(2, added);
+    ConsistentHashBalancer balancer = ConsistentHashBalancer.builder().build();
+
+    Map<String, Upstream> owners = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      owners.put("client-" + i, balancer.owner("client-" + i, before));
+    }
+    int moved = 0;
+    for (Map.Entry<String, Upstream> entry : owners.entrySet()) {
+      Upstream owner = balancer.owner(entry.getKey(), after);
+      if (owner != entry.getValue()) {
+        assertSame("Keys should only move to the new target", added, owner);
+        moved++;
+      }
+    }
+    assertTrue("About a fifth of the keys should move: " + moved,
+        moved > KEYS / 5 * 0.75 && moved < KEYS / 5 * 1.25);
+  }
+
+  /**
+   * Tests that keys of a target over its bound spill to another target and
+   * come back once its load drops.
+   */
+  @Test
+  public void testBoundedLoad() {
+    List<Upstream> targets = upstreams(4);
+    ConsistentHashBalancer balancer = ConsistentHashBalancer.builder().loadFactor(1.25).build();
+    Upstream home = balancer.owner("client-7", targets);
+
+    long[] starts = new long[8];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = home.begin();
+    }
+    // Bound is ceil(1.25 * 9 / 4) = 3 in flight; home would have 9
+    assertNotSame("Overloaded home should spill", home,
+        balancer.choose(request("client-7"), targets));
+    assertEquals("Spill should be counted", 1, balancer.getSpillCount());
+
+    for (long start : starts) {
+      home.finish(start);
+    }
+    assertSame("Key should return home once the load drops", home,
+        balancer.choose(request("client-7"), targets));
+  }
+
+  /**
+   * Tests keying on a header, and that requests without one are balanced by load.
+   */
+  @Test
+  public void testHeaderKey() {
+    List<Upstream> targets = upstreams(4);
+    ConsistentHashBalancer balancer = ConsistentHashBalancer.builder()
+        .header("X-User-Id")
+        .build();
+
+    GatewayRequest request = request("shared-client");
+    request.addHeader("x-user-id", "user-5");
+    assertSame("Header value should be the key", balancer.owner("user-5", targets),
+        balancer.choose(request, targets));
+
+    targets.get(0).begin();
+    targets.get(1).begin();
+    targets.get(2).begin();
+    assertSame("Request without the header should go to the least loaded target",
+        targets.get(3), balancer.choose(request("shared-client"), targets));
+    assertEquals("Unkeyed request should be counted", 1, balancer.getUnkeyedCount());
+  }
+}
@@ -0,0 +1,157 @@
+package edu.bu.met.cs665.balancer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+
+public class LoadBalancerTest {
+
+  private static List<Upstream> upstreams(int... weights) {
+    Upstream[] targets = new Upstream[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      targets[i] = new Upstream("http://backend-" + i + "/", weights[i]);
+    }
+    return Arrays.asList(targets);
+  }
+
+  private static Map<Upstream, Integer> pick(LoadBalancer balancer, List<Upstream> upstreams,
+      int times) {
+    GatewayRequest request = new GatewayRequest();
+    Map<Upstream, Integer> counts = new HashMap<>();
+    for (int i = 0; i < times; i++) {
+      counts.merge(balancer.choose(request, upstreams), 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /**
+   * Tests that round-robin follows the weights exactly and interleaves the
+   * heavier target's turns.
+   */
+  @Test
+  public void testRoundRobinWeights() {
+    List<Upstream> targets = upstreams(3, 2);
+    RoundRobinBalancer balancer = new RoundRobinBalancer();
+
+    Map<Upstream, Integer> counts = pick(balancer, targets, 500);
+    assertEquals("Heavy target should get 3 of every 5", 300, (int) counts.get(targets.get(0)));
+    assertEquals("Light target should get 2 of every 5", 200, (int) counts.get(targets.get(1)));
+
+    GatewayRequest request = new GatewayRequest();
+    Upstream previous = balancer.choose(request, targets);
+    int longestRun = 1;
+    int run = 1;
+    for (int i = 0; i < 40; i++) {
+      Upstream next = balancer.choose(request, targets);
+      run = next == previous ? run + 1 : 1;
+      longestRun = Math.max(longestRun, run);
+      previous = next;
+    }
+    assertTrue("Turns should be spread out, longest run " + longestRun, longestRun <= 2);
+  }
+
+  /**
+   * Tests that least-outstanding avoids busy targets, weighing by capacity.
+   */
+  @Test
+  public void testLeastOutstanding() {
+    List<Upstream> targets = upstreams(1, 1, 2);
+    LeastOutstandingBalancer balancer = new LeastOutstandingBalancer();
+    GatewayRequest request = new GatewayRequest();
+
+    targets.get(0).begin();
+    targets.get(0).begin();
+    targets.get(1).begin();
+    targets.get(2).begin();
+    targets.get(2).begin();
+    targets.get(2).begin();
+    // Loads per weight, counting the new request: 3, 2 and 2; ties rotate
+    for (int i = 0; i < 10; i++) {
+      assertNotSame("Busiest target should not be chosen", targets.get(0),
+          balancer.choose(request, targets));
+    }
+
+    targets.get(1).begin();
+    for (int i = 0; i < 10; i++) {
+      assertSame("Heavier target should take more in flight", targets.get(2),
+          balancer.choose(request, targets));
+    }
+  }
+
+  /**
+   * Tests that power-of-two-choices sends most requests to the faster target.
+   */
+  @Test
+  public void testP2cPrefersFasterTarget() {
+    List<Upstream> targets = upstreams(1, 1);
+    for (int i = 0; i < 20; i++) {
+      targets.get(0).observe(TimeUnit.MILLISECONDS.toNanos(2));
+      targets.get(1).observe(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    Map<Upstream, Integer> counts = pick(new P2cEwmaBalancer(), targets, 1000);
+    assertEquals("With two targets, both are always compared", 1000,
+        (int) counts.get(targets.get(0)));
+
+    for (int i = 0; i < 30; i++) {
+      targets.get(0).begin();
+    }
+    assertSame("A slow but idle target should win over a fast one with a queue",
+        targets.get(1), new P2cEwmaBalancer().choose(new GatewayRequest(), targets));
+  }
+
+  /**
+   * Tests the in-flight count and that a failure weighs at least the penalty.
+   */
+  @Test
+  public void testUpstreamAccounting() {
+    Upstream upstream = new Upstream("http://backend/", 1);
+    long start = upstream.begin();
+    assertEquals("Request should be in flight", 1, upstream.getInFlight());
+    upstream.finish(start);
+    assertEquals("Request should be done", 0, upstream.getInFlight());
+    assertTrue("Latency should be recorded", upstream.getEwmaNanos() > 0);
+
+    long penalty = TimeUnit.SECONDS.toNanos(5);
+    upstream.fail(upstream.begin(), penalty);
+    assertEquals("Failure should be counted", 1, upstream.getFailureCount());
+    assertEquals("Both requests should be counted", 2, upstream.getRequestCount());
+    // The estimate starts to decay as soon as it is read; allow a millisecond of it
+    assertTrue("Fast failure should still cost the penalty", upstream.getEwmaNanos()
+        >= Upstream.EWMA_WEIGHT * penalty * Math.exp(-1e6 / Upstream.DECAY_NANOS));
+  }
+
+  /**
+   * Tests that a target penalised for a failure gets cheaper while it gets
+   * no traffic, until it costs less than a busy healthy target and is
+   * tried again.
+   */
+  @Test
+  public void testPenaltyDecaysWithoutTraffic() {
+    List<Upstream> targets = upstreams(1, 1);
+    Upstream healthy = targets.get(0);
+    Upstream failed = targets.get(1);
+    long now = System.nanoTime();
+    healthy.observe(TimeUnit.MILLISECONDS.toNanos(2), now);
+    failed.observe(TimeUnit.SECONDS.toNanos(5), now);
+    assertTrue("Failed target should cost more at first",
+        failed.getEwmaNanos(now) > healthy.getEwmaNanos(now));
+
+    for (int second = 1; second <= 120; second++) {
+      healthy.observe(TimeUnit.MILLISECONDS.toNanos(2), now + TimeUnit.SECONDS.toNanos(second));
+    }
+    long later = now + TimeUnit.SECONDS.toNanos(120);
+    assertTrue("Penalty should have decayed below the healthy estimate",
+        failed.getEwmaNanos(later) < healthy.getEwmaNanos(later));
+  }
+}
@@ -0,0 +1,139 @@
+package edu.bu.met.cs665.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.Test;
+
+
+public class CachePolicyTest {
+  private static final long NOW = 1_700_000_000_000L;
+  private static final List<String> NO_VARY = Collections.emptyList();
+  private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+  private static Map<String, String> headers(String... pairs) {
+    Map<String, String> headers = new HashMap<>();
+    for (int i = 0; i < pairs.length; i += 2) {
+      headers.put(pairs[i], pairs[i + 1]);
+    }
+    return headers;
+  }
+
+  /**
+   * Tests max-age, s-maxage and the route default.
+   */
+  @Test
+  public void testFreshnessHeaders() {
+    assertEquals("max-age should be used", 60_000, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "public, max-age=60"), NO_HEADERS, NO_VARY, 0, NOW));
+    assertEquals("s-maxage should win", 10_000, CachePolicy.ttlMillis(200,
+        headers("cache-control", "max-age=60, s-maxage=10"), NO_HEADERS, NO_VARY, 0, NOW));
+    assertEquals("Default TTL without headers", 5000,
+        CachePolicy.ttlMillis(200, headers(), NO_HEADERS, NO_VARY, 5000, NOW));
+  }
+
+  /**
+   * Tests the Expires header.
+   */
+  @Test
+  public void testExpires() {
+    String expires = DateUtils.formatDate(new Date(NOW + 30_000));
+    assertEquals("Expires should give the TTL", 30_000,
+        CachePolicy.ttlMillis(200, headers("Expires", expires), NO_HEADERS, NO_VARY, 0,
+            NOW));
+  }
+
+  /**
+   * Tests responses that must not be cached.
+   */
+  @Test
+  public void testNotCacheable() {
+    assertEquals("no-store", 0, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "no-store"), NO_HEADERS, NO_VARY, 5000, NOW));
+    assertEquals("private", 0, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "private, max-age=60"), NO_HEADERS, NO_VARY, 5000, NOW));
+    assertEquals("Errors", 0,
+        CachePolicy.ttlMillis(500, headers(), NO_HEADERS, NO_VARY, 5000, NOW));
+    assertEquals("Unknown Vary", 0, CachePolicy.ttlMillis(200,
+        headers("Vary", "Authorization"), NO_HEADERS, NO_VARY, 5000, NOW));
+    assertEquals("Known Vary", 5000, CachePolicy.ttlMillis(200,
+        headers("Vary", "accept-language"), NO_HEADERS,
+        Collections.singletonList("Accept-Language"), 5000, NOW));
+  }
+
+  /**
+   * Tests that the upstream Age is taken off the freshness lifetime.
+   */
+  @Test
+  public void testAgeSubtracted() {
+    assertEquals("Age should shorten max-age", 40_000, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "max-age=60", "Age", "20"), NO_HEADERS, NO_VARY, 0, NOW));
+    assertEquals("Age past max-age leaves nothing", 0, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "s-maxage=10", "age", "30"), NO_HEADERS, NO_VARY, 5000, NOW));
+  }
+
+  /**
+   * Tests that responses to requests with Authorization are only shared
+   * when the response allows it or the route keys on the credential.
+   */
+  @Test
+  public void testAuthorizedRequests() {
+    Map<String, String> authorized = headers("authorization", "Bearer user-a");
+    assertEquals("Plain max-age should not be shared", 0, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "max-age=60"), authorized, NO_VARY, 5000, NOW));
+    assertEquals("Default TTL should not apply", 0, CachePolicy.ttlMillis(200,
+        headers(), authorized, NO_VARY, 5000, NOW));
+    assertEquals("public allows sharing", 60_000, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "public, max-age=60"), authorized, NO_VARY, 0, NOW));
+    assertEquals("s-maxage allows sharing", 10_000, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "s-maxage=10"), authorized, NO_VARY, 0, NOW));
+    assertEquals("must-revalidate allows sharing", 60_000, CachePolicy.ttlMillis(200,
+        headers("Cache-Control", "max-age=60, must-revalidate"), authorized, NO_VARY, 0, NOW));
+    assertEquals("Keying on Authorization gives a per-token entry", 5000,
+        CachePolicy.ttlMillis(200, headers(), authorized,
+            Collections.singletonList("Authorization"), 5000, NOW));
+  }
+
+  /**
+   * Tests which requests may share an upstream call, and which responses
+   * may be handed to other callers.
+   */
+  @Test
+  public void testCoalescing() {
+    assertTrue("Anonymous requests should coalesce",
+        CachePolicy.canCoalesce(headers("Accept", "*/*"), NO_VARY));
+    assertFalse("Credentialed requests should not coalesce",
+        CachePolicy.canCoalesce(headers("authorization", "Bearer a"), NO_VARY));
+    assertFalse("Requests with cookies should not coalesce",
+        CachePolicy.canCoalesce(headers("Cookie", "session=1"), NO_VARY));
+    assertTrue("Requests keyed on their credentials should coalesce",
+        CachePolicy.canCoalesce(headers("Authorization", "Bearer a"),
+            Collections.singletonList("Authorization")));
+
+    assertTrue("Responses without Cache-Control are shareable",
+        CachePolicy.isShareable(NO_HEADERS));
+    assertTrue("Public responses are shareable",
+        CachePolicy.isShareable(headers("Cache-Control", "public, max-age=60")));
+    assertFalse("Private responses are not shareable",
+        CachePolicy.isShareable(headers("cache-control", "max-age=60, private")));
+    assertFalse("No-store responses are not shareable",
+        CachePolicy.isShareable(headers("Cache-Control", "no-store")));
+  }
+
+  /**
+   * Tests client requests that bypass the cache.
+   */
+  @Test
+  public void testBypassLookup() {
+    assertTrue("no-cache should bypass",
+        CachePolicy.bypassLookup(headers("cache-control", "no-cache")));
+    assertFalse("Plain request should use the cache", CachePolicy.bypassLookup(headers()));
+  }
+}
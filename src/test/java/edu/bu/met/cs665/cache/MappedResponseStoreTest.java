@@ -0,0 +1,197 @@
+package edu.bu.met.cs665.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MappedResponseStoreTest {
+  private final AtomicLong now = new AtomicLong(1_000_000);
+  private Path directory;
+
+  /**
+   * Creates an empty directory for the segment files.
+   */
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("gateway-cache-test");
+  }
+
+  /**
+   * Deletes the segment files.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  private static CacheKey key(String path) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    return CacheKey.of(request, Collections.<String>emptyList());
+  }
+
+  private CachedResponse entry(String prefix, int bodyChars, long ttlMillis) {
+    StringBuilder body = new StringBuilder(prefix);
+    while (body.length() < bodyChars) {
+      body.append('x');
+    }
+    return new CachedResponse(200, Collections.singletonMap("Content-Type", "application/json"),
+        body.toString(), now.get() + ttlMillis);
+  }
+
+  private MappedResponseStore open(int segmentBytes, int maxSegments) {
+    return MappedResponseStore.builder(directory)
+        .segmentBytes(segmentBytes)
+        .maxSegments(maxSegments)
+        .minBodyBytes(1024)
+        .clock(now::get)
+        .build();
+  }
+
+  private static String read(GatewayResponse response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getStreamingBody().writeTo(out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Tests that a stored entry comes back with its status, headers and body.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    MappedResponseStore store = open(1024 * 1024, 4);
+    CachedResponse value = entry("{\"posts\":\"\u00e9\"}", 4000, 60_000);
+    assertTrue("Large entry should be stored", store.put(key("/data"), value));
+
+    GatewayResponse response = store.get(key("/data"));
+    assertNotNull("Stored entry should hit", response);
+    assertTrue("Body should be streamed from the mapping", response.isStreaming());
+    assertEquals("Status should match", 200, response.getStatusCode());
+    assertEquals("Headers should match", "application/json",
+        response.getHeaders().get("Content-Type"));
+    assertEquals("Body should match", value.getBody(), read(response));
+    assertEquals("Body can be decoded onto the heap", value.getBody(),
+        ((MappedBody) response.getStreamingBody()).asString());
+    assertNull("Other keys should miss", store.get(key("/other")));
+    store.close();
+  }
+
+  /**
+   * Tests that small and stale entries are left out.
+   */
+  @Test
+  public void testSmallAndStaleEntriesSkipped() {
+    MappedResponseStore store = open(1024 * 1024, 4);
+    assertFalse("Small body should stay on the heap",
+        store.put(key("/small"), entry("", 10, 60_000)));
+    assertFalse("Stale entry should be dropped", store.put(key("/stale"), entry("", 4000, 0)));
+
+    store.put(key("/data"), entry("", 4000, 60_000));
+    now.addAndGet(60_000);
+    assertNull("Entry should expire", store.get(key("/data")));
+    assertEquals("Expired entry should leave the index", 0, store.getEntryCount());
+    store.close();
+  }
+
+  /**
+   * Tests that a new store on the same directory finds the entries of the last one.
+   */
+  @Test
+  public void testIndexRebuiltOnRestart() throws IOException {
+    MappedResponseStore store = open(64 * 1024, 4);
+    for (int i = 0; i < 20; i++) {
+      store.put(key("/item/" + i), entry("item " + i + " ", 4000, 60_000));
+    }
+    store.put(key("/item/3"), entry("replaced ", 4000, 60_000));
+    store.put(key("/short"), entry("", 4000, 1_000));
+    store.close();
+
+    now.addAndGet(5_000);
+    MappedResponseStore reopened = open(64 * 1024, 4);
+    assertEquals("Every fresh entry should be indexed", 20, reopened.getEntryCount());
+    assertTrue("Body should survive",
+        read(reopened.get(key("/item/7"))).startsWith("item 7 "));
+    assertTrue("Newest record should win",
+        read(reopened.get(key("/item/3"))).startsWith("replaced "));
+    assertNull("Stale entry should not be indexed", reopened.get(key("/short")));
+
+    reopened.put(key("/item/20"), entry("item 20 ", 4000, 60_000));
+    assertTrue("Appends should continue after a restart",
+        read(reopened.get(key("/item/20"))).startsWith("item 20 "));
+    reopened.close();
+  }
+
+  /**
+   * Tests that the oldest segment is deleted once the segment cap is reached.
+   */
+  @Test
+  public void testOldestSegmentDropped() throws IOException {
+    MappedResponseStore store = open(16 * 1024, 3);
+    for (int i = 0; i < 30; i++) {
+      store.put(key("/item/" + i), entry("", 4000, 60_000));
+    }
+
+    assertEquals("Segments should be capped", 3, store.getSegmentCount());
+    assertTrue("Segments should have been dropped", store.getDroppedSegmentCount() > 0);
+    assertNull("Oldest entries should be gone", store.get(key("/item/0")));
+    assertNotNull("Newest entries should remain", store.get(key("/item/29")));
+    store.close();
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals("Dropped segment files should be deleted", 3, files.count());
+    }
+  }
+
+  /**
+   * Tests that a dropped segment file stays on disk for the delete delay,
+   * so a body looked up just before the drop can still be sent by file name.
+   */
+  @Test
+  public void testDroppedSegmentDeletedAfterDelay() throws IOException {
+    MappedResponseStore store = MappedResponseStore.builder(directory)
+        .segmentBytes(16 * 1024)
+        .maxSegments(2)
+        .minBodyBytes(1024)
+        .deleteDelay(10, TimeUnit.SECONDS)
+        .clock(now::get)
+        .build();
+    store.put(key("/item/0"), entry("", 4000, 60_000));
+    MappedBody body = (MappedBody) store.get(key("/item/0")).getStreamingBody();
+    int next = 1;
+    while (store.getDroppedSegmentCount() < 1) {
+      store.put(key("/item/" + next++), entry("", 4000, 60_000));
+    }
+    assertNull("Dropped entry should leave the index", store.get(key("/item/0")));
+    assertEquals("Dropped segment should wait to be deleted", 1,
+        store.getRetiredSegmentCount());
+    assertTrue("File of a body already looked up should remain", Files.exists(body.getFile()));
+
+    now.addAndGet(10_000);
+    while (store.getDroppedSegmentCount() < 2) {
+      store.put(key("/item/" + next++), entry("", 4000, 60_000));
+    }
+    assertFalse("File should be deleted after the delay", Files.exists(body.getFile()));
+    store.close();
+  }
+}
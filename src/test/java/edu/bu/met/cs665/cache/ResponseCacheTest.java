@@ -0,0 +1,158 @@
+package edu.bu.met.cs665.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+
+public class ResponseCacheTest {
+  private final AtomicLong now = new AtomicLong(1_000_000);
+
+  private static CacheKey key(String path) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    return CacheKey.of(request, Collections.<String>emptyList());
+  }
+
+  private CachedResponse entry(int bodyChars) {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < bodyChars; i++) {
+      body.append('x');
+    }
+    return new CachedResponse(200, Collections.<String, String>emptyMap(), body.toString(),
+        now.get() + 60_000);
+  }
+
+  /**
+   * Tests a simple put and get.
+   */
+  @Test
+  public void testHitAndMiss() {
+    ResponseCache cache = new ResponseCache(1024 * 1024, now::get);
+    assertNull("Empty cache should miss", cache.get(key("/a")));
+
+    cache.put(key("/a"), entry(10));
+    assertNotNull("Stored entry should hit", cache.get(key("/a")));
+    assertEquals("One hit", 1, cache.getHitCount());
+    assertEquals("One miss", 1, cache.getMissCount());
+  }
+
+  /**
+   * Tests that the total size stays within the byte bound.
+   */
+  @Test
+  public void testBoundedInBytes() {
+    ResponseCache cache = new ResponseCache(100_000, now::get);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(key("/item/" + i), entry(1000));
+      assertTrue("Size should stay bounded", cache.getWeightedSize() <= 100_000);
+    }
+    assertTrue("Entries should have been evicted", cache.getEvictionCount() > 0);
+  }
+
+  /**
+   * Tests that a scan of one-off keys does not push out frequently used entries.
+   */
+  @Test
+  public void testScanResistance() {
+    ResponseCache cache = new ResponseCache(200_000, now::get);
+    for (int i = 0; i < 50; i++) {
+      cache.put(key("/hot/" + i), entry(1000));
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        cache.get(key("/hot/" + i));
+      }
+    }
+
+    for (int i = 0; i < 5000; i++) {
+      cache.put(key("/scan/" + i), entry(1000));
+    }
+
+    int hot = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.get(key("/hot/" + i)) != null) {
+        hot++;
+      }
+    }
+    assertEquals("Hot entries should survive the scan", 50, hot);
+  }
+
+  /**
+   * Tests that stale entries are not served.
+   */
+  @Test
+  public void testExpiry() {
+    ResponseCache cache = new ResponseCache(1024 * 1024, now::get);
+    cache.put(key("/a"), entry(10));
+
+    now.addAndGet(60_000);
+    assertNull("Stale entry should miss", cache.get(key("/a")));
+    assertEquals("Stale entry should be counted", 1, cache.getExpirationCount());
+    assertEquals("Stale entry should be removed", 0, cache.getEntryCount());
+  }
+
+  /**
+   * Tests that query order does not change the key but Vary values do.
+   */
+  @Test
+  public void testKeyNormalization() {
+    GatewayRequest first = new GatewayRequest();
+    first.setMethod("get");
+    first.setPath("/a");
+    first.getQueryParams().put("x", "1");
+    first.getQueryParams().put("y", "2");
+    first.addHeader("accept-language", "en");
+
+    GatewayRequest second = new GatewayRequest();
+    second.setMethod("GET");
+    second.setPath("/a");
+    second.getQueryParams().put("y", "2");
+    second.getQueryParams().put("x", "1");
+    second.addHeader("Accept-Language", "en");
+
+    assertEquals("Same request should give the same key",
+        CacheKey.of(first, Collections.singletonList("Accept-Language")),
+        CacheKey.of(second, Collections.singletonList("Accept-Language")));
+
+    second.addHeader("Accept-Language", "fr");
+    assertTrue("Different Vary value should give a different key",
+        !CacheKey.of(first, Collections.singletonList("Accept-Language"))
+            .equals(CacheKey.of(second, Collections.singletonList("Accept-Language"))));
+  }
+
+  /**
+   * Tests that the eviction listener sees every entry evicted for size, but
+   * not the ones that went stale.
+   */
+  @Test
+  public void testEvictionListener() {
+    ResponseCache cache = new ResponseCache(100_000, now::get);
+    List<CacheKey> evicted = new ArrayList<>();
+    cache.setEvictionListener((key, value) -> evicted.add(key));
+
+    for (int i = 0; i < 200; i++) {
+      cache.put(key("/item/" + i), entry(1000));
+    }
+    assertEquals("Listener should see every eviction", cache.getEvictionCount(), evicted.size());
+    assertTrue("Entries should have been evicted", evicted.size() > 0);
+
+    cache.put(key("/huge"), entry(100_000));
+    assertEquals("Oversized entry should go straight to the listener", key("/huge"),
+        evicted.get(evicted.size() - 1));
+
+    int before = evicted.size();
+    now.addAndGet(60_000);
+    cache.get(key("/item/199"));
+    assertEquals("Stale entries should not reach the listener", before, evicted.size());
+  }
+}
@@ -9,6 +9,7 @@ import edu.bu.met.cs665.filter.impl.LoggingFilter;
 import edu.bu.met.cs665.filter.impl.RateLimitFilter;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.Before;
@@ -145,6 +146,17 @@ public class FilterChainTest {
         rateLimitFilter.preProcess(request));
   }
 
+  /**
+   * Tests that a rate limit filter with a zero limit denies every request.
+   */
+  @Test
+  public void testZeroRateLimitDeniesAll() {
+    RateLimitFilter rateLimitFilter = new RateLimitFilter(0);
+
+    assertFalse("Request should fail with no permits",
+        rateLimitFilter.preProcess(request));
+  }
+
   /**
    * Tests authentication filter with invalid token.
    */
@@ -197,4 +209,19 @@ public class FilterChainTest {
     FilterChain chain = new FilterChain(filters);
     assertEquals("Chain should have 3 filters", 3, chain.size());
   }
+
+  /**
+   * Tests that the chain keeps its own copy of the filters.
+   */
+  @Test
+  public void testFilterChainIsImmutable() {
+    List<Filter> filters = new ArrayList<>();
+    filters.add(new LoggingFilter());
+
+    FilterChain chain = new FilterChain(filters);
+    filters.add(new AuthenticationFilter());
+
+    assertEquals("Chain should not see later additions", 1, chain.size());
+    assertTrue("Chain should still pass", chain.executePreFilters(request));
+  }
 }
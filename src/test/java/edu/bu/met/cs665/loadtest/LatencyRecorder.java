@@ -0,0 +1,98 @@
+package edu.bu.met.cs665.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class LatencyRecorder {
+  private final String name;
+  private final long[] samples;
+  private final AtomicInteger count;
+  private final LongAdder overflow;
+  private final LongAdder errors;
+  private final LongAdder failures;
+
+  /*
+   * Keeps every sample, so percentiles are exact rather than bucketed. The
+   * array is sized for the whole run up front; recording is one atomic
+   * increment and an array store, which keeps the generator threads from
+   * allocating while they measure.
+   */
+
+  /**
+   * Creates a recorder for one route.
+   *
+   * @param name Route name shown in the report
+   * @param capacity Most samples kept; later ones are only counted
+   */
+  public LatencyRecorder(String name, int capacity) {
+    this.name = name;
+    this.samples = new long[capacity];
+    this.count = new AtomicInteger();
+    this.overflow = new LongAdder();
+    this.errors = new LongAdder();
+    this.failures = new LongAdder();
+  }
+
+  /**
+   * Records a completed request.
+   *
+   * @param latencyNanos Time from the intended send time to the response
+   * @param status HTTP status; anything but 2xx and 3xx counts as an error
+   */
+  public void record(long latencyNanos, int status) {
+    int index = count.getAndIncrement();
+    if (index < samples.length) {
+      samples[index] = latencyNanos;
+    } else {
+      overflow.increment();
+    }
+    if (status < 200 || status >= 400) {
+      errors.increment();
+    }
+  }
+
+  /**
+   * Records a request that got no response at all.
+   *
+   * @param latencyNanos Time from the intended send time to the failure
+   */
+  public void recordFailure(long latencyNanos) {
+    failures.increment();
+    record(latencyNanos, 0);
+  }
+
+  /**
+   * Summarizes the recorded samples. Call once all requests have finished.
+   *
+   * @param elapsedNanos Length of the measured window
+   * @return the summary
+   */
+  public LoadReport.RouteResult summarize(long elapsedNanos) {
+    int kept = Math.min(count.get(), samples.length);
+    long[] sorted = Arrays.copyOf(samples, kept);
+    Arrays.sort(sorted);
+    return new LoadReport.RouteResult(name, count.get(), errors.sum(), failures.sum(),
+        count.get() * 1e9 / elapsedNanos, percentile(sorted, 0.50),
+        percentile(sorted, 0.99), percentile(sorted, 0.999),
+        kept == 0 ? 0 : sorted[kept - 1]);
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+  }
+
+  /**
+   * Gets the number of samples that did not fit.
+   *
+   * @return overflow count
+   */
+  public long getOverflowCount() {
+    return overflow.sum();
+  }
+}
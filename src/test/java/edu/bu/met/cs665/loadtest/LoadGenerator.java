@@ -0,0 +1,295 @@
+package edu.bu.met.cs665.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+
+public class LoadGenerator {
+  private final String baseUrl;
+  private final double rate;
+  private final long durationNanos;
+  private final long warmupNanos;
+  private final int concurrency;
+  private final List<Target> targets;
+
+  /*
+   * Open model: request i is due at start + i / rate whether or not earlier
+   * requests have answered, and its latency is measured from that due time.
+   * A slow gateway therefore shows up as queueing in the percentiles instead
+   * of quietly lowering the offered load, which is what a closed loop of
+   * "send, wait, send" would do.
+   */
+
+  /**
+   * Private constructor - use {@link #builder(String)}.
+   *
+   * @param builder The builder instance
+   */
+  private LoadGenerator(Builder builder) {
+    this.baseUrl = builder.baseUrl;
+    this.rate = builder.rate;
+    this.durationNanos = builder.durationNanos;
+    this.warmupNanos = builder.warmupNanos;
+    this.concurrency = builder.concurrency;
+    this.targets = Collections.unmodifiableList(new ArrayList<>(builder.targets));
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @param baseUrl Gateway URL without a trailing slash
+   * @return A new Builder instance
+   */
+  public static Builder builder(String baseUrl) {
+    return new Builder(baseUrl);
+  }
+
+  /**
+   * Sends requests at the configured rate for the warm-up and then the
+   * measured window, waits for the stragglers and reports the measured
+   * window only.
+   *
+   * @param scenario Scenario name for the report
+   * @return the report
+   * @throws InterruptedException if interrupted while running
+   */
+  public LoadReport run(String scenario) throws InterruptedException {
+    int[] schedule = schedule();
+    int expected = (int) Math.min(Integer.MAX_VALUE - 8,
+        (long) Math.ceil(rate * durationNanos / 1e9) + 1);
+    Map<Target, LatencyRecorder> recorders = new LinkedHashMap<>();
+    for (Target target : targets) {
+      recorders.put(target, new LatencyRecorder(target.name, expected));
+    }
+
+    RequestConfig config = RequestConfig.custom()
+        .setConnectTimeout(5000)
+        .setSocketTimeout(30000)
+        .setConnectionRequestTimeout(30000)
+        .build();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency,
+        0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "load-generator");
+          thread.setDaemon(true);
+          return thread;
+        });
+    try (CloseableHttpClient client = HttpClients.custom()
+        .setMaxConnTotal(concurrency)
+        .setMaxConnPerRoute(concurrency)
+        .setDefaultRequestConfig(config)
+        .build()) {
+      long intervalNanos = (long) (1e9 / rate);
+      long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+      long measureFrom = start + warmupNanos;
+      long end = measureFrom + durationNanos;
+      for (long i = 0; ; i++) {
+        long due = start + i * intervalNanos;
+        if (due >= end) {
+          break;
+        }
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        Target target = targets.get(schedule[(int) (i % schedule.length)]);
+        LatencyRecorder recorder = due >= measureFrom ? recorders.get(target) : null;
+        executor.execute(() -> send(client, target, due, recorder));
+      }
+      shutdown(executor);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not close the load generator's client", e);
+    }
+
+    List<LoadReport.RouteResult> results = new ArrayList<>();
+    for (LatencyRecorder recorder : recorders.values()) {
+      results.add(recorder.summarize(durationNanos));
+    }
+    return new LoadReport(scenario, rate, durationNanos, results);
+  }
+
+  /**
+   * Spreads the targets over a repeating cycle in proportion to their
+   * weights, interleaved rather than in runs.
+   */
+  private int[] schedule() {
+    int total = 0;
+    for (Target target : targets) {
+      total += target.weight;
+    }
+    int[] schedule = new int[total];
+    int[] credit = new int[targets.size()];
+    for (int slot = 0; slot < total; slot++) {
+      int best = 0;
+      for (int t = 0; t < targets.size(); t++) {
+        credit[t] += targets.get(t).weight;
+        if (credit[t] > credit[best]) {
+          best = t;
+        }
+      }
+      credit[best] -= total;
+      schedule[slot] = best;
+    }
+    return schedule;
+  }
+
+  private void send(CloseableHttpClient client, Target target, long due,
+      LatencyRecorder recorder) {
+    HttpGet get = new HttpGet(baseUrl + target.path);
+    for (Map.Entry<String, String> header : target.headers.entrySet()) {
+      get.addHeader(header.getKey(), header.getValue());
+    }
+    try (CloseableHttpResponse response = client.execute(get)) {
+      HttpEntity entity = response.getEntity();
+      EntityUtils.consume(entity);
+      if (recorder != null) {
+        recorder.record(System.nanoTime() - due, response.getStatusLine().getStatusCode());
+      }
+    } catch (IOException e) {
+      if (recorder != null) {
+        recorder.recordFailure(System.nanoTime() - due);
+      }
+    }
+  }
+
+  private static void shutdown(ExecutorService executor) throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A route the generator sends GETs to.
+   */
+  private static final class Target {
+    private final String name;
+    private final String path;
+    private final int weight;
+    private final Map<String, String> headers;
+
+    private Target(String name, String path, int weight, Map<String, String> headers) {
+      this.name = name;
+      this.path = path;
+      this.weight = weight;
+      this.headers = headers;
+    }
+  }
+
+
+  public static class Builder {
+    private final String baseUrl;
+    private final List<Target> targets = new ArrayList<>();
+    private double rate = 100;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+    private int concurrency = 256;
+
+    /**
+     * Constructor - use {@link LoadGenerator#builder(String)}.
+     *
+     * @param baseUrl Gateway URL without a trailing slash
+     */
+    private Builder(String baseUrl) {
+      this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Sets the arrival rate across all targets.
+     *
+     * @param rate Requests per second
+     * @return this Builder instance for method chaining
+     */
+    public Builder rate(double rate) {
+      this.rate = rate;
+      return this;
+    }
+
+    /**
+     * Sets the length of the measured window.
+     *
+     * @param duration Duration
+     * @param unit Unit of duration
+     * @return this Builder instance for method chaining
+     */
+    public Builder duration(long duration, TimeUnit unit) {
+      this.durationNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * Sets how long requests are sent before measuring starts, so the JIT,
+     * the connection pools and the caches are warm.
+     *
+     * @param warmup Warm-up time
+     * @param unit Unit of warmup
+     * @return this Builder instance for method chaining
+     */
+    public Builder warmup(long warmup, TimeUnit unit) {
+      this.warmupNanos = unit.toNanos(warmup);
+      return this;
+    }
+
+    /**
+     * Sets how many requests may be outstanding at once. Due requests past
+     * that wait in a queue, and the wait counts toward their latency.
+     *
+     * @param concurrency Sender threads and connections
+     * @return this Builder instance for method chaining
+     */
+    public Builder concurrency(int concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Adds a route to the mix.
+     *
+     * @param name Name shown in the report
+     * @param path Request path on the gateway
+     * @param weight Share of the requests relative to the other targets
+     * @param headers Headers sent with every request
+     * @return this Builder instance for method chaining
+     */
+    public Builder addTarget(String name, String path, int weight, Map<String, String> headers) {
+      targets.add(new Target(name, path, weight, new LinkedHashMap<>(headers)));
+      return this;
+    }
+
+    /**
+     * Builds and returns the LoadGenerator instance.
+     *
+     * @return A new LoadGenerator
+     * @throws IllegalStateException if there are no targets or a setting is out of range
+     */
+    public LoadGenerator build() {
+      if (targets.isEmpty()) {
+        throw new IllegalStateException("At least one target is required");
+      }
+      for (Target target : targets) {
+        if (target.weight <= 0) {
+          throw new IllegalStateException("Target weights must be positive");
+        }
+      }
+      if (rate <= 0 || durationNanos <= 0 || warmupNanos < 0 || concurrency <= 0) {
+        throw new IllegalStateException("Rate, duration and concurrency must be positive");
+      }
+      return new LoadGenerator(this);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package edu.bu.met.cs665.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+
+public class LoadReport {
+  private static final String CSV_HEADER =
+      "scenario,route,requests,errors,failures,throughput_rps,p50_ms,p99_ms,p999_ms,max_ms";
+
+  private final String scenario;
+  private final double targetRate;
+  private final long durationNanos;
+  private final List<RouteResult> routes;
+
+  /**
+   * Creates a report.
+   *
+   * @param scenario Scenario name
+   * @param targetRate Requests per second the generator was asked for
+   * @param durationNanos Length of the measured window
+   * @param routes Results per route
+   */
+  public LoadReport(String scenario, double targetRate, long durationNanos,
+      List<RouteResult> routes) {
+    this.scenario = scenario;
+    this.targetRate = targetRate;
+    this.durationNanos = durationNanos;
+    this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+  }
+
+  /**
+   * Prints a table of throughput and latency percentiles per route.
+   *
+   * @param out Where the table goes
+   */
+  public void print(PrintStream out) {
+    out.printf(Locale.ROOT, "Scenario %s: %.0f req/s offered for %.1f s%n",
+        scenario, targetRate, durationNanos / 1e9);
+    out.printf(Locale.ROOT, "%-16s %9s %8s %8s %10s %9s %9s %9s %9s%n", "route", "requests",
+        "errors", "failed", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    for (RouteResult route : routes) {
+      out.printf(Locale.ROOT, "%-16s %9d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+          route.getName(), route.getRequests(), route.getErrors(), route.getFailures(),
+          route.getThroughput(), millis(route.getP50Nanos()), millis(route.getP99Nanos()),
+          millis(route.getP999Nanos()), millis(route.getMaxNanos()));
+    }
+  }
+
+  /**
+   * Writes the results as CSV with a header row, so runs before and after
+   * a change can be compared line by line.
+   *
+   * @param file File to write; replaced if it exists
+   * @throws IOException if the file cannot be written
+   */
+  public void writeCsv(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      out.write(CSV_HEADER);
+      out.write('\n');
+      for (RouteResult route : routes) {
+        out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f%n",
+            scenario, route.getName(), route.getRequests(), route.getErrors(),
+            route.getFailures(), route.getThroughput(), millis(route.getP50Nanos()),
+            millis(route.getP99Nanos()), millis(route.getP999Nanos()),
+            millis(route.getMaxNanos())));
+      }
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  /**
+   * Gets the results per route.
+   *
+   * @return read-only results
+   */
+  public List<RouteResult> getRoutes() {
+    return routes;
+  }
+
+
+  /**
+   * Throughput and latency of one route over the measured window.
+   */
+  public static final class RouteResult {
+    private final String name;
+    private final long requests;
+    private final long errors;
+    private final long failures;
+    private final double throughput;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    RouteResult(String name, long requests, long errors, long failures, double throughput,
+        long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+      this.name = name;
+      this.requests = requests;
+      this.errors = errors;
+      this.failures = failures;
+      this.throughput = throughput;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.p999Nanos = p999Nanos;
+      this.maxNanos = maxNanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getRequests() {
+      return requests;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getFailures() {
+      return failures;
+    }
+
+    public double getThroughput() {
+      return throughput;
+    }
+
+    public long getP50Nanos() {
+      return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+      return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+      return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+  }
+}
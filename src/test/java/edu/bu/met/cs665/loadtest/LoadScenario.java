@@ -0,0 +1,75 @@
+package edu.bu.met.cs665.loadtest;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * Fixed load scenarios, so a run before a change and a run after it offer
+ * the gateway exactly the same work. Rates and backend behavior can be
+ * overridden on the command line, but the defaults are what results are
+ * compared on.
+ */
+public enum LoadScenario {
+  /** A fast backend with small bodies; shows the gateway's own overhead. */
+  BASELINE(500, 5, 2, 1024, 0.0),
+  /** A slow backend; shows how well waiting requests are carried. */
+  SLOW_BACKEND(500, 200, 50, 1024, 0.0),
+  /** Large bodies; shows buffering, streaming and cache costs. */
+  LARGE_PAYLOAD(100, 5, 2, 256 * 1024, 0.0),
+  /** A backend failing 5% of requests; shows the error path. */
+  ERRORS(500, 5, 2, 1024, 0.05);
+
+  private static final Map<String, String> AUTHORIZED =
+      Collections.singletonMap("Authorization", "Bearer token-123");
+
+  private final double rate;
+  private final long latencyMillis;
+  private final long jitterMillis;
+  private final int payloadBytes;
+  private final double errorRate;
+
+  LoadScenario(double rate, long latencyMillis, long jitterMillis, int payloadBytes,
+      double errorRate) {
+    this.rate = rate;
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+    this.payloadBytes = payloadBytes;
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Adds the demo routes of ApiGatewayApplication to a generator: the
+   * cached public route, the authenticated route and the streamed data
+   * route, weighted toward the uncached ones so the backend is exercised.
+   *
+   * @param generator The generator builder
+   * @return the same builder
+   */
+  public LoadGenerator.Builder addTargets(LoadGenerator.Builder generator) {
+    return generator
+        .addTarget("/api/public", "/api/public", 2, Collections.<String, String>emptyMap())
+        .addTarget("/api/secure", "/api/secure", 4, AUTHORIZED)
+        .addTarget("/api/data", "/api/data", 4, AUTHORIZED);
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  public long getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  public long getJitterMillis() {
+    return jitterMillis;
+  }
+
+  public int getPayloadBytes() {
+    return payloadBytes;
+  }
+
+  public double getErrorRate() {
+    return errorRate;
+  }
+}
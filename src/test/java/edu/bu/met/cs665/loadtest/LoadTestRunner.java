@@ -0,0 +1,149 @@
+package edu.bu.met.cs665.loadtest;
+
+import edu.bu.met.cs665.ApiGatewayApplication;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+
+public final class LoadTestRunner {
+
+  private LoadTestRunner() {
+  }
+
+  /**
+   * Starts a stub backend and the gateway on free local ports, with the
+   * demo routes pointed at the stub and their rate limits off, then drives
+   * the gateway with one scenario and prints the results. Usage:
+   * {@code LoadTestRunner [scenario] [--rate N] [--duration S] [--warmup S]
+   * [--concurrency N] [--latency MS] [--payload BYTES] [--error-rate F]
+   * [--cache on|off] [--out FILE] [--label NAME]}.
+   * Results are also written as CSV to {@code target/loadtest/<label>.csv}.
+   *
+   * @param args Command line arguments
+   * @throws Exception if the gateway cannot start or the run is interrupted
+   */
+  public static void main(String[] args) throws Exception {
+    LoadScenario scenario = LoadScenario.BASELINE;
+    double rate = -1;
+    long durationSeconds = 30;
+    long warmupSeconds = 10;
+    int concurrency = 256;
+    long latencyMillis = -1;
+    int payloadBytes = -1;
+    double errorRate = -1;
+    boolean cache = true;
+    String label = null;
+    Path out = null;
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (!arg.startsWith("--")) {
+        scenario = LoadScenario.valueOf(arg.toUpperCase(Locale.ROOT).replace('-', '_'));
+        continue;
+      }
+      if (i + 1 >= args.length) {
+        usage("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+        case "--rate":
+          rate = Double.parseDouble(value);
+          break;
+        case "--duration":
+          durationSeconds = Long.parseLong(value);
+          break;
+        case "--warmup":
+          warmupSeconds = Long.parseLong(value);
+          break;
+        case "--concurrency":
+          concurrency = Integer.parseInt(value);
+          break;
+        case "--latency":
+          latencyMillis = Long.parseLong(value);
+          break;
+        case "--payload":
+          payloadBytes = Integer.parseInt(value);
+          break;
+        case "--error-rate":
+          errorRate = Double.parseDouble(value);
+          break;
+        case "--cache":
+          cache = !"off".equalsIgnoreCase(value);
+          break;
+        case "--label":
+          label = value;
+          break;
+        case "--out":
+          out = Paths.get(value);
+          break;
+        default:
+          usage("Unknown option " + arg);
+      }
+    }
+
+    String name = scenario.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    if (out == null) {
+      out = Paths.get("target", "loadtest", (label == null ? name : label) + ".csv");
+    }
+
+    StubBackend backend = StubBackend.builder()
+        .latency(latencyMillis >= 0 ? latencyMillis : scenario.getLatencyMillis(),
+            latencyMillis >= 0 ? 0 : scenario.getJitterMillis(), TimeUnit.MILLISECONDS)
+        .payloadBytes(payloadBytes >= 0 ? payloadBytes : scenario.getPayloadBytes())
+        .errorRate(errorRate >= 0 ? errorRate : scenario.getErrorRate())
+        .build()
+        .start();
+    ConfigurableApplicationContext gateway = null;
+    try {
+      gateway = startGateway(backend, cache);
+      String gatewayUrl = "http://127.0.0.1:"
+          + gateway.getEnvironment().getProperty("local.server.port");
+
+      LoadGenerator generator = scenario.addTargets(LoadGenerator.builder(gatewayUrl))
+          .rate(rate > 0 ? rate : scenario.getRate())
+          .duration(durationSeconds, TimeUnit.SECONDS)
+          .warmup(warmupSeconds, TimeUnit.SECONDS)
+          .concurrency(concurrency)
+          .build();
+      LoadReport report = generator.run(label == null ? name : label);
+
+      report.print(System.out);
+      System.out.printf(Locale.ROOT, "Backend served %d requests, %d injected errors%n",
+          backend.getRequestCount(), backend.getErrorCount());
+      report.writeCsv(out);
+      System.out.println("Results written to " + out.toAbsolutePath());
+    } finally {
+      if (gateway != null) {
+        gateway.close();
+      }
+      backend.stop();
+    }
+  }
+
+  private static ConfigurableApplicationContext startGateway(StubBackend backend,
+      boolean cache) {
+    List<String> properties = new ArrayList<>();
+    properties.add("--server.port=0");
+    properties.add("--gateway.routes.backend-url=" + backend.getUrl());
+    properties.add("--gateway.routes.rate-limits=false");
+    if (!cache) {
+      properties.add("--gateway.cache.max-bytes=0");
+    }
+    return SpringApplication.run(ApiGatewayApplication.class,
+        properties.toArray(new String[0]));
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("Usage: LoadTestRunner [baseline|slow-backend|large-payload|errors]"
+        + " [--rate N] [--duration S] [--warmup S] [--concurrency N] [--latency MS]"
+        + " [--payload BYTES] [--error-rate F] [--cache on|off] [--out FILE] [--label NAME]");
+    System.exit(2);
+  }
+}
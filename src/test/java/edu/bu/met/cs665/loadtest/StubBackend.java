@@ -0,0 +1,229 @@
+package edu.bu.met.cs665.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+public class StubBackend {
+  static {
+    // Without it, the JDK server's separate header and body writes wait on delayed ACKs
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final long latencyMicros;
+  private final long jitterMicros;
+  private final double errorRate;
+  private final byte[] payload;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final LongAdder requests;
+  private final LongAdder errors;
+
+  /**
+   * Private constructor - use {@link #builder()}.
+   *
+   * @param builder The builder instance
+   * @throws IOException if the server cannot bind
+   */
+  private StubBackend(Builder builder) throws IOException {
+    this.latencyMicros = builder.latencyMicros;
+    this.jitterMicros = builder.jitterMicros;
+    this.errorRate = builder.errorRate;
+    this.payload = new byte[builder.payloadBytes];
+    // JSON string so filters that parse bodies still see valid JSON
+    Arrays.fill(payload, (byte) 'x');
+    if (payload.length >= 2) {
+      payload[0] = '"';
+      payload[payload.length - 1] = '"';
+    }
+    this.requests = new LongAdder();
+    this.errors = new LongAdder();
+    this.executor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+      Thread thread = new Thread(runnable, "stub-backend");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    this.server.createContext("/", this::handle);
+    this.server.setExecutor(executor);
+  }
+
+  /**
+   * Creates a new Builder instance.
+   *
+   * @return A new Builder instance
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.increment();
+    try (InputStream in = exchange.getRequestBody()) {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) {
+        // Drain the upload so the connection can be reused
+      }
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long delay = latencyMicros + (jitterMicros > 0 ? random.nextLong(jitterMicros + 1) : 0);
+    if (delay > 0) {
+      try {
+        TimeUnit.MICROSECONDS.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    boolean fail = errorRate > 0 && random.nextDouble() < errorRate;
+    if (fail) {
+      errors.increment();
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+      return;
+    }
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, payload.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(payload);
+    }
+  }
+
+  /**
+   * Starts serving on an ephemeral port.
+   *
+   * @return this backend
+   */
+  public StubBackend start() {
+    server.start();
+    return this;
+  }
+
+  /**
+   * Stops the server and its threads.
+   */
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Gets the base URL the gateway routes should forward to.
+   *
+   * @return URL without a trailing slash
+   */
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Gets the number of requests served.
+   *
+   * @return request count
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * Gets the number of injected 503 responses.
+   *
+   * @return error count
+   */
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+
+  public static class Builder {
+    private long latencyMicros;
+    private long jitterMicros;
+    private int payloadBytes = 1024;
+    private double errorRate;
+    private int threads = 200;
+
+    /**
+     * Constructor - use {@link StubBackend#builder()}.
+     */
+    private Builder() {
+    }
+
+    /**
+     * Sets the time every response is held back, plus a uniform random jitter.
+     *
+     * @param latency Fixed latency
+     * @param jitter Maximum extra latency
+     * @param unit Unit of latency and jitter
+     * @return this Builder instance for method chaining
+     */
+    public Builder latency(long latency, long jitter, TimeUnit unit) {
+      this.latencyMicros = unit.toMicros(latency);
+      this.jitterMicros = unit.toMicros(jitter);
+      return this;
+    }
+
+    /**
+     * Sets the size of every successful response body.
+     *
+     * @param payloadBytes Body size in bytes
+     * @return this Builder instance for method chaining
+     */
+    public Builder payloadBytes(int payloadBytes) {
+      this.payloadBytes = payloadBytes;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of requests answered with 503.
+     *
+     * @param errorRate Fraction between 0 and 1
+     * @return this Builder instance for method chaining
+     */
+    public Builder errorRate(double errorRate) {
+      this.errorRate = errorRate;
+      return this;
+    }
+
+    /**
+     * Sets how many requests are served at once. Requests beyond that queue,
+     * as they would at a saturated backend.
+     *
+     * @param threads Server threads
+     * @return this Builder instance for method chaining
+     */
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Builds and returns the StubBackend instance, not yet started.
+     *
+     * @return A new StubBackend
+     * @throws IllegalStateException if a setting is out of range or the port cannot be bound
+     */
+    public StubBackend build() {
+      if (latencyMicros < 0 || jitterMicros < 0 || payloadBytes < 0 || threads <= 0
+          || errorRate < 0 || errorRate > 1) {
+        throw new IllegalStateException("Stub backend settings are out of range");
+      }
+      try {
+        return new StubBackend(this);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not start stub backend", e);
+      }
+    }
+  }
+}
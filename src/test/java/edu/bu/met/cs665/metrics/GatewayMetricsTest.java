@@ -0,0 +1,162 @@
+package edu.bu.met.cs665.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.service.GatewayService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class GatewayMetricsTest {
+
+  private SimpleMeterRegistry registry;
+  private GatewayMetrics metrics;
+  private GatewayService gatewayService;
+
+  /**
+   * Sets up test fixtures.
+   */
+  @Before
+  public void setUp() {
+    registry = new SimpleMeterRegistry();
+    metrics = new GatewayMetrics(registry);
+    gatewayService = new GatewayService();
+    gatewayService.setMetrics(metrics);
+  }
+
+  /**
+   * Cleans up after tests.
+   */
+  @After
+  public void tearDown() {
+    gatewayService.shutdown();
+  }
+
+  private static GatewayRequest request(String path) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    return request;
+  }
+
+  /**
+   * Tests that a forwarded request is timed under its route and that the
+   * backend status is counted.
+   */
+  @Test
+  public void testRequestTimedAndStatusCounted() throws Exception {
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      byte[] body = "down".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(503, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+
+    try {
+      gatewayService.registerRoute(Route.builder("/api/data")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/data")
+          .build());
+      for (int i = 0; i < 3; i++) {
+        GatewayResponse response = gatewayService.processRequest(request("/api/data/" + i));
+        assertEquals("Backend status should be passed through", 503, response.getStatusCode());
+      }
+    } finally {
+      backend.stop(0);
+    }
+
+    Timer timer = registry.find(GatewayMetrics.REQUESTS).tag("route", "/api/data").timer();
+    assertNotNull("Route timer should be registered", timer);
+    assertEquals("Every request should be timed", 3, timer.count());
+    Counter status = registry.find(GatewayMetrics.UPSTREAM_RESPONSES)
+        .tag("route", "/api/data").tag("status", "503").counter();
+    assertNotNull("Status counter should be registered", status);
+    assertEquals("Every backend response should be counted", 3.0, status.count(), 0.0);
+  }
+
+  /**
+   * Tests that a request stopped by a filter counts as a reject under the
+   * filter's name, and that unmatched paths are timed separately.
+   */
+  @Test
+  public void testRejectsAndUnmatched() {
+    gatewayService.registerRoute(Route.builder("/api/secure")
+        .targetUrl("http://127.0.0.1:1/secure")
+        .addFilter(new AuthenticationFilter())
+        .build());
+
+    GatewayResponse response = gatewayService.processRequest(request("/api/secure"));
+    assertEquals("Request without a token should be blocked", 403, response.getStatusCode());
+    gatewayService.processRequest(request("/nowhere"));
+
+    Counter rejects = registry.find(GatewayMetrics.REJECTS)
+        .tag("route", "/api/secure").tag("reason", "AuthenticationFilter").counter();
+    assertNotNull("Reject counter should be registered", rejects);
+    assertEquals("Blocked request should be counted", 1.0, rejects.count(), 0.0);
+    assertEquals("Blocked request should still be timed", 1,
+        registry.find(GatewayMetrics.REQUESTS).tag("route", "/api/secure").timer().count());
+    assertEquals("Unmatched request should be timed", 1,
+        registry.find(GatewayMetrics.REQUESTS).tag("route", "unmatched").timer().count());
+  }
+
+  /**
+   * Tests the pool gauges and the lease wait timer.
+   */
+  @Test
+  public void testPoolMetrics() throws Exception {
+    HttpClientPool pool = HttpClientPool.builder()
+        .mode(HttpClientPool.Mode.DEDICATED)
+        .poolSize(2)
+        .build();
+    try {
+      metrics.bindPool(pool);
+      CloseableHttpClient client = pool.acquire(1000);
+
+      Gauge inUse = registry.find(GatewayMetrics.POOL_IN_USE).gauge();
+      assertEquals("One client should be in use", 1.0, inUse.value(), 0.0);
+      assertEquals("Pool maximum should be published", 2.0,
+          registry.find(GatewayMetrics.POOL_MAX).gauge().value(), 0.0);
+      Timer leaseWait = registry.find(GatewayMetrics.POOL_LEASE_WAIT).timer();
+      assertEquals("The lease should be timed", 1, leaseWait.count());
+
+      pool.release(client);
+      assertEquals("No client should be in use", 0.0, inUse.value(), 0.0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Tests that out-of-range status codes share one counter.
+   */
+  @Test
+  public void testOutOfRangeStatus() {
+    Route route = Route.builder("/api/odd").targetUrl("http://127.0.0.1:1/").build();
+    metrics.recordUpstreamStatus(route, 999);
+    metrics.recordUpstreamStatus(route, -1);
+
+    Counter other = registry.find(GatewayMetrics.UPSTREAM_RESPONSES)
+        .tag("route", "/api/odd").tag("status", "other").counter();
+    assertTrue("Odd statuses should be counted as other",
+        other != null && other.count() == 2.0);
+  }
+}
@@ -2,6 +2,7 @@ package edu.bu.met.cs665.pool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -190,4 +191,65 @@ public class HttpClientPoolTest {
     assertEquals("Pool size should remain unchanged", 
         5, pool.getAvailableCount());
   }
+
+  /**
+   * Tests that the shared mode hands every caller the same client.
+   */
+  @Test
+  public void testSharedModeReturnsSameClient() throws InterruptedException {
+    HttpClientPool shared = HttpClientPool.builder()
+        .mode(HttpClientPool.Mode.SHARED)
+        .poolSize(50)
+        .maxPerRoute(10)
+        .build();
+    try {
+      CloseableHttpClient c1 = shared.acquire();
+      CloseableHttpClient c2 = shared.acquire();
+
+      assertSame("Shared mode should reuse one client", c1, c2);
+      assertEquals("Max should be the max-total connections", 50, shared.getMaxPoolSize());
+      assertEquals("Two callers should be in flight", 2, shared.getInUseCount());
+      assertEquals("Should have 48 available", 48, shared.getAvailableCount());
+
+      shared.release(c1);
+      shared.release(c2);
+      assertEquals("No callers should be in flight", 0, shared.getInUseCount());
+      assertTrue("No upstream hosts contacted yet", shared.getRouteStats().isEmpty());
+    } finally {
+      shared.shutdown();
+    }
+  }
+
+  /**
+   * Tests that the shared mode is not capped by a number of clients.
+   */
+  @Test
+  public void testSharedModeDoesNotBlockOnAcquire() throws InterruptedException {
+    HttpClientPool shared = HttpClientPool.builder()
+        .mode(HttpClientPool.Mode.SHARED)
+        .poolSize(2)
+        .build();
+    try {
+      for (int i = 0; i < 5; i++) {
+        assertNotNull("Acquire should not wait in shared mode", shared.acquire());
+      }
+      assertEquals("Available count should not go negative", 0, shared.getAvailableCount());
+    } finally {
+      shared.shutdown();
+    }
+  }
+
+  /**
+   * Tests that acquiring from a shut down shared pool fails.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testSharedModeAcquireAfterShutdown() throws InterruptedException {
+    HttpClientPool shared = HttpClientPool.builder()
+        .mode(HttpClientPool.Mode.SHARED)
+        .build();
+    shared.shutdown();
+
+    assertEquals("Pool should be empty after shutdown", 0, shared.getAvailableCount());
+    shared.acquire();
+  }
 }
@@ -0,0 +1,133 @@
+package edu.bu.met.cs665.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class DistributedRateLimiterTest {
+  private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toMillis(1));
+  private InMemorySharedCounterStore store;
+  private List<DistributedRateLimiter> nodes;
+
+  /**
+   * Sets up test fixtures.
+   */
+  @Before
+  public void setUp() {
+    store = new InMemorySharedCounterStore();
+    nodes = new ArrayList<>();
+  }
+
+  /**
+   * Stops every limiter created by the test.
+   */
+  @After
+  public void tearDown() {
+    for (DistributedRateLimiter node : nodes) {
+      node.shutdown();
+    }
+  }
+
+  private DistributedRateLimiter node(int limit, int batchSize, int expectedNodes,
+      long storeTimeoutMillis) {
+    DistributedRateLimiter node = DistributedRateLimiter.builder(store)
+        .limit(limit)
+        .period(1, TimeUnit.MINUTES)
+        .batchSize(batchSize)
+        .expectedNodes(expectedNodes)
+        .storeTimeout(storeTimeoutMillis, TimeUnit.MILLISECONDS)
+        .clock(now::get)
+        .build();
+    nodes.add(node);
+    return node;
+  }
+
+  /**
+   * Tests that several instances sharing a store admit exactly the cluster
+   * limit between them, with far fewer store calls than requests.
+   */
+  @Test
+  public void testClusterLimitAcrossNodes() throws InterruptedException {
+    int limit = 200;
+    DistributedRateLimiter first = node(limit, 10, 2, 5000);
+    DistributedRateLimiter second = node(limit, 10, 2, 5000);
+
+    AtomicInteger granted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      DistributedRateLimiter node = t % 2 == 0 ? first : second;
+      pool.execute(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < limit; i++) {
+          if (node.tryAcquire("client")) {
+            granted.incrementAndGet();
+          }
+        }
+      });
+    }
+    start.countDown();
+    pool.shutdown();
+    assertTrue("Workers should finish", pool.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals("Cluster should admit exactly the limit", limit, granted.get());
+    assertEquals("Nothing should fall back", 0,
+        first.getFallbackCount() + second.getFallbackCount());
+    assertTrue("Store should be called per batch, not per request",
+        store.getCallCount() <= limit / 10 + 4);
+  }
+
+  /**
+   * Tests that a new window starts a fresh cluster-wide budget.
+   */
+  @Test
+  public void testNewWindowResetsBudget() {
+    DistributedRateLimiter limiter = node(5, 5, 1, 5000);
+    for (int i = 0; i < 5; i++) {
+      assertTrue("Request " + i + " should pass", limiter.tryAcquire("a"));
+    }
+    assertFalse("Limit should be reached", limiter.tryAcquire("a"));
+    assertEquals("No permits should remain", 0, limiter.getRemaining("a"));
+
+    now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+    assertEquals("New window should report the full limit", 5, limiter.getRemaining("a"));
+    assertTrue("New window should admit again", limiter.tryAcquire("a"));
+  }
+
+  /**
+   * Tests that a slow store degrades to this instance's share of the limit.
+   */
+  @Test
+  public void testSlowStoreFallsBackToLocalShare() {
+    store.setLatencyMillis(5000);
+    DistributedRateLimiter limiter = node(100, 10, 4, 5);
+
+    int granted = 0;
+    for (int i = 0; i < 60; i++) {
+      if (limiter.tryAcquire("a")) {
+        granted++;
+      }
+    }
+
+    assertEquals("Should admit limit / expectedNodes", 25, granted);
+    assertEquals("Every decision should be local", 60, limiter.getFallbackCount());
+    assertEquals("Only one lease should be in flight", 1, store.getCallCount());
+  }
+}
@@ -0,0 +1,165 @@
+package edu.bu.met.cs665.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+
+public class GcraRateLimiterTest {
+  private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+  private GcraRateLimiter limiter(int limit) {
+    return GcraRateLimiter.builder()
+        .limit(limit)
+        .period(1, TimeUnit.MINUTES)
+        .clock(now::get)
+        .build();
+  }
+
+  /**
+   * Tests that a full burst is allowed and the next request is refused.
+   */
+  @Test
+  public void testBurstUpToLimit() {
+    GcraRateLimiter limiter = limiter(5);
+
+    for (int i = 0; i < 5; i++) {
+      assertTrue("Request " + i + " should pass", limiter.tryAcquire("a"));
+    }
+    assertFalse("Sixth request should fail", limiter.tryAcquire("a"));
+    assertEquals("No permits should remain", 0, limiter.getRemaining("a"));
+    assertEquals("Other keys keep their limit", 5, limiter.getRemaining("b"));
+  }
+
+  /**
+   * Tests that permits come back one emission interval at a time.
+   */
+  @Test
+  public void testPermitsRefillOverTime() {
+    GcraRateLimiter limiter = limiter(6);
+    for (int i = 0; i < 6; i++) {
+      limiter.tryAcquire("a");
+    }
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertEquals("One permit after one interval", 1, limiter.getRemaining("a"));
+    assertTrue("Refilled permit should pass", limiter.tryAcquire("a"));
+    assertFalse("Only one permit was refilled", limiter.tryAcquire("a"));
+
+    now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+    assertEquals("Idle key should be back to its full limit", 6, limiter.getRemaining("a"));
+  }
+
+  /**
+   * Tests that exactly limit permits are granted when many threads race
+   * for one key with N times the limit in requests.
+   */
+  @Test
+  public void testExactUnderContention() throws InterruptedException {
+    int limit = 1000;
+    int threads = 8;
+    int perThread = limit * 10 / threads;
+    GcraRateLimiter limiter = limiter(limit);
+
+    AtomicInteger granted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      pool.execute(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perThread; i++) {
+          if (limiter.tryAcquire("shared")) {
+            granted.incrementAndGet();
+          }
+        }
+      });
+    }
+    start.countDown();
+    pool.shutdown();
+    assertTrue("Workers should finish", pool.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals("Exactly limit permits should be granted", limit, granted.get());
+  }
+
+  /**
+   * Tests that reset restores the full limit.
+   */
+  @Test
+  public void testReset() {
+    GcraRateLimiter limiter = limiter(1);
+    assertTrue("First request should pass", limiter.tryAcquire("a"));
+    assertFalse("Second request should fail", limiter.tryAcquire("a"));
+
+    limiter.reset("a");
+    assertEquals("Reset key should have no state", 0, limiter.size());
+    assertTrue("Request after reset should pass", limiter.tryAcquire("a"));
+  }
+
+  /**
+   * Tests that the public constructor validates its arguments like the Builder.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testZeroLimitRejected() {
+    new GcraRateLimiter(0, 1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Tests that random client IDs cannot grow the state past the key cap.
+   */
+  @Test
+  public void testKeyCapBoundsMemory() {
+    GcraRateLimiter limiter = GcraRateLimiter.builder()
+        .limit(10)
+        .period(1, TimeUnit.MINUTES)
+        .maxKeys(100)
+        .clock(now::get)
+        .build();
+
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue("New client should pass", limiter.tryAcquire("client-" + i));
+      assertTrue("Cap should hold, size " + limiter.size(), limiter.size() <= 100);
+    }
+    assertTrue("Active keys should have been evicted", limiter.getEvictedCount() > 0);
+  }
+
+  /**
+   * Tests that keys idle for a full period are expired without loss.
+   */
+  @Test
+  public void testIdleKeysExpire() {
+    GcraRateLimiter limiter = GcraRateLimiter.builder()
+        .limit(10)
+        .period(1, TimeUnit.MINUTES)
+        .clock(now::get)
+        .build();
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < 10; j++) {
+        limiter.tryAcquire("idle-" + i);
+      }
+    }
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    for (int j = 0; j < 10; j++) {
+      limiter.tryAcquire("active");
+    }
+    assertEquals("Keys still inside their period should stay", 51, limiter.size());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+    assertTrue("A new key should trigger the sweep", limiter.tryAcquire("newcomer"));
+    assertEquals("Only the active key and the newcomer should remain", 2, limiter.size());
+    assertEquals("Idle keys should count as expired", 50, limiter.getExpiredCount());
+    assertEquals("Nothing should be force-evicted", 0, limiter.getEvictedCount());
+  }
+}
@@ -1,11 +1,16 @@
 package edu.bu.met.cs665.route;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import edu.bu.met.cs665.balancer.LeastOutstandingBalancer;
 import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
 import edu.bu.met.cs665.filter.impl.LoggingFilter;
+import edu.bu.met.cs665.model.GatewayRequest;
 import org.junit.Test;
 
 
@@ -67,6 +72,25 @@ public class RouteBuilderTest {
     assertEquals("Should have 2 filters", 2, route.getFilters().size());
   }
 
+  /**
+   * Tests that the filter chain is compiled once and reused.
+   */
+  @Test
+  public void testFilterChainBuiltOnce() {
+    Route.Builder builder = Route.builder("/api/secure")
+        .targetUrl("http://localhost:8081/secure")
+        .addFilter(new LoggingFilter());
+    Route route = builder.build();
+
+    // Adding to the builder afterwards must not change the built route
+    builder.addFilter(new AuthenticationFilter());
+
+    assertSame("Chain should be the same instance on every call",
+        route.getFilterChain(), route.getFilterChain());
+    assertEquals("Chain should have 1 filter", 1, route.getFilterChain().size());
+    assertEquals("Route should have 1 filter", 1, route.getFilters().size());
+  }
+
   /**
    * Tests that builder throws exception when required fields are missing.
    */
@@ -87,6 +111,7 @@ public class RouteBuilderTest {
 
     assertTrue("Should match exact path", route.matches("/api/users"));
     assertTrue("Should match subpaths", route.matches("/api/users/123"));
+    assertFalse("Should not match partial segments", route.matches("/api/users-v2"));
   }
 
   /**
@@ -120,6 +145,52 @@ public class RouteBuilderTest {
         .build();
 
     assertEquals("Default timeout should be 5000ms", 5000, route.getTimeout());
-    assertEquals("Default rate limit should be 100", 100, route.getRateLimit());
+    assertEquals("Default rate limit should be off", 0, route.getRateLimit());
+    assertNull("Unlimited route should have no admission limiter",
+        route.getAdmissionLimiter());
+  }
+
+  /**
+   * Tests a route with weighted targets and its own balancer.
+   */
+  @Test
+  public void testMultipleTargets() {
+    LeastOutstandingBalancer balancer = new LeastOutstandingBalancer();
+    Route route = Route.builder("/api/data")
+        .addTarget("http://10.0.0.1:8081/data", 2)
+        .addTarget("http://10.0.0.2:8081/data", 1)
+        .balancer(balancer)
+        .build();
+
+    assertEquals("Should have 2 targets", 2, route.getUpstreams().size());
+    assertEquals("Weight should be kept", 2, route.getUpstreams().get(0).getWeight());
+    assertEquals("Target URL should be the first target", "http://10.0.0.1:8081/data",
+        route.getTargetUrl());
+    assertSame("Balancer should be set", balancer, route.getBalancer());
+
+    Route single = Route.builder("/api/test").targetUrl("http://localhost:8081/test").build();
+    assertSame("A single target should be chosen without the balancer",
+        single.getUpstreams().get(0), single.chooseUpstream(new GatewayRequest()));
+  }
+
+  /**
+   * Tests that targetUrl and addTarget cannot be mixed.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testTargetUrlAndTargetsRejected() {
+    Route.builder("/api/data")
+        .targetUrl("http://10.0.0.1:8081/data")
+        .addTarget("http://10.0.0.2:8081/data", 1)
+        .build();
+  }
+
+  /**
+   * Tests that a target needs a positive weight.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testZeroWeightRejected() {
+    Route.builder("/api/data")
+        .addTarget("http://10.0.0.1:8081/data", 0)
+        .build();
   }
 }
@@ -0,0 +1,109 @@
+package edu.bu.met.cs665.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+
+public class RouteIndexTest {
+
+  private static Route route(String pathPattern) {
+    return Route.builder(pathPattern)
+        .targetUrl("http://localhost:8081" + pathPattern)
+        .build();
+  }
+
+  /**
+   * Tests that the longest matching pattern wins regardless of registration order.
+   */
+  @Test
+  public void testLongestPrefixWins() {
+    Route api = route("/api");
+    Route data = route("/api/data");
+    Route dataV2 = route("/api/data-v2");
+
+    RouteIndex index = RouteIndex.build(Arrays.asList(api, data, dataV2));
+
+    assertSame("Should pick /api/data", data, index.find("/api/data/1"));
+    assertSame("Should pick /api/data-v2", dataV2, index.find("/api/data-v2"));
+    assertSame("Should fall back to /api", api, index.find("/api/users"));
+
+    RouteIndex reversed = RouteIndex.build(Arrays.asList(dataV2, data, api));
+    assertSame("Order should not matter", data, reversed.find("/api/data/1"));
+  }
+
+  /**
+   * Tests that patterns only match on whole path segments.
+   */
+  @Test
+  public void testMatchesOnSegmentBoundary() {
+    Route data = route("/api/data");
+    RouteIndex index = RouteIndex.build(Collections.singletonList(data));
+
+    assertSame("Exact path should match", data, index.find("/api/data"));
+    assertSame("Trailing slash should match", data, index.find("/api/data/"));
+    assertNull("Partial segment should not match", index.find("/api/database"));
+    assertNull("Shorter path should not match", index.find("/api"));
+  }
+
+  /**
+   * Tests that the first route registered for a pattern is kept.
+   */
+  @Test
+  public void testDuplicatePatternKeepsFirst() {
+    Route first = route("/api/users");
+    Route second = route("/api/users/");
+
+    RouteIndex index = RouteIndex.build(Arrays.asList(first, second));
+
+    assertSame("First registration should win", first, index.find("/api/users/7"));
+  }
+
+  /**
+   * Tests a root pattern acting as catch-all.
+   */
+  @Test
+  public void testRootPatternIsCatchAll() {
+    Route root = route("/");
+    Route api = route("/api");
+    RouteIndex index = RouteIndex.build(Arrays.asList(root, api));
+
+    assertSame("Root should catch unknown paths", root, index.find("/other"));
+    assertSame("Longer pattern should still win", api, index.find("/api/x"));
+  }
+
+  /**
+   * Tests lookups against an index with many sibling routes.
+   */
+  @Test
+  public void testManyRoutes() {
+    List<Route> routes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      routes.add(route("/api/service-" + i));
+    }
+    RouteIndex index = RouteIndex.build(routes);
+
+    assertEquals("Index size should match", 1000, index.size());
+    for (int i = 0; i < 1000; i++) {
+      assertSame("Should find service " + i, routes.get(i),
+          index.find("/api/service-" + i + "/items"));
+    }
+    assertNull("Unknown service should not match", index.find("/api/service-1000"));
+  }
+
+  /**
+   * Tests the empty index.
+   */
+  @Test
+  public void testEmptyIndex() {
+    assertNull("Empty index should match nothing", RouteIndex.empty().find("/api"));
+    assertEquals("Empty index size should be 0", 0,
+        RouteIndex.build(new ArrayList<>()).size());
+  }
+}
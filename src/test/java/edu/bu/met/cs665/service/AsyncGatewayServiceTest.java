@@ -0,0 +1,295 @@
+package edu.bu.met.cs665.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
+import edu.bu.met.cs665.metrics.GatewayMetrics;
+import edu.bu.met.cs665.model.GatewayRequest;
+import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.pool.AsyncHttpClientPool;
+import edu.bu.met.cs665.pool.HttpClientPool;
+import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.trace.InMemorySpanExporter;
+import edu.bu.met.cs665.trace.Tracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class AsyncGatewayServiceTest {
+
+  private GatewayService gatewayService;
+  private HttpServer backend;
+  private ExecutorService backendThreads;
+
+  /**
+   * Sets up a gateway with a non-blocking client and a backend that answers
+   * after the delay given in the path, e.g. /delay/200.
+   */
+  @Before
+  public void setUp() throws IOException {
+    gatewayService = new GatewayService(new HttpClientPool(2, 5),
+        new AsyncHttpClientPool(100, 100, 1, 5));
+
+    backendThreads = Executors.newCachedThreadPool();
+    backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.setExecutor(backendThreads);
+    backend.createContext("/", exchange -> {
+      String path = exchange.getRequestURI().getPath();
+      try {
+        Thread.sleep(Long.parseLong(path.substring(path.lastIndexOf('/') + 1)));
+        byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("X-Backend", "stub");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    backend.start();
+  }
+
+  /**
+   * Cleans up after tests.
+   */
+  @After
+  public void tearDown() {
+    gatewayService.shutdown();
+    backend.stop(0);
+    backendThreads.shutdownNow();
+  }
+
+  private String backendUrl(long delayMillis) {
+    return "http://127.0.0.1:" + backend.getAddress().getPort() + "/delay/" + delayMillis;
+  }
+
+  private static GatewayRequest getRequest(String path) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    return request;
+  }
+
+  /**
+   * Tests that a request is forwarded and the post-filters run on the response.
+   */
+  @Test
+  public void testAsyncForwarding() {
+    gatewayService.registerRoute(Route.builder("/api/fast")
+        .targetUrl(backendUrl(0))
+        .build());
+
+    GatewayResponse response = gatewayService.processRequestAsync(getRequest("/api/fast")).join();
+
+    assertEquals("Should return 200", 200, response.getStatusCode());
+    assertEquals("Body should be buffered", "ok", response.getBody());
+    // The stub server normalizes header names to "X-backend"
+    assertTrue("Backend headers should be copied", response.getHeaders().entrySet().stream()
+        .anyMatch(h -> h.getKey().equalsIgnoreCase("X-Backend") && "stub".equals(h.getValue())));
+  }
+
+  /**
+   * Tests that a gzip reply is decoded, as on the blocking path, rather than
+   * passed on as text with its Content-Encoding.
+   */
+  @Test
+  public void testGzipResponseDecoded() {
+    backend.createContext("/gzip", exchange -> {
+      String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      System.err.println("DBG2 " + exchange.getRequestHeaders().entrySet());
+      byte[] body = "{\"hello\":\"world\"}".getBytes(StandardCharsets.UTF_8);
+      if (accepted != null && accepted.contains("gzip")) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+          gzip.write(body);
+        }
+        body = compressed.toByteArray();
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      }
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    gatewayService.registerRoute(Route.builder("/api/gzip")
+        .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/gzip")
+        .build());
+    GatewayRequest request = getRequest("/api/gzip");
+    request.addHeader("Accept-Encoding", "gzip, br");
+
+    GatewayResponse response = gatewayService.processRequestAsync(request).join();
+
+    System.err.println("DBG " + response.getBody() + " " + response.getHeaders());
+    assertEquals("Body should be decoded", "{\"hello\":\"world\"}", response.getBody());
+    assertFalse("Content-Encoding should not be passed on", response.getHeaders().keySet()
+        .stream().anyMatch(name -> name.equalsIgnoreCase("Content-Encoding")));
+  }
+
+  /**
+   * Tests that a runtime failure while reading the backend response still
+   * completes the request and gives the target its in-flight slot back.
+   */
+  @Test
+  public void testCallbackFailureCompletes() throws Exception {
+    gatewayService.setMetrics(new GatewayMetrics(new SimpleMeterRegistry()) {
+      @Override
+      public void recordUpstreamStatus(Route route, int status) {
+        throw new IllegalStateException("metrics failed");
+      }
+    });
+    Route route = Route.builder("/api/fast")
+        .targetUrl(backendUrl(0))
+        .build();
+    gatewayService.registerRoute(route);
+
+    GatewayResponse response = gatewayService.processRequestAsync(getRequest("/api/fast"))
+        .get(5, TimeUnit.SECONDS);
+
+    assertEquals("Should report an upstream failure", 502, response.getStatusCode());
+    assertEquals("Target should not stay in flight", 0,
+        route.getUpstreams().get(0).getInFlight());
+  }
+
+  /**
+   * Tests that many slow requests are in flight at once on a single I/O thread.
+   */
+  @Test
+  public void testManySlowRequestsInFlight() {
+    gatewayService.registerRoute(Route.builder("/api/slow")
+        .targetUrl(backendUrl(500))
+        .timeout(5000)
+        .build());
+
+    long start = System.nanoTime();
+    List<CompletableFuture<GatewayResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(gatewayService.processRequestAsync(getRequest("/api/slow")));
+    }
+    assertFalse("Calls should return before the backend answers", futures.get(0).isDone());
+
+    for (CompletableFuture<GatewayResponse> future : futures) {
+      assertEquals("Should return 200", 200, future.join().getStatusCode());
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("Requests should overlap, took " + elapsedMillis + " ms", elapsedMillis < 5000);
+  }
+
+  /**
+   * Tests that the route timeout completes the future with 504.
+   */
+  @Test
+  public void testAsyncTimeout() {
+    gatewayService.registerRoute(Route.builder("/api/late")
+        .targetUrl(backendUrl(2000))
+        .timeout(300)
+        .build());
+
+    long start = System.nanoTime();
+    GatewayResponse response = gatewayService.processRequestAsync(getRequest("/api/late")).join();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals("Should return 504", 504, response.getStatusCode());
+    assertTrue("Should give up near the deadline, took " + elapsedMillis + " ms",
+        elapsedMillis < 1500);
+  }
+
+  /**
+   * Tests that requests rejected by pre-filters complete immediately.
+   */
+  @Test
+  public void testBlockedRequestCompletesImmediately() {
+    gatewayService.registerRoute(Route.builder("/api/secure")
+        .targetUrl(backendUrl(0))
+        .addFilter(new AuthenticationFilter())
+        .build());
+
+    CompletableFuture<GatewayResponse> future =
+        gatewayService.processRequestAsync(getRequest("/api/secure"));
+
+    assertTrue("Future should already be complete", future.isDone());
+    assertEquals("Should return 403", 403, future.join().getStatusCode());
+  }
+
+  /**
+   * Tests that streaming routes use the blocking path and hand back the stream.
+   */
+  @Test
+  public void testStreamingRouteUsesBlockingPath() {
+    gatewayService.registerRoute(Route.builder("/api/stream")
+        .targetUrl(backendUrl(0))
+        .streamResponse(true)
+        .build());
+
+    CompletableFuture<GatewayResponse> future =
+        gatewayService.processRequestAsync(getRequest("/api/stream"));
+
+    assertTrue("Future should already be complete", future.isDone());
+    GatewayResponse response = future.join();
+    assertTrue("Body should be streamed", response.isStreaming());
+    response.getStreamingBody().close();
+  }
+
+  /**
+   * Tests that a request falling back to the blocking path is routed, and
+   * traced as routed, once.
+   */
+  @Test
+  public void testBlockingFallbackTracesRouteOnce() {
+    InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+    gatewayService.setTracer(Tracer.builder(exporter).sampleRate(1.0).build());
+    gatewayService.registerRoute(Route.builder("/api/stream")
+        .targetUrl(backendUrl(0))
+        .streamResponse(true)
+        .build());
+
+    GatewayResponse response = gatewayService.processRequestAsync(getRequest("/api/stream"))
+        .join();
+    response.getStreamingBody().close();
+
+    assertEquals("The trace should be exported", 1, exporter.getTraces().size());
+    long routeSpans = exporter.getTraces().get(0).getSpans().stream()
+        .filter(span -> GatewayService.ROUTE_SPAN.equals(span.getName()))
+        .count();
+    assertEquals("Route lookup should be traced once", 1, routeSpans);
+  }
+
+  /**
+   * Tests that coalesced followers attach to the leader's call without blocking.
+   */
+  @Test
+  public void testAsyncCoalescing() {
+    gatewayService.registerRoute(Route.builder("/api/hot")
+        .targetUrl(backendUrl(300))
+        .coalesce(true)
+        .build());
+
+    List<CompletableFuture<GatewayResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(gatewayService.processRequestAsync(getRequest("/api/hot")));
+    }
+    for (CompletableFuture<GatewayResponse> future : futures) {
+      assertEquals("Should carry the shared body", "ok", future.join().getBody());
+    }
+    assertEquals("One request should lead", 1, gatewayService.getCoalescer().getLeaderCount());
+    assertEquals("Nine requests should follow", 9,
+        gatewayService.getCoalescer().getFollowerCount());
+  }
+}
@@ -1,12 +1,55 @@
 package edu.bu.met.cs665.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import com.sun.net.httpserver.HttpServer;
+import edu.bu.met.cs665.accesslog.AccessLog;
+import edu.bu.met.cs665.balancer.Upstream;
+import edu.bu.met.cs665.cache.MappedResponseStore;
+import edu.bu.met.cs665.cache.ResponseCache;
+import edu.bu.met.cs665.filter.Filter;
+import edu.bu.met.cs665.filter.impl.AuthenticationFilter;
 import edu.bu.met.cs665.filter.impl.LoggingFilter;
 import edu.bu.met.cs665.model.GatewayRequest;
 import edu.bu.met.cs665.model.GatewayResponse;
+import edu.bu.met.cs665.model.StreamingBody;
+import edu.bu.met.cs665.ratelimit.GcraRateLimiter;
 import edu.bu.met.cs665.route.Route;
+import edu.bu.met.cs665.trace.InMemorySpanExporter;
+import edu.bu.met.cs665.trace.Span;
+import edu.bu.met.cs665.trace.TraceContext;
+import edu.bu.met.cs665.trace.Tracer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -67,6 +110,33 @@ public class GatewayServiceTest {
     assertEquals("Should have 2 routes", 2, gatewayService.getRoutes().size());
   }
 
+  /**
+   * Tests that route lookup picks the longest matching pattern.
+   */
+  @Test
+  public void testFindRouteLongestPrefix() {
+    Route data = Route.builder("/api/data")
+        .targetUrl("http://localhost:8081/data")
+        .build();
+    Route dataV2 = Route.builder("/api/data-v2")
+        .targetUrl("http://localhost:8081/data-v2")
+        .build();
+    Route api = Route.builder("/api")
+        .targetUrl("http://localhost:8081/api")
+        .build();
+
+    gatewayService.registerRoute(api);
+    gatewayService.registerRoute(data);
+    gatewayService.registerRoute(dataV2);
+
+    assertSame("Should match /api/data-v2", dataV2,
+        gatewayService.findRoute("/api/data-v2/1"));
+    assertSame("Should match /api/data", data,
+        gatewayService.findRoute("/api/data/1"));
+    assertSame("Should fall back to /api", api,
+        gatewayService.findRoute("/api/other"));
+  }
+
   /**
    * Tests request processing with no matching route.
    */
@@ -125,4 +195,934 @@ public class GatewayServiceTest {
     gatewayService.shutdown();
     assertNotNull("Service should still be accessible", gatewayService);
   }
+
+  /**
+   * Tests that a request whose budget is already spent gets 504 without using the pool.
+   */
+  @Test
+  public void testExpiredBudgetRejectedBeforeLease() {
+    Route route = Route.builder("/api/slow")
+        .targetUrl("http://localhost:1/never-called")
+        .timeout(100)
+        .build();
+    gatewayService.registerRoute(route);
+
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/slow");
+    request.setStartNanos(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+
+    GatewayResponse response = gatewayService.processRequest(request);
+
+    assertEquals("Should return 504", 504, response.getStatusCode());
+    assertEquals("No client should have been leased",
+        10, gatewayService.getClientPool().getAvailableCount());
+  }
+
+  /**
+   * Tests that a slow backend is cut off at the route timeout and the
+   * remaining budget is sent upstream.
+   */
+  @Test
+  public void testRouteTimeoutEnforced() throws IOException {
+    AtomicReference<String> budgetHeader = new AtomicReference<>();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      budgetHeader.set(exchange.getRequestHeaders().getFirst(GatewayService.TIMEOUT_HEADER));
+      try {
+        Thread.sleep(2000);
+        byte[] body = "late".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    backend.start();
+
+    try {
+      Route route = Route.builder("/api/slow")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/slow")
+          .timeout(300)
+          .build();
+      gatewayService.registerRoute(route);
+
+      GatewayRequest request = new GatewayRequest();
+      request.setMethod("GET");
+      request.setPath("/api/slow");
+
+      long start = System.nanoTime();
+      GatewayResponse response = gatewayService.processRequest(request);
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      assertEquals("Should return 504", 504, response.getStatusCode());
+      assertTrue("Should give up near the 300 ms budget, took " + elapsedMs,
+          elapsedMs < 1500);
+      assertNotNull("Remaining budget should be sent upstream", budgetHeader.get());
+      assertTrue("Remaining budget should not exceed the route timeout",
+          Integer.parseInt(budgetHeader.get()) <= 300);
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a streaming route copies the backend body without buffering it
+   * and keeps the client leased until the body is closed.
+   */
+  @Test
+  public void testStreamingResponse() throws IOException {
+    byte[] payload = new byte[256 * 1024];
+    new Random(7).nextBytes(payload);
+
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+      exchange.sendResponseHeaders(200, payload.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(payload);
+      }
+    });
+    backend.start();
+
+    try {
+      Route route = Route.builder("/api/data")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/data")
+          .addFilter(new LoggingFilter())
+          .streamResponse(true)
+          .build();
+      gatewayService.registerRoute(route);
+
+      GatewayRequest request = new GatewayRequest();
+      request.setMethod("GET");
+      request.setPath("/api/data");
+
+      GatewayResponse response = gatewayService.processRequest(request);
+
+      assertEquals("Should return 200", 200, response.getStatusCode());
+      assertNull("Body should not be buffered", response.getBody());
+      assertTrue("Response should be streaming", response.isStreaming());
+      assertTrue("Content type should be copied from the backend",
+          response.getHeaders().entrySet().stream().anyMatch(header ->
+              header.getKey().equalsIgnoreCase("Content-Type")
+                  && header.getValue().equals("application/octet-stream")));
+      assertEquals("Client should stay leased while streaming",
+          1, gatewayService.getClientPool().getInUseCount());
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (StreamingBody body = response.getStreamingBody()) {
+        assertEquals("Length should be known", payload.length, body.getContentLength());
+        body.writeTo(out);
+      }
+
+      assertArrayEquals("Streamed body should match", payload, out.toByteArray());
+      assertEquals("Client should be released after close",
+          0, gatewayService.getClientPool().getInUseCount());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Starts a local backend that answers with the number of request body
+   * bytes it received.
+   */
+  private static HttpServer startCountingBackend() throws IOException {
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      long received = 0;
+      byte[] buffer = new byte[8192];
+      try (InputStream in = exchange.getRequestBody()) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          received += read;
+        }
+      }
+      byte[] body = String.valueOf(received).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+    return backend;
+  }
+
+  private static GatewayRequest postRequest(String path, byte[] body, long contentLength) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("POST");
+    request.setPath(path);
+    request.setBodyStream(new ByteArrayInputStream(body), contentLength);
+    return request;
+  }
+
+  /**
+   * Tests that a streaming route forwards the body without buffering it.
+   */
+  @Test
+  public void testStreamingRequestBody() throws IOException {
+    HttpServer backend = startCountingBackend();
+    try {
+      gatewayService.registerRoute(Route.builder("/api/upload")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/upload")
+          .streamRequest(true)
+          .maxBodySize(100_000)
+          .build());
+
+      GatewayRequest request = postRequest("/api/upload", new byte[64_000], -1);
+      GatewayResponse response = gatewayService.processRequest(request);
+
+      assertEquals("Should return 200", 200, response.getStatusCode());
+      assertEquals("Backend should receive the whole body", "64000", response.getBody());
+      assertNull("Body should never be held as a String", request.getBody());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that bodies over the route limit are rejected with 413, both when
+   * the length is declared and when it only shows up while streaming.
+   */
+  @Test
+  public void testRequestBodyTooLarge() throws IOException {
+    HttpServer backend = startCountingBackend();
+    try {
+      gatewayService.registerRoute(Route.builder("/api/upload")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/upload")
+          .streamRequest(true)
+          .maxBodySize(1000)
+          .build());
+      gatewayService.registerRoute(Route.builder("/api/buffered")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/buffered")
+          .maxBodySize(1000)
+          .build());
+
+      GatewayResponse declared = gatewayService.processRequest(
+          postRequest("/api/upload", new byte[5000], 5000));
+      assertEquals("Declared length should be rejected", 413, declared.getStatusCode());
+      assertEquals("No client should have been leased",
+          10, gatewayService.getClientPool().getAvailableCount());
+
+      GatewayResponse chunked = gatewayService.processRequest(
+          postRequest("/api/upload", new byte[5000], -1));
+      assertEquals("Streamed body should be cut off", 413, chunked.getStatusCode());
+
+      GatewayResponse buffered = gatewayService.processRequest(
+          postRequest("/api/buffered", new byte[5000], -1));
+      assertEquals("Buffered body should be rejected", 413, buffered.getStatusCode());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a streaming route spools the body when a filter reads it,
+   * and removes the temp file afterwards.
+   */
+  @Test
+  public void testRequestBodySpooledForInspectingFilter() throws IOException {
+    AtomicReference<Path> spooled = new AtomicReference<>();
+    AtomicReference<String> seen = new AtomicReference<>();
+    Filter inspector = new Filter() {
+      @Override
+      public boolean preProcess(GatewayRequest request) {
+        spooled.set(request.getBodyFile());
+        try (InputStream in = request.openBody()) {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          byte[] buffer = new byte[1024];
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+          }
+          seen.set(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+          return false;
+        }
+        return true;
+      }
+
+      @Override
+      public void postProcess(GatewayRequest request, GatewayResponse response) {
+      }
+
+      @Override
+      public boolean requiresRequestBody() {
+        return true;
+      }
+
+      @Override
+      public String getName() {
+        return "InspectingFilter";
+      }
+    };
+
+    HttpServer backend = startCountingBackend();
+    try {
+      gatewayService.registerRoute(Route.builder("/api/upload")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/upload")
+          .addFilter(inspector)
+          .streamRequest(true)
+          .build());
+
+      byte[] body = "{\"name\":\"gateway\"}".getBytes(StandardCharsets.UTF_8);
+      GatewayResponse response = gatewayService.processRequest(
+          postRequest("/api/upload", body, body.length));
+
+      assertEquals("Should return 200", 200, response.getStatusCode());
+      assertEquals("Filter should read the body", "{\"name\":\"gateway\"}", seen.get());
+      assertEquals("Backend should still receive the body",
+          String.valueOf(body.length), response.getBody());
+      assertNotNull("Body should have been spooled", spooled.get());
+      assertTrue("Temp file should be deleted", !Files.exists(spooled.get()));
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  private static GatewayRequest getRequest(String path) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath(path);
+    return request;
+  }
+
+  /**
+   * Tests that the route-wide rate limit sheds requests with 429 before
+   * they reach the filters or the backend.
+   */
+  @Test
+  public void testRouteRateLimitEnforced() throws IOException {
+    HttpServer backend = startCountingBackend();
+    try {
+      CountingFilter counter = new CountingFilter();
+      gatewayService.registerRoute(Route.builder("/api/limited")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/limited")
+          .addFilter(counter)
+          .rateLimit(2)
+          .build());
+
+      assertEquals("First request should pass", 200,
+          gatewayService.processRequest(getRequest("/api/limited")).getStatusCode());
+      assertEquals("Second request should pass", 200,
+          gatewayService.processRequest(getRequest("/api/limited")).getStatusCode());
+
+      GatewayResponse shed = gatewayService.processRequest(getRequest("/api/limited"));
+      assertEquals("Third request should be shed", 429, shed.getStatusCode());
+      assertEquals("Scope should be route", "route",
+          shed.getHeaders().get(GatewayService.RATE_LIMIT_SCOPE_HEADER));
+      assertEquals("Shed request should not reach the filters", 2, counter.calls);
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that the global limit is checked first and that a request shed
+   * by its route does not use up a global permit.
+   */
+  @Test
+  public void testGlobalAndRouteLimitsCompose() throws IOException {
+    HttpServer backend = startCountingBackend();
+    try {
+      String target = "http://127.0.0.1:" + backend.getAddress().getPort() + "/";
+      gatewayService.setGlobalLimiter(new GcraRateLimiter(3, 1, TimeUnit.MINUTES));
+      gatewayService.registerRoute(Route.builder("/api/a").targetUrl(target).rateLimit(1).build());
+      gatewayService.registerRoute(Route.builder("/api/b").targetUrl(target).rateLimit(0).build());
+
+      assertEquals("A should pass", 200,
+          gatewayService.processRequest(getRequest("/api/a")).getStatusCode());
+      assertEquals("A should hit its route limit", "route", gatewayService
+          .processRequest(getRequest("/api/a")).getHeaders()
+          .get(GatewayService.RATE_LIMIT_SCOPE_HEADER));
+      assertEquals("B should pass", 200,
+          gatewayService.processRequest(getRequest("/api/b")).getStatusCode());
+      assertEquals("B should pass on the refunded permit", 200,
+          gatewayService.processRequest(getRequest("/api/b")).getStatusCode());
+
+      GatewayResponse shed = gatewayService.processRequest(getRequest("/api/b"));
+      assertEquals("Global limit should now be spent", 429, shed.getStatusCode());
+      assertEquals("Scope should be global", "global",
+          shed.getHeaders().get(GatewayService.RATE_LIMIT_SCOPE_HEADER));
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a request blocked by a filter gives its route permit back.
+   */
+  @Test
+  public void testBlockedRequestReleasesRoutePermit() throws IOException {
+    HttpServer backend = startCountingBackend();
+    try {
+      gatewayService.registerRoute(Route.builder("/api/secure")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/secure")
+          .addFilter(new AuthenticationFilter())
+          .rateLimit(1)
+          .build());
+
+      assertEquals("Unauthenticated request should be blocked", 403,
+          gatewayService.processRequest(getRequest("/api/secure")).getStatusCode());
+
+      GatewayRequest request = getRequest("/api/secure");
+      request.addHeader("Authorization", "Bearer token-123");
+      assertEquals("Authenticated request should still get the permit", 200,
+          gatewayService.processRequest(request).getStatusCode());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that requests served without an upstream call of their own, from
+   * the cache or by a coalesced call, give their route permit back.
+   */
+  @Test
+  public void testServedWithoutUpstreamCallReleasesPermit() throws Exception {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = startSlowBackend(backendCalls, 300);
+    try {
+      String target = "http://127.0.0.1:" + backend.getAddress().getPort() + "/";
+      gatewayService.registerRoute(Route.builder("/api/cached")
+          .targetUrl(target)
+          .cacheable(true)
+          .cacheTtl(60_000)
+          .rateLimit(2)
+          .build());
+      gatewayService.registerRoute(Route.builder("/api/hot")
+          .targetUrl(target)
+          .coalesce(true)
+          .rateLimit(3)
+          .build());
+
+      for (int i = 0; i < 4; i++) {
+        assertEquals("Cache hits should not use up the permits", 200,
+            gatewayService.processRequest(getRequest("/api/cached")).getStatusCode());
+      }
+
+      for (GatewayResponse response : fireConcurrently("/api/hot", 3)) {
+        assertEquals("Should return 200", 200, response.getStatusCode());
+      }
+      assertEquals("Followers should have given their permits back", 200,
+          gatewayService.processRequest(getRequest("/api/hot")).getStatusCode());
+      assertEquals("Backend should see the miss and the two leaders", 3, backendCalls.get());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that responses that never reach the post-filters, an unmatched
+   * path and a request blocked by a filter, are still access logged.
+   */
+  @Test
+  public void testAccessLogRecordsRejections() {
+    List<String> records = Collections.synchronizedList(new ArrayList<>());
+    AccessLog accessLog = AccessLog.builder(
+        record -> records.add(record.getPath() + " " + record.getStatus())).build();
+    gatewayService.setAccessLog(accessLog);
+    gatewayService.registerRoute(Route.builder("/api/secure")
+        .targetUrl("http://127.0.0.1:1/secure")
+        .addFilter(new AuthenticationFilter())
+        .build());
+
+    assertEquals("Unmatched path should be not found", 404,
+        gatewayService.processRequest(getRequest("/missing")).getStatusCode());
+    assertEquals("Unauthenticated request should be blocked", 403,
+        gatewayService.processRequest(getRequest("/api/secure")).getStatusCode());
+    accessLog.close();
+
+    assertEquals("Both responses should be recorded",
+        Arrays.asList("/missing 404", "/api/secure 403"), records);
+  }
+
+  /**
+   * Tests that repeated GETs on a cacheable route are served from the cache,
+   * each with its own post-filter pass.
+   */
+  @Test
+  public void testCacheableRouteServesRepeatGets() throws IOException {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      backendCalls.incrementAndGet();
+      byte[] body = "cached".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+
+    try {
+      CountingFilter counter = new CountingFilter();
+      gatewayService.registerRoute(Route.builder("/api/cached")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/cached")
+          .addFilter(counter)
+          .cacheable(true)
+          .build());
+
+      GatewayResponse first = gatewayService.processRequest(getRequest("/api/cached"));
+      GatewayResponse second = gatewayService.processRequest(getRequest("/api/cached"));
+      GatewayResponse third = gatewayService.processRequest(getRequest("/api/cached"));
+
+      assertEquals("Backend should be called once", 1, backendCalls.get());
+      assertEquals("First should miss", "MISS",
+          first.getHeaders().get(GatewayService.CACHE_STATUS_HEADER));
+      assertEquals("Second should hit", "HIT",
+          second.getHeaders().get(GatewayService.CACHE_STATUS_HEADER));
+      assertEquals("Hit should carry the body", "cached", third.getBody());
+      assertEquals("Every response should get its post-filter pass", 3, counter.postCalls);
+      assertEquals("Post-filters should not leak into the cache", "1",
+          third.getHeaders().get("X-Post-Count"));
+      assertEquals("Cache should count the hits", 2,
+          gatewayService.getResponseCache().getHitCount());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a response to one token holder is never served to another:
+   * a route that does not key on Authorization does not store it, and a
+   * route that does keeps one entry per token.
+   */
+  @Test
+  public void testAuthorizedResponsesNotShared() throws IOException {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      backendCalls.incrementAndGet();
+      byte[] body = String.valueOf(exchange.getRequestHeaders().getFirst("Authorization"))
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+
+    try {
+      String target = "http://127.0.0.1:" + backend.getAddress().getPort() + "/user";
+      gatewayService.registerRoute(Route.builder("/api/shared")
+          .targetUrl(target)
+          .cacheable(true)
+          .build());
+      gatewayService.registerRoute(Route.builder("/api/per-token")
+          .targetUrl(target)
+          .cacheable(true)
+          .addVaryHeader("Authorization")
+          .build());
+
+      gatewayService.processRequest(authorizedRequest("/api/shared", "Bearer a"));
+      GatewayResponse other = gatewayService.processRequest(
+          authorizedRequest("/api/shared", "Bearer b"));
+      assertEquals("Other token should get its own response", "Bearer b", other.getBody());
+      assertEquals("Authorized response should not be stored", 2, backendCalls.get());
+
+      gatewayService.processRequest(authorizedRequest("/api/per-token", "Bearer a"));
+      GatewayResponse second = gatewayService.processRequest(
+          authorizedRequest("/api/per-token", "Bearer b"));
+      GatewayResponse repeat = gatewayService.processRequest(
+          authorizedRequest("/api/per-token", "Bearer a"));
+      assertEquals("Second token should miss", "Bearer b", second.getBody());
+      assertEquals("Same token should hit its own entry", "HIT",
+          repeat.getHeaders().get(GatewayService.CACHE_STATUS_HEADER));
+      assertEquals("Hit should be the token's own response", "Bearer a", repeat.getBody());
+      assertEquals("Each token should cost one call", 4, backendCalls.get());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  private static GatewayRequest authorizedRequest(String path, String authorization) {
+    GatewayRequest request = getRequest(path);
+    request.addHeader("Authorization", authorization);
+    return request;
+  }
+
+  /**
+   * Tests that an entry evicted from the heap cache is served from the
+   * off-heap store, with the body streamed from the mapped segment.
+   */
+  @Test
+  public void testEvictedEntryServedOffHeap() throws IOException {
+    AtomicInteger backendCalls = new AtomicInteger();
+    StringBuilder large = new StringBuilder();
+    while (large.length() < 4000) {
+      large.append("{\"id\":").append(large.length()).append('}');
+    }
+    String payload = large.toString();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      backendCalls.incrementAndGet();
+      byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+
+    Path directory = Files.createTempDirectory("gateway-off-heap-test");
+    MappedResponseStore store = MappedResponseStore.builder(directory)
+        .segmentBytes(64 * 1024)
+        .minBodyBytes(1024)
+        .build();
+    try {
+      // Too small to hold the body, so every entry goes straight to the store
+      gatewayService.setResponseCache(new ResponseCache(1024));
+      gatewayService.setOffHeapStore(store);
+      gatewayService.registerRoute(Route.builder("/api/large")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/large")
+          .cacheable(true)
+          .build());
+
+      GatewayResponse first = gatewayService.processRequest(getRequest("/api/large"));
+      GatewayResponse second = gatewayService.processRequest(getRequest("/api/large"));
+
+      assertEquals("Backend should be called once", 1, backendCalls.get());
+      assertEquals("First should carry the body", payload, first.getBody());
+      assertEquals("Second should hit", "HIT",
+          second.getHeaders().get(GatewayService.CACHE_STATUS_HEADER));
+      assertTrue("Hit should be streamed from the segment", second.isStreaming());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      second.getStreamingBody().writeTo(out);
+      assertEquals("Streamed body should match", payload,
+          new String(out.toByteArray(), StandardCharsets.UTF_8));
+      assertEquals("Store should count the hit", 1, store.getHitCount());
+    } finally {
+      backend.stop(0);
+      store.close();
+      try (Stream<Path> files = Files.list(directory)) {
+        files.forEach(file -> file.toFile().delete());
+      }
+      Files.delete(directory);
+    }
+  }
+
+  private static HttpServer startSlowBackend(AtomicInteger calls, long delayMillis)
+      throws IOException {
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.setExecutor(Executors.newCachedThreadPool());
+    backend.createContext("/", exchange -> {
+      calls.incrementAndGet();
+      try {
+        Thread.sleep(delayMillis);
+        byte[] body = "shared".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    backend.start();
+    return backend;
+  }
+
+  private List<GatewayResponse> fireConcurrently(String path, int requests)
+      throws InterruptedException, ExecutionException {
+    return fireConcurrently(requests, i -> getRequest(path));
+  }
+
+  private List<GatewayResponse> fireConcurrently(int requests,
+      IntFunction<GatewayRequest> requestFactory)
+      throws InterruptedException, ExecutionException {
+    ExecutorService clients = Executors.newFixedThreadPool(requests);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<GatewayResponse>> futures = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        GatewayRequest request = requestFactory.apply(i);
+        futures.add(clients.submit(() -> {
+          start.await();
+          return gatewayService.processRequest(request);
+        }));
+      }
+      start.countDown();
+      List<GatewayResponse> responses = new ArrayList<>();
+      for (Future<GatewayResponse> future : futures) {
+        responses.add(future.get());
+      }
+      return responses;
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that identical concurrent GETs share one upstream call, and that
+   * each request still gets its own post-filter pass.
+   */
+  @Test
+  public void testConcurrentGetsCoalesced() throws Exception {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = startSlowBackend(backendCalls, 500);
+    try {
+      gatewayService.registerRoute(Route.builder("/api/hot")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/hot")
+          .addFilter(new CountingFilter())
+          .coalesce(true)
+          .build());
+
+      List<GatewayResponse> responses = fireConcurrently("/api/hot", 8);
+
+      assertEquals("Backend should be called once", 1, backendCalls.get());
+      for (GatewayResponse response : responses) {
+        assertEquals("Should return 200", 200, response.getStatusCode());
+        assertEquals("Should carry the shared body", "shared", response.getBody());
+        assertEquals("Post-filters should run once per response", "1",
+            response.getHeaders().get("X-Post-Count"));
+      }
+      assertEquals("Seven requests should follow", 7,
+          gatewayService.getCoalescer().getFollowerCount());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that credentialed requests each make their own upstream call,
+   * and that a private response is not handed to the other waiters.
+   */
+  @Test
+  public void testPersonalResponsesNotCoalesced() throws Exception {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.setExecutor(Executors.newCachedThreadPool());
+    backend.createContext("/", exchange -> {
+      backendCalls.incrementAndGet();
+      try {
+        Thread.sleep(300);
+        String user = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] body = String.valueOf(user).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Cache-Control", "private");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      }
+    });
+    backend.start();
+    try {
+      gatewayService.registerRoute(Route.builder("/api/me")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/me")
+          .coalesce(true)
+          .build());
+
+      List<GatewayResponse> responses = fireConcurrently(4, i -> {
+        GatewayRequest request = getRequest("/api/me");
+        request.addHeader("Authorization", "Bearer user-" + i);
+        return request;
+      });
+      for (int i = 0; i < responses.size(); i++) {
+        assertEquals("Each caller should get its own response", "Bearer user-" + i,
+            responses.get(i).getBody());
+      }
+      assertEquals("Credentialed requests should not share a call", 4, backendCalls.get());
+
+      backendCalls.set(0);
+      List<GatewayResponse> anonymous = fireConcurrently("/api/me", 4);
+      for (GatewayResponse response : anonymous) {
+        assertEquals("Should return 200", 200, response.getStatusCode());
+      }
+      assertEquals("Waiters should retry on their own after a private response", 4,
+          backendCalls.get());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that requests beyond the waiter cap make their own upstream call.
+   */
+  @Test
+  public void testCoalescedWaiterCap() throws Exception {
+    AtomicInteger backendCalls = new AtomicInteger();
+    HttpServer backend = startSlowBackend(backendCalls, 500);
+    try {
+      gatewayService.registerRoute(Route.builder("/api/hot")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/hot")
+          .coalesce(true)
+          .maxCoalescedWaiters(2)
+          .build());
+
+      List<GatewayResponse> responses = fireConcurrently("/api/hot", 6);
+
+      for (GatewayResponse response : responses) {
+        assertEquals("Should return 200", 200, response.getStatusCode());
+      }
+      assertEquals("Leader and overflow requests should reach the backend",
+          4, backendCalls.get());
+      assertEquals("Three requests should overflow", 3,
+          gatewayService.getCoalescer().getOverflowCount());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a traced request gets a span per phase, continues the
+   * caller's trace and tells the backend the upstream span is its parent.
+   */
+  @Test
+  public void testTracedRequestPhases() throws IOException {
+    AtomicReference<String> upstreamHeader = new AtomicReference<>();
+    HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    backend.createContext("/", exchange -> {
+      upstreamHeader.set(exchange.getRequestHeaders().getFirst("traceparent"));
+      byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    backend.start();
+
+    InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+    gatewayService.setTracer(Tracer.builder(exporter).sampleRate(1.0).build());
+    try {
+      gatewayService.registerRoute(Route.builder("/api/data")
+          .targetUrl("http://127.0.0.1:" + backend.getAddress().getPort() + "/data")
+          .addFilter(new CountingFilter())
+          .build());
+      GatewayRequest request = getRequest("/api/data");
+      request.addHeader("traceparent",
+          "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+      assertEquals("Should return 200", 200,
+          gatewayService.processRequest(request).getStatusCode());
+    } finally {
+      backend.stop(0);
+    }
+
+    assertEquals("The trace should be exported", 1, exporter.getTraces().size());
+    TraceContext trace = exporter.getTraces().get(0);
+    assertEquals("Caller's trace should be continued",
+        "0af7651916cd43dd8448eb211c80319c", trace.getTraceId());
+    assertEquals("Caller's span should be the parent", "b7ad6b7169203331",
+        trace.getRemoteParentId());
+    assertEquals("Status should be recorded", 200, trace.getStatus());
+
+    String[] phases = {GatewayService.ROUTE_SPAN, GatewayService.PRE_FILTERS_SPAN,
+        GatewayService.POOL_ACQUIRE_SPAN, GatewayService.UPSTREAM_SPAN,
+        GatewayService.POST_FILTERS_SPAN};
+    for (String phase : phases) {
+      Span span = trace.findSpan(phase);
+      assertNotNull("Phase " + phase + " should be traced", span);
+      assertTrue("Phase " + phase + " should have ended", span.isEnded());
+      assertSame("Phase " + phase + " should be under the root", trace.getRoot(),
+          span.getParent());
+    }
+    assertTrue("Root should cover the upstream call", trace.getDurationNanos()
+        >= trace.findSpan(GatewayService.UPSTREAM_SPAN).getDurationNanos());
+
+    String expected = String.format("00-0af7651916cd43dd8448eb211c80319c-%016x-01",
+        trace.findSpan(GatewayService.UPSTREAM_SPAN).getSpanId());
+    assertEquals("Backend should get the upstream span as parent", expected,
+        upstreamHeader.get());
+  }
+
+  /**
+   * Tests that requests are spread over a route's targets by weight, and
+   * that each target's in-flight slot is given back.
+   */
+  @Test
+  public void testRequestsSpreadOverTargets() throws IOException {
+    HttpServer first = startCountingBackend();
+    HttpServer second = startCountingBackend();
+    try {
+      Route route = Route.builder("/api/data")
+          .addTarget("http://127.0.0.1:" + first.getAddress().getPort() + "/data", 2)
+          .addTarget("http://127.0.0.1:" + second.getAddress().getPort() + "/data", 1)
+          .build();
+      gatewayService.registerRoute(route);
+
+      for (int i = 0; i < 6; i++) {
+        assertEquals("Should return 200", 200,
+            gatewayService.processRequest(getRequest("/api/data")).getStatusCode());
+      }
+
+      Upstream heavy = route.getUpstreams().get(0);
+      Upstream light = route.getUpstreams().get(1);
+      assertEquals("Heavier target should get 2 of every 3", 4, heavy.getRequestCount());
+      assertEquals("Lighter target should get 1 of every 3", 2, light.getRequestCount());
+      assertEquals("No request should be left in flight", 0,
+          heavy.getInFlight() + light.getInFlight());
+      assertTrue("Latency should be tracked", light.getEwmaNanos() > 0);
+    } finally {
+      first.stop(0);
+      second.stop(0);
+    }
+  }
+
+  /**
+   * Tests that a target refusing connections is charged the route timeout,
+   * so latency-aware balancing steers away from it.
+   */
+  @Test
+  public void testFailedTargetPenalized() throws IOException {
+    HttpServer backend = startCountingBackend();
+    int deadPort;
+    try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      deadPort = closed.getLocalPort();
+    }
+    try {
+      Route route = Route.builder("/api/data")
+          .addTarget("http://127.0.0.1:" + deadPort + "/data", 1)
+          .addTarget("http://127.0.0.1:" + backend.getAddress().getPort() + "/data", 1)
+          .timeout(2000)
+          .build();
+      gatewayService.registerRoute(route);
+
+      assertEquals("Dead target should fail", 502,
+          gatewayService.processRequest(getRequest("/api/data")).getStatusCode());
+      assertEquals("Live target should answer", 200,
+          gatewayService.processRequest(getRequest("/api/data")).getStatusCode());
+
+      Upstream dead = route.getUpstreams().get(0);
+      Upstream live = route.getUpstreams().get(1);
+      assertEquals("Failure should be counted", 1, dead.getFailureCount());
+      assertTrue("Dead target should look slower than the live one",
+          dead.getEwmaNanos() > live.getEwmaNanos());
+    } finally {
+      backend.stop(0);
+    }
+  }
+
+  /**
+   * Pre-filter that counts how often it runs.
+   */
+  private static final class CountingFilter implements Filter {
+    private int calls;
+    private int postCalls;
+
+    @Override
+    public boolean preProcess(GatewayRequest request) {
+      calls++;
+      return true;
+    }
+
+    @Override
+    public void postProcess(GatewayRequest request, GatewayResponse response) {
+      postCalls++;
+      String count = response.getHeaders().get("X-Post-Count");
+      response.addHeader("X-Post-Count",
+          String.valueOf(count == null ? 1 : Integer.parseInt(count) + 1));
+    }
+
+    @Override
+    public String getName() {
+      return "CountingFilter";
+    }
+  }
 }
@@ -0,0 +1,131 @@
+package edu.bu.met.cs665.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.bu.met.cs665.model.GatewayRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+
+public class TracerTest {
+
+  private static GatewayRequest request(long startNanos) {
+    GatewayRequest request = new GatewayRequest();
+    request.setMethod("GET");
+    request.setPath("/api/data");
+    request.setStartNanos(startNanos);
+    return request;
+  }
+
+  /**
+   * Tests that only failed and slow traces are exported.
+   */
+  @Test
+  public void testTailSampling() {
+    InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+    Tracer tracer = Tracer.builder(exporter)
+        .slowThreshold(50, TimeUnit.MILLISECONDS)
+        .build();
+
+    GatewayRequest fast = request(System.nanoTime());
+    tracer.start(fast);
+    tracer.finish(fast, 200);
+
+    GatewayRequest failed = request(System.nanoTime());
+    tracer.start(failed);
+    tracer.finish(failed, 502);
+
+    GatewayRequest slow = request(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(80));
+    tracer.start(slow);
+    tracer.finish(slow, 200);
+
+    List<TraceContext> kept = exporter.getTraces();
+    assertEquals("Failed and slow traces should be kept", 2, kept.size());
+    assertEquals("Failed trace should be kept first", 502, kept.get(0).getStatus());
+    assertTrue("Slow trace should be kept",
+        kept.get(1).getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(80));
+    assertEquals("Fast trace should be sampled out", 1, tracer.getSampledOutCount());
+    assertEquals("Every trace should be started", 3, tracer.getStartedCount());
+  }
+
+  /**
+   * Tests that spans nest under the current span and that traceparent
+   * names the current span.
+   */
+  @Test
+  public void testSpanNesting() {
+    TraceContext trace = TraceContext.start(null, 0, System.nanoTime());
+    Span outer = trace.startSpan("outer");
+    Span inner = trace.startSpan("inner");
+    assertEquals("Inner span should be under the outer one", outer, inner.getParent());
+    assertTrue("traceparent should name the current span", trace.traceparent()
+        .endsWith(String.format("-%016x-01", inner.getSpanId())));
+
+    inner.end();
+    outer.end();
+    assertEquals("Root should be current again", trace.getRoot(), trace.getCurrentSpan());
+    assertTrue("Durations should be measured", inner.getDurationNanos() >= 0
+        && outer.getDurationNanos() >= inner.getDurationNanos());
+    assertEquals("traceparent should be 55 characters", 55, trace.traceparent().length());
+  }
+
+  /**
+   * Tests that malformed or all-zero traceparent headers start a new trace.
+   */
+  @Test
+  public void testInvalidTraceparentStartsNewTrace() {
+    String[] invalid = {
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331",
+        "00-00000000000000000000000000000000-b7ad6b7169203331-01",
+        "00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01",
+        "00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01",
+        "ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01",
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra"};
+    for (String header : invalid) {
+      TraceContext trace = TraceContext.start(header, 0, System.nanoTime());
+      assertNull("Header should be ignored: " + header, trace.getRemoteParentId());
+      assertNotEquals("A new trace ID should be used: " + header,
+          "0af7651916cd43dd8448eb211c80319c", trace.getTraceId());
+    }
+
+    TraceContext later = TraceContext.start(
+        "01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra", 0, System.nanoTime());
+    assertEquals("Later versions may add fields", "0af7651916cd43dd8448eb211c80319c",
+        later.getTraceId());
+  }
+
+  /**
+   * Tests that the file exporter appends one JSON line per trace.
+   */
+  @Test
+  public void testFileExporter() throws Exception {
+    Path file = Files.createTempFile("traces", ".jsonl");
+    try {
+      Tracer tracer = Tracer.builder(new FileSpanExporter(file)).sampleRate(1.0).build();
+      for (int i = 0; i < 2; i++) {
+        GatewayRequest request = request(System.nanoTime());
+        TraceContext trace = tracer.start(request);
+        trace.startSpan("upstream").end();
+        tracer.finish(request, 200);
+      }
+      tracer.close();
+
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      assertEquals("One line per trace", 2, lines.size());
+      assertTrue("Line should hold the spans: " + lines.get(0),
+          lines.get(0).contains("\"name\":\"request\"")
+              && lines.get(0).contains("\"name\":\"upstream\"")
+              && lines.get(0).contains("\"status\":200"));
+      assertEquals("Nothing should fail", 0, tracer.getFailedCount());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}